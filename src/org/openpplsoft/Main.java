@@ -25,6 +25,8 @@ public final class Main {
 
   private static Logger log = LogManager.getLogger(Main.class.getName());
 
+  private static RuntimeSession session;
+
   /**
    * Default no-arg constructor.
    */
@@ -45,9 +47,14 @@ public final class Main {
     ComponentRuntimeProfile profileToRun =
         (ComponentRuntimeProfile) ctx.getBean(args[1]);
 
+    session = new RuntimeSession();
+    session.bindToCurrentThread();
+
     try {
       Runtime.getRuntime().addShutdownHook(new ENTShutdownHook());
       TraceFileVerifier.init(profileToRun);
+      DefnSnapshot.open();
+      ProgramTextCache.open();
       Environment.init((String) ctx.getBean("psEnvironmentName"),
           profileToRun.getOprid());
 
@@ -94,7 +101,9 @@ public final class Main {
       ComponentBuffer.addEffDtKeyWhereNecessary();
       ComponentBuffer.logPageHierarchyVisual();
       ComponentBuffer.printStructure();
-      ComponentStructureVerifier.verify(profileToRun);
+      if (TraceFileVerifier.isEnabled()) {
+        ComponentStructureVerifier.verify(profileToRun);
+      }
       ComponentBuffer.materialize();
 
       ComponentBuffer.emitPRM();
@@ -119,6 +128,12 @@ public final class Main {
   private static class ENTShutdownHook extends Thread {
     public ENTShutdownHook() {}
     public void run() {
+      session.bindToCurrentThread();
+      DefnSnapshot.save();
+      ProgramTextCache.save();
+      StmtRecording.save();
+      ParseArtefactPolicy.logSummary();
+      session.close();
       StmtLibrary.disconnect();
       TraceFileVerifier.closeTraceFile();
     }
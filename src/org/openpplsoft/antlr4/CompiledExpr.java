@@ -0,0 +1,133 @@
+/*===---------------------------------------------------------------------===*\
+|*                       The OpenPplSoft Runtime Project                     *|
+|*                                                                           *|
+|*              This file is distributed under the MIT License.              *|
+|*                         See LICENSE.md for details.                       *|
+\*===---------------------------------------------------------------------===*/
+
+package org.openpplsoft.antlr4;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import org.openpplsoft.runtime.Environment;
+import org.openpplsoft.runtime.ExecContext;
+import org.openpplsoft.types.PTBoolean;
+import org.openpplsoft.types.PTInteger;
+import org.openpplsoft.types.PTType;
+
+/**
+ * The parent class of the classes that ExprCompiler generates for lowered
+ * expressions. A compiled expression evaluates its lowered tree with the
+ * operands it was specialized for held as JVM ints and booleans, checking
+ * each variable's value against the type it was specialized for (see the
+ * guards below). If a guard fails, the compiled code is abandoned and the
+ * expression is evaluated by its lowered tree instead; as lowered
+ * expressions have no side effects, the evaluation can simply be
+ * restarted. After repeated guard failures, the compiled code is
+ * invalidated and the lowered tree is used from then on.
+ */
+public abstract class CompiledExpr extends LoweredExpr {
+
+  private static Logger log =
+      LogManager.getLogger(CompiledExpr.class.getName());
+
+  // Guard failures after which the compiled code is no longer used.
+  private static final int MAX_DEOPTS = 10;
+
+  private static final DeoptException DEOPT = new DeoptException();
+
+  private final LoweredExpr tree;
+  private final AtomicInteger numDeopts = new AtomicInteger();
+  private volatile boolean isInvalidated;
+
+  /**
+   * The nodes of the lowered tree that the compiled code evaluates by
+   * calling them rather than inline, in the order ExprCompiler numbered
+   * them.
+   */
+  protected final LoweredExpr[] nodes;
+
+  protected CompiledExpr(final LoweredExpr t, final LoweredExpr[] n) {
+    this.tree = t;
+    this.nodes = n;
+  }
+
+  /**
+   * Evaluates this expression with the compiled code, or with the
+   * lowered tree if a guard fails or the code has been invalidated.
+   * @param eCtx the execution context in which to evaluate the expression
+   * @return the value of the expression
+   */
+  @Override
+  public final PTType eval(final ExecContext eCtx) {
+    if (!this.isInvalidated) {
+      try {
+        return this.evalCompiled(eCtx);
+      } catch (final DeoptException de) {
+        if (this.numDeopts.incrementAndGet() == MAX_DEOPTS) {
+          this.isInvalidated = true;
+          log.info("Invalidated {} after {} deoptimizations.",
+              this.getClass().getName(), MAX_DEOPTS);
+        }
+      }
+    }
+    return this.tree.eval(eCtx);
+  }
+
+  /**
+   * Determines whether this expression's compiled code has been
+   * invalidated.
+   * @return true if the lowered tree is used in place of the compiled code
+   */
+  public boolean isInvalidated() {
+    return this.isInvalidated;
+  }
+
+  /**
+   * Evaluates this expression with the compiled code.
+   * @param eCtx the execution context in which to evaluate the expression
+   * @return the value of the expression
+   */
+  protected abstract PTType evalCompiled(ExecContext eCtx);
+
+  /**
+   * Guards a value that the compiled code was specialized to treat as
+   * an Integer.
+   * @param rawExpr the value, or a reference to it
+   * @return the value as an int
+   */
+  public static int intOf(final PTType rawExpr) {
+    final PTType val = Environment.getOrDeref(rawExpr);
+    if (val instanceof PTInteger) {
+      return ((PTInteger) val).read();
+    }
+    throw DEOPT;
+  }
+
+  /**
+   * Guards a value that the compiled code was specialized to treat as
+   * a Boolean.
+   * @param rawExpr the value, or a reference to it
+   * @return the value as a boolean
+   */
+  public static boolean booleanOf(final PTType rawExpr) {
+    final PTType val = Environment.getOrDeref(rawExpr);
+    if (val instanceof PTBoolean) {
+      return ((PTBoolean) val).read();
+    }
+    throw DEOPT;
+  }
+
+  /**
+   * Thrown by a failed guard to abandon the compiled code; the single
+   * instance has no stack trace, so throwing it is cheap.
+   */
+  private static final class DeoptException extends RuntimeException {
+    private DeoptException() {
+      super(null, null, false, false);
+    }
+  }
+}
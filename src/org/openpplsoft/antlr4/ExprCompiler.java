@@ -0,0 +1,471 @@
+/*===---------------------------------------------------------------------===*\
+|*                       The OpenPplSoft Runtime Project                     *|
+|*                                                                           *|
+|*              This file is distributed under the MIT License.              *|
+|*                         See LICENSE.md for details.                       *|
+\*===---------------------------------------------------------------------===*/
+
+package org.openpplsoft.antlr4;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import org.openpplsoft.runtime.ExecContext;
+import org.openpplsoft.runtime.OPSVMachRuntimeException;
+import org.openpplsoft.types.PTBoolean;
+import org.openpplsoft.types.PTInteger;
+import org.openpplsoft.types.PTType;
+
+/**
+ * Compiles lowered expressions (see ExprLowerer) to JVM bytecode, as the
+ * last tier of tiered execution: once a function or method that has tiered
+ * up has been invoked "compileThreshold" times (which must be greater than
+ * "tierUpThreshold"), each of the lowered expressions in its body is
+ * compiled to a CompiledExpr subclass that replaces it.
+ *
+ * The compiled code is specialized using the types that each variable in
+ * the expression has resolved to while the lowered tree was run: integer
+ * arithmetic (+, - and negation) and integer comparisons are done on JVM
+ * ints, and Boolean operators on JVM booleans, so that no intermediate
+ * PTInteger or PTBoolean is produced; variables that have resolved only
+ * to Integers (or only to Booleans) are read through a guard, which
+ * deoptimizes the evaluation (see CompiledExpr) if the variable turns out
+ * to hold anything else. Every other node (strings, Numbers, arrays,
+ * system variables, etc.) is evaluated by calling the lowered node itself,
+ * so the compiled code produces exactly the values the lowered tree does.
+ * Unlike the lowered tree, compiled code does not log the operations it
+ * performs.
+ *
+ * Each generated class is defined by its own class loader, so that it can
+ * be unloaded along with the lowered tree it was compiled from.
+ */
+public final class ExprCompiler {
+
+  private static Logger log =
+      LogManager.getLogger(ExprCompiler.class.getName());
+
+  private static int compileThreshold;
+
+  private static final AtomicInteger classCounter = new AtomicInteger();
+
+  private static final String COMPILED_EXPR =
+      Type.getInternalName(CompiledExpr.class);
+  private static final String LOWERED_EXPR =
+      Type.getInternalName(LoweredExpr.class);
+  private static final String EXEC_CONTEXT =
+      Type.getInternalName(ExecContext.class);
+  private static final String PT_TYPE = Type.getInternalName(PTType.class);
+  private static final String PT_INTEGER =
+      Type.getInternalName(PTInteger.class);
+  private static final String PT_BOOLEAN =
+      Type.getInternalName(PTBoolean.class);
+
+  private static final String EVAL_DESC = "(L" + EXEC_CONTEXT + ";)L"
+      + PT_TYPE + ";";
+  private static final String INIT_DESC = "(L" + LOWERED_EXPR + ";[L"
+      + LOWERED_EXPR + ";)V";
+
+  // The kinds of value that a node can be compiled to produce.
+  private enum Kind { INT, BOOLEAN, VALUE }
+
+  static {
+    final String threshold = System.getProperty("compileThreshold");
+    if (threshold == null || threshold.trim().length() == 0) {
+      compileThreshold = 0;
+    } else {
+      compileThreshold = Integer.parseInt(threshold.trim());
+    }
+  }
+
+  private final LoweredExpr root;
+  private final List<LoweredExpr> calledNodes = new ArrayList<LoweredExpr>();
+
+  // Kinds are computed once per node, as the profiles may change.
+  private final Map<LoweredExpr, Kind> kinds =
+      new IdentityHashMap<LoweredExpr, Kind>();
+
+  /*
+   * The local variable in which the compiled code keeps the resolution
+   * of each variable identifier, by identifier. As expressions have no
+   * side effects, a variable cannot be rebound while one is evaluated,
+   * so each is resolved at most once per evaluation (on first use, so
+   * that variables in branches that are not taken are not resolved).
+   */
+  private final Map<String, Integer> varLocals =
+      new LinkedHashMap<String, Integer>();
+  private MethodVisitor mv;
+
+  private ExprCompiler(final LoweredExpr r) {
+    this.root = r;
+  }
+
+  /**
+   * Determines whether the expressions of hot, lowered bodies are
+   * compiled; requires tiered execution to be enabled.
+   * @return true if expression compilation is enabled
+   */
+  public static boolean isEnabled() {
+    return ExprLowerer.isTieringEnabled()
+        && compileThreshold > ExprLowerer.getTierUpThreshold();
+  }
+
+  public static int getCompileThreshold() {
+    return compileThreshold;
+  }
+
+  /**
+   * Compiles a lowered expression.
+   * @param lowered the lowered expression
+   * @return the compiled expression, or null if there is nothing in the
+   *    expression to specialize (i.e., compiling it would only replace
+   *    the call to its root node with another)
+   */
+  public static CompiledExpr compile(final LoweredExpr lowered) {
+    final ExprCompiler compiler = new ExprCompiler(lowered);
+    if (!compiler.isSpecializable(lowered)) {
+      return null;
+    }
+    return compiler.generate();
+  }
+
+  private boolean isSpecializable(final LoweredExpr e) {
+    if (e instanceof ExprLowerer.Add || e instanceof ExprLowerer.Sub
+        || e instanceof ExprLowerer.Negate) {
+      return kindOf(e) == Kind.INT;
+    } else if (e instanceof ExprLowerer.Comparison
+        || e instanceof ExprLowerer.Equality
+        || e instanceof ExprLowerer.Not) {
+      return kindOf(e) == Kind.BOOLEAN;
+    } else if (e instanceof ExprLowerer.ShortCircuit) {
+      return kindOf(((ExprLowerer.ShortCircuit) e).lhs) == Kind.BOOLEAN;
+    }
+    return false;
+  }
+
+  /*
+   * Determines the kind of value a node can be compiled to produce; INT
+   * and BOOLEAN nodes are compiled inline, VALUE nodes are called.
+   */
+  private Kind kindOf(final LoweredExpr e) {
+    Kind kind = this.kinds.get(e);
+    if (kind == null) {
+      kind = this.computeKindOf(e);
+      this.kinds.put(e, kind);
+    }
+    return kind;
+  }
+
+  private Kind computeKindOf(final LoweredExpr e) {
+    if (e instanceof ExprLowerer.IntegerLiteral) {
+      return Kind.INT;
+
+    } else if (e instanceof ExprLowerer.BooleanLiteral) {
+      return Kind.BOOLEAN;
+
+    } else if (e instanceof ExprLowerer.Var) {
+      final int seen = ((ExprLowerer.Var) e).seenTypes;
+      return seen == ExprLowerer.Var.SEEN_INTEGER ? Kind.INT
+          : seen == ExprLowerer.Var.SEEN_BOOLEAN ? Kind.BOOLEAN : Kind.VALUE;
+
+    } else if (e instanceof ExprLowerer.Add) {
+      final ExprLowerer.Add a = (ExprLowerer.Add) e;
+      return kindOf(a.lhs) == Kind.INT && kindOf(a.rhs) == Kind.INT
+          ? Kind.INT : Kind.VALUE;
+
+    } else if (e instanceof ExprLowerer.Sub) {
+      final ExprLowerer.Sub s = (ExprLowerer.Sub) e;
+      return kindOf(s.lhs) == Kind.INT && kindOf(s.rhs) == Kind.INT
+          ? Kind.INT : Kind.VALUE;
+
+    } else if (e instanceof ExprLowerer.Negate) {
+      return kindOf(((ExprLowerer.Negate) e).operand) == Kind.INT
+          ? Kind.INT : Kind.VALUE;
+
+    } else if (e instanceof ExprLowerer.Comparison) {
+      // PTInteger does not support >=; leave it to the lowered node.
+      final ExprLowerer.Comparison c = (ExprLowerer.Comparison) e;
+      return c.op != ExprLowerer.Comparison.Op.GE
+          && kindOf(c.lhs) == Kind.INT && kindOf(c.rhs) == Kind.INT
+          ? Kind.BOOLEAN : Kind.VALUE;
+
+    } else if (e instanceof ExprLowerer.Equality) {
+      final ExprLowerer.Equality eq = (ExprLowerer.Equality) e;
+      final Kind l = kindOf(eq.lhs);
+      return l != Kind.VALUE && l == kindOf(eq.rhs)
+          ? Kind.BOOLEAN : Kind.VALUE;
+
+    } else if (e instanceof ExprLowerer.Not) {
+      return kindOf(((ExprLowerer.Not) e).operand) == Kind.BOOLEAN
+          ? Kind.BOOLEAN : Kind.VALUE;
+
+    } else if (e instanceof ExprLowerer.ShortCircuit) {
+      final ExprLowerer.ShortCircuit sc = (ExprLowerer.ShortCircuit) e;
+      return kindOf(sc.lhs) == Kind.BOOLEAN && kindOf(sc.rhs) == Kind.BOOLEAN
+          ? Kind.BOOLEAN : Kind.VALUE;
+    }
+    return Kind.VALUE;
+  }
+
+  private CompiledExpr generate() {
+    final String name = COMPILED_EXPR.substring(0,
+        COMPILED_EXPR.lastIndexOf('/') + 1) + "GeneratedExpr"
+        + classCounter.incrementAndGet();
+
+    final ClassWriter cw = new ClassWriter(
+        ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS) {
+      @Override
+      protected ClassLoader getClassLoader() {
+        return ExprCompiler.class.getClassLoader();
+      }
+    };
+    cw.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL
+        | Opcodes.ACC_SUPER, name, null, COMPILED_EXPR, null);
+
+    // The body is emitted once to find the variables it uses, so that
+    // their locals can be cleared before it is emitted for real.
+    this.mv = new MethodVisitor(Opcodes.ASM9) {};
+    this.emitValue(this.root);
+    this.calledNodes.clear();
+
+    this.mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "evalCompiled", EVAL_DESC,
+        null, null);
+    this.mv.visitCode();
+    for (final int local : this.varLocals.values()) {
+      this.mv.visitInsn(Opcodes.ACONST_NULL);
+      this.mv.visitVarInsn(Opcodes.ASTORE, local);
+    }
+    this.emitValue(this.root);
+    this.mv.visitInsn(Opcodes.ARETURN);
+    this.mv.visitMaxs(0, 0);
+    this.mv.visitEnd();
+
+    final MethodVisitor init = cw.visitMethod(Opcodes.ACC_PUBLIC, "<init>",
+        INIT_DESC, null, null);
+    init.visitCode();
+    init.visitVarInsn(Opcodes.ALOAD, 0);
+    init.visitVarInsn(Opcodes.ALOAD, 1);
+    init.visitVarInsn(Opcodes.ALOAD, 2);
+    init.visitMethodInsn(Opcodes.INVOKESPECIAL, COMPILED_EXPR, "<init>",
+        INIT_DESC, false);
+    init.visitInsn(Opcodes.RETURN);
+    init.visitMaxs(0, 0);
+    init.visitEnd();
+    cw.visitEnd();
+
+    final Class<?> cls = new GeneratedClassLoader().define(
+        name.replace('/', '.'), cw.toByteArray());
+    try {
+      final CompiledExpr compiled = (CompiledExpr) cls.getConstructor(
+          LoweredExpr.class, LoweredExpr[].class).newInstance(this.root,
+              this.calledNodes.toArray(new LoweredExpr[0]));
+      log.debug("Generated {} ({} nodes called).", cls.getName(),
+          this.calledNodes.size());
+      return compiled;
+    } catch (final ReflectiveOperationException roe) {
+      throw new OPSVMachRuntimeException(roe.getMessage(), roe);
+    }
+  }
+
+  /*
+   * Emits code that leaves the node's value, as the lowered node would
+   * return it, on the stack.
+   */
+  private void emitValue(final LoweredExpr e) {
+    final Kind kind = kindOf(e);
+    if (kind == Kind.INT && !(e instanceof ExprLowerer.Var)
+        && !(e instanceof ExprLowerer.IntegerLiteral)) {
+      this.emitInt(e);
+      this.mv.visitMethodInsn(Opcodes.INVOKESTATIC, PT_INTEGER, "valueOf",
+          "(I)L" + PT_INTEGER + ";", false);
+
+    } else if (kind == Kind.BOOLEAN && !(e instanceof ExprLowerer.Var)) {
+      this.emitBoolean(e);
+      this.mv.visitMethodInsn(Opcodes.INVOKESTATIC, PT_BOOLEAN, "valueOf",
+          "(Z)L" + PT_BOOLEAN + ";", false);
+
+    } else if (e instanceof ExprLowerer.ShortCircuit
+        && kindOf(((ExprLowerer.ShortCircuit) e).lhs) == Kind.BOOLEAN) {
+      // If the lhs does not decide the result, the rhs is returned as is.
+      final ExprLowerer.ShortCircuit sc = (ExprLowerer.ShortCircuit) e;
+      final Label evalRhs = new Label(), end = new Label();
+      this.emitBoolean(sc.lhs);
+      this.mv.visitJumpInsn(sc.isOr ? Opcodes.IFEQ : Opcodes.IFNE, evalRhs);
+      this.mv.visitInsn(sc.isOr ? Opcodes.ICONST_1 : Opcodes.ICONST_0);
+      this.mv.visitMethodInsn(Opcodes.INVOKESTATIC, PT_BOOLEAN, "valueOf",
+          "(Z)L" + PT_BOOLEAN + ";", false);
+      this.mv.visitJumpInsn(Opcodes.GOTO, end);
+      this.mv.visitLabel(evalRhs);
+      this.emitValue(sc.rhs);
+      this.mv.visitLabel(end);
+
+    } else if (e instanceof ExprLowerer.Var) {
+      this.emitResolve((ExprLowerer.Var) e);
+
+    } else {
+      this.mv.visitVarInsn(Opcodes.ALOAD, 0);
+      this.mv.visitFieldInsn(Opcodes.GETFIELD, COMPILED_EXPR, "nodes",
+          "[L" + LOWERED_EXPR + ";");
+      this.emitIntConst(this.calledNodes.size());
+      this.mv.visitInsn(Opcodes.AALOAD);
+      this.mv.visitVarInsn(Opcodes.ALOAD, 1);
+      this.mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, LOWERED_EXPR, "eval",
+          EVAL_DESC, false);
+      this.calledNodes.add(e);
+    }
+  }
+
+  // Emits code that leaves the value of an INT node on the stack.
+  private void emitInt(final LoweredExpr e) {
+    if (e instanceof ExprLowerer.IntegerLiteral) {
+      this.emitIntConst(((ExprLowerer.IntegerLiteral) e).val.read());
+
+    } else if (e instanceof ExprLowerer.Var) {
+      this.emitResolve((ExprLowerer.Var) e);
+      this.mv.visitMethodInsn(Opcodes.INVOKESTATIC, COMPILED_EXPR, "intOf",
+          "(L" + PT_TYPE + ";)I", false);
+
+    } else if (e instanceof ExprLowerer.Add) {
+      this.emitInt(((ExprLowerer.Add) e).lhs);
+      this.emitInt(((ExprLowerer.Add) e).rhs);
+      this.mv.visitInsn(Opcodes.IADD);
+
+    } else if (e instanceof ExprLowerer.Sub) {
+      this.emitInt(((ExprLowerer.Sub) e).lhs);
+      this.emitInt(((ExprLowerer.Sub) e).rhs);
+      this.mv.visitInsn(Opcodes.ISUB);
+
+    } else if (e instanceof ExprLowerer.Negate) {
+      this.emitInt(((ExprLowerer.Negate) e).operand);
+      this.mv.visitInsn(Opcodes.INEG);
+
+    } else {
+      throw new OPSVMachRuntimeException("Not an integer node: " + e);
+    }
+  }
+
+  // Emits code that leaves the value of a BOOLEAN node on the stack.
+  private void emitBoolean(final LoweredExpr e) {
+    if (e instanceof ExprLowerer.BooleanLiteral) {
+      this.emitIntConst(((ExprLowerer.BooleanLiteral) e).val.read() ? 1 : 0);
+
+    } else if (e instanceof ExprLowerer.Var) {
+      this.emitResolve((ExprLowerer.Var) e);
+      this.mv.visitMethodInsn(Opcodes.INVOKESTATIC, COMPILED_EXPR,
+          "booleanOf", "(L" + PT_TYPE + ";)Z", false);
+
+    } else if (e instanceof ExprLowerer.Comparison) {
+      final ExprLowerer.Comparison c = (ExprLowerer.Comparison) e;
+      this.emitInt(c.lhs);
+      this.emitInt(c.rhs);
+      this.emitCondition(c.op == ExprLowerer.Comparison.Op.LT
+          ? Opcodes.IF_ICMPLT : c.op == ExprLowerer.Comparison.Op.GT
+          ? Opcodes.IF_ICMPGT : Opcodes.IF_ICMPLE);
+
+    } else if (e instanceof ExprLowerer.Equality) {
+      final ExprLowerer.Equality eq = (ExprLowerer.Equality) e;
+      if (kindOf(eq.lhs) == Kind.INT) {
+        this.emitInt(eq.lhs);
+        this.emitInt(eq.rhs);
+      } else {
+        this.emitBoolean(eq.lhs);
+        this.emitBoolean(eq.rhs);
+      }
+      this.emitCondition(eq.isInequality
+          ? Opcodes.IF_ICMPNE : Opcodes.IF_ICMPEQ);
+
+    } else if (e instanceof ExprLowerer.Not) {
+      this.emitBoolean(((ExprLowerer.Not) e).operand);
+      this.mv.visitInsn(Opcodes.ICONST_1);
+      this.mv.visitInsn(Opcodes.IXOR);
+
+    } else if (e instanceof ExprLowerer.ShortCircuit) {
+      final ExprLowerer.ShortCircuit sc = (ExprLowerer.ShortCircuit) e;
+      final Label evalRhs = new Label(), end = new Label();
+      this.emitBoolean(sc.lhs);
+      this.mv.visitJumpInsn(sc.isOr ? Opcodes.IFEQ : Opcodes.IFNE, evalRhs);
+      this.mv.visitInsn(sc.isOr ? Opcodes.ICONST_1 : Opcodes.ICONST_0);
+      this.mv.visitJumpInsn(Opcodes.GOTO, end);
+      this.mv.visitLabel(evalRhs);
+      this.emitBoolean(sc.rhs);
+      this.mv.visitLabel(end);
+
+    } else {
+      throw new OPSVMachRuntimeException("Not a Boolean node: " + e);
+    }
+  }
+
+  /*
+   * Emits code that replaces the two ints on the stack with 1 if they
+   * satisfy the given comparison, 0 otherwise.
+   */
+  private void emitCondition(final int ifCmpOpcode) {
+    final Label isTrue = new Label(), end = new Label();
+    this.mv.visitJumpInsn(ifCmpOpcode, isTrue);
+    this.mv.visitInsn(Opcodes.ICONST_0);
+    this.mv.visitJumpInsn(Opcodes.GOTO, end);
+    this.mv.visitLabel(isTrue);
+    this.mv.visitInsn(Opcodes.ICONST_1);
+    this.mv.visitLabel(end);
+  }
+
+  /*
+   * Emits code that resolves a variable as the lowered Var node does,
+   * unless it has already been resolved during this evaluation.
+   */
+  private void emitResolve(final ExprLowerer.Var v) {
+    Integer local = this.varLocals.get(v.id);
+    if (local == null) {
+      // Locals 0 and 1 hold this and the execution context.
+      local = this.varLocals.size() + 2;
+      this.varLocals.put(v.id, local);
+    }
+
+    final Label isResolved = new Label();
+    this.mv.visitVarInsn(Opcodes.ALOAD, local);
+    this.mv.visitJumpInsn(Opcodes.IFNONNULL, isResolved);
+    this.mv.visitVarInsn(Opcodes.ALOAD, 1);
+    this.emitIntConst(v.slot);
+    this.mv.visitLdcInsn(v.id);
+    this.mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, EXEC_CONTEXT,
+        "resolveIdentifier", "(ILjava/lang/String;)L" + PT_TYPE + ";",
+        false);
+    this.mv.visitVarInsn(Opcodes.ASTORE, local);
+    this.mv.visitLabel(isResolved);
+    this.mv.visitVarInsn(Opcodes.ALOAD, local);
+  }
+
+  private void emitIntConst(final int i) {
+    if (i >= -1 && i <= 5) {
+      this.mv.visitInsn(Opcodes.ICONST_0 + i);
+    } else if (i >= Byte.MIN_VALUE && i <= Byte.MAX_VALUE) {
+      this.mv.visitIntInsn(Opcodes.BIPUSH, i);
+    } else if (i >= Short.MIN_VALUE && i <= Short.MAX_VALUE) {
+      this.mv.visitIntInsn(Opcodes.SIPUSH, i);
+    } else {
+      this.mv.visitLdcInsn(i);
+    }
+  }
+
+  private static final class GeneratedClassLoader extends ClassLoader {
+    private GeneratedClassLoader() {
+      super(ExprCompiler.class.getClassLoader());
+    }
+
+    private Class<?> define(final String name, final byte[] bytes) {
+      return this.defineClass(name, bytes, 0, bytes.length);
+    }
+  }
+}
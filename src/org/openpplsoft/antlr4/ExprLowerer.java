@@ -0,0 +1,532 @@
+/*===---------------------------------------------------------------------===*\
+|*                       The OpenPplSoft Runtime Project                     *|
+|*                                                                           *|
+|*              This file is distributed under the MIT License.              *|
+|*                         See LICENSE.md for details.                       *|
+\*===---------------------------------------------------------------------===*/
+
+package org.openpplsoft.antlr4;
+
+import java.util.List;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import org.openpplsoft.antlr4.frontend.PeopleCodeParser;
+import org.openpplsoft.pt.peoplecode.PeopleCodeProg;
+import org.openpplsoft.runtime.AppClassObjExecContext;
+import org.openpplsoft.runtime.Environment;
+import org.openpplsoft.runtime.ExecContext;
+import org.openpplsoft.runtime.OPSVMachRuntimeException;
+import org.openpplsoft.types.PTArray;
+import org.openpplsoft.types.PTBoolean;
+import org.openpplsoft.types.PTInteger;
+import org.openpplsoft.types.PTNumberType;
+import org.openpplsoft.types.PTPrimitiveType;
+import org.openpplsoft.types.PTString;
+import org.openpplsoft.types.PTType;
+
+/**
+ * Lowers expression parse trees into LoweredExpr trees. Only expressions
+ * that cannot emit, call into other programs or depend on interpreter
+ * state (i.e., whether the expression is the target of an assignment) are
+ * lowered: literals, variables and system variables, arithmetic,
+ * comparison, boolean and concatenation operators, and array indexing.
+ * Any other expression (function and method calls, dot access, create
+ * invocations, etc.) is left to InterpreterVisitor, as is any expression
+ * containing one; such an expression's lowerable subexpressions are still
+ * lowered individually when the visitor evaluates them.
+ *
+ * Each lowered node evaluates exactly as the corresponding visitor method
+ * does.
+ *
+ * Lowering is enabled for all code with the "lowerExprs" system property.
+ * Alternatively, setting the "tierUpThreshold" system property to N > 0
+ * enables tiered execution: a function or method is interpreted by
+ * InterpreterVisitor alone until it has been invoked N times, at which
+ * point all expressions in its body are lowered (see
+ * PeopleCodeProg.recordInvocation). As lowered nodes make no assumptions
+ * about the types of the values they operate on, there is nothing to
+ * invalidate once a body has been lowered. Bodies that stay hot can then
+ * be compiled to JVM bytecode; see ExprCompiler.
+ */
+public final class ExprLowerer {
+
+  private static Logger log =
+      LogManager.getLogger(ExprLowerer.class.getName());
+
+  private static boolean isEnabled;
+  private static int tierUpThreshold;
+
+  static {
+    isEnabled = Boolean.getBoolean("lowerExprs");
+
+    final String threshold = System.getProperty("tierUpThreshold");
+    if (threshold == null || threshold.trim().length() == 0) {
+      tierUpThreshold = 0;
+    } else {
+      tierUpThreshold = Integer.parseInt(threshold.trim());
+    }
+  }
+
+  private ExprLowerer() {}
+
+  public static boolean isEnabled() {
+    return isEnabled;
+  }
+
+  /**
+   * Determines whether expressions are lowered only in the bodies of
+   * hot functions and methods; always false if lowering is enabled
+   * for all code.
+   * @return true if tiered execution is enabled
+   */
+  public static boolean isTieringEnabled() {
+    return !isEnabled && tierUpThreshold > 0;
+  }
+
+  public static int getTierUpThreshold() {
+    return tierUpThreshold;
+  }
+
+  /**
+   * Lowers an expression.
+   * @param prog the program containing the expression
+   * @param ctx the expression's parse tree node
+   * @return the lowered expression, or null if the expression
+   *    (or any of its subexpressions) cannot be lowered
+   */
+  public static LoweredExpr lower(final PeopleCodeProg prog,
+      final PeopleCodeParser.ExprContext ctx) {
+
+    if (ctx instanceof PeopleCodeParser.ExprParenthesizedContext) {
+      return lower(prog,
+          ((PeopleCodeParser.ExprParenthesizedContext) ctx).expr());
+
+    } else if (ctx instanceof PeopleCodeParser.ExprLiteralContext) {
+      return lowerLiteral(
+          ((PeopleCodeParser.ExprLiteralContext) ctx).literal());
+
+    } else if (ctx instanceof PeopleCodeParser.ExprIdContext) {
+      return lowerId(prog, ((PeopleCodeParser.ExprIdContext) ctx).id());
+
+    } else if (ctx instanceof PeopleCodeParser.ExprMulDivContext) {
+      final PeopleCodeParser.ExprMulDivContext c =
+          (PeopleCodeParser.ExprMulDivContext) ctx;
+      final LoweredExpr lhs = lower(prog, c.expr(0));
+      final LoweredExpr rhs = lower(prog, c.expr(1));
+      if (lhs == null || rhs == null) {
+        return null;
+      }
+      return c.m != null ? new Mul(lhs, rhs)
+          : (c.d != null ? new Div(lhs, rhs) : null);
+
+    } else if (ctx instanceof PeopleCodeParser.ExprAddSubContext) {
+      final PeopleCodeParser.ExprAddSubContext c =
+          (PeopleCodeParser.ExprAddSubContext) ctx;
+      final LoweredExpr lhs = lower(prog, c.expr(0));
+      final LoweredExpr rhs = lower(prog, c.expr(1));
+      if (lhs == null || rhs == null) {
+        return null;
+      }
+      return c.a != null ? new Add(lhs, rhs)
+          : (c.s != null ? new Sub(lhs, rhs) : null);
+
+    } else if (ctx instanceof PeopleCodeParser.ExprComparisonContext) {
+      final PeopleCodeParser.ExprComparisonContext c =
+          (PeopleCodeParser.ExprComparisonContext) ctx;
+      final LoweredExpr lhs = lower(prog, c.expr(0));
+      final LoweredExpr rhs = lower(prog, c.expr(1));
+      if (lhs == null || rhs == null) {
+        return null;
+      }
+      final Comparison.Op op = c.l != null ? Comparison.Op.LT
+          : c.g != null ? Comparison.Op.GT
+          : c.ge != null ? Comparison.Op.GE
+          : c.le != null ? Comparison.Op.LE : null;
+      return op == null ? null : new Comparison(op, lhs, rhs, c.getText());
+
+    } else if (ctx instanceof PeopleCodeParser.ExprEqualityContext) {
+      final PeopleCodeParser.ExprEqualityContext c =
+          (PeopleCodeParser.ExprEqualityContext) ctx;
+      final LoweredExpr lhs = lower(prog, c.expr(0));
+      final LoweredExpr rhs = lower(prog, c.expr(1));
+      if (lhs == null || rhs == null || (c.e == null && c.i == null)) {
+        return null;
+      }
+      return new Equality(c.i != null, lhs, rhs);
+
+    } else if (ctx instanceof PeopleCodeParser.ExprBooleanContext) {
+      final PeopleCodeParser.ExprBooleanContext c =
+          (PeopleCodeParser.ExprBooleanContext) ctx;
+      final LoweredExpr lhs = lower(prog, c.expr(0));
+      final LoweredExpr rhs = lower(prog, c.expr(1));
+      if (lhs == null || rhs == null) {
+        return null;
+      }
+      if (c.op.getText().equals("Or")) {
+        return new ShortCircuit(true, lhs, rhs);
+      } else if (c.op.getText().equals("And")) {
+        return new ShortCircuit(false, lhs, rhs);
+      }
+      return null;
+
+    } else if (ctx instanceof PeopleCodeParser.ExprNegateContext) {
+      final LoweredExpr operand =
+          lower(prog, ((PeopleCodeParser.ExprNegateContext) ctx).expr());
+      return operand == null ? null : new Negate(operand);
+
+    } else if (ctx instanceof PeopleCodeParser.ExprNotContext) {
+      final LoweredExpr operand =
+          lower(prog, ((PeopleCodeParser.ExprNotContext) ctx).expr());
+      return operand == null ? null : new Not(operand);
+
+    } else if (ctx instanceof PeopleCodeParser.ExprConcatContext) {
+      final PeopleCodeParser.ExprConcatContext c =
+          (PeopleCodeParser.ExprConcatContext) ctx;
+      final LoweredExpr lhs = lower(prog, c.expr(0));
+      final LoweredExpr rhs = lower(prog, c.expr(1));
+      return (lhs == null || rhs == null) ? null : new Concat(lhs, rhs);
+
+    } else if (ctx instanceof PeopleCodeParser.ExprArrayIndexContext) {
+      final PeopleCodeParser.ExprArrayIndexContext c =
+          (PeopleCodeParser.ExprArrayIndexContext) ctx;
+      final LoweredExpr arr = lower(prog, c.expr());
+      final List<PeopleCodeParser.ExprContext> idxCtxs = c.exprList().expr();
+      final LoweredExpr[] idxs = new LoweredExpr[idxCtxs.size()];
+      for (int i = 0; i < idxs.length; i++) {
+        idxs[i] = lower(prog, idxCtxs.get(i));
+        if (idxs[i] == null) {
+          return null;
+        }
+      }
+      return arr == null ? null : new ArrayIndex(arr, idxs);
+    }
+
+    return null;
+  }
+
+  private static LoweredExpr lowerLiteral(
+      final PeopleCodeParser.LiteralContext ctx) {
+    if (ctx.IntegerLiteral() != null) {
+      return new IntegerLiteral(
+          Integer.parseInt(ctx.IntegerLiteral().getText()));
+    } else if (ctx.BoolLiteral() != null) {
+      final String b = ctx.BoolLiteral().getText();
+      return new BooleanLiteral(b.equals("True") || b.equals("true"));
+    } else if (ctx.StringLiteral() != null) {
+      final String str = ctx.StringLiteral().getText();
+      return new StringLiteral(str.substring(1, str.length() - 1));
+    }
+    // Decimal literals are rejected by the visitor; leave them to it.
+    return null;
+  }
+
+  private static LoweredExpr lowerId(final PeopleCodeProg prog,
+      final PeopleCodeParser.IdContext ctx) {
+    if (ctx.SYS_VAR_ID() != null) {
+      final String sysVarId = ctx.SYS_VAR_ID().getText();
+      return sysVarId.equals("%This") ? new This() : new SystemVar(sysVarId);
+    } else if (ctx.VAR_ID() != null) {
+      final String varId = ctx.VAR_ID().getText();
+      return new Var(prog.getVarSlot(varId), varId);
+    }
+    // Generic ids resolve to functions, defn literals and records.
+    return null;
+  }
+
+  /**
+   * Integer and Boolean literals evaluate to read-only values that are
+   * shared by every evaluation; like all intermediate values, they are
+   * copied wherever they could be written to.
+   */
+  static final class IntegerLiteral extends LoweredExpr {
+    final PTInteger val;
+    private IntegerLiteral(final int v) {
+      this.val = new PTInteger(v);
+      this.val.setReadOnly();
+    }
+    public PTType eval(final ExecContext eCtx) {
+      return this.val;
+    }
+  }
+
+  static final class BooleanLiteral extends LoweredExpr {
+    final PTBoolean val;
+    private BooleanLiteral(final boolean v) {
+      this.val = PTBoolean.valueOf(v);
+    }
+    public PTType eval(final ExecContext eCtx) {
+      return this.val;
+    }
+  }
+
+  static final class StringLiteral extends LoweredExpr {
+    final String val;
+    private StringLiteral(final String v) {
+      this.val = v;
+    }
+    public PTType eval(final ExecContext eCtx) {
+      return new PTString(this.val);
+    }
+  }
+
+  static final class This extends LoweredExpr {
+    public PTType eval(final ExecContext eCtx) {
+      return ((AppClassObjExecContext) eCtx).getAppClassObj();
+    }
+  }
+
+  static final class SystemVar extends LoweredExpr {
+    final String id;
+    private SystemVar(final String i) {
+      this.id = i;
+    }
+    public PTType eval(final ExecContext eCtx) {
+      return Environment.getSystemVar(this.id);
+    }
+  }
+
+  /**
+   * When lowered expressions may be compiled, a variable also records the
+   * types of the values it has resolved to, from which ExprCompiler
+   * decides what to specialize the compiled code for. Races between
+   * threads updating the profile can only lose a bit, which at worst
+   * leads to code that deoptimizes.
+   */
+  static final class Var extends LoweredExpr {
+    static final int SEEN_INTEGER = 1;
+    static final int SEEN_BOOLEAN = 2;
+    static final int SEEN_OTHER = 4;
+
+    final int slot;
+    final String id;
+    int seenTypes;
+
+    private Var(final int s, final String i) {
+      this.slot = s;
+      this.id = i;
+    }
+
+    public PTType eval(final ExecContext eCtx) {
+      final PTType val = eCtx.resolveIdentifier(this.slot, this.id);
+      if (ExprCompiler.isEnabled()) {
+        final PTType derefed = Environment.getOrDeref(val);
+        final int seen = derefed instanceof PTInteger ? SEEN_INTEGER
+            : derefed instanceof PTBoolean ? SEEN_BOOLEAN : SEEN_OTHER;
+        if ((this.seenTypes & seen) == 0) {
+          this.seenTypes |= seen;
+        }
+      }
+      return val;
+    }
+  }
+
+  static final class Mul extends LoweredExpr {
+    final LoweredExpr lhs, rhs;
+    private Mul(final LoweredExpr l, final LoweredExpr r) {
+      this.lhs = l;
+      this.rhs = r;
+    }
+    public PTType eval(final ExecContext eCtx) {
+      final PTNumberType l = Environment.getOrDerefNumber(this.lhs.eval(eCtx));
+      final PTNumberType r = Environment.getOrDerefNumber(this.rhs.eval(eCtx));
+      return l.mul(r);
+    }
+  }
+
+  static final class Div extends LoweredExpr {
+    final LoweredExpr lhs, rhs;
+    private Div(final LoweredExpr l, final LoweredExpr r) {
+      this.lhs = l;
+      this.rhs = r;
+    }
+    public PTType eval(final ExecContext eCtx) {
+      final PTNumberType l = Environment.getOrDerefNumber(this.lhs.eval(eCtx));
+      final PTNumberType r = Environment.getOrDerefNumber(this.rhs.eval(eCtx));
+      return l.div(r);
+    }
+  }
+
+  static final class Add extends LoweredExpr {
+    final LoweredExpr lhs, rhs;
+    private Add(final LoweredExpr l, final LoweredExpr r) {
+      this.lhs = l;
+      this.rhs = r;
+    }
+    public PTType eval(final ExecContext eCtx) {
+      final PTNumberType l = Environment.getOrDerefNumber(this.lhs.eval(eCtx));
+      final PTNumberType r = Environment.getOrDerefNumber(this.rhs.eval(eCtx));
+      return l.add(r);
+    }
+  }
+
+  static final class Sub extends LoweredExpr {
+    final LoweredExpr lhs, rhs;
+    private Sub(final LoweredExpr l, final LoweredExpr r) {
+      this.lhs = l;
+      this.rhs = r;
+    }
+    public PTType eval(final ExecContext eCtx) {
+      final PTNumberType l = Environment.getOrDerefNumber(this.lhs.eval(eCtx));
+      final PTNumberType r = Environment.getOrDerefNumber(this.rhs.eval(eCtx));
+      return l.sub(r);
+    }
+  }
+
+  static final class Comparison extends LoweredExpr {
+    enum Op { LT, GT, GE, LE }
+
+    final Op op;
+    final LoweredExpr lhs, rhs;
+    final String text;
+
+    private Comparison(final Op o, final LoweredExpr l, final LoweredExpr r,
+        final String t) {
+      this.op = o;
+      this.lhs = l;
+      this.rhs = r;
+      this.text = t;
+    }
+
+    public PTType eval(final ExecContext eCtx) {
+      final PTPrimitiveType l =
+          Environment.getOrDerefPrimitive(this.lhs.eval(eCtx));
+      final PTPrimitiveType r =
+          Environment.getOrDerefPrimitive(this.rhs.eval(eCtx));
+
+      final PTBoolean result;
+      switch (this.op) {
+        case LT:
+          result = l.isLessThan(r);
+          log.debug("isLessThan: {}? {}", this.text, result);
+          break;
+        case GT:
+          result = l.isGreaterThan(r);
+          log.debug("isGreaterThan: {}? {}", this.text, result);
+          break;
+        case GE:
+          result = l.isGreaterThanOrEqual(r);
+          log.debug("isGreaterThanOrEqual: {}? {}", this.text, result);
+          break;
+        default:
+          result = l.isLessThanOrEqual(r);
+          log.debug("isLessThanOrEqual: {}? {}", this.text, result);
+      }
+      return result;
+    }
+  }
+
+  static final class Equality extends LoweredExpr {
+    final boolean isInequality;
+    final LoweredExpr lhs, rhs;
+
+    private Equality(final boolean i, final LoweredExpr l,
+        final LoweredExpr r) {
+      this.isInequality = i;
+      this.lhs = l;
+      this.rhs = r;
+    }
+
+    public PTType eval(final ExecContext eCtx) {
+      final PTPrimitiveType l =
+          Environment.getOrDerefPrimitive(this.lhs.eval(eCtx));
+      final PTPrimitiveType r =
+          Environment.getOrDerefPrimitive(this.rhs.eval(eCtx));
+
+      final PTBoolean equalityResult = l.isEqual(r);
+      if (!this.isInequality) {
+        log.debug("[=] lhs: {}; rhs: {}, result: {}",
+            l, r, equalityResult.readAsString());
+        return equalityResult;
+      }
+      final PTBoolean inEqualityResult = equalityResult.negationOf();
+      log.debug("[<>] lhs: {}; rhs: {}, result: {}",
+          l, r, inEqualityResult.readAsString());
+      return inEqualityResult;
+    }
+  }
+
+  /**
+   * And/Or; if the lhs decides the result, the rhs is not evaluated,
+   * otherwise the value of the rhs (not dereferenced) is the result.
+   */
+  static final class ShortCircuit extends LoweredExpr {
+    final boolean isOr;
+    final LoweredExpr lhs, rhs;
+
+    private ShortCircuit(final boolean o, final LoweredExpr l,
+        final LoweredExpr r) {
+      this.isOr = o;
+      this.lhs = l;
+      this.rhs = r;
+    }
+
+    public PTType eval(final ExecContext eCtx) {
+      final PTBoolean l = Environment.getOrDerefBoolean(this.lhs.eval(eCtx));
+      if (l.read() == this.isOr) {
+        return PTBoolean.valueOf(this.isOr);
+      }
+      return this.rhs.eval(eCtx);
+    }
+  }
+
+  static final class Negate extends LoweredExpr {
+    final LoweredExpr operand;
+    private Negate(final LoweredExpr o) {
+      this.operand = o;
+    }
+    public PTType eval(final ExecContext eCtx) {
+      return Environment.getOrDerefNumber(this.operand.eval(eCtx)).negate();
+    }
+  }
+
+  static final class Not extends LoweredExpr {
+    final LoweredExpr operand;
+    private Not(final LoweredExpr o) {
+      this.operand = o;
+    }
+    public PTType eval(final ExecContext eCtx) {
+      return Environment.getOrDerefBoolean(this.operand.eval(eCtx))
+          .negationOf();
+    }
+  }
+
+  static final class Concat extends LoweredExpr {
+    final LoweredExpr lhs, rhs;
+    private Concat(final LoweredExpr l, final LoweredExpr r) {
+      this.lhs = l;
+      this.rhs = r;
+    }
+    public PTType eval(final ExecContext eCtx) {
+      final PTString l =
+          (PTString) Environment.getOrDerefPrimitive(this.lhs.eval(eCtx));
+      final PTString r =
+          (PTString) Environment.getOrDerefPrimitive(this.rhs.eval(eCtx));
+      return l.concat(r);
+    }
+  }
+
+  static final class ArrayIndex extends LoweredExpr {
+    final LoweredExpr arr;
+    final LoweredExpr[] idxs;
+
+    private ArrayIndex(final LoweredExpr a, final LoweredExpr[] i) {
+      this.arr = a;
+      this.idxs = i;
+    }
+
+    public PTType eval(final ExecContext eCtx) {
+      PTType t = Environment.getOrDeref(this.arr.eval(eCtx));
+      for (final LoweredExpr idx : this.idxs) {
+        final PTType indexExpr = Environment.getOrDeref(idx.eval(eCtx));
+        if (!(t instanceof PTArray)) {
+          throw new OPSVMachRuntimeException("Object to index into is "
+              + "not an array; illegal object: " + t);
+        }
+        t = ((PTArray) t).getElement(indexExpr);
+      }
+      return t;
+    }
+  }
+}
@@ -68,6 +68,10 @@ public class InterpreterVisitor extends PeopleCodeBaseVisitor<Void> {
   }
 
   public void emit(final Token tok) {
+    if (!TraceFileVerifier.isEnabled()) {
+      return;
+    }
+
     final StringBuilder b = new StringBuilder(tok.getText());
     b.append(this.getSemicolonsAfterTokenIdx(tok.getTokenIndex()+1));
 
@@ -90,6 +94,10 @@ public class InterpreterVisitor extends PeopleCodeBaseVisitor<Void> {
   public void emit(final ParserRuleContext ctx,
       final Token tokToReplace, final String replacementStr) {
 
+    if (!TraceFileVerifier.isEnabled()) {
+      return;
+    }
+
     final StringBuffer line = new StringBuffer();
     final Interval interval = ctx.getSourceInterval();
 
@@ -231,6 +239,29 @@ public class InterpreterVisitor extends PeopleCodeBaseVisitor<Void> {
     }
   }
 
+  /**
+   * Evaluates an expression whose value (rather than callable) is
+   * needed. If expression lowering is enabled (or the enclosing body
+   * has tiered up) and the expression can be lowered, its lowered form
+   * is evaluated directly; otherwise the expression is visited and its
+   * node data is returned.
+   * @param ctx the expression to evaluate
+   * @return the value of the expression
+   */
+  private PTType evalExpr(final PeopleCodeParser.ExprContext ctx) {
+    LoweredExpr lowered = null;
+    if (ExprLowerer.isEnabled()) {
+      lowered = this.eCtx.getProg().getLoweredExpr(ctx);
+    } else if (ExprLowerer.isTieringEnabled()) {
+      lowered = this.eCtx.getProg().getTieredUpExpr(ctx);
+    }
+    if (lowered != null) {
+      return lowered.eval(this.eCtx);
+    }
+    visit(ctx);
+    return this.getNodeData(ctx);
+  }
+
   /**
    * Called by ANTLR when a program node is being visited
    * in the parse tree.
@@ -245,7 +276,8 @@ public class InterpreterVisitor extends PeopleCodeBaseVisitor<Void> {
      * other programs get a fresh program-local scope.
      */
     if (!(this.eCtx.getProg() instanceof AppClassPeopleCodeProg)) {
-      this.eCtx.pushScope(new Scope(Scope.Lvl.PROGRAM_LOCAL));
+      this.eCtx.pushScope(new Scope(Scope.Lvl.PROGRAM_LOCAL,
+          this.eCtx.getProg()));
     }
 
     visit(ctx.stmtList());
@@ -426,9 +458,8 @@ public class InterpreterVisitor extends PeopleCodeBaseVisitor<Void> {
     this.emit(ctx);
 
     // Get value of conditional expression.
-    visit(ctx.expr());
     final boolean exprResult =
-        Environment.getOrDerefBoolean(this.getNodeData(ctx.expr())).read();
+        Environment.getOrDerefBoolean(this.evalExpr(ctx.expr())).read();
 
     // If expression evaluates to true, visit the conditional body;
     // otherwise, visit the Else body if it exists.
@@ -465,19 +496,17 @@ public class InterpreterVisitor extends PeopleCodeBaseVisitor<Void> {
     final PTNumberType counter = Environment.getOrDerefNumber(
           this.eCtx.resolveIdentifier(ctx.VAR_ID().getText()));
 
-    visit(ctx.expr(0));
     final PTNumberType initialExpr =
-        (PTNumberType) this.getNodeData(ctx.expr(0));
+        (PTNumberType) this.evalExpr(ctx.expr(0));
 
     // Initialize incrementing expression.
     counter.copyValueFrom(initialExpr);
 
-    visit(ctx.expr(1));
     final PTNumberType toExpr =
-        Environment.getOrDerefNumber(this.getNodeData(ctx.expr(1)));
+        Environment.getOrDerefNumber(this.evalExpr(ctx.expr(1)));
 
     this.emit(ctx);
-    while (counter.isLessThanOrEqual(toExpr).read()) {
+    while (counter.lessThanOrEqualTo(toExpr)) {
 
       try {
         visit(ctx.stmtList());
@@ -488,7 +517,7 @@ public class InterpreterVisitor extends PeopleCodeBaseVisitor<Void> {
       }
 
       // Increment and set new value of incrementing expression.
-      counter.copyValueFrom(counter.add(new PTInteger(1)));
+      counter.copyValueFrom(counter.add(PTInteger.valueOf(1)));
 
       this.emit(ctx.endfor);
       this.emit(ctx);
@@ -542,8 +571,7 @@ public class InterpreterVisitor extends PeopleCodeBaseVisitor<Void> {
       this.emit(ctx);
     }
 
-    visit(ctx.expr(1));
-    final PTType src = this.getNodeData(ctx.expr(1));
+    final PTType src = this.evalExpr(ctx.expr(1));
 
     this.inLhsOfAssignmentFlag = true;
     try {
@@ -565,10 +593,10 @@ public class InterpreterVisitor extends PeopleCodeBaseVisitor<Void> {
             + "exists on the provided callable.");
       } else {
         Environment.pushToCallStack(PTCallFrameBoundary.getSingleton());
-        Environment.pushToCallStack(this.getNodeData(ctx.expr(1)));
+        Environment.pushToCallStack(src);
         this.supervisor.runImmediately(gsCallable.getSetterExecContext());
 
-        if (!(Environment.popFromCallStack() instanceof PTCallFrameBoundary)) {
+        if (Environment.popCallFrame() != null) {
           throw new OPSVMachRuntimeException("A return value "
               + "was found on the call stack after calling setter; none was expected.");
         }
@@ -605,9 +633,7 @@ public class InterpreterVisitor extends PeopleCodeBaseVisitor<Void> {
     // If the Return expression is non-null, it must be type-checked against
     // the type declared in the method or function signature.
     if (ctx.expr() != null) {
-      visit(ctx.expr());
-
-      PTType retVal = this.getNodeData(ctx.expr());
+      PTType retVal = this.evalExpr(ctx.expr());
       if (retVal instanceof PTReference) {
         // References cannot be returned; dereference first.
         retVal = ((PTReference) retVal).deref();
@@ -635,7 +661,7 @@ public class InterpreterVisitor extends PeopleCodeBaseVisitor<Void> {
 
       try {
         rTc.typeCheck(retVal);
-        Environment.pushToCallStack(retVal);
+        Environment.setReturnValue(retVal);
       } catch (final OPSTypeCheckException opstce) {
         throw new OPSVMachRuntimeException("Return statement expression ("
             + retVal + ") does not match the expected return type ("
@@ -684,15 +710,14 @@ public class InterpreterVisitor extends PeopleCodeBaseVisitor<Void> {
    */
   public Void visitExprDynamicReference(
       final PeopleCodeParser.ExprDynamicReferenceContext ctx) {
-    visit(ctx.expr());
-
-    if(!(this.getNodeData(ctx.expr()) instanceof PTString)) {
+    final PTType inputExpr = this.evalExpr(ctx.expr());
+    if(!(inputExpr instanceof PTString)) {
       throw new OPSVMachRuntimeException("Encountered input to dynamic "
           + "reference translation that is not of type PTString; need to "
           + "support this particular input type.");
     }
 
-    final String input = ((PTString) this.getNodeData(ctx.expr())).read();
+    final String input = ((PTString) inputExpr).read();
     final PTType output = PTDefnLiteralKeyword.allocLiteralObjFromDefnString(input);
 
     log.debug("Translated dynamic reference input {} to {}", input, output);
@@ -725,6 +750,7 @@ public class InterpreterVisitor extends PeopleCodeBaseVisitor<Void> {
 
     //log.debug("BEGIN visitExprFnOrIdxCall; expr is {}", ctx.expr().getText());
 
+    // The target of a call yields a callable, so it is never lowered.
     visit(ctx.expr());
 
     final Callable call = this.getNodeCallable(ctx.expr());
@@ -736,8 +762,7 @@ public class InterpreterVisitor extends PeopleCodeBaseVisitor<Void> {
     if (ctx.exprList() != null) {
       for (PeopleCodeParser.ExprContext argCtx : ctx.exprList().expr()) {
         //log.debug("VISITING arg: {}", argCtx.getText());
-        visit(argCtx);
-        Environment.pushToCallStack(this.getNodeData(argCtx));
+        Environment.pushToCallStack(this.evalExpr(argCtx));
       }
     }
 
@@ -765,14 +790,11 @@ public class InterpreterVisitor extends PeopleCodeBaseVisitor<Void> {
     }
 
     /*
-     * Pop the first value from the call stack. If it's a call frame
-     * boundary, the function
-     * did not emit a return value. If it's not a call frame boundary
-     * the next item on the stack
-     * must be the boundary separator (PeopleCode funcs can only return 1 value).
+     * Pop the call frame; if the callee returned a value (PeopleCode funcs
+     * can only return 1 value), it is taken from the frame's return slot.
      */
-    final PTType a = Environment.popFromCallStack();
-    if (!(a instanceof PTCallFrameBoundary)) {
+    final PTType a = Environment.popCallFrame();
+    if (a != null) {
       this.setNodeData(ctx, a);
 
       /*
@@ -789,12 +811,6 @@ public class InterpreterVisitor extends PeopleCodeBaseVisitor<Void> {
       }
     }
 
-    if (!(a instanceof PTCallFrameBoundary)
-         && !(Environment.popFromCallStack() instanceof PTCallFrameBoundary)) {
-      throw new OPSVMachRuntimeException("More than one return value "
-          + "was found on the call stack.");
-    }
-
     return null;
   }
 
@@ -808,12 +824,10 @@ public class InterpreterVisitor extends PeopleCodeBaseVisitor<Void> {
   public Void visitExprMulDiv(
       final PeopleCodeParser.ExprMulDivContext ctx) {
 
-    visit(ctx.expr(0));
     final PTNumberType lhs =
-        Environment.getOrDerefNumber(this.getNodeData(ctx.expr(0)));
-    visit(ctx.expr(1));
+        Environment.getOrDerefNumber(this.evalExpr(ctx.expr(0)));
     final PTNumberType rhs =
-        Environment.getOrDerefNumber(this.getNodeData(ctx.expr(1)));
+        Environment.getOrDerefNumber(this.evalExpr(ctx.expr(1)));
 
     if (ctx.m != null) {
       this.setNodeData(ctx, lhs.mul(rhs));
@@ -836,13 +850,11 @@ public class InterpreterVisitor extends PeopleCodeBaseVisitor<Void> {
   public Void visitExprAddSub(
       final PeopleCodeParser.ExprAddSubContext ctx) {
 
-    visit(ctx.expr(0));
     final PTNumberType lhs = Environment.getOrDerefNumber(
-        this.getNodeData(ctx.expr(0)));
+        this.evalExpr(ctx.expr(0)));
 
-    visit(ctx.expr(1));
     final PTNumberType rhs = Environment.getOrDerefNumber(
-        this.getNodeData(ctx.expr(1)));
+        this.evalExpr(ctx.expr(1)));
 
     if (ctx.a != null) {
       this.setNodeData(ctx, lhs.add(rhs));
@@ -881,10 +893,10 @@ public class InterpreterVisitor extends PeopleCodeBaseVisitor<Void> {
     //  ctx.id().getText(),
     //  ctx.expr().getText());
 
-    visit(ctx.expr());
+    final PTType target = this.evalExpr(ctx.expr());
     visit(ctx.id());
 
-    final PTObjectType obj = Environment.getOrDerefObject(this.getNodeData(ctx.expr()));
+    final PTObjectType obj = Environment.getOrDerefObject(target);
     final PTType prop = obj.dotProperty(ctx.id().getText());
     final Callable call = obj.dotMethod(ctx.id().getText());
 
@@ -910,15 +922,16 @@ public class InterpreterVisitor extends PeopleCodeBaseVisitor<Void> {
        */
       if (!this.inLhsOfAssignmentFlag
           && ((GetterSetterCallable) call).hasGetterExecContext()) {
+        Environment.pushToCallStack(PTCallFrameBoundary.getSingleton());
         this.supervisor.runImmediately(
             ((GetterSetterCallable) call).getGetterExecContext());
 
-        final List<PTType> args = Environment.getArgsFromCallStack();
-        if (args.size() != 1) {
+        final PTType retVal = Environment.popCallFrame();
+        if (retVal == null) {
           throw new OPSVMachRuntimeException("Getter should return exactly "
               + "one value.");
         }
-        this.setNodeData(ctx, args.get(0));
+        this.setNodeData(ctx, retVal);
         this.resubmitLastEmission();
       }
     }
@@ -937,12 +950,10 @@ public class InterpreterVisitor extends PeopleCodeBaseVisitor<Void> {
 
     //log.debug("BEGIN visitExprArrayIndex; expr is {}", ctx.expr().getText());
 
-    visit(ctx.expr());
-    PTType t = Environment.getOrDeref(this.getNodeData(ctx.expr()));
+    PTType t = Environment.getOrDeref(this.evalExpr(ctx.expr()));
 
     for (PeopleCodeParser.ExprContext argCtx : ctx.exprList().expr()) {
-      visit(argCtx);
-      PTType indexExpr = Environment.getOrDeref(this.getNodeData(argCtx));
+      PTType indexExpr = Environment.getOrDeref(this.evalExpr(argCtx));
 //      log.debug("About to index into {} with index expr {}.",
 //        t, indexExpr);
 
@@ -974,13 +985,11 @@ public class InterpreterVisitor extends PeopleCodeBaseVisitor<Void> {
   public Void visitExprComparison(
       final PeopleCodeParser.ExprComparisonContext ctx) {
 
-    visit(ctx.expr(0));
     final PTPrimitiveType lhs = Environment.getOrDerefPrimitive(
-        this.getNodeData(ctx.expr(0)));
+        this.evalExpr(ctx.expr(0)));
 
-    visit(ctx.expr(1));
     final PTPrimitiveType rhs = Environment.getOrDerefPrimitive(
-        this.getNodeData(ctx.expr(1)));
+        this.evalExpr(ctx.expr(1)));
 
     PTBoolean result;
     if (ctx.l != null) {
@@ -1012,9 +1021,8 @@ public class InterpreterVisitor extends PeopleCodeBaseVisitor<Void> {
   public Void visitExprNegate(
       final PeopleCodeParser.ExprNegateContext ctx) {
 
-    visit(ctx.expr());
     final PTNumberType numExpr = Environment.getOrDerefNumber(
-        this.getNodeData(ctx.expr()));
+        this.evalExpr(ctx.expr()));
 
     this.setNodeData(ctx, numExpr.negate());
     return null;
@@ -1029,9 +1037,8 @@ public class InterpreterVisitor extends PeopleCodeBaseVisitor<Void> {
   public Void visitExprNot(
       final PeopleCodeParser.ExprNotContext ctx) {
 
-    visit(ctx.expr());
     final PTBoolean boolExpr = Environment.getOrDerefBoolean(
-        this.getNodeData(ctx.expr()));
+        this.evalExpr(ctx.expr()));
 
     this.setNodeData(ctx, boolExpr.negationOf());
     return null;
@@ -1047,13 +1054,11 @@ public class InterpreterVisitor extends PeopleCodeBaseVisitor<Void> {
   public Void visitExprEquality(
       final PeopleCodeParser.ExprEqualityContext ctx) {
 
-    visit(ctx.expr(0));
     final PTPrimitiveType lhs = Environment.getOrDerefPrimitive(
-        this.getNodeData(ctx.expr(0)));
+        this.evalExpr(ctx.expr(0)));
 
-    visit(ctx.expr(1));
     final PTPrimitiveType rhs = Environment.getOrDerefPrimitive(
-        this.getNodeData(ctx.expr(1)));
+        this.evalExpr(ctx.expr(1)));
 
     final PTBoolean equalityResult = lhs.isEqual(rhs);
     if (ctx.e != null) {
@@ -1086,32 +1091,28 @@ public class InterpreterVisitor extends PeopleCodeBaseVisitor<Void> {
       final PeopleCodeParser.ExprBooleanContext ctx) {
 
     if (ctx.op.getText().equals("Or")) {
-      visit(ctx.expr(0));
-      final PTBoolean lhs = Environment.getOrDerefBoolean(this.getNodeData(ctx.expr(0)));
+      final PTBoolean lhs = Environment.getOrDerefBoolean(this.evalExpr(ctx.expr(0)));
 
       /*
        * Short-circuit evaluation: if lhs is true, this expression is true,
        * otherwise evaluate rhs and bubble up its value.
        */
       if (lhs.read()) {
-        this.setNodeData(ctx, new PTBoolean(true));
+        this.setNodeData(ctx, PTBoolean.valueOf(true));
       } else {
-        visit(ctx.expr(1));
-        this.setNodeData(ctx, this.getNodeData(ctx.expr(1)));
+        this.setNodeData(ctx, this.evalExpr(ctx.expr(1)));
       }
     } else if (ctx.op.getText().equals("And")) {
-      visit(ctx.expr(0));
-      final PTBoolean lhs = Environment.getOrDerefBoolean(this.getNodeData(ctx.expr(0)));
+      final PTBoolean lhs = Environment.getOrDerefBoolean(this.evalExpr(ctx.expr(0)));
 
       /*
        * Short-circuit evaluation: if lhs is false, this expression is false,
        * otherwise evaluate rhs and bubble up its value.
        */
       if (!lhs.read()) {
-        this.setNodeData(ctx, new PTBoolean(false));
+        this.setNodeData(ctx, PTBoolean.valueOf(false));
       } else {
-        visit(ctx.expr(1));
-        this.setNodeData(ctx, this.getNodeData(ctx.expr(1)));
+        this.setNodeData(ctx, this.evalExpr(ctx.expr(1)));
       }
     } else {
       throw new OPSInterpretException("Unsupported boolean comparison "
@@ -1131,12 +1132,10 @@ public class InterpreterVisitor extends PeopleCodeBaseVisitor<Void> {
   public Void visitExprConcat(
       final PeopleCodeParser.ExprConcatContext ctx) {
 
-    visit(ctx.expr(0));
     final PTString lhs =
-        (PTString) Environment.getOrDerefPrimitive(this.getNodeData(ctx.expr(0)));
-    visit(ctx.expr(1));
+        (PTString) Environment.getOrDerefPrimitive(this.evalExpr(ctx.expr(0)));
     final PTString rhs =
-        (PTString) Environment.getOrDerefPrimitive(this.getNodeData(ctx.expr(1)));
+        (PTString) Environment.getOrDerefPrimitive(this.evalExpr(ctx.expr(1)));
 
     this.setNodeData(ctx, lhs.concat(rhs));
     return null;
@@ -1355,17 +1354,15 @@ public class InterpreterVisitor extends PeopleCodeBaseVisitor<Void> {
 
     if (ctx.IntegerLiteral() != null) {
 
-      final PTType ptr = new PTInteger(new Integer(ctx.IntegerLiteral().getText()));
+      final PTType ptr =
+          PTInteger.valueOf(Integer.parseInt(ctx.IntegerLiteral().getText()));
       this.setNodeData(ctx, ptr);
 
     } else if (ctx.BoolLiteral() != null) {
 
       final String b = ctx.BoolLiteral().getText();
-      if (b.equals("True") || b.equals("true")) {
-        this.setNodeData(ctx, new PTBoolean(true));
-      } else {
-        this.setNodeData(ctx, new PTBoolean(false));
-      }
+      this.setNodeData(ctx,
+          PTBoolean.valueOf(b.equals("True") || b.equals("true")));
 
     } else if (ctx.DecimalLiteral() != null) {
       throw new OPSVMachRuntimeException("Encountered a decimal literal; "
@@ -1410,8 +1407,7 @@ public class InterpreterVisitor extends PeopleCodeBaseVisitor<Void> {
 
       if (idCtx.expr() != null) {
         // If initial value expr exists, declare *and* initialize the var.
-        visit(idCtx.expr());
-        final PTType initialValue = this.getNodeData(idCtx.expr());
+        final PTType initialValue = this.evalExpr(idCtx.expr());
         this.declareAndInitIdentifier(scope,
             idCtx.VAR_ID().getText(), varTc, initialValue);
       } else {
@@ -1543,10 +1539,13 @@ public class InterpreterVisitor extends PeopleCodeBaseVisitor<Void> {
       this.emit(ctx.catchSignature());
     } catch (final PeopleCodeException pce) {
       if (ctx.catchSignature().exClass.getText().equals("Exception")) {
-        final PCExceptionCaught exEmission = new PCExceptionCaught(
-            pce.getMessage(), pce.getMsgSetNbr(), pce.getMsgNbr(),
-            pce.getResponsibleProgAndEvent(), pce.getResponsibleMethodOrFuncName());
-        TraceFileVerifier.submitEnforcedEmission(exEmission);
+        if (TraceFileVerifier.isEnabled()) {
+          final PCExceptionCaught exEmission = new PCExceptionCaught(
+              pce.getMessage(), pce.getMsgSetNbr(), pce.getMsgNbr(),
+              pce.getResponsibleProgAndEvent(),
+              pce.getResponsibleMethodOrFuncName());
+          TraceFileVerifier.submitEnforcedEmission(exEmission);
+        }
         this.emit(ctx.catchSignature());
         visit(ctx.stmtList(1));
       } else {
@@ -1569,9 +1568,8 @@ public class InterpreterVisitor extends PeopleCodeBaseVisitor<Void> {
       final PeopleCodeParser.EvaluateStmtContext ctx) {
     this.emit(ctx);
 
-    visit(ctx.expr());
     final PTPrimitiveType baseExpr = Environment.getOrDerefPrimitive(
-        this.getNodeData(ctx.expr()));
+        this.evalExpr(ctx.expr()));
     log.debug("Interpreting Evaluate stmt; conditional base value is {}", baseExpr);
 
     final EvaluateConstruct evalConstruct = new EvaluateConstruct(baseExpr);
@@ -1625,8 +1623,7 @@ public class InterpreterVisitor extends PeopleCodeBaseVisitor<Void> {
 
     final EvaluateConstruct evalConstruct = this.evalConstructStack.peek();
     final PTType p1 = evalConstruct.baseExpr;
-    visit(ctx.expr());
-    final PTType p2 = this.getNodeData(ctx.expr());
+    final PTType p2 = this.evalExpr(ctx.expr());
 
     // Always emit the first When branch of an Evaluate statement
     if (!evalConstruct.hasBranchBeenEmitted) {
@@ -1642,14 +1639,14 @@ public class InterpreterVisitor extends PeopleCodeBaseVisitor<Void> {
     }
 
     log.debug("p1: {}; p2: {}", p1, p2);
-    final PTBoolean eq = ((PTPrimitiveType) p1).isEqual((PTPrimitiveType) p2);
+    final boolean eq = ((PTPrimitiveType) p1).equalTo((PTPrimitiveType) p2);
 
-    if (eq.read()) {
+    if (eq) {
       evalConstruct.trueBranchExprSeen = true;
     }
 
     boolean isThisWhenBranchStmtListEmpty = (ctx.stmtList().getChildCount() == 0);
-    if (eq.read() || evalConstruct.inFallingThroughState) {
+    if (eq || evalConstruct.inFallingThroughState) {
       visit(ctx.stmtList());
 
       // Fall-through stops when a non-empty statement list is encountered during the fall.
@@ -1753,8 +1750,7 @@ public class InterpreterVisitor extends PeopleCodeBaseVisitor<Void> {
       Environment.pushToCallStack(PTCallFrameBoundary.getSingleton());
       if (ctx.exprList() != null) {
         for (PeopleCodeParser.ExprContext argCtx : ctx.exprList().expr()) {
-          visit(argCtx);
-          Environment.pushToCallStack(this.getNodeData(argCtx));
+          Environment.pushToCallStack(this.evalExpr(argCtx));
         }
       }
 
@@ -1765,7 +1761,7 @@ public class InterpreterVisitor extends PeopleCodeBaseVisitor<Void> {
       this.supervisor.runImmediately(constructorCtx);
 
       // Constructors don't return anything
-      if(!(Environment.popFromCallStack() instanceof PTCallFrameBoundary)) {
+      if (Environment.popCallFrame() != null) {
         throw new OPSVMachRuntimeException("After invoking create statement, "
             + "expected call frame boundary, but found data instead.");
       }
@@ -0,0 +1,30 @@
+/*===---------------------------------------------------------------------===*\
+|*                       The OpenPplSoft Runtime Project                     *|
+|*                                                                           *|
+|*              This file is distributed under the MIT License.              *|
+|*                         See LICENSE.md for details.                       *|
+\*===---------------------------------------------------------------------===*/
+
+package org.openpplsoft.antlr4;
+
+import org.openpplsoft.runtime.ExecContext;
+import org.openpplsoft.types.PTType;
+
+/**
+ * An expression that has been lowered from its parse tree into a tree of
+ * executable nodes (see ExprLowerer), which return their values directly
+ * rather than passing them between parse tree nodes through the
+ * interpreter's node data tables. Lowered expressions hold no runtime
+ * state (other than the type profiles kept for ExprCompiler), so a single
+ * lowered tree is shared by all executions of the program it belongs to,
+ * across sessions.
+ */
+public abstract class LoweredExpr {
+
+  /**
+   * Evaluates this expression.
+   * @param eCtx the execution context in which to evaluate the expression
+   * @return the value of the expression
+   */
+  public abstract PTType eval(ExecContext eCtx);
+}
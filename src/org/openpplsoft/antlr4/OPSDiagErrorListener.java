@@ -7,6 +7,7 @@
 
 package org.openpplsoft.antlr4;
 
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.List;
 
@@ -14,6 +15,8 @@ import org.antlr.v4.runtime.DiagnosticErrorListener;
 import org.antlr.v4.runtime.Parser;
 import org.antlr.v4.runtime.RecognitionException;
 import org.antlr.v4.runtime.Recognizer;
+import org.antlr.v4.runtime.atn.ATNConfigSet;
+import org.antlr.v4.runtime.dfa.DFA;
 
 import org.openpplsoft.runtime.*;
 
@@ -30,6 +33,22 @@ public class OPSDiagErrorListener extends DiagnosticErrorListener {
    */
   public OPSDiagErrorListener() {}
 
+  /*
+   * Switching to full-context prediction and context-sensitive
+   * predictions are not errors (see syntaxError below); they are
+   * ignored here so that the parser does not format a diagnostic
+   * message for every full-context prediction it makes.
+   */
+  @Override
+  public void reportAttemptingFullContext(final Parser recognizer,
+      final DFA dfa, final int startIndex, final int stopIndex,
+      final BitSet conflictingAlts, final ATNConfigSet configs) { }
+
+  @Override
+  public void reportContextSensitivity(final Parser recognizer,
+      final DFA dfa, final int startIndex, final int stopIndex,
+      final int prediction, final ATNConfigSet configs) { }
+
   @Override
   public void syntaxError(final Recognizer<?, ?> recognizer,
       final Object offendingSymbol, final int line,
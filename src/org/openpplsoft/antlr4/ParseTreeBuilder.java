@@ -0,0 +1,1017 @@
+/*===---------------------------------------------------------------------===*\
+|*                       The OpenPplSoft Runtime Project                     *|
+|*                                                                           *|
+|*              This file is distributed under the MIT License.              *|
+|*                         See LICENSE.md for details.                       *|
+\*===---------------------------------------------------------------------===*/
+
+package org.openpplsoft.antlr4;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.Token;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import org.openpplsoft.antlr4.frontend.PeopleCodeParser;
+import org.openpplsoft.antlr4.frontend.PeopleCodeParser.*;
+import org.openpplsoft.runtime.OPSVMachRuntimeException;
+
+/**
+ * Builds the parse tree of a PeopleCode program from its tokens by
+ * recursive descent, in place of the ANTLR parser. The tree is made of
+ * the same contexts, with the same children, start and stop tokens and
+ * token labels, as the tree PeopleCodeParser.program() returns for the
+ * same tokens, so the interpreter and the tracefile emissions cannot
+ * tell the two apart. Building it requires no ATN simulation: PeopleCode
+ * is nearly LL(1), and the few decisions that are not are made as the
+ * parser resolves them (i.e., an expression extends as far as it can,
+ * and a statement with a '=' outside parentheses or brackets is an
+ * assignment).
+ *
+ * Where the tokens contain anything the builder does not handle (a
+ * statement with more than one top-level '=', for instance, which the
+ * parser may split at either), or are not a valid program, no tree is
+ * built; the caller must parse the tokens with the ANTLR parser instead,
+ * which will also report any syntax error.
+ *
+ * The contexts built are not given ATN invoking states, which only the
+ * parser's error recovery uses.
+ */
+public final class ParseTreeBuilder {
+
+  private static Logger log =
+      LogManager.getLogger(ParseTreeBuilder.class.getName());
+
+  private static final int NO_STATE = 0;
+
+  private static final int SEMI = literal(";");
+  private static final int EXIT = literal("Exit");
+  private static final int BREAK = literal("Break");
+  private static final int ERROR = literal("Error");
+  private static final int WARNING = literal("Warning");
+  private static final int RETURN = literal("Return");
+  private static final int THROW = literal("throw");
+  private static final int EQ = literal("=");
+  private static final int LPAREN = literal("(");
+  private static final int RPAREN = literal(")");
+  private static final int AT = literal("@");
+  private static final int DOT = literal(".");
+  private static final int LBRACKET = literal("[");
+  private static final int RBRACKET = literal("]");
+  private static final int MINUS = literal("-");
+  private static final int NOT = literal("Not");
+  private static final int STAR = literal("*");
+  private static final int SLASH = literal("/");
+  private static final int PLUS = literal("+");
+  private static final int LE = literal("<=");
+  private static final int GE = literal(">=");
+  private static final int LT = literal("<");
+  private static final int GT = literal(">");
+  private static final int NE = literal("<>");
+  private static final int AND = literal("And");
+  private static final int OR = literal("Or");
+  private static final int PIPE = literal("|");
+  private static final int COMMA = literal(",");
+  private static final int OF = literal("of");
+  private static final int IMPORT = literal("import");
+  private static final int COLON = literal(":");
+  private static final int DECLARE = literal("Declare");
+  private static final int FUNCTION = literal("Function");
+  private static final int PEOPLECODE = literal("PeopleCode");
+  private static final int FIELDFORMULA = literal("FieldFormula");
+  private static final int FIELDCHANGE = literal("FieldChange");
+  private static final int CLASS = literal("class");
+  private static final int IMPLEMENTS = literal("implements");
+  private static final int END_CLASS = literal("end-class");
+  private static final int PRIVATE = literal("private");
+  private static final int METHOD = literal("method");
+  private static final int CONSTANT = literal("Constant");
+  private static final int PROPERTY = literal("property");
+  private static final int GET = literal("get");
+  private static final int SET = literal("set");
+  private static final int READONLY = literal("readonly");
+  private static final int INSTANCE = literal("instance");
+  private static final int END_METHOD = literal("end-method");
+  private static final int END_GET = literal("end-get");
+  private static final int END_SET = literal("end-set");
+  private static final int END_FUNCTION = literal("End-Function");
+  private static final int OUT = literal("out");
+  private static final int AS = literal("As");
+  private static final int RETURNS = literal("Returns");
+  private static final int IF = literal("If");
+  private static final int THEN = literal("Then");
+  private static final int ELSE = literal("Else");
+  private static final int END_IF = literal("End-If");
+  private static final int FOR = literal("For");
+  private static final int TO = literal("To");
+  private static final int STEP = literal("Step");
+  private static final int END_FOR = literal("End-For");
+  private static final int WHILE = literal("While");
+  private static final int END_WHILE = literal("End-While");
+  private static final int EVALUATE = literal("Evaluate");
+  private static final int END_EVALUATE = literal("End-Evaluate");
+  private static final int WHEN = literal("When");
+  private static final int WHEN_OTHER = literal("When-Other");
+  private static final int TRY = literal("try");
+  private static final int END_TRY = literal("end-try");
+  private static final int CATCH = literal("catch");
+  private static final int EXCEPTION = literal("Exception");
+  private static final int CREATE = literal("create");
+
+  private static final int[] LITERAL_TOKENS = {
+    PeopleCodeParser.DecimalLiteral, PeopleCodeParser.IntegerLiteral,
+    PeopleCodeParser.StringLiteral, PeopleCodeParser.BoolLiteral
+  };
+  private static final int[] ID_TOKENS = {
+    PeopleCodeParser.SYS_VAR_ID, PeopleCodeParser.VAR_ID,
+    PeopleCodeParser.GENERIC_ID
+  };
+
+  // Token sets, indexed by token type.
+  private static final boolean[] isLiteral = tokenSet(LITERAL_TOKENS);
+  private static final boolean[] isId = tokenSet(ID_TOKENS);
+  private static final boolean[] isExprStart = tokenSet(LITERAL_TOKENS,
+      ID_TOKENS, new int[] {LPAREN, AT, MINUS, NOT, CREATE});
+  private static final boolean[] isStmtStart = tokenSet(LITERAL_TOKENS,
+      ID_TOKENS, new int[] {LPAREN, AT, MINUS, NOT, CREATE, EXIT, BREAK,
+          ERROR, WARNING, RETURN, THROW, IMPORT, DECLARE, FUNCTION, CLASS,
+          METHOD, GET, SET, IF, FOR, WHILE, EVALUATE, TRY});
+  private static final boolean[] isClassBlockStmtStart = tokenSet(
+      new int[] {METHOD, CONSTANT, PROPERTY, INSTANCE});
+  private static final boolean[] isExprToken = tokenSet(LITERAL_TOKENS,
+      ID_TOKENS, new int[] {LPAREN, RPAREN, LBRACKET, RBRACKET, AT, MINUS,
+          NOT, CREATE, DOT, COMMA, COLON, STAR, SLASH, PLUS, LE, GE, LT, GT,
+          EQ, NE, AND, OR, PIPE});
+
+  // The binding precedence of each binary operator, as in the parser.
+  private static final int[] precedence = new int[isExprToken.length];
+
+  private final List<Token> tokens;
+  private int p;
+
+  static {
+    java.util.Arrays.fill(precedence, -1);
+    precedence[DOT] = 11;
+    precedence[LBRACKET] = 10;
+    precedence[LPAREN] = 9;
+    precedence[STAR] = precedence[SLASH] = 6;
+    precedence[PLUS] = precedence[MINUS] = 5;
+    precedence[LE] = precedence[GE] = precedence[LT] = precedence[GT] = 4;
+    precedence[EQ] = precedence[NE] = 3;
+    precedence[AND] = precedence[OR] = 2;
+    precedence[PIPE] = 1;
+  }
+
+  private ParseTreeBuilder(final CommonTokenStream stream) {
+    stream.fill();
+    this.tokens = new ArrayList<Token>(stream.size());
+    for (final Token t : stream.getTokens()) {
+      if (t.getChannel() == Token.DEFAULT_CHANNEL) {
+        this.tokens.add(t);
+      }
+    }
+  }
+
+  /**
+   * Builds the parse tree of the program in the given token stream.
+   * @param stream the program's tokens; the stream is filled, but not
+   *    consumed, so it can still be passed to the ANTLR parser
+   * @return the tree, identical to that returned by
+   *    PeopleCodeParser.program(), or null if the tokens must be parsed
+   *    by the ANTLR parser instead
+   */
+  public static ProgramContext build(final CommonTokenStream stream) {
+    final ParseTreeBuilder builder = new ParseTreeBuilder(stream);
+    try {
+      return builder.program();
+    } catch (final UnsupportedInputException uie) {
+      log.debug("Unable to build parse tree: {}", uie.getMessage());
+      return null;
+    }
+  }
+
+  private ProgramContext program() {
+    final ProgramContext ctx = this.enter(new ProgramContext(null, -1));
+    this.stmtList(ctx);
+    this.exit(ctx);
+    if (this.la(1) != Token.EOF) {
+      throw this.unsupported("input after the last statement");
+    }
+    return ctx;
+  }
+
+  private void stmtList(final ParserRuleContext parent) {
+    final StmtListContext ctx =
+        this.enter(new StmtListContext(parent, NO_STATE));
+    while (in(isStmtStart, this.la(1))) {
+      this.stmt(ctx);
+      if (this.la(1) != SEMI) {
+        break;
+      }
+      do {
+        this.match(ctx, SEMI);
+      } while (this.la(1) == SEMI);
+    }
+    this.exit(ctx);
+  }
+
+  private void stmt(final ParserRuleContext parent) {
+    final StmtContext base = new StmtContext(parent, NO_STATE);
+    base.start = this.lt1();
+    final int t = this.la(1);
+    final StmtContext ctx;
+
+    if (t == IMPORT) {
+      ctx = this.alt(new StmtAppClassImportContext(base));
+      this.appClassImport(ctx);
+    } else if (t == DECLARE) {
+      ctx = this.alt(new StmtExternalFuncImportContext(base));
+      this.extFuncImport(ctx);
+    } else if (t == CLASS) {
+      ctx = this.alt(new StmtClassDeclarationContext(base));
+      this.classDeclaration(ctx);
+    } else if (t == METHOD) {
+      ctx = this.alt(new StmtMethodImplContext(base));
+      this.methodImpl(ctx);
+    } else if (t == GET) {
+      ctx = this.alt(new StmtGetImplContext(base));
+      this.getImpl(ctx);
+    } else if (t == SET) {
+      ctx = this.alt(new StmtSetImplContext(base));
+      this.setImpl(ctx);
+    } else if (t == FUNCTION) {
+      ctx = this.alt(new StmtFuncImplContext(base));
+      this.funcImpl(ctx);
+    } else if (t == PeopleCodeParser.GENERIC_ID
+        && this.la(2) == PeopleCodeParser.GENERIC_ID) {
+      // A scope (i.e., "Local") followed by a type.
+      ctx = this.alt(new StmtVarDeclarationContext(base));
+      this.varDeclaration(ctx);
+    } else if (t == IF) {
+      ctx = this.alt(new StmtIfContext(base));
+      this.ifStmt(ctx);
+    } else if (t == FOR) {
+      ctx = this.alt(new StmtForContext(base));
+      this.forStmt(ctx);
+    } else if (t == WHILE) {
+      ctx = this.alt(new StmtWhileContext(base));
+      this.whileStmt(ctx);
+    } else if (t == EVALUATE) {
+      ctx = this.alt(new StmtEvaluateContext(base));
+      this.evaluateStmt(ctx);
+    } else if (t == TRY) {
+      ctx = this.alt(new StmtTryCatchContext(base));
+      this.tryCatchStmt(ctx);
+    } else if (t == EXIT) {
+      ctx = this.alt(new StmtExitContext(base));
+      this.match(ctx, EXIT);
+    } else if (t == BREAK) {
+      ctx = this.alt(new StmtBreakContext(base));
+      this.match(ctx, BREAK);
+    } else if (t == ERROR) {
+      ctx = this.alt(new StmtErrorContext(base));
+      this.match(ctx, ERROR);
+      this.expr(ctx, 0, false);
+    } else if (t == WARNING) {
+      ctx = this.alt(new StmtWarningContext(base));
+      this.match(ctx, WARNING);
+      this.expr(ctx, 0, false);
+    } else if (t == RETURN) {
+      ctx = this.alt(new StmtReturnContext(base));
+      this.match(ctx, RETURN);
+      if (in(isExprStart, this.la(1))) {
+        this.expr(ctx, 0, false);
+      }
+    } else if (t == THROW) {
+      ctx = this.alt(new StmtThrowContext(base));
+      this.match(ctx, THROW);
+      this.expr(ctx, 0, false);
+    } else if (in(isExprStart, t)) {
+      /*
+       * The parser reads "a = b" as an assignment rather than a comparison
+       * (the former is the lower-numbered alternative). Where there is
+       * more than one top-level '=', it may split the statement at either.
+       */
+      final int numEquals = this.countTopLevelEquals();
+      if (numEquals == 0) {
+        ctx = this.alt(new StmtExprContext(base));
+        this.expr(ctx, 0, false);
+      } else if (numEquals == 1) {
+        ctx = this.alt(new StmtAssignContext(base));
+        this.expr(ctx, 0, true);
+        this.match(ctx, EQ);
+        this.expr(ctx, 0, false);
+      } else {
+        throw this.unsupported("statement with more than one top-level '='");
+      }
+    } else {
+      throw this.unsupported("expected a statement");
+    }
+    this.exit(ctx);
+  }
+
+  /*
+   * Counts the '=' tokens in the expression statement starting at the
+   * current token that are not nested in parentheses or brackets.
+   */
+  private int countTopLevelEquals() {
+    int depth = 0, numEquals = 0;
+    for (int i = this.p; i < this.tokens.size(); i++) {
+      final int t = this.tokens.get(i).getType();
+      if (!in(isExprToken, t)) {
+        break;
+      } else if (t == LPAREN || t == LBRACKET) {
+        depth++;
+      } else if (t == RPAREN || t == RBRACKET) {
+        if (depth == 0) {
+          break;
+        }
+        depth--;
+      } else if (t == EQ && depth == 0) {
+        numEquals++;
+      }
+    }
+    return numEquals;
+  }
+
+  /*
+   * Builds an expression as the parser does: a primary expression,
+   * followed by as many binary operations, member accesses, indexes and
+   * calls as bind at least as tightly as minPrec. Each operation's
+   * context becomes the parent of the expression built so far. If
+   * isAssignTarget is set, the expression ends before a '=' (which is
+   * the assignment's) unless it is nested in parentheses or brackets.
+   */
+  private ExprContext expr(final ParserRuleContext parent, final int minPrec,
+      final boolean isAssignTarget) {
+    final ExprContext base = new ExprContext(parent, NO_STATE);
+    base.start = this.lt1();
+    final int t = this.la(1);
+    ExprContext ctx;
+
+    if (t == AT) {
+      ctx = new ExprDynamicReferenceContext(base);
+      this.match(ctx, AT);
+      this.expr(ctx, 15, isAssignTarget);
+    } else if (t == MINUS) {
+      ctx = new ExprNegateContext(base);
+      this.match(ctx, MINUS);
+      this.expr(ctx, 8, isAssignTarget);
+    } else if (t == NOT) {
+      ctx = new ExprNotContext(base);
+      this.match(ctx, NOT);
+      this.expr(ctx, 7, isAssignTarget);
+    } else if (t == LPAREN) {
+      ctx = new ExprParenthesizedContext(base);
+      this.match(ctx, LPAREN);
+      this.expr(ctx, 0, false);
+      this.match(ctx, RPAREN);
+    } else if (in(isLiteral, t)) {
+      ctx = new ExprLiteralContext(base);
+      this.literal(ctx);
+    } else if (in(isId, t)) {
+      ctx = new ExprIdContext(base);
+      this.id(ctx);
+    } else if (t == CREATE) {
+      ctx = new ExprCreateContext(base);
+      this.createInvocation(ctx);
+    } else {
+      throw this.unsupported("expected an expression");
+    }
+
+    while (true) {
+      final int op = this.la(1);
+      final int prec = op >= 0 ? precedence[op] : -1;
+      if (prec < minPrec || (op == EQ && isAssignTarget)) {
+        break;
+      }
+
+      final ExprContext opBase = new ExprContext(parent, NO_STATE);
+      if (op == DOT) {
+        final ExprContext opCtx =
+            this.push(new ExprDotAccessContext(opBase), ctx);
+        this.match(opCtx, DOT);
+        this.id(opCtx);
+        ctx = opCtx;
+      } else if (op == LBRACKET) {
+        final ExprContext opCtx =
+            this.push(new ExprArrayIndexContext(opBase), ctx);
+        this.match(opCtx, LBRACKET);
+        this.exprList(opCtx);
+        this.match(opCtx, RBRACKET);
+        ctx = opCtx;
+      } else if (op == LPAREN) {
+        final ExprContext opCtx =
+            this.push(new ExprFnOrIdxCallContext(opBase), ctx);
+        this.match(opCtx, LPAREN);
+        if (in(isExprStart, this.la(1))) {
+          this.exprList(opCtx);
+        }
+        this.match(opCtx, RPAREN);
+        ctx = opCtx;
+      } else if (op == STAR || op == SLASH) {
+        final ExprMulDivContext opCtx =
+            this.push(new ExprMulDivContext(opBase), ctx);
+        if (op == STAR) {
+          opCtx.m = this.match(opCtx, STAR);
+        } else {
+          opCtx.d = this.match(opCtx, SLASH);
+        }
+        this.expr(opCtx, prec + 1, isAssignTarget);
+        ctx = opCtx;
+      } else if (op == PLUS || op == MINUS) {
+        final ExprAddSubContext opCtx =
+            this.push(new ExprAddSubContext(opBase), ctx);
+        if (op == PLUS) {
+          opCtx.a = this.match(opCtx, PLUS);
+        } else {
+          opCtx.s = this.match(opCtx, MINUS);
+        }
+        this.expr(opCtx, prec + 1, isAssignTarget);
+        ctx = opCtx;
+      } else if (op == LE || op == GE || op == LT || op == GT) {
+        final ExprComparisonContext opCtx =
+            this.push(new ExprComparisonContext(opBase), ctx);
+        if (op == LE) {
+          opCtx.le = this.match(opCtx, LE);
+        } else if (op == GE) {
+          opCtx.ge = this.match(opCtx, GE);
+        } else if (op == LT) {
+          opCtx.l = this.match(opCtx, LT);
+        } else {
+          opCtx.g = this.match(opCtx, GT);
+        }
+        this.expr(opCtx, prec + 1, isAssignTarget);
+        ctx = opCtx;
+      } else if (op == EQ || op == NE) {
+        final ExprEqualityContext opCtx =
+            this.push(new ExprEqualityContext(opBase), ctx);
+        if (op == EQ) {
+          opCtx.e = this.match(opCtx, EQ);
+        } else {
+          opCtx.i = this.match(opCtx, NE);
+        }
+        this.expr(opCtx, prec + 1, isAssignTarget);
+        ctx = opCtx;
+      } else if (op == AND || op == OR) {
+        final ExprBooleanContext opCtx =
+            this.push(new ExprBooleanContext(opBase), ctx);
+        opCtx.op = this.match(opCtx, op);
+        this.expr(opCtx, prec + 1, isAssignTarget);
+        ctx = opCtx;
+      } else {
+        final ExprContext opCtx =
+            this.push(new ExprConcatContext(opBase), ctx);
+        this.match(opCtx, PIPE);
+        this.expr(opCtx, prec + 1, isAssignTarget);
+        ctx = opCtx;
+      }
+    }
+
+    ctx.stop = this.lastConsumed();
+    parent.addChild(ctx);
+    return ctx;
+  }
+
+  /*
+   * Makes the expression built so far the first child of the
+   * operation's context, as the parser does for left-recursive rules.
+   */
+  private <T extends ExprContext> T push(final T opCtx,
+      final ExprContext operand) {
+    operand.parent = opCtx;
+    operand.stop = this.lastConsumed();
+    opCtx.start = operand.start;
+    opCtx.addChild(operand);
+    return opCtx;
+  }
+
+  private void exprList(final ParserRuleContext parent) {
+    final ExprListContext ctx =
+        this.enter(new ExprListContext(parent, NO_STATE));
+    this.expr(ctx, 0, false);
+    while (this.la(1) == COMMA) {
+      this.match(ctx, COMMA);
+      this.expr(ctx, 0, false);
+    }
+    this.exit(ctx);
+  }
+
+  private void varDeclaration(final ParserRuleContext parent) {
+    final VarDeclarationContext ctx =
+        this.enter(new VarDeclarationContext(parent, NO_STATE));
+    ctx.varScope = this.match(ctx, PeopleCodeParser.GENERIC_ID);
+    this.varType(ctx);
+    this.varDeclarator(ctx);
+    while (this.la(1) == COMMA) {
+      this.match(ctx, COMMA);
+      this.varDeclarator(ctx);
+    }
+    this.exit(ctx);
+  }
+
+  private void varDeclarator(final ParserRuleContext parent) {
+    final VarDeclaratorContext ctx =
+        this.enter(new VarDeclaratorContext(parent, NO_STATE));
+    this.match(ctx, PeopleCodeParser.VAR_ID);
+    if (this.la(1) == EQ) {
+      this.match(ctx, EQ);
+      this.expr(ctx, 0, false);
+    }
+    this.exit(ctx);
+  }
+
+  private void varType(final ParserRuleContext parent) {
+    final VarTypeContext ctx =
+        this.enter(new VarTypeContext(parent, NO_STATE));
+    if (this.la(1) == PeopleCodeParser.GENERIC_ID && this.la(2) == COLON) {
+      this.appClassPath(ctx);
+    } else {
+      this.match(ctx, PeopleCodeParser.GENERIC_ID);
+      if (this.la(1) == OF) {
+        this.match(ctx, OF);
+        this.varType(ctx);
+      }
+    }
+    this.exit(ctx);
+  }
+
+  private void appClassImport(final ParserRuleContext parent) {
+    final AppClassImportContext ctx =
+        this.enter(new AppClassImportContext(parent, NO_STATE));
+    this.match(ctx, IMPORT);
+
+    // A package path is a class path ending in ":*".
+    int i = 1;
+    while (this.la(i) == PeopleCodeParser.GENERIC_ID
+        && this.la(i + 1) == COLON) {
+      i += 2;
+    }
+    if (this.la(i) == STAR) {
+      this.appPkgPath(ctx);
+    } else {
+      this.appClassPath(ctx);
+    }
+    this.exit(ctx);
+  }
+
+  private void appPkgPath(final ParserRuleContext parent) {
+    final AppPkgPathContext ctx =
+        this.enter(new AppPkgPathContext(parent, NO_STATE));
+    this.match(ctx, PeopleCodeParser.GENERIC_ID);
+    while (this.la(1) == COLON && this.la(2) == PeopleCodeParser.GENERIC_ID) {
+      this.match(ctx, COLON);
+      this.match(ctx, PeopleCodeParser.GENERIC_ID);
+    }
+    this.match(ctx, COLON);
+    this.match(ctx, STAR);
+    this.exit(ctx);
+  }
+
+  private void appClassPath(final ParserRuleContext parent) {
+    final AppClassPathContext ctx =
+        this.enter(new AppClassPathContext(parent, NO_STATE));
+    this.match(ctx, PeopleCodeParser.GENERIC_ID);
+    do {
+      this.match(ctx, COLON);
+      this.match(ctx, PeopleCodeParser.GENERIC_ID);
+    } while (this.la(1) == COLON);
+    this.exit(ctx);
+  }
+
+  private void extFuncImport(final ParserRuleContext parent) {
+    final ExtFuncImportContext ctx =
+        this.enter(new ExtFuncImportContext(parent, NO_STATE));
+    this.match(ctx, DECLARE);
+    this.match(ctx, FUNCTION);
+    this.match(ctx, PeopleCodeParser.GENERIC_ID);
+    this.match(ctx, PEOPLECODE);
+
+    final RecDefnPathContext pathCtx =
+        this.enter(new RecDefnPathContext(ctx, NO_STATE));
+    this.match(pathCtx, PeopleCodeParser.GENERIC_ID);
+    this.match(pathCtx, DOT);
+    this.match(pathCtx, PeopleCodeParser.GENERIC_ID);
+    this.exit(pathCtx);
+
+    final EventContext eventCtx = this.enter(new EventContext(ctx, NO_STATE));
+    if (this.la(1) == FIELDFORMULA) {
+      this.match(eventCtx, FIELDFORMULA);
+    } else {
+      this.match(eventCtx, FIELDCHANGE);
+    }
+    this.exit(eventCtx);
+    this.exit(ctx);
+  }
+
+  private void classDeclaration(final ParserRuleContext parent) {
+    final ClassDeclarationContext ctx =
+        this.enter(new ClassDeclarationContext(parent, NO_STATE));
+    this.match(ctx, CLASS);
+    this.match(ctx, PeopleCodeParser.GENERIC_ID);
+    if (this.la(1) == IMPLEMENTS) {
+      this.match(ctx, IMPLEMENTS);
+      this.appClassPath(ctx);
+    }
+    while (this.la(1) == PRIVATE || in(isClassBlockStmtStart, this.la(1))) {
+      this.classBlock(ctx);
+    }
+    this.match(ctx, END_CLASS);
+    this.exit(ctx);
+  }
+
+  private void classBlock(final ParserRuleContext parent) {
+    final ClassBlockContext ctx =
+        this.enter(new ClassBlockContext(parent, NO_STATE));
+    if (this.la(1) == PRIVATE) {
+      ctx.aLvl = this.match(ctx, PRIVATE);
+    }
+    // Consecutive declarations are all in the same block.
+    do {
+      this.classBlockStmt(ctx);
+      while (this.la(1) == SEMI) {
+        this.match(ctx, SEMI);
+      }
+    } while (in(isClassBlockStmtStart, this.la(1)));
+    this.exit(ctx);
+  }
+
+  private void classBlockStmt(final ParserRuleContext parent) {
+    final ClassBlockStmtContext ctx =
+        this.enter(new ClassBlockStmtContext(parent, NO_STATE));
+    final int t = this.la(1);
+    if (t == METHOD) {
+      final MethodContext methodCtx =
+          this.enter(new MethodContext(ctx, NO_STATE));
+      this.match(methodCtx, METHOD);
+      this.match(methodCtx, PeopleCodeParser.GENERIC_ID);
+      this.formalParamList(methodCtx);
+      if (this.la(1) == RETURNS) {
+        this.returnType(methodCtx);
+      }
+      this.exit(methodCtx);
+    } else if (t == CONSTANT) {
+      final ConstantContext constantCtx =
+          this.enter(new ConstantContext(ctx, NO_STATE));
+      this.match(constantCtx, CONSTANT);
+      this.match(constantCtx, PeopleCodeParser.VAR_ID);
+      this.match(constantCtx, EQ);
+      this.expr(constantCtx, 0, false);
+      this.exit(constantCtx);
+    } else if (t == PROPERTY) {
+      final PropertyContext propCtx =
+          this.enter(new PropertyContext(ctx, NO_STATE));
+      this.match(propCtx, PROPERTY);
+      this.varType(propCtx);
+      this.match(propCtx, PeopleCodeParser.GENERIC_ID);
+      if (this.la(1) == GET) {
+        propCtx.g = this.match(propCtx, GET);
+      }
+      if (this.la(1) == SET) {
+        propCtx.s = this.match(propCtx, SET);
+      }
+      if (this.la(1) == READONLY) {
+        propCtx.r = this.match(propCtx, READONLY);
+      }
+      this.exit(propCtx);
+    } else {
+      final InstanceContext instanceCtx =
+          this.enter(new InstanceContext(ctx, NO_STATE));
+      this.match(instanceCtx, INSTANCE);
+      this.varType(instanceCtx);
+      this.match(instanceCtx, PeopleCodeParser.VAR_ID);
+      while (this.la(1) == COMMA) {
+        this.match(instanceCtx, COMMA);
+        this.match(instanceCtx, PeopleCodeParser.VAR_ID);
+      }
+      this.exit(instanceCtx);
+    }
+    this.exit(ctx);
+  }
+
+  private void methodImpl(final ParserRuleContext parent) {
+    final MethodImplContext ctx =
+        this.enter(new MethodImplContext(parent, NO_STATE));
+    this.match(ctx, METHOD);
+    this.match(ctx, PeopleCodeParser.GENERIC_ID);
+    this.stmtList(ctx);
+    ctx.endmethod = this.match(ctx, END_METHOD);
+    this.exit(ctx);
+  }
+
+  private void getImpl(final ParserRuleContext parent) {
+    final GetImplContext ctx = this.enter(new GetImplContext(parent, NO_STATE));
+    this.match(ctx, GET);
+    this.match(ctx, PeopleCodeParser.GENERIC_ID);
+    this.stmtList(ctx);
+    ctx.endget = this.match(ctx, END_GET);
+    this.exit(ctx);
+  }
+
+  private void setImpl(final ParserRuleContext parent) {
+    final SetImplContext ctx = this.enter(new SetImplContext(parent, NO_STATE));
+    this.match(ctx, SET);
+    this.match(ctx, PeopleCodeParser.GENERIC_ID);
+    this.stmtList(ctx);
+    ctx.endset = this.match(ctx, END_SET);
+    this.exit(ctx);
+  }
+
+  private void funcImpl(final ParserRuleContext parent) {
+    final FuncImplContext ctx =
+        this.enter(new FuncImplContext(parent, NO_STATE));
+
+    final FuncSignatureContext sigCtx =
+        this.enter(new FuncSignatureContext(ctx, NO_STATE));
+    this.match(sigCtx, FUNCTION);
+    this.match(sigCtx, PeopleCodeParser.GENERIC_ID);
+    if (this.la(1) == LPAREN) {
+      this.formalParamList(sigCtx);
+    }
+    if (this.la(1) == RETURNS) {
+      this.returnType(sigCtx);
+    }
+    if (this.la(1) == SEMI) {
+      this.match(sigCtx, SEMI);
+    }
+    this.exit(sigCtx);
+
+    this.stmtList(ctx);
+    ctx.endfunction = this.match(ctx, END_FUNCTION);
+    this.exit(ctx);
+  }
+
+  private void formalParamList(final ParserRuleContext parent) {
+    final FormalParamListContext ctx =
+        this.enter(new FormalParamListContext(parent, NO_STATE));
+    this.match(ctx, LPAREN);
+    if (this.la(1) == PeopleCodeParser.VAR_ID) {
+      this.param(ctx);
+      while (this.la(1) == COMMA) {
+        this.match(ctx, COMMA);
+        this.param(ctx);
+      }
+    }
+    this.match(ctx, RPAREN);
+    this.exit(ctx);
+  }
+
+  /*
+   * A parameter, and the "out" that may follow it in the parameter list.
+   */
+  private void param(final FormalParamListContext parent) {
+    final ParamContext ctx = this.enter(new ParamContext(parent, NO_STATE));
+    this.match(ctx, PeopleCodeParser.VAR_ID);
+    if (this.la(1) == AS) {
+      this.match(ctx, AS);
+      this.varType(ctx);
+    }
+    this.exit(ctx);
+    if (this.la(1) == OUT) {
+      this.match(parent, OUT);
+    }
+  }
+
+  private void returnType(final ParserRuleContext parent) {
+    final ReturnTypeContext ctx =
+        this.enter(new ReturnTypeContext(parent, NO_STATE));
+    this.match(ctx, RETURNS);
+    this.varType(ctx);
+    this.exit(ctx);
+  }
+
+  private void ifStmt(final ParserRuleContext parent) {
+    final IfStmtContext ctx = this.enter(new IfStmtContext(parent, NO_STATE));
+    this.match(ctx, IF);
+    this.expr(ctx, 0, false);
+    this.match(ctx, THEN);
+    if (this.la(1) == SEMI) {
+      this.match(ctx, SEMI);
+    }
+    this.stmtList(ctx);
+    if (this.la(1) == ELSE) {
+      ctx.elsetok = this.match(ctx, ELSE);
+      if (this.la(1) == SEMI) {
+        this.match(ctx, SEMI);
+      }
+      this.stmtList(ctx);
+    }
+    ctx.endif = this.match(ctx, END_IF);
+    this.exit(ctx);
+  }
+
+  private void forStmt(final ParserRuleContext parent) {
+    final ForStmtContext ctx =
+        this.enter(new ForStmtContext(parent, NO_STATE));
+    this.match(ctx, FOR);
+    this.match(ctx, PeopleCodeParser.VAR_ID);
+    this.match(ctx, EQ);
+    this.expr(ctx, 0, false);
+    this.match(ctx, TO);
+    this.expr(ctx, 0, false);
+    if (this.la(1) == SEMI) {
+      this.match(ctx, SEMI);
+    } else if (this.la(1) == STEP) {
+      this.match(ctx, STEP);
+      this.expr(ctx, 0, false);
+    } else if (!in(isStmtStart, this.la(1)) && this.la(1) != END_FOR) {
+      throw this.unsupported("expected the body of a For loop");
+    }
+    this.stmtList(ctx);
+    ctx.endfor = this.match(ctx, END_FOR);
+    this.exit(ctx);
+  }
+
+  private void whileStmt(final ParserRuleContext parent) {
+    final WhileStmtContext ctx =
+        this.enter(new WhileStmtContext(parent, NO_STATE));
+    this.match(ctx, WHILE);
+    this.expr(ctx, 0, false);
+    if (this.la(1) == SEMI) {
+      this.match(ctx, SEMI);
+    }
+    this.stmtList(ctx);
+    this.match(ctx, END_WHILE);
+    this.exit(ctx);
+  }
+
+  private void evaluateStmt(final ParserRuleContext parent) {
+    final EvaluateStmtContext ctx =
+        this.enter(new EvaluateStmtContext(parent, NO_STATE));
+    this.match(ctx, EVALUATE);
+    this.expr(ctx, 0, false);
+    do {
+      final WhenBranchContext whenCtx =
+          this.enter(new WhenBranchContext(ctx, NO_STATE));
+      this.match(whenCtx, WHEN);
+      if (this.la(1) == EQ || this.la(1) == GT) {
+        whenCtx.op = this.match(whenCtx, this.la(1));
+      }
+      this.expr(whenCtx, 0, false);
+      this.stmtList(whenCtx);
+      this.exit(whenCtx);
+    } while (this.la(1) == WHEN);
+    if (this.la(1) == WHEN_OTHER) {
+      final WhenOtherBranchContext otherCtx =
+          this.enter(new WhenOtherBranchContext(ctx, NO_STATE));
+      this.match(otherCtx, WHEN_OTHER);
+      this.stmtList(otherCtx);
+      this.exit(otherCtx);
+    }
+    ctx.endevaluate = this.match(ctx, END_EVALUATE);
+    this.exit(ctx);
+  }
+
+  private void tryCatchStmt(final ParserRuleContext parent) {
+    final TryCatchStmtContext ctx =
+        this.enter(new TryCatchStmtContext(parent, NO_STATE));
+    ctx.trytok = this.match(ctx, TRY);
+    this.stmtList(ctx);
+
+    final CatchSignatureContext catchCtx =
+        this.enter(new CatchSignatureContext(ctx, NO_STATE));
+    this.match(catchCtx, CATCH);
+    catchCtx.exClass = this.match(catchCtx, EXCEPTION);
+    this.match(catchCtx, PeopleCodeParser.VAR_ID);
+    this.exit(catchCtx);
+
+    this.stmtList(ctx);
+    ctx.endtry = this.match(ctx, END_TRY);
+    this.exit(ctx);
+  }
+
+  private void createInvocation(final ParserRuleContext parent) {
+    final CreateInvocationContext ctx =
+        this.enter(new CreateInvocationContext(parent, NO_STATE));
+    this.match(ctx, CREATE);
+    if (this.la(1) == PeopleCodeParser.GENERIC_ID && this.la(2) == COLON) {
+      this.appClassPath(ctx);
+    } else {
+      this.match(ctx, PeopleCodeParser.GENERIC_ID);
+    }
+    this.match(ctx, LPAREN);
+    if (in(isExprStart, this.la(1))) {
+      this.exprList(ctx);
+    }
+    this.match(ctx, RPAREN);
+    this.exit(ctx);
+  }
+
+  private void literal(final ParserRuleContext parent) {
+    final LiteralContext ctx = this.enter(new LiteralContext(parent, NO_STATE));
+    this.match(ctx, this.la(1));
+    this.exit(ctx);
+  }
+
+  private void id(final ParserRuleContext parent) {
+    final IdContext ctx = this.enter(new IdContext(parent, NO_STATE));
+    if (!in(isId, this.la(1))) {
+      throw this.unsupported("expected an identifier");
+    }
+    this.match(ctx, this.la(1));
+    this.exit(ctx);
+  }
+
+  /*
+   * Starts a rule's context at the current token, as a child of the
+   * context it was created with as parent.
+   */
+  private <T extends ParserRuleContext> T enter(final T ctx) {
+    ctx.start = this.lt1();
+    if (ctx.parent != null) {
+      ((ParserRuleContext) ctx.parent).addChild(ctx);
+    }
+    return ctx;
+  }
+
+  /*
+   * Adds a labeled alternative's context, copied from its rule's
+   * context, to its parent.
+   */
+  private <T extends ParserRuleContext> T alt(final T ctx) {
+    ((ParserRuleContext) ctx.parent).addChild(ctx);
+    return ctx;
+  }
+
+  private void exit(final ParserRuleContext ctx) {
+    ctx.stop = this.lastConsumed();
+  }
+
+  private Token match(final ParserRuleContext ctx, final int type) {
+    if (this.la(1) != type || type == Token.EOF) {
+      throw this.unsupported("expected "
+          + PeopleCodeParser.VOCABULARY.getDisplayName(type));
+    }
+    final Token t = this.tokens.get(this.p++);
+    ctx.addChild(t);
+    return t;
+  }
+
+  private int la(final int i) {
+    final int idx = this.p + i - 1;
+    return idx < this.tokens.size()
+        ? this.tokens.get(idx).getType() : Token.EOF;
+  }
+
+  /*
+   * The current token; the last token is always EOF, which is never
+   * consumed.
+   */
+  private Token lt1() {
+    return this.tokens.get(this.p);
+  }
+
+  private Token lastConsumed() {
+    return this.p == 0 ? null : this.tokens.get(this.p - 1);
+  }
+
+  private UnsupportedInputException unsupported(final String reason) {
+    final Token t = this.lt1();
+    return new UnsupportedInputException(reason + " at line " + t.getLine()
+        + ":" + t.getCharPositionInLine() + " ('" + t.getText() + "')");
+  }
+
+  private static int literal(final String text) {
+    final String literalName = "'" + text + "'";
+    for (int i = 1; i <= PeopleCodeParser._ATN.maxTokenType; i++) {
+      if (literalName.equals(PeopleCodeParser.VOCABULARY.getLiteralName(i))) {
+        return i;
+      }
+    }
+    throw new OPSVMachRuntimeException("The grammar has no " + literalName
+        + " token.");
+  }
+
+  /*
+   * Determines whether the token type is in the set; EOF is in none.
+   */
+  private static boolean in(final boolean[] set, final int type) {
+    return type >= 0 && set[type];
+  }
+
+  private static boolean[] tokenSet(final int[]... typeArrays) {
+    final boolean[] set =
+        new boolean[PeopleCodeParser._ATN.maxTokenType + 1];
+    for (final int[] types : typeArrays) {
+      for (final int type : types) {
+        set[type] = true;
+      }
+    }
+    return set;
+  }
+
+  /*
+   * Thrown when the tokens cannot be built into a tree; caught by build().
+   */
+  private static final class UnsupportedInputException
+      extends RuntimeException {
+    private UnsupportedInputException(final String reason) {
+      super(reason, null, false, false);
+    }
+  }
+}
@@ -0,0 +1,62 @@
+/*===---------------------------------------------------------------------===*\
+|*                       The OpenPplSoft Runtime Project                     *|
+|*                                                                           *|
+|*              This file is distributed under the MIT License.              *|
+|*                         See LICENSE.md for details.                       *|
+\*===---------------------------------------------------------------------===*/
+
+package org.openpplsoft.antlr4;
+
+import org.openpplsoft.antlr4.frontend.*;
+import org.openpplsoft.pt.peoplecode.*;
+
+/**
+ * Re-registers the entry points (function, method and property
+ * getter/setter implementations, and the class declaration) of a program
+ * whose parse tree has been rebuilt after its parse artefacts were
+ * released. Unlike ProgLoadListener, this has no other effects: the
+ * metadata gathered when the program was first loaded remains valid and
+ * is not rebuilt, and no other programs are loaded.
+ */
+public class ParseTreeNodeIndexer extends PeopleCodeBaseListener {
+
+  private final PeopleCodeProg srcProg;
+
+  /**
+   * Attaches this indexer to the program whose tree has been rebuilt.
+   * @param p the program whose tree will be walked
+   */
+  public ParseTreeNodeIndexer(final PeopleCodeProg p) {
+    this.srcProg = p;
+  }
+
+  @Override
+  public void enterClassDeclaration(
+      final PeopleCodeParser.ClassDeclarationContext ctx) {
+    ((AppClassPeopleCodeProg) this.srcProg).setClassDeclNode(ctx);
+  }
+
+  @Override
+  public void enterFuncImpl(final PeopleCodeParser.FuncImplContext ctx) {
+    this.srcProg.rebindFunctionImplNode(
+        ctx.funcSignature().GENERIC_ID().getText(), ctx);
+  }
+
+  @Override
+  public void enterMethodImpl(final PeopleCodeParser.MethodImplContext ctx) {
+    ((AppClassPeopleCodeProg) this.srcProg)
+        .saveMethodImplStartNode(ctx.GENERIC_ID().getText(), ctx);
+  }
+
+  @Override
+  public void enterGetImpl(final PeopleCodeParser.GetImplContext ctx) {
+    ((AppClassPeopleCodeProg) this.srcProg)
+        .savePropGetterImplStartNode(ctx.GENERIC_ID().getText(), ctx);
+  }
+
+  @Override
+  public void enterSetImpl(final PeopleCodeParser.SetImplContext ctx) {
+    ((AppClassPeopleCodeProg) this.srcProg)
+        .savePropSetterImplStartNode(ctx.GENERIC_ID().getText(), ctx);
+  }
+}
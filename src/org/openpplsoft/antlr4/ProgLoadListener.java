@@ -399,6 +399,19 @@ public class ProgLoadListener extends PeopleCodeBaseListener {
     }
   }
 
+  /**
+   * Assigns a frame slot to each variable identifier in the program,
+   * so that references to the variable can be bound once per execution
+   * context rather than resolved against the scope chain on every access.
+   * @param node the terminal node being visited
+   */
+  @Override
+  public void visitTerminal(final TerminalNode node) {
+    if (node.getSymbol().getType() == PeopleCodeLexer.VAR_ID) {
+      this.srcProg.assignVarSlot(node.getText());
+    }
+  }
+
   /**
    * @param ctx the context node for the parser rule that is about
    *    to be entered
@@ -26,52 +26,66 @@ import org.openpplsoft.trace.*;
 import org.openpplsoft.types.*;
 
 /**
- * Represents a PeopleTools component buffer.
+ * Represents a PeopleTools component buffer. Each RuntimeSession owns
+ * one ComponentBuffer; the static methods below operate on the buffer
+ * of the session bound to the calling thread.
  */
 public final class ComponentBuffer {
 
   private static Logger log =
       LogManager.getLogger(ComponentBuffer.class.getName());
 
-  private static Component compDefn;
-  private static Record searchRecDefn;
-  private static Set<RecFldName> prmEntries;
+  private Component compDefn;
+  private Record searchRecDefn;
+  private final Set<RecFldName> prmEntries;
 
-  private static int currScrollLevel;
-  private static ScrollBuffer currSB;
-  private static ScrollBuffer lvlZeroScrollBuffer;
+  private int currScrollLevel;
+  private ScrollBuffer currSB;
+  private final ScrollBuffer lvlZeroScrollBuffer;
 
-  private static PTBufferRowset cBuffer;
+  private PTBufferRowset cBuffer;
 
-  private ComponentBuffer() {}
+  /**
+   * Creates an empty component buffer; this should only be called
+   * by RuntimeSession.
+   */
+  public ComponentBuffer() {
+    this.prmEntries = new TreeSet<RecFldName>();
+    this.lvlZeroScrollBuffer = new ScrollBuffer(0, null, null);
+    this.currSB = this.lvlZeroScrollBuffer;
+  }
 
-  static {
-    prmEntries = new TreeSet<RecFldName>();
-    lvlZeroScrollBuffer = new ScrollBuffer(0, null, null);
-    currSB = lvlZeroScrollBuffer;
+  private static ComponentBuffer current() {
+    return RuntimeSession.current().getComponentBuffer();
   }
 
   /**
    * Initializes the component buffer with the provided Component defn.
    */
   public static void init(final Component c) {
-    compDefn = c;
+    final ComponentBuffer cb = current();
+    cb.compDefn = c;
 
-    searchRecDefn = DefnCache.getRecord(compDefn.getSearchRecordName());
-    cBuffer = new PTRowsetTypeConstraint().allocBufferRowset(
-        new SearchRecordBuffer(searchRecDefn));
+    cb.searchRecDefn = DefnCache.getRecord(cb.compDefn.getSearchRecordName());
+    cb.cBuffer = new PTRowsetTypeConstraint().allocBufferRowset(
+        new SearchRecordBuffer(cb.searchRecDefn));
 
-    compDefn.getListOfComponentPC();
+    if (DefnPrefetcher.isEnabled()) {
+      DefnPrefetcher.prefetchComponentPrograms(cb.compDefn);
+    } else {
+      cb.compDefn.getListOfComponentPC();
+    }
   }
 
   public static void fireEvent(final PCEvent event,
       final FireEventSummary fireEventSummary) {
+    final ComponentBuffer cb = current();
 
     /*
      * If a Component PeopleCode program has been written for this component,
      * i.e., PreBuild or PostBuild, run it now.
      */
-    final PeopleCodeProg compProg = compDefn.getProgramForEvent(event);
+    final PeopleCodeProg compProg = cb.compDefn.getProgramForEvent(event);
     if (compProg != null) {
       // Note: root component events like PreBuild and PostBuild always
       // run at scroll level 0 and row 0.
@@ -85,7 +99,7 @@ public final class ComponentBuffer {
       interpreter.run();
       fireEventSummary.incrementNumEventProgsExecuted();
     } else {
-      cBuffer.fireEvent(event,fireEventSummary);
+      cb.cBuffer.fireEvent(event,fireEventSummary);
     }
   }
 
@@ -122,15 +136,17 @@ public final class ComponentBuffer {
   }
 
   public static void materialize() {
-    cBuffer.dynamicallyRegisterChildScrollBuffer(lvlZeroScrollBuffer);
+    final ComponentBuffer cb = current();
+    cb.cBuffer.dynamicallyRegisterChildScrollBuffer(cb.lvlZeroScrollBuffer);
   }
 
   public static PTBufferRecord getSearchRecord() {
-    return cBuffer.getRow(1).getRecord(compDefn.getSearchRecordName());
+    final ComponentBuffer cb = current();
+    return cb.cBuffer.getRow(1).getRecord(cb.compDefn.getSearchRecordName());
   }
 
   public static Component getComponentDefn() {
-    return compDefn;
+    return current().compDefn;
   }
 
   public static void runRelatedDisplayProcessing() {
@@ -147,17 +163,17 @@ public final class ComponentBuffer {
    * @return the currently pointed at ScrollBuffer
    */
   public static ScrollBuffer getCurrentScrollBuffer() {
-    return currSB;
+    return current().currSB;
   }
 
   public static PTBufferRowset getCBufferRowset() {
-    return cBuffer;
+    return current().cBuffer;
   }
 
   public static PTBufferRowset getLevelZeroRowset() {
     // Remember, null is used here b/c the level 0 scroll does
     // not have a primary record.
-    return cBuffer.getRow(1).getRowset(null);
+    return current().cBuffer.getRow(1).getRowset(null);
   }
 
   /**
@@ -165,8 +181,9 @@ public final class ComponentBuffer {
    * search record with data.
    */
   public static void fillSearchRecord() {
+    final ComponentBuffer cb = current();
 
-    if (!searchRecDefn.hasAnySearchKeys()) {
+    if (!cb.searchRecDefn.hasAnySearchKeys()) {
       return;
     }
 
@@ -183,10 +200,12 @@ public final class ComponentBuffer {
             "Result set for search record fill has more than "
             + "one record.");
       }
-      TraceFileVerifier.submitEnforcedEmission(
-          new BeginScrolls(ScrollEmissionContext.SEARCH_RESULTS));
-      cBuffer.emitScrolls(ScrollEmissionContext.SEARCH_RESULTS, 0);
-      TraceFileVerifier.submitEnforcedEmission(new EndScrolls());
+      if (TraceFileVerifier.isEnabled()) {
+        TraceFileVerifier.submitEnforcedEmission(
+            new BeginScrolls(ScrollEmissionContext.SEARCH_RESULTS));
+        cb.cBuffer.emitScrolls(ScrollEmissionContext.SEARCH_RESULTS, 0);
+        TraceFileVerifier.submitEnforcedEmission(new EndScrolls());
+      }
     }
   }
 
@@ -196,19 +215,24 @@ public final class ComponentBuffer {
    * to create the complete component buffer.
    */
   public static void assembleBuffers() {
+    final ComponentBuffer cb = current();
 
-    for (Page p : compDefn.getPages()) {
+    for (Page p : cb.compDefn.getPages()) {
       p.recursivelyLoadSubpages();
     }
 
-    for (Page p : compDefn.getPages()) {
+    if (DefnPrefetcher.isEnabled()) {
+      DefnPrefetcher.prefetchRecordDefns(cb.compDefn);
+    }
+
+    for (Page p : cb.compDefn.getPages()) {
       p.recursivelyLoadSecpages();
     }
 
     PgToken tok;
     PgTokenStream pfs;
 
-    for (Page p : compDefn.getPages()) {
+    for (Page p : cb.compDefn.getPages()) {
       pfs = new PgTokenStream(p.getPNLNAME());
 
       final Stack<ScrollMarker> scrollMarkers = new Stack<ScrollMarker>();
@@ -275,11 +299,12 @@ public final class ComponentBuffer {
   }
 
   public static void logPageHierarchyVisual() {
+    final ComponentBuffer cb = current();
 
     PgToken tok;
     PgTokenStream pfs;
 
-    for (Page p : compDefn.getPages()) {
+    for (Page p : cb.compDefn.getPages()) {
 
       log.info("Root page: {}", p.getPNLNAME());
 
@@ -317,7 +342,7 @@ public final class ComponentBuffer {
       final int level, final String primaryRecName) {
     // Ensure that we're pointing at the correct scroll buffer.
     pointAtScroll(level, primaryRecName);
-    currSB.addPageField(tok);
+    current().currSB.addPageField(tok);
   }
 
   /**
@@ -329,32 +354,33 @@ public final class ComponentBuffer {
    */
   public static void pointAtScroll(final int targetScrollLevel,
       final String targetPrimaryRecName) {
+    final ComponentBuffer cb = current();
 
     // Remember that there's only one scroll level at 0.
-    if (currSB.getScrollLevel() == targetScrollLevel
-        && (currSB.getScrollLevel() == 0
-          || currSB.getPrimaryRecName().equals(targetPrimaryRecName))) {
+    if (cb.currSB.getScrollLevel() == targetScrollLevel
+        && (cb.currSB.getScrollLevel() == 0
+          || cb.currSB.getPrimaryRecName().equals(targetPrimaryRecName))) {
       return;
     }
 
-    while (currScrollLevel < targetScrollLevel) {
-      currSB = currSB.getChildScroll(targetPrimaryRecName);
-      currScrollLevel = currSB.getScrollLevel();
+    while (cb.currScrollLevel < targetScrollLevel) {
+      cb.currSB = cb.currSB.getChildScroll(targetPrimaryRecName);
+      cb.currScrollLevel = cb.currSB.getScrollLevel();
     }
 
-    while (currScrollLevel > targetScrollLevel) {
-      currSB = currSB.getParentScrollBuffer();
-      currScrollLevel = currSB.getScrollLevel();
+    while (cb.currScrollLevel > targetScrollLevel) {
+      cb.currSB = cb.currSB.getParentScrollBuffer();
+      cb.currScrollLevel = cb.currSB.getScrollLevel();
     }
 
     // The scroll level may not have changed, but if the
     // targeted primary rec name differs from the current,
     // we need to change buffers.
-    if (currScrollLevel > 0
-        && !currSB.getPrimaryRecName().equals(targetPrimaryRecName)) {
-      currSB = currSB.getParentScrollBuffer()
+    if (cb.currScrollLevel > 0
+        && !cb.currSB.getPrimaryRecName().equals(targetPrimaryRecName)) {
+      cb.currSB = cb.currSB.getParentScrollBuffer()
           .getChildScroll(targetPrimaryRecName);
-      currScrollLevel = currSB.getScrollLevel();
+      cb.currScrollLevel = cb.currSB.getScrollLevel();
     }
   }
 
@@ -365,7 +391,7 @@ public final class ComponentBuffer {
    * @return the next buffer in the read sequence
    */
   public static IStreamableBuffer next() {
-    return lvlZeroScrollBuffer.next();
+    return current().lvlZeroScrollBuffer.next();
   }
 
   /**
@@ -374,7 +400,7 @@ public final class ComponentBuffer {
    * This reset call will propagate recursively to all child buffers.
    */
   public static void resetCursors() {
-    lvlZeroScrollBuffer.resetCursors();
+    current().lvlZeroScrollBuffer.resetCursors();
   }
 
   public static void expandRecordBuffersWhereNecessary() {
@@ -458,10 +484,12 @@ public final class ComponentBuffer {
    * a matching value in the scroll hierarchy.
    */
   public static void firstPassFill() {
+    final ComponentBuffer cb = current();
 
     // Remember: null is used to get the rowset b/c the rowset
     // at scroll level zero has no (null) primary record name.
-    final PTBufferRow levelZeroRow = cBuffer.getRow(1).getRowset(null).getRow(1);
+    final PTBufferRow levelZeroRow =
+        cb.cBuffer.getRow(1).getRowset(null).getRow(1);
 
     for (Map.Entry<String, PTBufferRecord> entry
         : levelZeroRow.getRecordMap().entrySet()) {
@@ -481,8 +509,9 @@ public final class ComponentBuffer {
   }
 
   public static void emitPRM() {
+    final ComponentBuffer cb = current();
 
-    prmEntries.clear();
+    cb.prmEntries.clear();
 
     final boolean doDebug = false;
     final RecFldName RECFLDNAME_TO_DEBUG =
@@ -491,7 +520,7 @@ public final class ComponentBuffer {
     /*
      * Collect PRM entries from Page Activate PeopleCode.
      */
-    for (final Page page : compDefn.getPages()) {
+    for (final Page page : cb.compDefn.getPages()) {
       final PeopleCodeProg pageActivateProg =
           DefnCache.getPage(page.getPNLNAME()).getPageActivateProg();
       if (pageActivateProg == null) { continue; }
@@ -506,14 +535,14 @@ public final class ComponentBuffer {
         throw new OPSVMachRuntimeException("[PRM DEBUG] Found " + RECFLDNAME_TO_DEBUG
             + "; pageActivateProg is " + pageActivateProg);
       }
-      prmEntries.addAll(progActivateSet);
+      cb.prmEntries.addAll(progActivateSet);
     }
 
     /*
      * Collect PRM entries from Component PeopleCode programs.
      */
     final List<ComponentPeopleCodeProg> compProgs =
-        compDefn.getListOfComponentPC();
+        cb.compDefn.getListOfComponentPC();
     for (final ComponentPeopleCodeProg prog1 : compProgs) {
 
       if (doDebug) {
@@ -526,7 +555,7 @@ public final class ComponentBuffer {
         throw new OPSVMachRuntimeException("[PRM DEBUG] Found " + RECFLDNAME_TO_DEBUG
             + "; prog1 is " + prog1);
       }
-      prmEntries.addAll(prog1Set);
+      cb.prmEntries.addAll(prog1Set);
     }
 
     /*
@@ -558,27 +587,29 @@ public final class ComponentBuffer {
             throw new OPSVMachRuntimeException("[PRM DEBUG] Found " +
                 RECFLDNAME_TO_DEBUG + "; prog is " + prog);
           }
-          prmEntries.addAll(progSet);
+          cb.prmEntries.addAll(progSet);
         }
       }
     }
 
     if (doDebug) {
-      log.debug("PRM entries (count={}):", prmEntries.size());
-      prmEntries.stream().forEach(r -> log.debug("  {}", r));
+      log.debug("PRM entries (count={}):", cb.prmEntries.size());
+      cb.prmEntries.stream().forEach(r -> log.debug("  {}", r));
     }
 
-    TraceFileVerifier.submitEnforcedEmission(
-        new PRMHeader(compDefn.getComponentName(), "ENG", compDefn.getMarket(),
-            prmEntries.size()));
-    prmEntries.stream().forEach(r ->
-        TraceFileVerifier.submitEnforcedEmission(new PRMEntry(r)));
+    if (TraceFileVerifier.isEnabled()) {
+      TraceFileVerifier.submitEnforcedEmission(
+          new PRMHeader(cb.compDefn.getComponentName(), "ENG",
+              cb.compDefn.getMarket(), cb.prmEntries.size()));
+      cb.prmEntries.stream().forEach(r ->
+          TraceFileVerifier.submitEnforcedEmission(new PRMEntry(r)));
+    }
 
     //throw new OPSVMachRuntimeException("PRM emission complete.");
   }
 
   public static boolean hasPRMEntry(final RecFldName recFldName) {
-    return prmEntries.contains(recFldName);
+    return current().prmEntries.contains(recFldName);
   }
 
   private static class ScrollMarker {
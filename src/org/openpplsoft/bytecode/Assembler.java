@@ -48,6 +48,7 @@ public class Assembler {
   private static HashMap<Byte, ElementAssembler> assemblerTable;
 
   private final PeopleCodeByteStream stream;
+  private final TokenDecoder decoder;
 
   private int nIndent;
   private boolean endDetected;
@@ -203,7 +204,18 @@ public class Assembler {
    * @param bstream the bytestream for the PeopleCode program to assemble
    */
   public Assembler(final PeopleCodeByteStream bstream) {
+    this(bstream, null);
+  }
+
+  /**
+   * Creates a new Assembler instance for a particular PeopleCode program
+   * that also adds each element it assembles to a token decoder.
+   * @param bstream the bytestream for the PeopleCode program to assemble
+   * @param d the decoder to add elements to, or null if none
+   */
+  public Assembler(final PeopleCodeByteStream bstream, final TokenDecoder d) {
     this.stream = bstream;
+    this.decoder = d;
     // Program begins at byte 37.
     this.stream.setCursorPos(37);
   }
@@ -312,7 +324,12 @@ public class Assembler {
 
     this.firstLine = false;
     final int initialByteCursorPos = this.stream.getCursorPos();
+    final int textStart = this.stream.getAssembledTextLength();
     a.assemble(this.stream);
+    if (this.decoder != null) {
+      this.decoder.addElement(a, textStart,
+          this.stream.getAssembledTextLength());
+    }
     this.wroteSpace = this.wroteSpace && !a.writesNonBlank();
     this.isInDeclare = this.isInDeclare
         || (a.formatBitmask & AFlag.IN_DECLARE) > 0;
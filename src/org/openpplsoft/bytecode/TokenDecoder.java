@@ -0,0 +1,484 @@
+/*===---------------------------------------------------------------------===*\
+|*                       The OpenPplSoft Runtime Project                     *|
+|*                                                                           *|
+|*              This file is distributed under the MIT License.              *|
+|*                         See LICENSE.md for details.                       *|
+\*===---------------------------------------------------------------------===*/
+
+package org.openpplsoft.bytecode;
+
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CommonToken;
+import org.antlr.v4.runtime.ListTokenSource;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenSource;
+import org.antlr.v4.runtime.misc.Pair;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import org.openpplsoft.antlr4.frontend.PeopleCodeLexer;
+
+/**
+ * Decodes the token stream of a PeopleCode program directly from the
+ * elements of its bytecode, as they are assembled, so that the program's
+ * text need not be lexed. Each element's kind determines the type of the
+ * token(s) it becomes (i.e., a number element is always an integer or
+ * decimal literal, and a reference element is always a reference index
+ * followed by the dotted parts of the reference); the assembled text is
+ * only consulted for token boundaries, and for line and position
+ * information. The decoded tokens are exactly those the lexer would
+ * produce from the assembled text, including whitespace on the whitespace
+ * channel and reference indices on the references channel.
+ *
+ * Where the lexer would not produce the tokens an element's kind implies
+ * (i.e., where adjacent elements are not separated by whitespace and the
+ * lexer would join them into a single token, or where a comment is not
+ * terminated where the element ends), decoding fails and the caller must
+ * lex the text instead.
+ *
+ * Tokens are packed as ints, INTS_PER_TOKEN per token: type, channel,
+ * start and stop indices into the program text, line and position in
+ * line; the token's text is read from the program text when needed.
+ */
+public class TokenDecoder {
+
+  private static Logger log = LogManager.getLogger(
+      TokenDecoder.class.getName());
+
+  /**
+   * The number of ints each packed token occupies.
+   */
+  public static final int INTS_PER_TOKEN = 6;
+
+  private static final int INITIAL_CAPACITY = 256;
+
+  // Token types of the grammar's literal tokens, by text (i.e., "If").
+  private static final Map<String, Integer> literalTypes;
+
+  private ElementAssembler[] elements;
+  private int[] elementBounds;
+  private int numElements;
+
+  // Decoding state.
+  private String text;
+  private int[] packed;
+  private int numInts;
+  private int wsStart, prevEnd, swallowSemicolonAt;
+  private int lineScanPos, line, lineStart;
+
+  static {
+    literalTypes = new HashMap<String, Integer>();
+    for (int i = 1; i <= PeopleCodeLexer._ATN.maxTokenType; i++) {
+      final String literal = PeopleCodeLexer.VOCABULARY.getLiteralName(i);
+      if (literal != null) {
+        literalTypes.put(literal.substring(1, literal.length() - 1), i);
+      }
+    }
+  }
+
+  /**
+   * Creates a decoder with no elements; the assembler adds each
+   * element as it is assembled.
+   */
+  public TokenDecoder() {
+    this.elements = new ElementAssembler[INITIAL_CAPACITY];
+    this.elementBounds = new int[INITIAL_CAPACITY * 2];
+  }
+
+  /*
+   * Records that the given element was assembled into the characters
+   * at [start, end) of the program text.
+   */
+  void addElement(final ElementAssembler a, final int start, final int end) {
+    if (this.numElements == this.elements.length) {
+      this.elements = Arrays.copyOf(this.elements, this.numElements * 2);
+      this.elementBounds = Arrays.copyOf(this.elementBounds,
+          this.numElements * 4);
+    }
+    this.elements[this.numElements] = a;
+    this.elementBounds[this.numElements * 2] = start;
+    this.elementBounds[this.numElements * 2 + 1] = end;
+    this.numElements++;
+  }
+
+  /**
+   * Decodes the tokens of the program whose elements were added to
+   * this decoder.
+   * @param assembledText the text assembled from those elements
+   * @return the packed tokens, ending with EOF, or null if the tokens
+   *    cannot be decoded and the text must be lexed instead
+   */
+  public int[] decode(final String assembledText) {
+    this.text = assembledText;
+    this.packed = new int[Math.max(INITIAL_CAPACITY,
+        this.numElements * 2 * INTS_PER_TOKEN)];
+    this.numInts = 0;
+    this.wsStart = -1;
+    this.prevEnd = -1;
+    this.swallowSemicolonAt = -1;
+    this.lineScanPos = 0;
+    this.line = 1;
+    this.lineStart = 0;
+
+    try {
+      int pos = 0;
+      for (int i = 0; i < this.numElements; i++) {
+        final int start = this.elementBounds[i * 2];
+        final int end = this.elementBounds[i * 2 + 1];
+        this.skipWhitespace(pos, start);
+        pos = end;
+        if (start < end) {
+          this.decodeElement(this.elements[i], start, end);
+        }
+      }
+      this.skipWhitespace(pos, this.text.length());
+      this.flushWhitespace();
+
+      // The lexer's EOF token starts just past the end of the text.
+      this.advanceLineTo(this.text.length());
+      this.put(Token.EOF, Token.DEFAULT_CHANNEL, this.text.length(),
+          this.text.length() - 1, this.line,
+          this.text.length() - this.lineStart);
+      return Arrays.copyOf(this.packed, this.numInts);
+    } catch (final UndecodableElementException uee) {
+      log.debug("Unable to decode tokens from bytecode: {}",
+          uee.getMessage());
+      return null;
+    } finally {
+      this.text = null;
+      this.packed = null;
+    }
+  }
+
+  /**
+   * Creates a token source over packed tokens, which can be passed to a
+   * token stream in place of a lexer.
+   * @param tokens the packed tokens
+   * @param input the program text the tokens were decoded or lexed from;
+   *    the text of each token is read from it
+   * @return a source of the tokens
+   */
+  public static TokenSource toTokenSource(final IntBuffer tokens,
+      final CharStream input) {
+    final Pair<TokenSource, CharStream> source =
+        new Pair<TokenSource, CharStream>(null, input);
+    final List<Token> list =
+        new ArrayList<Token>(tokens.remaining() / INTS_PER_TOKEN);
+    while (tokens.hasRemaining()) {
+      final CommonToken token = new CommonToken(source, tokens.get(),
+          tokens.get(), tokens.get(), tokens.get());
+      token.setLine(tokens.get());
+      token.setCharPositionInLine(tokens.get());
+      list.add(token);
+    }
+    return new ListTokenSource(list);
+  }
+
+  private void decodeElement(final ElementAssembler a, final int start,
+      final int end) {
+    if (a instanceof CommentAssembler) {
+      this.decodeComment(start, end);
+    } else if (a instanceof ReferenceAssembler) {
+      this.decodeReference(start, end);
+    } else if (a instanceof NumberAssembler) {
+      this.decodeNumber(start, end);
+    } else if (a instanceof EmbeddedStringAssembler) {
+      if (this.text.charAt(start) == '"') {
+        this.decodeStringLiteral(start, end);
+      } else {
+        this.decodeComment(start, end);
+      }
+    } else if (start == this.swallowSemicolonAt && end == start + 1) {
+      // This semicolon is part of the comment preceding it.
+      this.prevEnd = -1;
+    } else {
+      this.decodeWord(start, end);
+    }
+  }
+
+  /*
+   * Comments are skipped by the lexer; the comment must end exactly
+   * where the element ends for the lexer to skip the same text.
+   */
+  private void decodeComment(final int start, final int end) {
+    final String comment = this.text.substring(start, end);
+    if (comment.startsWith("/*")) {
+      checkCommentEnd(start, comment, "*/");
+    } else if (comment.startsWith("<*")) {
+      checkCommentEnd(start, comment, "*>");
+    } else if (comment.startsWith("/+")) {
+      checkCommentEnd(start, comment, "+/");
+      // The lexer includes a semicolon immediately following in the comment.
+      if (end < this.text.length() && this.text.charAt(end) == ';') {
+        this.swallowSemicolonAt = end;
+      }
+    } else if (comment.length() > 3
+        && comment.substring(0, 3).equalsIgnoreCase("rem")
+        && isWhitespace(comment.charAt(3))
+        && comment.indexOf(';') == comment.length() - 1) {
+      this.checkBoundary(start);
+      // The lexer includes the whitespace preceding a remark in it.
+      this.wsStart = -1;
+      this.prevEnd = -1;
+      return;
+    } else {
+      throw new UndecodableElementException(start, "unrecognized comment");
+    }
+    this.checkBoundary(start);
+    this.flushWhitespace();
+    this.prevEnd = -1;
+  }
+
+  private static void checkCommentEnd(final int start, final String comment,
+      final String terminator) {
+    final int idx = comment.indexOf(terminator, 2);
+    if (idx == -1 || idx != comment.length() - terminator.length()) {
+      throw new UndecodableElementException(start,
+          "comment is not terminated where its element ends");
+    }
+  }
+
+  private void decodeReference(final int start, final int end) {
+    final int idxStart = start + "#OPSREF{".length();
+    final int close = this.text.indexOf('}', start);
+    if (!this.text.startsWith("#OPSREF{", start) || close <= idxStart
+        || close >= end || (this.text.charAt(idxStart) == '0'
+            && close > idxStart + 1)) {
+      throw new UndecodableElementException(start, "malformed reference");
+    }
+    for (int i = idxStart; i < close; i++) {
+      if (!isDigit(this.text.charAt(i))) {
+        throw new UndecodableElementException(start, "malformed reference");
+      }
+    }
+    this.emit(PeopleCodeLexer.OPS_REF_IDX, PeopleCodeLexer.REFERENCES_CHANNEL,
+        start, close + 1);
+
+    // The reference itself is a dotted sequence of identifiers.
+    int partStart = close + 1;
+    for (int i = partStart; i <= end; i++) {
+      if (i == end || this.text.charAt(i) == '.') {
+        this.decodeWord(partStart, i);
+        if (i < end) {
+          this.emit(literalTypes.get("."), Token.DEFAULT_CHANNEL, i, i + 1);
+        }
+        partStart = i + 1;
+      }
+    }
+  }
+
+  private void decodeNumber(final int start, final int end) {
+    int i = start;
+    if (this.text.charAt(i) == '0') {
+      i++;
+    } else {
+      while (i < end && isDigit(this.text.charAt(i))) {
+        i++;
+      }
+    }
+    if (i == start) {
+      throw new UndecodableElementException(start, "malformed number");
+    } else if (i == end) {
+      this.emit(PeopleCodeLexer.IntegerLiteral, Token.DEFAULT_CHANNEL,
+          start, end);
+      return;
+    }
+
+    if (this.text.charAt(i) != '.' || i + 1 == end) {
+      throw new UndecodableElementException(start, "malformed number");
+    }
+    for (i++; i < end; i++) {
+      if (!isDigit(this.text.charAt(i))) {
+        throw new UndecodableElementException(start, "malformed number");
+      }
+    }
+    this.emit(PeopleCodeLexer.DecimalLiteral, Token.DEFAULT_CHANNEL,
+        start, end);
+  }
+
+  private void decodeStringLiteral(final int start, final int end) {
+    if (end - start < 2 || this.text.charAt(end - 1) != '"') {
+      throw new UndecodableElementException(start, "malformed string");
+    }
+    // Embedded quotes must be doubled for the literal to end here.
+    for (int i = start + 1; i < end - 1; i++) {
+      if (this.text.charAt(i) == '"' && this.text.charAt(++i) != '"') {
+        throw new UndecodableElementException(start, "malformed string");
+      }
+    }
+    this.emit(PeopleCodeLexer.StringLiteral, Token.DEFAULT_CHANNEL,
+        start, end);
+  }
+
+  /*
+   * Keywords, punctuation and identifiers.
+   */
+  private void decodeWord(final int start, final int end) {
+    if (start == end) {
+      throw new UndecodableElementException(start, "empty identifier");
+    }
+    final String word = this.text.substring(start, end);
+
+    final Integer literalType = literalTypes.get(word);
+    if (literalType != null) {
+      this.emit(literalType, Token.DEFAULT_CHANNEL, start, end);
+      return;
+    }
+
+    if (word.equals("True") || word.equals("False")) {
+      this.emit(PeopleCodeLexer.BoolLiteral, Token.DEFAULT_CHANNEL,
+          start, end);
+      return;
+    }
+
+    // A "rem" followed by whitespace starts a remark.
+    if (word.equalsIgnoreCase("rem") && end < this.text.length()
+        && isWhitespace(this.text.charAt(end))) {
+      throw new UndecodableElementException(start, "identifier is a remark");
+    }
+
+    int type = PeopleCodeLexer.GENERIC_ID;
+    int idStart = start;
+    if (word.charAt(0) == '&') {
+      type = PeopleCodeLexer.VAR_ID;
+      idStart++;
+    } else if (word.charAt(0) == '%') {
+      type = PeopleCodeLexer.SYS_VAR_ID;
+      idStart++;
+    }
+    if (idStart == end || !isIdStartChar(this.text.charAt(idStart))) {
+      throw new UndecodableElementException(start, "malformed identifier");
+    }
+    for (int i = idStart + 1; i < end; i++) {
+      if (!isIdChar(this.text.charAt(i))) {
+        throw new UndecodableElementException(start, "malformed identifier");
+      }
+    }
+    this.emit(type, Token.DEFAULT_CHANNEL, start, end);
+  }
+
+  private void skipWhitespace(final int from, final int to) {
+    for (int i = from; i < to; i++) {
+      if (!isWhitespace(this.text.charAt(i))) {
+        throw new UndecodableElementException(i,
+            "unexpected text between elements");
+      }
+    }
+    if (from < to) {
+      if (this.wsStart == -1) {
+        this.wsStart = from;
+      }
+      this.prevEnd = -1;
+    }
+  }
+
+  private void flushWhitespace() {
+    if (this.wsStart != -1) {
+      final int start = this.wsStart;
+      this.wsStart = -1;
+      int end = start;
+      while (end < this.text.length() && isWhitespace(this.text.charAt(end))) {
+        end++;
+      }
+      this.put(start, end, PeopleCodeLexer.WS,
+          PeopleCodeLexer.WHITESPACE_CHANNEL);
+    }
+  }
+
+  /*
+   * Emits a token spanning [start, end) of the text, preceded by any
+   * whitespace pending before it.
+   */
+  private void emit(final int type, final int channel, final int start,
+      final int end) {
+    this.checkBoundary(start);
+    this.flushWhitespace();
+    this.put(start, end, type, channel);
+    this.prevEnd = end;
+  }
+
+  /*
+   * Where a token immediately follows another, the lexer must not be
+   * able to join (part of) the two into a longer token.
+   */
+  private void checkBoundary(final int start) {
+    if (this.prevEnd != start) {
+      return;
+    }
+    final char prev = this.text.charAt(start - 1);
+    final char next = this.text.charAt(start);
+    if ((isIdChar(prev) && (isIdChar(next) || next == '-'))
+        || (isDigit(prev) && next == '.')
+        || (prev == '<' && (next == '=' || next == '>' || next == '*'))
+        || (prev == '>' && next == '=')
+        || (prev == '*' && next == '>')
+        || (prev == '/' && (next == '*' || next == '+'))
+        || (prev == '"' && next == '"')) {
+      throw new UndecodableElementException(start,
+          "adjacent elements would be lexed as one token");
+    }
+  }
+
+  private void put(final int start, final int end, final int type,
+      final int channel) {
+    this.advanceLineTo(start);
+    this.put(type, channel, start, end - 1, this.line,
+        start - this.lineStart);
+  }
+
+  private void put(final int type, final int channel, final int start,
+      final int stop, final int tokLine, final int tokPos) {
+    if (this.numInts + INTS_PER_TOKEN > this.packed.length) {
+      this.packed = Arrays.copyOf(this.packed, this.packed.length * 2);
+    }
+    this.packed[this.numInts++] = type;
+    this.packed[this.numInts++] = channel;
+    this.packed[this.numInts++] = start;
+    this.packed[this.numInts++] = stop;
+    this.packed[this.numInts++] = tokLine;
+    this.packed[this.numInts++] = tokPos;
+  }
+
+  private void advanceLineTo(final int idx) {
+    for (; this.lineScanPos < idx; this.lineScanPos++) {
+      if (this.text.charAt(this.lineScanPos) == '\n') {
+        this.line++;
+        this.lineStart = this.lineScanPos + 1;
+      }
+    }
+  }
+
+  private static boolean isWhitespace(final char c) {
+    return c == ' ' || c == '\t' || c == '\r' || c == '\n';
+  }
+
+  private static boolean isDigit(final char c) {
+    return c >= '0' && c <= '9';
+  }
+
+  private static boolean isIdStartChar(final char c) {
+    return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_';
+  }
+
+  private static boolean isIdChar(final char c) {
+    return isIdStartChar(c) || isDigit(c) || c == '#';
+  }
+
+  /*
+   * Thrown when an element cannot be decoded; caught by decode().
+   */
+  private static final class UndecodableElementException
+      extends RuntimeException {
+    private UndecodableElementException(final int pos, final String reason) {
+      super(reason + " (at char " + pos + ")", null, false, false);
+    }
+  }
+}
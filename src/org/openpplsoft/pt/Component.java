@@ -113,7 +113,7 @@ public class Component {
    * Retrieves the list of PeopleCode programs attached to this
    * component, and caches the corresponding definition for each.
    */
-  public List<ComponentPeopleCodeProg> getListOfComponentPC() {
+  public synchronized List<ComponentPeopleCodeProg> getListOfComponentPC() {
 
     if (this.hasListOfComponentPCBeenRetrieved) { return this.orderedComponentProgs; }
     this.hasListOfComponentPCBeenRetrieved = true;
@@ -72,7 +72,7 @@ public class Page {
    * certain queries used here are enforced emissions; running the queries
    * at instantiation would cause queries to be out of order.
    */
-  public void init() {
+  public synchronized void init() {
 
     if (this.hasInitialized) { return; }
     this.hasInitialized = true;
@@ -295,7 +295,7 @@ public class Page {
    * Retrieves any and all Page PeopleCode associated with this page
    * from the database.
    */
-  public void discoverPagePC() {
+  public synchronized void discoverPagePC() {
 
     if (this.hasDiscoveredPagePC) { return; }
     this.hasDiscoveredPagePC = true;
@@ -49,7 +49,7 @@ public class Record {
     this.RECNAME = recname;
   }
 
-  public void init() {
+  public synchronized void init() {
 
     if(this.hasBeenInitialized) { return; }
     this.hasBeenInitialized = true;
@@ -57,41 +57,14 @@ public class Record {
     OPSStmt ostmt = StmtLibrary.getStaticSQLStmt("query.PSRECDEFN",
         new String[]{this.RECNAME});
     OPSResultSet rs = ostmt.executeQuery();
-
-    int fieldcount = 0;
-    if(rs.next()) {
-      fieldcount = rs.getInt("FIELDCOUNT");
-      this.RELLANGRECNAME = rs.getString("RELLANGRECNAME").trim();
-      this.RECTYPE = rs.getInt("RECTYPE");
-    } else {
-      throw new OPSVMachRuntimeException("Expected record to be returned from PSRECDEFN query: " + this.RECNAME);
-    }
+    final int fieldcount = this.readRecDefn(rs);
     rs.close();
     ostmt.close();
 
     ostmt = StmtLibrary.getStaticSQLStmt("query.PSDBFIELD_PSRECFIELD_JOIN",
         new String[]{this.RECNAME});
     rs = ostmt.executeQuery();
-
-    this.fieldTable = new LinkedHashMap<String, RecordField>();
-    this.fldAndSubrecordTable = new TreeMap<Integer, Object>();
-
-    int i = 0;
-    while(rs.next()) {
-      final RecordField f = new RecordField(
-          this.RECNAME,
-          rs.getString("FIELDNAME").trim(),
-          rs.getInt("FIELDTYPE"),
-          rs.getInt("USEEDIT"),
-          rs.getInt("FIELDNUM"),
-          rs.getInt("LENGTH"),
-          rs.getString("DEFRECNAME"),
-          rs.getString("DEFFIELDNAME"),
-          rs.getString("LABEL_ID"));
-      this.fieldTable.put(f.getFldName(), f);
-      this.fldAndSubrecordTable.put(f.getFldNum(), f);
-      i++;
-    }
+    int i = this.readFields(rs);
     rs.close();
     ostmt.close();
 
@@ -105,12 +78,7 @@ public class Record {
       ostmt = StmtLibrary.getStaticSQLStmt(
           "query.PSDBFIELD_PSRECFIELD_JOIN_ForSubrecords", new String[]{this.RECNAME});
       rs = ostmt.executeQuery();
-
-      while(rs.next()) {
-        this.fldAndSubrecordTable.put(rs.getInt("FIELDNUM"), rs.getString("FIELDNAME"));
-        subRecordNames.add(rs.getString("FIELDNAME"));
-        i++;
-      }
+      i += this.readSubrecords(rs);
       rs.close();
       ostmt.close();
 
@@ -123,6 +91,88 @@ public class Record {
     ostmt = StmtLibrary.getStaticSQLStmt("query.PSDBFLDLBL",
        new String[]{this.RECNAME});
     rs = ostmt.executeQuery();
+    this.readLabels(rs);
+    rs.close();
+    ostmt.close();
+  }
+
+  /**
+   * Initializes this record from rows that have already been retrieved
+   * (i.e., by the bulk queries issued by DefnPrefetcher); each result set
+   * must contain only the rows for this record, in the same order as
+   * the corresponding per-record query. If the record has
+   * already been initialized, this method has no effect.
+   * @param defnRs the row from PSRECDEFN
+   * @param fieldRs the rows from PSDBFIELD/PSRECFIELD for non-subrecords
+   * @param subrecRs the rows from PSRECFIELD for subrecords
+   * @param labelRs the rows from PSDBFLDLABL
+   */
+  public synchronized void initFromRows(final OPSResultSet defnRs,
+      final OPSResultSet fieldRs, final OPSResultSet subrecRs,
+      final OPSResultSet labelRs) {
+
+    if(this.hasBeenInitialized) { return; }
+    this.hasBeenInitialized = true;
+
+    final int fieldcount = this.readRecDefn(defnRs);
+    int i = this.readFields(fieldRs);
+
+    this.subRecordNames = new ArrayList<String>();
+    if(fieldcount != i) {
+      i += this.readSubrecords(subrecRs);
+      if(fieldcount != i) {
+        throw new OPSVMachRuntimeException("Even after reading subrecords, field count " +
+            "does not match that on PSRECDEFN.");
+      }
+    }
+
+    this.readLabels(labelRs);
+  }
+
+  private int readRecDefn(final OPSResultSet rs) {
+    if(rs.next()) {
+      this.RELLANGRECNAME = rs.getString("RELLANGRECNAME").trim();
+      this.RECTYPE = rs.getInt("RECTYPE");
+      return rs.getInt("FIELDCOUNT");
+    }
+    throw new OPSVMachRuntimeException("Expected record to be returned from PSRECDEFN query: " + this.RECNAME);
+  }
+
+  private int readFields(final OPSResultSet rs) {
+
+    this.fieldTable = new LinkedHashMap<String, RecordField>();
+    this.fldAndSubrecordTable = new TreeMap<Integer, Object>();
+
+    int i = 0;
+    while(rs.next()) {
+      final RecordField f = new RecordField(
+          this.RECNAME,
+          rs.getString("FIELDNAME").trim(),
+          rs.getInt("FIELDTYPE"),
+          rs.getInt("USEEDIT"),
+          rs.getInt("FIELDNUM"),
+          rs.getInt("LENGTH"),
+          rs.getString("DEFRECNAME"),
+          rs.getString("DEFFIELDNAME"),
+          rs.getString("LABEL_ID"));
+      this.fieldTable.put(f.getFldName(), f);
+      this.fldAndSubrecordTable.put(f.getFldNum(), f);
+      i++;
+    }
+    return i;
+  }
+
+  private int readSubrecords(final OPSResultSet rs) {
+    int i = 0;
+    while(rs.next()) {
+      this.fldAndSubrecordTable.put(rs.getInt("FIELDNUM"), rs.getString("FIELDNAME"));
+      subRecordNames.add(rs.getString("FIELDNAME"));
+      i++;
+    }
+    return i;
+  }
+
+  private void readLabels(final OPSResultSet rs) {
     while (rs.next()) {
       final FieldLabel label = new FieldLabel(rs.getString("LABEL_ID"),
           rs.getString("LONGNAME"), rs.getString("SHORTNAME"));
@@ -131,11 +181,13 @@ public class Record {
       }
       this.fieldTable.get(rs.getString("FIELDNAME")).addLabel(label);
     }
-    rs.close();
-    ostmt.close();
   }
 
-  public void discoverRecordPC() {
+  public synchronized boolean hasBeenInitialized() {
+    return this.hasBeenInitialized;
+  }
+
+  public synchronized void discoverRecordPC() {
 
     if(this.hasRecordPCBeenDiscovered) { return; }
     this.hasRecordPCBeenDiscovered = true;
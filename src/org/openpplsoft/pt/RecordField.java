@@ -91,6 +91,10 @@ public class RecordField {
     return this.USEEDIT;
   }
 
+  public int getLength() {
+    return this.LENGTH;
+  }
+
   public FieldType getFieldType() {
     return this.fieldType;
   }
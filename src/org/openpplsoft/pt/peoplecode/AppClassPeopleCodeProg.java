@@ -7,9 +7,9 @@
 
 package org.openpplsoft.pt.peoplecode;
 
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.antlr.v4.runtime.tree.ParseTree;
 
@@ -35,7 +35,7 @@ public class AppClassPeopleCodeProg extends PeopleCodeProg {
   private final Map<String, ParseTree> propSetterImplStartNodes;
 
   private String appClassName;
-  private ParseTree classDeclNode;
+  private volatile ParseTree classDeclNode;
   private boolean hasClassDefnBeenLoaded = false;
 
   public AppClassPeopleCodeProg(String[] path) {
@@ -43,12 +43,12 @@ public class AppClassPeopleCodeProg extends PeopleCodeProg {
     this.pathParts = path;
     this.initBindVals();
     this.rootPackage = DefnCache.getAppPackage(this.bindVals[1]);
-    this.instanceTable = new HashMap<String, Instance>();
-    this.propertyTable = new HashMap<String, Property>();
-    this.methodTable = new HashMap<String, Method>();
-    this.methodImplStartNodes = new HashMap<String, ParseTree>();
-    this.propGetterImplStartNodes = new HashMap<String, ParseTree>();
-    this.propSetterImplStartNodes = new HashMap<String, ParseTree>();
+    this.instanceTable = new ConcurrentHashMap<String, Instance>();
+    this.propertyTable = new ConcurrentHashMap<String, Property>();
+    this.methodTable = new ConcurrentHashMap<String, Method>();
+    this.methodImplStartNodes = new ConcurrentHashMap<String, ParseTree>();
+    this.propGetterImplStartNodes = new ConcurrentHashMap<String, ParseTree>();
+    this.propSetterImplStartNodes = new ConcurrentHashMap<String, ParseTree>();
   }
 
   public String getAppClassName() {
@@ -203,6 +203,15 @@ public class AppClassPeopleCodeProg extends PeopleCodeProg {
     this.classDeclNode = node;
   }
 
+  @Override
+  protected void releaseParseTreeNodeTables() {
+    super.releaseParseTreeNodeTables();
+    this.methodImplStartNodes.clear();
+    this.propGetterImplStartNodes.clear();
+    this.propSetterImplStartNodes.clear();
+    this.classDeclNode = null;
+  }
+
   public ParseTree getClassDeclNode() {
     if(this.classDeclNode == null) {
       this.lexAndParse();
@@ -61,7 +61,7 @@ public class AppPackage {
     this.rootPkgNode = new PackageTreeNode(this.rootPkgName);
   }
 
-  public void discoverAppClassPC() {
+  public synchronized void discoverAppClassPC() {
 
     if(this.hasDiscoveredAppClassPC) { return; }
     this.hasDiscoveredAppClassPC = true;
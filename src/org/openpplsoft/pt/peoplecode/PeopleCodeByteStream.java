@@ -14,11 +14,15 @@ public class PeopleCodeByteStream {
   private final PeopleCodeProg prog;
   private final StringBuilder assembledTextBuilder;
 
+  // The program's bytecode array is read in place, not copied.
+  private final byte[] bytecode;
+
   private int cursorPos;
 
   public PeopleCodeByteStream(PeopleCodeProg prog) {
     this.prog = prog;
     this.assembledTextBuilder = new StringBuilder();
+    this.bytecode = prog.getBytecode();
   }
 
   public PeopleCodeProg getProg() {
@@ -42,18 +46,18 @@ public class PeopleCodeByteStream {
   }
 
   public int getProgLenInBytes() {
-    return this.prog.getBytecode().length;
+    return this.bytecode.length;
   }
 
   public byte readNextByte() {
-    return prog.getBytecode()[this.cursorPos++];
+    return this.bytecode[this.cursorPos++];
   }
 
   public byte readAhead() {
-    if(this.cursorPos >= this.prog.getBytecode().length - 1) {
+    if(this.cursorPos >= this.bytecode.length - 1) {
       return -1;
     }
-    return prog.getBytecode()[this.cursorPos];
+    return this.bytecode[this.cursorPos];
   }
 
   public BytecodeReference getBytecodeReference(int idx) {
@@ -68,6 +72,10 @@ public class PeopleCodeByteStream {
     this.assembledTextBuilder.append(s);
   }
 
+  public int getAssembledTextLength() {
+    return this.assembledTextBuilder.length();
+  }
+
   public String getAssembledText() {
     return this.assembledTextBuilder.toString();
   }
@@ -10,6 +10,10 @@ package org.openpplsoft.pt.peoplecode;
 import java.sql.*;
 import java.util.*;
 import java.io.*;
+import java.nio.IntBuffer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
 
 import org.apache.logging.log4j.*;
@@ -35,7 +39,16 @@ public abstract class PeopleCodeProg {
 
   protected String[] bindVals;
   private String programText;
+  private String progTextCacheKey;
+
+  /*
+   * The tokens decoded from this program's bytecode as its text was
+   * assembled (packed as by TokenDecoder), until the program is parsed;
+   * null if the text was taken from the cache or could not be decoded.
+   */
+  private int[] decodedTokens;
   private byte[] bytecode;
+  private int bytecodeLen;
   private CommonTokenStream tokenStream;
   private ParseTree parseTree;
   private boolean hasAtLeastOneStatementFlag;
@@ -49,6 +62,67 @@ public abstract class PeopleCodeProg {
   private List<AppPackagePath> importedAppPackagePaths;
 
   private boolean hasInitialized, haveLoadedDefnsAndPrograms, haveLexedAndParsed;
+  private boolean haveReleasedParseArtefacts;
+
+  /*
+   * The number of executions of this program in progress, during which
+   * its parse artefacts may not be released; incremented only while
+   * holding the parse lock.
+   */
+  private final AtomicInteger pinCount = new AtomicInteger();
+
+  /*
+   * Loading the program from the database is guarded by its own lock
+   * rather than by the parse lock; loadDefnsAndPrograms holds the parse
+   * lock while it resolves app packages, which themselves initialize
+   * the programs they contain. The parse lock is a ReentrantLock so that
+   * ParseArtefactPolicy can release artefacts without blocking.
+   */
+  private final Object initLock = new Object();
+  private final ReentrantLock parseLock = new ReentrantLock();
+
+  // Rough retained size of a token, its share of the parse tree
+  // and of the node tables built from the tree.
+  private static final int EST_BYTES_PER_TOKEN = 200;
+
+  /*
+   * If set, programs are parsed in plain LL mode, which resolves
+   * ambiguities to the same alternatives but does not compute the exact
+   * ambiguity sets that OPSDiagErrorListener checks against. (SLL mode
+   * is of no use here: the grammar needs full context to tell
+   * assignments from comparisons, so nearly every program fails SLL.)
+   */
+  private static boolean skipAmbiguityDetection;
+
+  static {
+    skipAmbiguityDetection = Boolean.getBoolean("skipAmbiguityDetection");
+  }
+
+  // Marks expressions that ExprLowerer could not lower.
+  private static final LoweredExpr NOT_LOWERABLE = new LoweredExpr() {
+    public PTType eval(final ExecContext eCtx) {
+      throw new OPSVMachRuntimeException("Expression is not lowerable.");
+    }
+  };
+
+  /*
+   * Lowered expressions, keyed by the identity of their parse tree
+   * nodes; shared by all threads executing this program.
+   */
+  private final Map<ParseTree, LoweredExpr> loweredExprs =
+      new ConcurrentHashMap<ParseTree, LoweredExpr>();
+
+  /*
+   * Frame slots assigned to each variable identifier in this program
+   * when it is loaded; keyed by identifier rather than parse tree node,
+   * so the slots survive the release of parse artefacts.
+   */
+  private final Map<String, Integer> varSlots =
+      new ConcurrentHashMap<String, Integer>();
+
+  // Invocation counts, by function/method name, for tiered execution.
+  private final Map<String, AtomicInteger> invocationCounts =
+      new ConcurrentHashMap<String, AtomicInteger>();
 
   protected PeopleCodeProg(final String event) {
     this.event = event;
@@ -67,35 +141,118 @@ public abstract class PeopleCodeProg {
   }
 
   public ParseTree getParseTree() {
-    if(parseTree == null) {
+    this.parseLock.lock();
+    try {
       this.lexAndParse();
+      ParseArtefactPolicy.recordAccess(this);
+      return this.parseTree;
+    } finally {
+      this.parseLock.unlock();
     }
-    return this.parseTree;
   }
 
   public CommonTokenStream getTokenStream() {
-    return this.tokenStream;
+    this.parseLock.lock();
+    try {
+      this.lexAndParse();
+      return this.tokenStream;
+    } finally {
+      this.parseLock.unlock();
+    }
   }
 
   public String getEvent() {
     return this.event;
   }
 
+  /**
+   * Retrieves the bytecode of this program; once the program has been
+   * initialized, the array is exactly as long as the program. Callers must
+   * not modify the returned array.
+   * @return the program's bytecode
+   */
   public byte[] getBytecode() {
     return this.bytecode;
   }
 
   public void init() {
+    synchronized (this.initLock) {
+      if(this.hasInitialized) { return; }
+      this.hasInitialized = true;
+
+      OPSStmt ostmt = StmtLibrary.getStaticSQLStmt("query.PSPCMPROG_GetPROGTXT",
+          new String[]{this.bindVals[0], this.bindVals[1], this.bindVals[2],
+          this.bindVals[3], this.bindVals[4], this.bindVals[5], this.bindVals[6],
+          this.bindVals[7], this.bindVals[8], this.bindVals[9], this.bindVals[10],
+          this.bindVals[11], this.bindVals[12], this.bindVals[13]});
+      OPSResultSet rs = ostmt.executeQuery();
+      this.readBytecode(rs);
+      rs.close();
+      ostmt.close();
+
+      ostmt = StmtLibrary.getStaticSQLStmt("query.PSPCMPROG_GetRefs",
+          new String[]{this.bindVals[0], this.bindVals[1], this.bindVals[2],
+          this.bindVals[3], this.bindVals[4], this.bindVals[5],
+          this.bindVals[6], this.bindVals[7], this.bindVals[8],
+          this.bindVals[9], this.bindVals[10], this.bindVals[11],
+          this.bindVals[12], this.bindVals[13]});
+      rs = ostmt.executeQuery();
+      this.readRefs(rs);
+      rs.close();
+      ostmt.close();
+
+      this.assembleProgramText();
+    }
+  }
+
+  /**
+   * Initializes this program from rows already read by the caller, in lieu
+   * of issuing the PSPCMPROG_GetPROGTXT and PSPCMPROG_GetRefs queries; used
+   * when programs are loaded in bulk. Has no effect if the program has
+   * already been initialized.
+   * @param progTxtRs the PSPCMPROG rows for this program, ordered by PROGSEQ
+   * @param refsRs the PSPCMNAME rows for this program, ordered by NAMENUM
+   */
+  public void initFromRows(final OPSResultSet progTxtRs,
+      final OPSResultSet refsRs) {
+    synchronized (this.initLock) {
+      if(this.hasInitialized) { return; }
+      this.hasInitialized = true;
+
+      this.readBytecode(progTxtRs);
+      this.readRefs(refsRs);
+      this.assembleProgramText();
+    }
+  }
 
-    if(this.hasInitialized) { return; }
-    this.hasInitialized = true;
+  /**
+   * Initializes this program from its text rather than its bytecode, for
+   * running PeopleCode without a database (e.g., in benchmarks); the text
+   * must not contain references to definitions. Has no effect if the
+   * program has already been initialized.
+   * @param text the program text
+   */
+  protected void initFromText(final String text) {
+    synchronized (this.initLock) {
+      if(this.hasInitialized) { return; }
+      this.hasInitialized = true;
+
+      this.bytecode = new byte[0];
+      this.bytecodeRefTable = new TreeMap<Integer, BytecodeReference>();
+      this.programText = text;
+    }
+  }
+
+  /**
+   * Retrieves the OBJECTID/OBJECTVALUE pairs that identify this program
+   * in PSPCMPROG and PSPCMNAME, in column order.
+   * @return the 14 key values of this program
+   */
+  public String[] getObjectKeyVals() {
+    return this.bindVals.clone();
+  }
 
-    OPSStmt ostmt = StmtLibrary.getStaticSQLStmt("query.PSPCMPROG_GetPROGTXT",
-        new String[]{this.bindVals[0], this.bindVals[1], this.bindVals[2],
-        this.bindVals[3], this.bindVals[4], this.bindVals[5], this.bindVals[6],
-        this.bindVals[7], this.bindVals[8], this.bindVals[9], this.bindVals[10],
-        this.bindVals[11], this.bindVals[12], this.bindVals[13]});
-    OPSResultSet rs = ostmt.executeQuery();
+  private void readBytecode(final OPSResultSet rs) {
 
     /*
      * Append the program bytecode; there could be multiple records
@@ -105,26 +262,25 @@ public abstract class PeopleCodeProg {
      */
     int PROGLEN = -1;
     while(rs.next()) {
-      PROGLEN = rs.getInt("PROGLEN");     // PROGLEN is the same for all records returned here.
+      if(PROGLEN == -1) {
+        // PROGLEN is the same for all records returned here.
+        PROGLEN = rs.getInt("PROGLEN");
+        this.ensureBytecodeCapacity(PROGLEN);
+      }
       this.appendBytecode(rs.getBlob("PROGTXT"));
     }
-    rs.close();
-    ostmt.close();
 
-    if(this.bytecode.length != PROGLEN) {
+    if(this.bytecodeLen != PROGLEN) {
       throw new OPSVMachRuntimeException("Number of bytes in " + this.getDescriptor() + " ("
-          + this.bytecode.length + ") not equal to PROGLEN (" + PROGLEN + ").");
+          + this.bytecodeLen + ") not equal to PROGLEN (" + PROGLEN + ").");
+    }
+    if(this.bytecode.length != this.bytecodeLen) {
+      this.bytecode = Arrays.copyOf(this.bytecode, this.bytecodeLen);
     }
+  }
 
+  private void readRefs(final OPSResultSet rs) {
     this.bytecodeRefTable = new TreeMap<Integer, BytecodeReference>();
-
-    ostmt = StmtLibrary.getStaticSQLStmt("query.PSPCMPROG_GetRefs",
-        new String[]{this.bindVals[0], this.bindVals[1], this.bindVals[2],
-        this.bindVals[3], this.bindVals[4], this.bindVals[5],
-        this.bindVals[6], this.bindVals[7], this.bindVals[8],
-        this.bindVals[9], this.bindVals[10], this.bindVals[11],
-        this.bindVals[12], this.bindVals[13]});
-    rs = ostmt.executeQuery();
     while(rs.next()) {
       this.bytecodeRefTable.put(rs.getInt("NAMENUM"),
           new BytecodeReference(
@@ -132,63 +288,116 @@ public abstract class PeopleCodeProg {
               rs.getString("RECNAME").trim(),
               rs.getString("REFNAME").trim()));
     }
-    rs.close();
-    ostmt.close();
+  }
 
-    /*
-     * Assemble the text of the program from its constituent bytecode.
-     */
+  /*
+   * Assemble the text of the program from its constituent bytecode,
+   * unless text assembled from identical bytecode has been cached.
+   */
+  private void assembleProgramText() {
+    String cacheKey = null;
+    if (ProgramTextCache.isEnabled()) {
+      cacheKey = ProgramTextCache.getKey(this.getDescriptor(), this.bytecode,
+          this.bytecodeRefTable);
+      final String cachedText = ProgramTextCache.lookup(cacheKey);
+      this.progTextCacheKey = cacheKey;
+      if (cachedText != null) {
+        this.programText = cachedText;
+        this.markReferencesInTextAsUsed();
+        return;
+      }
+    }
+
+    final long startNanos = System.nanoTime();
     PeopleCodeByteStream byteStream = new PeopleCodeByteStream(this);
-    Assembler a = new Assembler(byteStream);
+    final TokenDecoder decoder = new TokenDecoder();
+    Assembler a = new Assembler(byteStream, decoder);
     a.assemble();
     this.programText = byteStream.getAssembledText();
-  }
+    this.decodedTokens = decoder.decode(this.programText);
 
-  public void appendBytecode(final Blob blob) {
+    if (cacheKey != null) {
+      ProgramTextCache.store(cacheKey, this.programText,
+          System.nanoTime() - startNanos);
+    }
+  }
 
-    int b;
-    ArrayList<Integer> bytes = new ArrayList<Integer>();
+  /*
+   * The assembler marks each reference it emits as used; when text is
+   * taken from the cache, the same is done using the reference markers
+   * in the text.
+   */
+  private void markReferencesInTextAsUsed() {
+    final String marker = "#OPSREF{";
+    int idx = this.programText.indexOf(marker);
+    while (idx != -1) {
+      final int start = idx + marker.length();
+      final int end = this.programText.indexOf('}', start);
+      this.bytecodeRefTable.get(Integer.parseInt(
+          this.programText.substring(start, end))).markAsUsedInProgram();
+      idx = this.programText.indexOf(marker, end);
+    }
+  }
 
+  /**
+   * Appends the contents of a PROGTXT blob to this program's bytecode,
+   * reading it in bulk directly into the bytecode buffer.
+   * @param blob the blob containing the next chunk of bytecode
+   */
+  public void appendBytecode(final Blob blob) {
     try(final InputStream stream = blob.getBinaryStream()) {
-      while((b = stream.read()) != -1) {
-        bytes.add(b);
+      this.ensureBytecodeCapacity(this.bytecodeLen + (int) blob.length());
+      int n;
+      while(true) {
+        if(this.bytecodeLen == this.bytecode.length) {
+          // Buffer is full; probe for bytes beyond the blob's stated length.
+          n = stream.read();
+          if(n == -1) { break; }
+          this.ensureBytecodeCapacity(this.bytecodeLen + 1);
+          this.bytecode[this.bytecodeLen++] = (byte) n;
+          continue;
+        }
+        n = stream.read(this.bytecode, this.bytecodeLen,
+            this.bytecode.length - this.bytecodeLen);
+        if(n == -1) { break; }
+        this.bytecodeLen += n;
       }
     } catch(final java.sql.SQLException sqle) {
       throw new OPSVMachRuntimeException(sqle.getMessage(), sqle);
     } catch(final java.io.IOException ioe) {
       throw new OPSVMachRuntimeException(ioe.getMessage(), ioe);
     }
+  }
 
-    int startIdx;
-    byte[] allBytes;
-
+  /*
+   * Grows the bytecode buffer to hold at least minCapacity bytes; the
+   * buffer at least doubles when grown, so appending chunks is linear.
+   */
+  private void ensureBytecodeCapacity(final int minCapacity) {
     if(this.bytecode == null) {
-      allBytes = new byte[bytes.size()];
-      startIdx = 0;
-    } else {
-      allBytes = new byte[this.bytecode.length + bytes.size()];
-      startIdx = this.bytecode.length;
-
-      // Copy previous bytes to new array.
-      for(int i = 0; i < startIdx; i++) {
-        allBytes[i] = this.bytecode[i];
-      }
-    }
-
-    Iterator<Integer> iter = bytes.iterator();
-    for(int i = startIdx; i < allBytes.length; i++) {
-      allBytes[i] = iter.next().byteValue();
+      this.bytecode = new byte[Math.max(minCapacity, 0)];
+    } else if(this.bytecode.length < minCapacity) {
+      this.bytecode = Arrays.copyOf(this.bytecode,
+          Math.max(minCapacity, this.bytecode.length * 2));
     }
-
-    this.bytecode = allBytes;
   }
 
   public void loadDefnsAndPrograms() {
     log.debug("Loading defns and programs for {}", this.getDescriptor());
 
-    if(this.haveLoadedDefnsAndPrograms) { return; }
-    this.haveLoadedDefnsAndPrograms = true;
+    this.parseLock.lock();
+    try {
+      if(this.haveLoadedDefnsAndPrograms) { return; }
+      this.haveLoadedDefnsAndPrograms = true;
+
+      this.lexAndParse();
+      this.walkParseTree();
+    } finally {
+      this.parseLock.unlock();
+    }
+  }
 
+  private void walkParseTree() {
     this.referencedProgs = new ArrayList<PeopleCodeProg>();
     this.recordProgFnImports = new HashMap<String, FuncImport>();
     this.funcImplNodes = new HashMap<String, FuncImpl>();
@@ -196,11 +405,190 @@ public abstract class PeopleCodeProg {
     this.importedAppClasses = new HashMap<String, List<AppPackagePath>>();
     this.importedAppPackagePaths = new ArrayList<AppPackagePath>();
 
-    this.lexAndParse();
     ParseTreeWalker walker = new ParseTreeWalker();
     walker.walk(new ProgLoadListener(this), this.parseTree);
   }
 
+  /**
+   * Pins the parse artefacts of this program for the duration of an
+   * execution, (re)building them if necessary; they will not be released
+   * until a matching call to unpinParseArtefacts is made.
+   * @return the root of the pinned parse tree; nodes that callers
+   *    obtained from any other tree are stale and must be obtained again
+   */
+  public ParseTree pinParseArtefacts() {
+    this.parseLock.lock();
+    try {
+      this.pinCount.incrementAndGet();
+      this.lexAndParse();
+      ParseArtefactPolicy.recordAccess(this);
+      return this.parseTree;
+    } finally {
+      this.parseLock.unlock();
+    }
+  }
+
+  /**
+   * Releases a pin taken by pinParseArtefacts.
+   */
+  public void unpinParseArtefacts() {
+    this.pinCount.decrementAndGet();
+  }
+
+  /**
+   * Releases the token stream and parse tree of this program, and drops
+   * all references into the tree from its node tables, while keeping the
+   * program text and all other metadata. The tree is rebuilt and the node
+   * tables re-indexed the next time they are needed. This is a no-op if
+   * the program is being executed, or if another thread is currently
+   * lexing, parsing or walking it.
+   * @return false if the artefacts could not be released because they
+   *    are in use, true otherwise
+   */
+  public boolean releaseParseArtefacts() {
+    if (this.parseLock.isHeldByCurrentThread()
+        || !this.parseLock.tryLock()) {
+      return false;
+    }
+
+    try {
+      if (this.pinCount.get() > 0) { return false; }
+      if (!this.haveLexedAndParsed) { return true; }
+
+      this.tokenStream = null;
+      this.parseTree = null;
+      if (this.haveLoadedDefnsAndPrograms) {
+        this.releaseParseTreeNodeTables();
+        this.haveReleasedParseArtefacts = true;
+      }
+      this.haveLexedAndParsed = false;
+      return true;
+    } finally {
+      this.parseLock.unlock();
+    }
+  }
+
+  /**
+   * Drops all references into the parse tree held by this program's
+   * node tables; subclasses that keep such tables must override this
+   * method, and re-register the nodes when ParseTreeNodeIndexer visits
+   * them. Called only while the program is not being executed.
+   */
+  protected void releaseParseTreeNodeTables() {
+    for (final FuncImpl fnImpl : this.funcImplNodes.values()) {
+      fnImpl.parseTreeNode = null;
+    }
+    this.loweredExprs.clear();
+    this.invocationCounts.clear();
+  }
+
+  /**
+   * Retrieves the lowered form of an expression in this program's parse
+   * tree, lowering the expression the first time it is requested.
+   * @param ctx the expression's parse tree node
+   * @return the lowered expression, or null if it cannot be lowered
+   */
+  public LoweredExpr getLoweredExpr(final PeopleCodeParser.ExprContext ctx) {
+    LoweredExpr lowered = this.loweredExprs.get(ctx);
+    if (lowered == null) {
+      lowered = ExprLowerer.lower(this, ctx);
+      if (lowered == null) {
+        lowered = NOT_LOWERABLE;
+      }
+      this.loweredExprs.put(ctx, lowered);
+    }
+    return lowered == NOT_LOWERABLE ? null : lowered;
+  }
+
+  /**
+   * Retrieves the lowered form of an expression only if the expression
+   * has already been lowered (i.e., because the function or method
+   * containing it has tiered up).
+   * @param ctx the expression's parse tree node
+   * @return the lowered expression, or null if there is none
+   */
+  public LoweredExpr getTieredUpExpr(final PeopleCodeParser.ExprContext ctx) {
+    final LoweredExpr lowered = this.loweredExprs.get(ctx);
+    return lowered == NOT_LOWERABLE ? null : lowered;
+  }
+
+  /**
+   * Counts an invocation of a function or method (or of the program
+   * itself) for tiered execution; on the invocation that reaches the
+   * tier-up threshold, all expressions in the body are lowered, and on
+   * the one that reaches the compile threshold, they are compiled.
+   * @param methodOrFuncName the function or method name, or the empty
+   *    string for the program itself
+   * @param bodyNode the root of the body's parse tree
+   */
+  public void recordInvocation(final String methodOrFuncName,
+      final ParseTree bodyNode) {
+    AtomicInteger count = this.invocationCounts.get(methodOrFuncName);
+    if (count == null) {
+      this.invocationCounts.putIfAbsent(methodOrFuncName, new AtomicInteger());
+      count = this.invocationCounts.get(methodOrFuncName);
+    }
+
+    final int n = count.incrementAndGet();
+    if (n == ExprLowerer.getTierUpThreshold()) {
+      final int numLowered = this.lowerExprsUnder(bodyNode);
+      log.info("Tiered up {} [{}] after {} invocations; lowered {} exprs.",
+          this.getDescriptor(), methodOrFuncName, n, numLowered);
+    } else if (n == ExprCompiler.getCompileThreshold()
+        && ExprCompiler.isEnabled()) {
+      final int numCompiled = this.compileExprsUnder(bodyNode);
+      log.info("Compiled {} [{}] after {} invocations; compiled {} exprs.",
+          this.getDescriptor(), methodOrFuncName, n, numCompiled);
+    }
+  }
+
+  /*
+   * Compiles the lowered expressions under the given node; those that
+   * ExprCompiler has nothing to specialize in are left as they are.
+   */
+  private int compileExprsUnder(final ParseTree node) {
+    if (node instanceof PeopleCodeParser.ExprContext) {
+      final LoweredExpr lowered = this.loweredExprs.get(node);
+      if (lowered != null && lowered != NOT_LOWERABLE) {
+        if (lowered instanceof CompiledExpr) {
+          return 0;
+        }
+        final CompiledExpr compiled = ExprCompiler.compile(lowered);
+        if (compiled == null) {
+          return 0;
+        }
+        this.loweredExprs.put(node, compiled);
+        return 1;
+      }
+    }
+    int numCompiled = 0;
+    for (int i = 0; i < node.getChildCount(); i++) {
+      numCompiled += this.compileExprsUnder(node.getChild(i));
+    }
+    return numCompiled;
+  }
+
+  /*
+   * Lowers the outermost lowerable expressions under the given node;
+   * expressions nested within them are evaluated by their lowered parent.
+   */
+  private int lowerExprsUnder(final ParseTree node) {
+    if (node instanceof PeopleCodeParser.ExprContext
+        && this.getLoweredExpr((PeopleCodeParser.ExprContext) node) != null) {
+      return 1;
+    }
+    int numLowered = 0;
+    for (int i = 0; i < node.getChildCount(); i++) {
+      numLowered += this.lowerExprsUnder(node.getChild(i));
+    }
+    return numLowered;
+  }
+
+  private long estimateParseArtefactBytes() {
+    return (long) this.tokenStream.size() * EST_BYTES_PER_TOKEN
+        + 2L * this.programText.length();
+  }
+
   public void addReferencedProg(final PeopleCodeProg prog) {
     this.referencedProgs.add(prog);
   }
@@ -223,6 +611,33 @@ public abstract class PeopleCodeProg {
     return this.recordProgFnImports.get(fnName.toLowerCase());
   }
 
+  /**
+   * Assigns a frame slot to a variable identifier referenced in this
+   * program, if one has not already been assigned; called by
+   * ProgLoadListener while this program is being loaded.
+   * @param varId the variable identifier (including its leading '&')
+   */
+  public void assignVarSlot(final String varId) {
+    if (!this.varSlots.containsKey(varId)) {
+      this.varSlots.put(varId, this.varSlots.size());
+    }
+  }
+
+  /**
+   * Retrieves the frame slot assigned to a variable identifier.
+   * @param varId the variable identifier (including its leading '&')
+   * @return the slot, or -1 if the identifier is not referenced
+   *    in this program (or the program has not been loaded yet)
+   */
+  public int getVarSlot(final String varId) {
+    final Integer slot = this.varSlots.get(varId);
+    return slot == null ? -1 : slot;
+  }
+
+  public int getNumVarSlots() {
+    return this.varSlots.size();
+  }
+
   public BytecodeReference getBytecodeReference(int refNbr) {
     return this.bytecodeRefTable.get(refNbr);
   }
@@ -338,49 +753,95 @@ public abstract class PeopleCodeProg {
   }
 
   public void lexAndParse() {
+    this.parseLock.lock();
+    try {
+      if(this.haveLexedAndParsed) { return; }
+      this.haveLexedAndParsed = true;
+
+      log.debug("Lexing and parsing: {}", this.getDescriptor());
+
+      /*
+       * Write program text to cache if necessary.
+       */
+      if(System.getProperty("cacheProgText").equals("true")) {
+        try (final BufferedWriter writer = new BufferedWriter(
+              new FileWriter(new File("/home/opsdev/ops/cache/"
+                  + this.getDescriptor() + ".pc")))) {
+          writer.write(this.programText);
+        } catch (final IOException ioe) {
+          throw new OPSVMachRuntimeException(ioe.getMessage(), ioe);
+        }
+      }
 
-    if(this.haveLexedAndParsed) { return; }
-    this.haveLexedAndParsed = true;
-
-    log.debug("Lexing and parsing: {}", this.getDescriptor());
+      /*
+       * If the tokens lexed from this program's text were cached by an
+       * earlier run, they are used in place of the lexer; otherwise,
+       * the tokens decoded from its bytecode are, if there are any (they
+       * are not kept once used, so a program whose artefacts are
+       * released is re-lexed when it is next parsed).
+       */
+      final ANTLRInputStream input = new ANTLRInputStream(this.programText);
+      TokenSource tokenSource = null;
+      boolean isFromCache = false;
+      if (this.progTextCacheKey != null) {
+        tokenSource = ProgramTextCache.lookupTokens(
+            this.progTextCacheKey, input);
+        isFromCache = tokenSource != null;
+      }
+      if (tokenSource == null && this.decodedTokens != null) {
+        tokenSource = TokenDecoder.toTokenSource(
+            IntBuffer.wrap(this.decodedTokens), input);
+      }
+      this.decodedTokens = null;
+      if (tokenSource == null) {
+        tokenSource = new NoErrorTolerancePeopleCodeLexer(input);
+      }
+      this.tokenStream = new CommonTokenStream(tokenSource);
+
+      /*
+       * The tree is built without the ANTLR parser where possible; the
+       * parser is used for anything the builder does not handle, and
+       * reports any syntax errors.
+       */
+      this.parseTree = ParseTreeBuilder.build(this.tokenStream);
+      if (this.parseTree == null) {
+        final PeopleCodeParser parser =
+            new PeopleCodeParser(this.tokenStream);
+
+        parser.removeErrorListeners();
+        parser.addErrorListener(new OPSDiagErrorListener());
+        parser.getInterpreter().setPredictionMode(skipAmbiguityDetection
+            ? PredictionMode.LL : PredictionMode.LL_EXACT_AMBIG_DETECTION);
+        parser.setErrorHandler(new OPSErrorStrategy());
+
+        this.parseTree = parser.program();
+      }
 
-    /*
-     * Write program text to cache if necessary.
-     */
-    if(System.getProperty("cacheProgText").equals("true")) {
-      try (final BufferedWriter writer = new BufferedWriter(
-            new FileWriter(new File("/home/opsdev/ops/cache/"
-                + this.getDescriptor() + ".pc")))) {
-        writer.write(this.programText);
-      } catch (final IOException ioe) {
-        throw new OPSVMachRuntimeException(ioe.getMessage(), ioe);
+      if (!isFromCache && this.progTextCacheKey != null) {
+        this.tokenStream.fill();
+        ProgramTextCache.storeTokens(this.progTextCacheKey,
+            this.tokenStream.getTokens());
       }
-    }
 
-    InputStream progTextInputStream =
-        new ByteArrayInputStream(this.programText.getBytes());
+      //log.debug(">>> Parse Tree >>>>>>>>>>>>");
+      //log.debug(this.parseTree.toStringTree(parser));
+      //log.debug("====================================================");
+
+      /*
+       * If the artefacts of a program that was previously loaded have been
+       * released, the entry points in its node tables must be re-indexed;
+       * all other metadata gathered when it was loaded is still valid.
+       */
+      if (this.haveReleasedParseArtefacts) {
+        this.haveReleasedParseArtefacts = false;
+        new ParseTreeWalker().walk(new ParseTreeNodeIndexer(this),
+            this.parseTree);
+      }
 
-    try {
-      final ANTLRInputStream input = new ANTLRInputStream(progTextInputStream);
-      final NoErrorTolerancePeopleCodeLexer lexer =
-          new NoErrorTolerancePeopleCodeLexer(input);
-      this.tokenStream = new CommonTokenStream(lexer);
-      final PeopleCodeParser parser = new PeopleCodeParser(this.tokenStream);
-
-      parser.removeErrorListeners();
-      parser.addErrorListener(new OPSDiagErrorListener());
-      parser.getInterpreter()
-          .setPredictionMode(PredictionMode.LL_EXACT_AMBIG_DETECTION);
-      parser.setErrorHandler(new OPSErrorStrategy());
-
-      this.parseTree = parser.program();
-    } catch (final IOException ioe) {
-      throw new OPSVMachRuntimeException(ioe.getMessage(), ioe);
+      ParseArtefactPolicy.admit(this, this.estimateParseArtefactBytes());
+    } finally {
+      this.parseLock.unlock();
     }
-
-    //log.debug(">>> Parse Tree >>>>>>>>>>>>");
-    //log.debug(this.parseTree.toStringTree(parser));
-    //log.debug("====================================================");
   }
 
   public void addFunction(final String name,
@@ -412,13 +873,29 @@ public abstract class PeopleCodeProg {
         new FuncImpl(funcName, parseTreeNode));
   }
 
+  /**
+   * Re-attaches a function's entry point in the rebuilt parse tree
+   * to its (previously registered) implementation.
+   * @param funcName the name of the function
+   * @param parseTreeNode the function's node in the rebuilt tree
+   */
+  public void rebindFunctionImplNode(final String funcName,
+      final PeopleCodeParser.FuncImplContext parseTreeNode) {
+    final FuncImpl fnImpl = this.funcImplNodes.get(funcName.toLowerCase());
+    if (fnImpl != null) {
+      fnImpl.parseTreeNode = parseTreeNode;
+    }
+  }
+
   public FuncImpl getFunctionImpl(final String funcName) {
+    this.lexAndParse();
     // Remember: keys in table are lower-cased b/c PS does not distinguish
     // b/w function names of differing cases.
     return this.funcImplNodes.get(funcName.toLowerCase());
   }
 
   public boolean hasFunctionImplNamed(final String funcName) {
+    this.lexAndParse();
     // Remember: keys in table are lower-cased b/c PS does not distinguish
     // b/w function names of differing cases.
     return this.funcImplNodes.containsKey(funcName.toLowerCase());
@@ -516,7 +993,7 @@ public abstract class PeopleCodeProg {
 
   public class FuncImpl {
     public String funcName;
-    public PeopleCodeParser.FuncImplContext parseTreeNode;
+    public volatile PeopleCodeParser.FuncImplContext parseTreeNode;
     private List<BytecodeReference> bytecodeReferences;
     private Set<String> internalFuncReferences, externalFuncReferences;
     public FuncImpl(String fName, PeopleCodeParser.FuncImplContext node) {
@@ -7,6 +7,7 @@
 
 package org.openpplsoft.runtime;
 
+import org.openpplsoft.pt.peoplecode.AppClassPeopleCodeProg;
 import org.openpplsoft.types.PTAppClassObjTypeConstraint;
 
 /**
@@ -24,6 +25,12 @@ public class AppClassDeclExecContext extends ExecContext {
     this.startNode = tc.getReqdProgDefn().getClassDeclNode();
   }
 
+  @Override
+  protected void rebindParseTreeNodes() {
+    this.startNode = ((AppClassPeopleCodeProg) this.getProg())
+        .getClassDeclNode();
+  }
+
   @Override
   public String getMethodOrFuncName() {
     return "";
@@ -9,6 +9,8 @@ package org.openpplsoft.runtime;
 
 import org.antlr.v4.runtime.tree.ParseTree;
 
+import org.openpplsoft.antlr4.frontend.PeopleCodeParser;
+import org.openpplsoft.pt.peoplecode.AppClassPeopleCodeProg;
 import org.openpplsoft.types.PTAppClassObj;
 import org.openpplsoft.types.PTTypeConstraint;
 
@@ -29,6 +31,22 @@ public abstract class AppClassObjExecContext extends ExecContext {
     this.pushScope(obj.getInstanceScope());
   }
 
+  /*
+   * The start node is a method, getter or setter implementation; the
+   * node of the same kind is looked up by name in the rebuilt tree.
+   */
+  @Override
+  protected void rebindParseTreeNodes() {
+    final AppClassPeopleCodeProg prog = this.appClassObj.getProg();
+    if (this.startNode instanceof PeopleCodeParser.GetImplContext) {
+      this.startNode = prog.getPropGetterImplStartNode(this.methodOrGetterName);
+    } else if (this.startNode instanceof PeopleCodeParser.SetImplContext) {
+      this.startNode = prog.getPropSetterImplStartNode(this.methodOrGetterName);
+    } else {
+      this.startNode = prog.getMethodImplStartNode(this.methodOrGetterName);
+    }
+  }
+
   public PTAppClassObj getAppClassObj() {
     return this.appClassObj;
   }
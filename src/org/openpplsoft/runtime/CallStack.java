@@ -0,0 +1,186 @@
+/*===---------------------------------------------------------------------===*\
+|*                       The OpenPplSoft Runtime Project                     *|
+|*                                                                           *|
+|*              This file is distributed under the MIT License.              *|
+|*                         See LICENSE.md for details.                       *|
+\*===---------------------------------------------------------------------===*/
+
+package org.openpplsoft.runtime;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.EmptyStackException;
+import java.util.List;
+import java.util.RandomAccess;
+
+import org.openpplsoft.types.PTCallFrameBoundary;
+import org.openpplsoft.types.PTReference;
+import org.openpplsoft.types.PTType;
+
+/**
+ * The call stack of a single runtime session, through which arguments
+ * and return values are passed between PeopleCode programs and built-in
+ * functions. Each call frame begins with a PTCallFrameBoundary; the
+ * position of each boundary on the stack is recorded as it is pushed.
+ *
+ * A callee takes the arguments of the topmost frame as a view over the
+ * slice of the backing array that holds them, so no list is built per
+ * call; the arguments stay on the stack (below anything the callee
+ * pushes, i.e., the frames of its own calls) until the caller pops the
+ * frame. A callee's return value is not pushed; it is placed in the
+ * frame's return slot, and handed to the caller when the frame is popped.
+ * The stack is confined to its session's thread and is therefore not
+ * synchronized.
+ */
+final class CallStack {
+
+  private static final int INITIAL_CAPACITY = 64;
+  private static final int INITIAL_FRAME_CAPACITY = 16;
+
+  private PTType[] slots;
+  private int size;
+
+  /*
+   * For each open frame: the stack position of its boundary, the end of
+   * the arguments taken by its callee (or -1 if none have been taken),
+   * the view over those arguments (reused by every frame at that depth),
+   * and its return slot.
+   */
+  private int[] frameBases;
+  private int[] frameArgEnds;
+  private ArgsView[] frameArgViews;
+  private PTType[] frameReturnVals;
+  private int numFrames;
+
+  CallStack() {
+    this.slots = new PTType[INITIAL_CAPACITY];
+    this.frameBases = new int[INITIAL_FRAME_CAPACITY];
+    this.frameArgEnds = new int[INITIAL_FRAME_CAPACITY];
+    this.frameArgViews = new ArgsView[INITIAL_FRAME_CAPACITY];
+    this.frameReturnVals = new PTType[INITIAL_FRAME_CAPACITY];
+  }
+
+  /**
+   * Pushes a frame boundary, which opens a new frame, or an argument
+   * to the call being made in the topmost frame.
+   * @param p the boundary or argument
+   */
+  void push(final PTType p) {
+    if (this.size == this.slots.length) {
+      this.slots = Arrays.copyOf(this.slots, this.size * 2);
+    }
+    if (p instanceof PTCallFrameBoundary) {
+      if (this.numFrames == this.frameBases.length) {
+        final int n = this.numFrames * 2;
+        this.frameBases = Arrays.copyOf(this.frameBases, n);
+        this.frameArgEnds = Arrays.copyOf(this.frameArgEnds, n);
+        this.frameArgViews = Arrays.copyOf(this.frameArgViews, n);
+        this.frameReturnVals = Arrays.copyOf(this.frameReturnVals, n);
+      }
+      this.frameBases[this.numFrames] = this.size;
+      this.frameArgEnds[this.numFrames] = -1;
+      this.numFrames++;
+    }
+    this.slots[this.size++] = p;
+  }
+
+  int size() {
+    return this.size;
+  }
+
+  /**
+   * Takes the arguments pushed to the topmost frame since its boundary
+   * (or since its arguments were last taken), in the order in which they
+   * were pushed.
+   * @param deref if true, references are replaced by their values
+   * @return a view over the arguments, which remains valid until the
+   *    frame is popped
+   */
+  List<PTType> takeArgsInTopFrame(final boolean deref) {
+    final int f = this.topFrame();
+    final int from = this.frameArgEnds[f] == -1
+        ? this.frameBases[f] + 1 : this.frameArgEnds[f];
+    if (deref) {
+      for (int i = from; i < this.size; i++) {
+        if (this.slots[i] instanceof PTReference) {
+          this.slots[i] = ((PTReference) this.slots[i]).deref();
+        }
+      }
+    }
+    this.frameArgEnds[f] = this.size;
+
+    if (this.frameArgViews[f] == null) {
+      this.frameArgViews[f] = new ArgsView();
+    }
+    this.frameArgViews[f].from = from;
+    this.frameArgViews[f].to = this.size;
+    return this.frameArgViews[f];
+  }
+
+  /**
+   * Places the return value of the call made in the topmost frame
+   * in that frame's return slot.
+   * @param p the return value
+   */
+  void setReturnValue(final PTType p) {
+    final int f = this.topFrame();
+    if (this.frameReturnVals[f] != null) {
+      throw new OPSVMachRuntimeException("More than one return value "
+          + "was returned to the call frame.");
+    }
+    this.frameReturnVals[f] = p;
+  }
+
+  /**
+   * Pops the topmost frame, along with its boundary and arguments.
+   * @return the frame's return value, or null if the callee did not
+   *    return one
+   */
+  PTType popFrame() {
+    final int f = this.topFrame();
+    final int argsEnd = this.frameArgEnds[f] == -1
+        ? this.frameBases[f] + 1 : this.frameArgEnds[f];
+    if (this.size != argsEnd) {
+      throw new OPSVMachRuntimeException("Expected the call frame on top "
+          + "of the call stack to hold only its boundary and arguments "
+          + "taken by the callee, but " + (this.size - argsEnd)
+          + " other values are on the stack above them.");
+    }
+
+    final PTType returnVal = this.frameReturnVals[f];
+    this.frameReturnVals[f] = null;
+    Arrays.fill(this.slots, this.frameBases[f], this.size, null);
+    this.size = this.frameBases[f];
+    this.numFrames--;
+    return returnVal;
+  }
+
+  private int topFrame() {
+    if (this.numFrames == 0) {
+      throw new EmptyStackException();
+    }
+    return this.numFrames - 1;
+  }
+
+  /*
+   * A read-only view over the arguments of a frame.
+   */
+  private final class ArgsView extends AbstractList<PTType>
+      implements RandomAccess {
+    private int from, to;
+
+    @Override
+    public PTType get(final int idx) {
+      if (idx < 0 || idx >= this.to - this.from) {
+        throw new IndexOutOfBoundsException("Index: " + idx + ", size: "
+            + (this.to - this.from));
+      }
+      return CallStack.this.slots[this.from + idx];
+    }
+
+    @Override
+    public int size() {
+      return this.to - this.from;
+    }
+  }
+}
@@ -7,7 +7,7 @@
 
 package org.openpplsoft.runtime;
 
-import java.lang.reflect.Method;
+import java.lang.invoke.MethodHandle;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -17,7 +17,7 @@ public class Callable {
   private static Logger log = LogManager.getLogger(Callable.class.getName());
 
   private final ExecContext eCtx;
-  private final Method ptMethod;
+  private final MethodHandle ptMethod;
   private final Object obj;
 
   public Callable()  {
@@ -34,9 +34,10 @@ public class Callable {
 
   /*
    * For method calls on PT objects (i.e., PTRowset.Flush())
-   * or system func calls (i.e., GlobalFnLibrary's Lower()).
+   * or system func calls (i.e., GlobalFnLibrary's Lower()); the handle
+   * is obtained from the MethodDispatchTable of the object's class.
    */
-  public Callable(final Method m, final Object o) {
+  public Callable(final MethodHandle m, final Object o) {
     this.eCtx = null;
     this.ptMethod = m;
     this.obj = o;
@@ -52,21 +53,19 @@ public class Callable {
 
   public void invokePtMethod() {
     try {
-      this.ptMethod.invoke(this.obj);
-    } catch (final java.lang.IllegalAccessException iae) {
-      throw new OPSVMachRuntimeException(iae.getMessage(), iae);
-    } catch (final java.lang.reflect.InvocationTargetException ite) {
+      this.ptMethod.invokeExact(this.obj);
+    } catch (final OPSVMachRuntimeException opsvmre) {
       /*
-       * If the cause of the ITE is due to an OPS RTE, throw the underlying
-       * cause; otherwise, certain OPS RTEs that are checked by the interpreter
-       * (i.e., OPSIllegalNonCBufferFieldAccessAttempt) will see the ITE rather
-       * than the underlying OPS RTE, and therefore will not catch it.
+       * OPS RTEs must propagate as is, as certain of them are checked
+       * by the interpreter (i.e., OPSIllegalNonCBufferFieldAccessAttempt).
        */
-      if (ite.getCause() instanceof OPSVMachRuntimeException) {
-        throw (OPSVMachRuntimeException) ite.getCause();
-      } else {
-        throw new OPSVMachRuntimeException(ite.getMessage(), ite);
-      }
+      throw opsvmre;
+    } catch (final Exception e) {
+      throw new OPSVMachRuntimeException(e.getMessage(), e);
+    } catch (final Error err) {
+      throw err;
+    } catch (final Throwable t) {
+      throw new OPSVMachRuntimeException(t.toString());
     }
   }
 }
@@ -24,18 +24,14 @@ import org.openpplsoft.pt.PSDefn;
 
 public class ComponentStructureVerifier {
 
-  private static boolean hasBeenVerified = false;
-
   private static Logger log = LogManager.getLogger(
       ComponentStructureVerifier.class.getName());
 
-  public static boolean hasBeenVerified() {
-    return hasBeenVerified;
-  }
-
   public static void verify(ComponentRuntimeProfile profile) {
 
-    if(hasBeenVerified) { return; }
+    if(RuntimeSession.current().hasComponentStructureBeenVerified()) {
+      return;
+    }
     String pnlgrpname = profile.getComponentName();
 
     int indent = 0;
@@ -130,7 +126,7 @@ public class ComponentStructureVerifier {
         throw new OPSVMachRuntimeException("Expected END-COMPONENT-STRUCTURE in .structure file.");
       }
 
-      hasBeenVerified = true;
+      RuntimeSession.current().setComponentStructureVerified();
     } catch(final IOException ioe) {
       throw new OPSVMachRuntimeException(ioe.getMessage(), ioe);
     }
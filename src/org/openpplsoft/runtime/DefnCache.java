@@ -7,8 +7,11 @@
 
 package org.openpplsoft.runtime;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -19,33 +22,39 @@ import org.openpplsoft.pt.peoplecode.*;
 /**
  * Central repository for cached PeopleTools
  * definitions (records, programs, pages, etc.).
+ * The cache is safe for use by multiple threads. Definitions that are
+ * loaded in their constructors are loaded exactly once per key; threads
+ * that miss on a key that is already being loaded wait for that load to
+ * complete. Definitions with a separate init step (records, pages,
+ * app packages and programs) are cached on creation and synchronize
+ * their own initialization, which gives them the same guarantee.
  */
 public final class DefnCache {
 
-  private static Map<String, Component> components;
-  private static Map<String, Record> records;
-  private static Map<String, PeopleCodeProg> programs;
-  private static Map<String, Page> pages;
-  private static Map<String, AppPackage> appPackages;
-  private static Map<String, Menu> menus;
-  private static Map<Integer, MsgSet> msgSets;
-  private static Map<String, HTML> html;
-  private static Map<String, SQL> sql;
-  private static Map<String, User> users;
+  private static ConcurrentMap<String, FutureTask<Component>> components;
+  private static ConcurrentMap<String, Record> records;
+  private static ConcurrentMap<String, PeopleCodeProg> programs;
+  private static ConcurrentMap<String, Page> pages;
+  private static ConcurrentMap<String, AppPackage> appPackages;
+  private static ConcurrentMap<String, FutureTask<Menu>> menus;
+  private static ConcurrentMap<Integer, FutureTask<MsgSet>> msgSets;
+  private static ConcurrentMap<String, FutureTask<HTML>> html;
+  private static ConcurrentMap<String, FutureTask<SQL>> sql;
+  private static ConcurrentMap<String, FutureTask<User>> users;
 
   private static Logger log = LogManager.getLogger(DefnCache.class.getName());
 
   static {
-    components = new HashMap<String, Component>();
-    records = new HashMap<String, Record>();
-    programs = new HashMap<String, PeopleCodeProg>();
-    pages = new HashMap<String, Page>();
-    appPackages = new HashMap<String, AppPackage>();
-    menus = new HashMap<String, Menu>();
-    msgSets = new HashMap<Integer, MsgSet>();
-    html = new HashMap<String, HTML>();
-    sql = new HashMap<String, SQL>();
-    users = new HashMap<String, User>();
+    components = new ConcurrentHashMap<String, FutureTask<Component>>();
+    records = new ConcurrentHashMap<String, Record>();
+    programs = new ConcurrentHashMap<String, PeopleCodeProg>();
+    pages = new ConcurrentHashMap<String, Page>();
+    appPackages = new ConcurrentHashMap<String, AppPackage>();
+    menus = new ConcurrentHashMap<String, FutureTask<Menu>>();
+    msgSets = new ConcurrentHashMap<Integer, FutureTask<MsgSet>>();
+    html = new ConcurrentHashMap<String, FutureTask<HTML>>();
+    sql = new ConcurrentHashMap<String, FutureTask<SQL>>();
+    users = new ConcurrentHashMap<String, FutureTask<User>>();
   }
 
   private DefnCache() {}
@@ -66,13 +75,10 @@ public final class DefnCache {
     }
 
     final String key = pnlgrpname.concat(".").concat(market);
-    Component c = components.get(key);
-    if (c == null) {
+    return getOrLoad(components, key, () -> {
       log.debug("Caching component defn for {}", key);
-      c = new Component(pnlgrpname, market);
-      components.put(key, c);
-    }
-    return c;
+      return new Component(pnlgrpname, market);
+    });
   }
 
   /**
@@ -96,13 +102,28 @@ public final class DefnCache {
       return null;
     }
 
+    final Record r = getUninitializedRecord(recName);
+    r.init();
+    return r;
+  }
+
+  /**
+   * Retrieve a record defn from the cache without initializing it, creating
+   * the cache entry if necessary; used by DefnPrefetcher to initialize
+   * records in bulk.
+   * @param recName the name of the record defn to retrieve/cache.
+   * @return the cached (possibly uninitialized) record defn
+   */
+  static Record getUninitializedRecord(final String recName) {
     Record r = records.get(recName);
     if (r == null) {
-      log.debug("Caching record defn for {}", recName);
-      r = new Record(recName);
-      records.put(recName, r);
+      final Record newRec = new Record(recName);
+      r = records.putIfAbsent(recName, newRec);
+      if (r == null) {
+        log.debug("Caching record defn for {}", recName);
+        r = newRec;
+      }
     }
-    r.init();
     return r;
   }
 
@@ -120,9 +141,12 @@ public final class DefnCache {
 
     Page p = pages.get(pnlName);
     if (p == null) {
-      log.debug("Caching page defn for {}", pnlName);
-      p = new Page(pnlName);
-      pages.put(p.getPNLNAME(), p);
+      final Page newPage = new Page(pnlName);
+      p = pages.putIfAbsent(newPage.getPNLNAME(), newPage);
+      if (p == null) {
+        log.debug("Caching page defn for {}", pnlName);
+        p = newPage;
+      }
     }
     p.init();
     p.discoverPagePC();
@@ -139,9 +163,12 @@ public final class DefnCache {
 
     AppPackage ap = appPackages.get(packageName);
     if (ap == null) {
-      log.debug("Caching app package defn for {}", packageName);
-      ap = new AppPackage(packageName);
-      appPackages.put(ap.getRootPkgName(), ap);
+      final AppPackage newPkg = new AppPackage(packageName);
+      ap = appPackages.putIfAbsent(newPkg.getRootPkgName(), newPkg);
+      if (ap == null) {
+        log.debug("Caching app package defn for {}", packageName);
+        ap = newPkg;
+      }
     }
     ap.discoverAppClassPC();
     return ap;
@@ -155,13 +182,14 @@ public final class DefnCache {
    * @return the cached program
    */
   public static PeopleCodeProg getProgram(final PeopleCodeProg prog) {
-    PeopleCodeProg p = programs.get(prog.getDescriptor());
+    PeopleCodeProg p = programs.putIfAbsent(prog.getDescriptor(), prog);
     if (p == null) {
       log.debug("Caching program defn for {}", prog.getDescriptor());
       p = prog;
-      programs.put(p.getDescriptor(), p);
     }
-    p.init();
+    if (!DefnPrefetcher.initFromStagedRows(p)) {
+      p.init();
+    }
     return p;
   }
 
@@ -181,13 +209,10 @@ public final class DefnCache {
    * @return the cached menu, or null if not in cache
    */
   public static Menu getMenu(final String menuName) {
-    Menu m = menus.get(menuName);
-    if (m == null) {
+    return getOrLoad(menus, menuName, () -> {
       log.debug("Caching menu defn for {}", menuName);
-      m = new Menu(menuName);
-      menus.put(m.getMenuName(), m);
-    }
-    return m;
+      return new Menu(menuName);
+    });
   }
 
   /**
@@ -196,42 +221,62 @@ public final class DefnCache {
    * @return the cached msg set, or null if not in cache
    */
   public static MsgSet getMsgSet(final int msgSetNum) {
-    MsgSet m = msgSets.get(msgSetNum);
-    if (m == null) {
+    return getOrLoad(msgSets, msgSetNum, () -> {
       log.debug("Caching msg set defn for {}", msgSetNum);
-      m = new MsgSet(msgSetNum);
-      msgSets.put(m.getMsgSetNbr(), m);
-    }
-    return m;
+      return new MsgSet(msgSetNum);
+    });
   }
 
   public static HTML getHTML(final String htmlDefnName) {
-    HTML h = html.get(htmlDefnName);
-    if (h == null) {
+    return getOrLoad(html, htmlDefnName, () -> {
       log.debug("Caching HTML defn for {}", htmlDefnName);
-      h = new HTML(htmlDefnName);
-      html.put(htmlDefnName, h);
-    }
-    return h;
+      return new HTML(htmlDefnName);
+    });
   }
 
   public static SQL getSQL(final String sqlDefnName) {
-    SQL s = sql.get(sqlDefnName);
-    if (s == null) {
+    return getOrLoad(sql, sqlDefnName, () -> {
       log.debug("Caching SQL defn for {}", sqlDefnName);
-      s = new SQL(sqlDefnName);
-      sql.put(sqlDefnName, s);
-    }
-    return s;
+      return new SQL(sqlDefnName);
+    });
   }
 
   public static User getUser(final String oprid) {
-    User u = users.get(oprid);
-    if (u == null) {
+    return getOrLoad(users, oprid, () -> {
       log.debug("Caching User defn for {}", oprid);
-      u = new User(oprid);
-      users.put(oprid, u);
+      return new User(oprid);
+    });
+  }
+
+  /**
+   * Retrieves the defn cached under the given key, loading it with
+   * the provided loader if it is not yet cached. Only one thread runs the
+   * loader for a given key; concurrent callers wait on its result. If the
+   * load fails, the key is evicted so that a later call can retry.
+   */
+  private static <K, V> V getOrLoad(final ConcurrentMap<K, FutureTask<V>> table,
+      final K key, final Callable<V> loader) {
+    FutureTask<V> task = table.get(key);
+    if (task == null) {
+      final FutureTask<V> newTask = new FutureTask<V>(loader);
+      task = table.putIfAbsent(key, newTask);
+      if (task == null) {
+        task = newTask;
+        newTask.run();
+      }
+    }
+
+    try {
+      return task.get();
+    } catch (final InterruptedException ie) {
+      Thread.currentThread().interrupt();
+      throw new OPSVMachRuntimeException(ie.getMessage(), ie);
+    } catch (final ExecutionException ee) {
+      table.remove(key, task);
+      if (ee.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) ee.getCause();
+      }
+      throw new OPSVMachRuntimeException(ee.getMessage(), ee);
     }
-    return u;
   }
 }
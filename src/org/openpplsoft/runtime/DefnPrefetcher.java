@@ -0,0 +1,400 @@
+/*===---------------------------------------------------------------------===*\
+|*                       The OpenPplSoft Runtime Project                     *|
+|*                                                                           *|
+|*              This file is distributed under the MIT License.              *|
+|*                         See LICENSE.md for details.                       *|
+\*===---------------------------------------------------------------------===*/
+
+package org.openpplsoft.runtime;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import org.openpplsoft.pt.Component;
+import org.openpplsoft.pt.PSDefn;
+import org.openpplsoft.pt.Page;
+import org.openpplsoft.pt.Record;
+import org.openpplsoft.pt.pages.PFlag;
+import org.openpplsoft.pt.pages.PgToken;
+import org.openpplsoft.pt.peoplecode.PeopleCodeProg;
+import org.openpplsoft.sql.MaterializedResult;
+import org.openpplsoft.sql.OPSResultSet;
+import org.openpplsoft.sql.OPSStmt;
+import org.openpplsoft.sql.StmtLibrary;
+
+/**
+ * Loads definitions needed by a component ahead of their first use, using
+ * IN-list queries that each cover many definitions, rather than issuing the
+ * per-definition queries one at a time as definitions are first referenced.
+ * On high-latency database links this removes most of the round trips made
+ * while a component is opened.
+ *
+ * PeopleCode programs are prefetched by loading the bytecode and reference
+ * tables of every program attached to a batch of objects (i.e., records)
+ * up front, then running the usual program discovery routines, which take
+ * the prefetched rows from this class rather than querying for each
+ * program. Program batches can be loaded concurrently by setting the
+ * "prefetchThreads" system property; each batch is loaded in its own
+ * runtime session, and so on its own pooled connection.
+ *
+ * Prefetching is enabled with the "prefetchDefns" system property. Only
+ * unenforced metadata queries are replaced, so enforced emissions are
+ * unaffected, but the number and order of unenforced emissions differ from
+ * a non-prefetching run; it is therefore meant for non-verifying runs.
+ */
+public final class DefnPrefetcher {
+
+  private static Logger log =
+      LogManager.getLogger(DefnPrefetcher.class.getName());
+
+  // Oracle limits IN lists to 1000 expressions.
+  private static final int MAX_IN_LIST_SIZE = 500;
+
+  // Objects per program batch; kept small as each object can have
+  // dozens of programs, and so that batches can be spread across threads.
+  private static final int MAX_PROG_BATCH_SIZE = 50;
+
+  private static final String[] PROG_KEY_COLS = {
+      "OBJECTID1", "OBJECTVALUE1", "OBJECTID2", "OBJECTVALUE2",
+      "OBJECTID3", "OBJECTVALUE3", "OBJECTID4", "OBJECTVALUE4",
+      "OBJECTID5", "OBJECTVALUE5", "OBJECTID6", "OBJECTVALUE6",
+      "OBJECTID7", "OBJECTVALUE7"};
+
+  private static boolean isEnabled;
+  private static ExecutorService progLoaderPool;
+
+  /*
+   * Prefetched program rows, keyed by program key; these are only staged
+   * while the thread that fetched them runs the discovery routines.
+   */
+  private static final ThreadLocal<Map<String, StagedProgram>>
+      stagedPrograms = new ThreadLocal<Map<String, StagedProgram>>();
+
+  static {
+    isEnabled = Boolean.getBoolean("prefetchDefns");
+
+    final String threads = System.getProperty("prefetchThreads");
+    if (threads != null && threads.trim().length() > 0
+        && Integer.parseInt(threads.trim()) > 1) {
+      final AtomicInteger threadCounter = new AtomicInteger();
+      progLoaderPool = Executors.newFixedThreadPool(
+          Integer.parseInt(threads.trim()), new ThreadFactory() {
+            public Thread newThread(final Runnable r) {
+              final Thread t = new Thread(r,
+                  "defn-prefetch-" + threadCounter.incrementAndGet());
+              t.setDaemon(true);
+              return t;
+            }
+          });
+    }
+  }
+
+  private DefnPrefetcher() {}
+
+  public static boolean isEnabled() {
+    return isEnabled;
+  }
+
+  /**
+   * Loads the defns of all records referenced by fields on the component's
+   * pages (and their subpages, which must already be loaded), followed by
+   * the defns of their subrecords, and then the PeopleCode programs
+   * attached to those records. Secpages are not loaded here, as that
+   * would reorder the enforced page defn queries; records referenced only
+   * on secpages are loaded on first use as usual.
+   * @param c the component whose record defns should be loaded
+   */
+  public static void prefetchRecordDefns(final Component c) {
+    Set<String> recNames = new LinkedHashSet<String>();
+    recNames.add(c.getSearchRecordName());
+    final Set<String> visitedPages = new LinkedHashSet<String>();
+    for (final Page p : c.getPages()) {
+      collectRecordNames(p, recNames, visitedPages);
+    }
+
+    final Set<String> allRecNames = new LinkedHashSet<String>();
+    int numLoaded = 0;
+    int numRounds = 0;
+    while (!recNames.isEmpty()) {
+      allRecNames.addAll(recNames);
+      final List<Record> loaded = loadRecordDefns(recNames);
+      numLoaded += loaded.size();
+      numRounds++;
+
+      // Subrecords are only known once their parent records are loaded.
+      recNames = new LinkedHashSet<String>();
+      for (final Record r : loaded) {
+        recNames.addAll(r.getSubrecordNames());
+      }
+    }
+
+    log.info("Prefetched {} record defns for {} ({} rounds).",
+        numLoaded, c.getComponentName(), numRounds);
+
+    final List<Record> recsWithDefns = new ArrayList<Record>();
+    for (final String recName : allRecNames) {
+      final Record r = DefnCache.getUninitializedRecord(recName);
+      if (r.hasBeenInitialized()) {
+        recsWithDefns.add(r);
+      }
+    }
+    prefetchRecordPrograms(recsWithDefns);
+  }
+
+  /**
+   * Loads the component's PeopleCode programs, along with those attached
+   * to its search record, in bulk.
+   * @param c the component whose programs should be loaded
+   */
+  public static void prefetchComponentPrograms(final Component c) {
+    final Record searchRec = DefnCache.getRecord(c.getSearchRecordName());
+    final Set<String> recNames = new LinkedHashSet<String>();
+    recNames.add(searchRec.getRecName());
+    recNames.addAll(searchRec.getSubrecordNames());
+
+    final Map<String, StagedProgram> staged =
+        new HashMap<String, StagedProgram>();
+    staged.putAll(fetchPrograms(PSDefn.COMPONENT,
+        Collections.singletonList(c.getComponentName())));
+    staged.putAll(fetchPrograms(PSDefn.RECORD, recNames));
+
+    log.info("Prefetched {} component and search record programs for {}.",
+        staged.size(), c.getComponentName());
+
+    stagedPrograms.set(staged);
+    try {
+      c.getListOfComponentPC();
+      searchRec.discoverRecordPC();
+    } finally {
+      stagedPrograms.remove();
+    }
+  }
+
+  private static void prefetchRecordPrograms(final List<Record> recs) {
+    final Set<String> recNames = new LinkedHashSet<String>();
+    for (final Record r : recs) {
+      recNames.add(r.getRecName());
+    }
+
+    final Map<String, StagedProgram> staged =
+        fetchPrograms(PSDefn.RECORD, recNames);
+    log.info("Prefetched {} record programs for {} records.",
+        staged.size(), recs.size());
+
+    stagedPrograms.set(staged);
+    try {
+      for (final Record r : recs) {
+        r.discoverRecordPC();
+      }
+    } finally {
+      stagedPrograms.remove();
+    }
+  }
+
+  /**
+   * Initializes a newly cached program from rows prefetched by the calling
+   * thread, if there are any for it.
+   * @param prog the program to initialize
+   * @return true if the program was initialized from prefetched rows;
+   *    false if the caller must initialize it as usual
+   */
+  static boolean initFromStagedRows(final PeopleCodeProg prog) {
+    final Map<String, StagedProgram> staged = stagedPrograms.get();
+    if (staged == null) {
+      return false;
+    }
+    final StagedProgram sp = staged.remove(
+        MaterializedResult.partitionKey(prog.getObjectKeyVals()));
+    if (sp == null) {
+      return false;
+    }
+    prog.initFromRows(new OPSResultSet(sp.progTxtRows),
+        new OPSResultSet(sp.refRows));
+    return true;
+  }
+
+  /*
+   * Loads the rows of all programs attached to the named objects of the
+   * given type, keyed by program key; batches are spread across the
+   * loader pool if one is configured.
+   */
+  private static Map<String, StagedProgram> fetchPrograms(
+      final String objectId, final Collection<String> objectVals) {
+
+    final List<String> vals = new ArrayList<String>(objectVals);
+    final List<String[]> batches = new ArrayList<String[]>();
+    for (int start = 0; start < vals.size(); start += MAX_PROG_BATCH_SIZE) {
+      batches.add(vals.subList(start,
+          Math.min(start + MAX_PROG_BATCH_SIZE, vals.size()))
+          .toArray(new String[0]));
+    }
+
+    final Map<String, StagedProgram> staged =
+        new HashMap<String, StagedProgram>();
+    if (progLoaderPool == null || batches.size() < 2) {
+      for (final String[] batch : batches) {
+        staged.putAll(loadProgramBatch(objectId, batch));
+      }
+      return staged;
+    }
+
+    final List<Future<Map<String, StagedProgram>>> futures =
+        new ArrayList<Future<Map<String, StagedProgram>>>();
+    for (final String[] batch : batches) {
+      futures.add(progLoaderPool.submit(() -> {
+        final RuntimeSession session = new RuntimeSession();
+        final RuntimeSession prev = session.bindToCurrentThread();
+        try {
+          return loadProgramBatch(objectId, batch);
+        } finally {
+          session.close();
+          RuntimeSession.rebind(prev);
+        }
+      }));
+    }
+    try {
+      for (final Future<Map<String, StagedProgram>> f : futures) {
+        staged.putAll(f.get());
+      }
+    } catch (final InterruptedException ie) {
+      Thread.currentThread().interrupt();
+      throw new OPSVMachRuntimeException(ie.getMessage(), ie);
+    } catch (final ExecutionException ee) {
+      throw new OPSVMachRuntimeException(ee.getMessage(), ee);
+    }
+    return staged;
+  }
+
+  private static Map<String, StagedProgram> loadProgramBatch(
+      final String objectId, final String[] objectVals) {
+    final String[] bindVals = new String[]{objectId};
+    final Map<String, MaterializedResult> progTxtRows =
+        query("query.PSPCMPROG_GetPROGTXT_Bulk", bindVals, objectVals)
+            .partitionBy(PROG_KEY_COLS, Collections.<String>emptyList());
+    final Map<String, MaterializedResult> refRows =
+        query("query.PSPCMPROG_GetRefs_Bulk", bindVals, objectVals)
+            .partitionBy(PROG_KEY_COLS, progTxtRows.keySet());
+
+    final Map<String, StagedProgram> staged =
+        new HashMap<String, StagedProgram>();
+    for (final Map.Entry<String, MaterializedResult> cursor
+        : progTxtRows.entrySet()) {
+      staged.put(cursor.getKey(), new StagedProgram(cursor.getValue(),
+          refRows.get(cursor.getKey())));
+    }
+    return staged;
+  }
+
+  private static void collectRecordNames(final Page p,
+      final Set<String> recNames, final Set<String> visitedPages) {
+
+    if (!visitedPages.add(p.getPNLNAME())) {
+      return;
+    }
+
+    for (final PgToken tok : p.getTokens()) {
+      if (tok.hasFlag(PFlag.SUBPAGE)) {
+        collectRecordNames(DefnCache.getPage(tok.getSubPnlName()),
+            recNames, visitedPages);
+      } else if (tok.getSubPnlName().length() == 0
+          && tok.getRecName() != null && tok.getFldName() != null
+          && tok.getRecName().length() > 0 && tok.getFldName().length() > 0
+          && !PSDefn.isSystemRecord(tok.getRecName())) {
+        recNames.add(tok.getRecName());
+      }
+    }
+  }
+
+  /*
+   * Initializes the uninitialized records among those named; returns the
+   * records that were initialized. Records without a PSRECDEFN row are
+   * left uninitialized so that the usual error is raised on first use.
+   */
+  private static List<Record> loadRecordDefns(
+      final Collection<String> recNames) {
+
+    final List<Record> toInit = new ArrayList<Record>();
+    for (final String recName : recNames) {
+      final Record r = DefnCache.getUninitializedRecord(recName);
+      if (!r.hasBeenInitialized()) {
+        toInit.add(r);
+      }
+    }
+
+    final List<Record> loaded = new ArrayList<Record>();
+    for (int start = 0; start < toInit.size(); start += MAX_IN_LIST_SIZE) {
+      final List<Record> batch = toInit.subList(start,
+          Math.min(start + MAX_IN_LIST_SIZE, toInit.size()));
+      final String[] names = new String[batch.size()];
+      final List<String> keys = new ArrayList<String>(batch.size());
+      for (int i = 0; i < names.length; i++) {
+        names[i] = batch.get(i).getRecName();
+        keys.add(names[i].trim());
+      }
+
+      final Map<String, MaterializedResult> defnRows =
+          query("query.PSRECDEFN_Bulk", names).partitionBy("RECNAME", keys);
+      final Map<String, MaterializedResult> fieldRows =
+          query("query.PSDBFIELD_PSRECFIELD_JOIN_Bulk", names)
+              .partitionBy("RECNAME", keys);
+      final Map<String, MaterializedResult> subrecRows =
+          query("query.PSDBFIELD_PSRECFIELD_JOIN_ForSubrecords_Bulk", names)
+              .partitionBy("RECNAME", keys);
+      final Map<String, MaterializedResult> labelRows =
+          query("query.PSDBFLDLBL_Bulk", names).partitionBy("RECNAME", keys);
+
+      for (final Record r : batch) {
+        final String key = r.getRecName().trim();
+        if (defnRows.get(key).getRowCount() == 0) {
+          log.debug("No PSRECDEFN row for {}; not prefetching it.", key);
+          continue;
+        }
+        r.initFromRows(new OPSResultSet(defnRows.get(key)),
+            new OPSResultSet(fieldRows.get(key)),
+            new OPSResultSet(subrecRows.get(key)),
+            new OPSResultSet(labelRows.get(key)));
+        loaded.add(r);
+      }
+    }
+    return loaded;
+  }
+
+  private static MaterializedResult query(final String uniqueLabel,
+      final String[] inListVals) {
+    return query(uniqueLabel, new String[]{}, inListVals);
+  }
+
+  private static MaterializedResult query(final String uniqueLabel,
+      final String[] bindVals, final String[] inListVals) {
+    try (final OPSStmt ostmt = StmtLibrary.getStaticSQLStmtWithInList(
+        uniqueLabel, bindVals, inListVals)) {
+      return ostmt.executeQueryAndMaterialize();
+    }
+  }
+
+  private static final class StagedProgram {
+    private final MaterializedResult progTxtRows;
+    private final MaterializedResult refRows;
+
+    private StagedProgram(final MaterializedResult p,
+        final MaterializedResult r) {
+      this.progTxtRows = p;
+      this.refRows = r;
+    }
+  }
+}
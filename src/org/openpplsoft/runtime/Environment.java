@@ -7,12 +7,9 @@
 
 package org.openpplsoft.runtime;
 
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Stack;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -20,51 +17,65 @@ import org.apache.logging.log4j.Logger;
 import org.openpplsoft.pt.User;
 import org.openpplsoft.types.*;
 
+/**
+ * The PeopleTools environment of a single runtime session: its global and
+ * component scopes, system variables and call stack. Each RuntimeSession
+ * owns one Environment; the static methods below operate on the
+ * Environment of the session bound to the calling thread.
+ */
 public class Environment {
 
-  private static Scope globalScope;
-  private static Scope componentScope;
+  private final Scope globalScope;
+  private final Scope componentScope;
 
   // i.e., XENCSDEV, ENTCSDEV (appears in PS URLs)
-  private static String name;
-  private static User user;
+  private String name;
+  private User user;
 
-  private static Map<String, PTPrimitiveType> systemVarTable;
+  private final Map<String, PTPrimitiveType> systemVarTable;
 
-  private static Stack<PTType> callStack;
+  private final CallStack callStack;
 
   private static Logger log = LogManager.getLogger(Environment.class.getName());
 
-  static {
+  /**
+   * Creates an empty environment; only RuntimeSession should call this.
+   */
+  Environment() {
 
-    systemVarTable = new HashMap<String, PTPrimitiveType>();
+    this.systemVarTable = new HashMap<String, PTPrimitiveType>();
 
     // Setup global and component scopes.
-    globalScope = new Scope(Scope.Lvl.GLOBAL);
-    componentScope = new Scope(Scope.Lvl.COMPONENT);
+    this.globalScope = new Scope(Scope.Lvl.GLOBAL);
+    this.componentScope = new Scope(Scope.Lvl.COMPONENT);
 
     // Initialize the call stack.
-    callStack = new Stack<PTType>();
+    this.callStack = new CallStack();
+  }
+
+  private static Environment current() {
+    return RuntimeSession.current().getEnvironment();
   }
 
   public static void init(final String psEnviName, final String oprid) {
-    name = psEnviName;
-    user = DefnCache.getUser(oprid);
-    Environment.setSystemVar("%OperatorId", new PTString(user.getOprid()));
-    Environment.setSystemVar("%EmployeeId", new PTString(user.getEmplid()));
-    Environment.setSystemVar("%OperatorClass", new PTString(user.getOprClass()));
+    final Environment env = current();
+    env.name = psEnviName;
+    env.user = DefnCache.getUser(oprid);
+    Environment.setSystemVar("%OperatorId", new PTString(env.user.getOprid()));
+    Environment.setSystemVar("%EmployeeId", new PTString(env.user.getEmplid()));
+    Environment.setSystemVar("%OperatorClass", new PTString(env.user.getOprClass()));
   }
 
   public static Scope getGlobalScope() {
-    return globalScope;
+    return current().globalScope;
   }
 
   public static Scope getComponentScope() {
-    return componentScope;
+    return current().componentScope;
   }
 
   public static String getName() {
-    return name;
+    return current().name;
   }
 
   /**
@@ -74,52 +85,68 @@ public class Environment {
    * by value.
    */
   public static void pushToCallStack(final PTType p) {
-    if (p instanceof PTPrimitiveType) {
-      PTType copiedPrimitive = p.getOriginatingTypeConstraint().alloc();
-      ((PTPrimitiveType) copiedPrimitive).copyValueFrom((PTPrimitiveType) p);
-      log.debug("Push\tCallStack\t"
-          + (copiedPrimitive == null ? "null" : copiedPrimitive));
-      callStack.push(copiedPrimitive);
-    } else {
-      log.debug("Push\tCallStack\t" + (p == null ? "null" : p));
-      callStack.push(p);
-    }
+    final PTType copy = copyIfPrimitive(p);
+    log.debug("Push\tCallStack\t{}", copy);
+    current().callStack.push(copy);
   }
 
-  public static PTType popFromCallStack() {
-    PTType p = callStack.pop();
-    log.debug("Pop\tCallStack\t" + (p == null ? "null" : p));
+  /**
+   * Returns the provided PT data value from the call being made in the
+   * topmost call frame, by placing it in the frame's return slot; as with
+   * args, a value of primitive type is copied.
+   * @param p the value to return
+   */
+  public static void setReturnValue(final PTType p) {
+    final PTType copy = copyIfPrimitive(p);
+    log.debug("Return\tCallStack\t{}", copy);
+    current().callStack.setReturnValue(copy);
+  }
+
+  /**
+   * Pops the topmost call frame, along with its boundary and args,
+   * once the call made in it has completed.
+   * @return the value returned by the callee, or null if none was
+   */
+  public static PTType popCallFrame() {
+    final PTType p = current().callStack.popFrame();
+    log.debug("Pop\tCallStack\t{}", p);
     return p;
   }
 
-  public static PTType peekAtCallStack() {
-    return callStack.peek();
+  private static PTType copyIfPrimitive(final PTType p) {
+    if (p instanceof PTPrimitiveType) {
+      final PTType copiedPrimitive = p.getOriginatingTypeConstraint().alloc();
+      ((PTPrimitiveType) copiedPrimitive).copyValueFrom((PTPrimitiveType) p);
+      return copiedPrimitive;
+    }
+    return p;
   }
 
   public static int getCallStackSize() {
-    return callStack.size();
+    return current().callStack.size();
   }
 
   public static void setSystemVar(final String var, final PTPrimitiveType value) {
     value.setReadOnly();
-    systemVarTable.put(var, value);
+    current().systemVarTable.put(var, value);
   }
 
   public static PTPrimitiveType getSystemVar(final String var) {
+    final Environment env = current();
 
     PTPrimitiveType a = null;
     switch(var) {
       case "%UserId":
-        a = systemVarTable.get("%OperatorId");
+        a = env.systemVarTable.get("%OperatorId");
         break;
       case "%PanelGroup":
-        a = systemVarTable.get("%Component");
+        a = env.systemVarTable.get("%Component");
         break;
       case "%AsOfDate":
-        a = systemVarTable.get("%Date");
+        a = env.systemVarTable.get("%Date");
         break;
       default:
-        a = systemVarTable.get(var);
+        a = env.systemVarTable.get(var);
     }
 
     if(a == null) {
@@ -128,46 +155,43 @@ public class Environment {
     }
 
     /*
-     * There may be instances where a system variable is passed
-     * as an expression to a function that may then write to the
-     * identifier the arg has been bound to. Those cases require that we always
-     * pass a copy of the system variable, rather than the system variable itself,
-     * as the sysvar is read-only and such a write will trigger an RTE.
+     * The sysvar itself is returned, not a copy; it is read-only, and
+     * anything that could be written to afterward (args on the call stack,
+     * newly declared variables, assignment targets) receives a copy of its
+     * value at that point, so no copy need be made for the many
+     * reads that are never written.
      */
-    final PTPrimitiveType copy =
-        (PTPrimitiveType) a.getOriginatingTypeConstraint().alloc();
-    copy.copyValueFrom(a);
-    return copy;
+    return a;
   }
 
+  /**
+   * Takes all args pushed to the topmost call frame, dereferencing any
+   * references among them; they are left on the stack until the frame
+   * is popped.
+   * @return a view over the args, in the order in which they were pushed,
+   *    which must not be retained after the call returns
+   */
   public static List<PTType> getDereferencedArgsFromCallStack() {
-    List<PTType> args = new ArrayList<PTType>();
-    PTType p;
-    while(!((p = Environment.peekAtCallStack()) instanceof PTCallFrameBoundary)) {
-      PTType arg = Environment.popFromCallStack();
-      if (arg instanceof PTReference) {
-        arg = ((PTReference) arg).deref();
-      }
-      args.add(arg);
-    }
-
-    // The last argument appears at the top of the stack,
-    // so we need to reverse the argument list here before returning it.
-    Collections.reverse(args);
-    return args;
+    return takeArgsInTopFrame(true);
   }
 
+  /**
+   * Takes all args pushed to the topmost call frame; they are left on
+   * the stack until the frame is popped.
+   * @return a view over the args, in the order in which they were pushed,
+   *    which must not be retained after the call returns
+   */
   public static List<PTType> getArgsFromCallStack() {
+    return takeArgsInTopFrame(false);
+  }
 
-    List<PTType> args = new ArrayList<PTType>();
-    PTType p;
-    while(!((p = Environment.peekAtCallStack()) instanceof PTCallFrameBoundary)) {
-      args.add(Environment.popFromCallStack());
+  private static List<PTType> takeArgsInTopFrame(final boolean deref) {
+    final List<PTType> args = current().callStack.takeArgsInTopFrame(deref);
+    if (log.isDebugEnabled()) {
+      for (int i = args.size() - 1; i >= 0; i--) {
+        log.debug("Pop\tCallStack\t{}", args.get(i));
+      }
     }
-
-    // The last argument appears at the top of the stack,
-    // so we need to reverse the argument list here before returning it.
-    Collections.reverse(args);
     return args;
   }
 
@@ -269,7 +293,14 @@ public class Environment {
 
     if (rawSrc instanceof PTPrimitiveType) {
       if (lRef.deref() instanceof PTPrimitiveType) {
-        ((PTPrimitiveType) lRef.deref()).copyValueFrom((PTPrimitiveType) rawSrc);
+        final PTPrimitiveType lPrim = (PTPrimitiveType) lRef.deref();
+        // PTReference.pointTo refuses shared primitives, so this only
+        // fails if a reference was pointed to one some other way.
+        if (lPrim.isShared()) {
+          throw new OPSVMachRuntimeException("Illegal assignment; l-value "
+              + "refers to a shared primitive: " + lRef);
+        }
+        lPrim.copyValueFrom((PTPrimitiveType) rawSrc);
       } else if (lRef.deref() instanceof PTField) {
         final PTField fld = (PTField) lRef.deref();
         final PTPrimitiveType previousValue =
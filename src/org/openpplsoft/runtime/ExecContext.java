@@ -17,6 +17,7 @@ import org.apache.logging.log4j.Logger;
 import org.openpplsoft.pt.peoplecode.PeopleCodeProg;
 import org.openpplsoft.types.OPSTypeCheckException;
 import org.openpplsoft.types.PTAnyTypeConstraint;
+import org.openpplsoft.types.PTReference;
 import org.openpplsoft.types.PTType;
 import org.openpplsoft.types.PTTypeConstraint;
 
@@ -28,8 +29,25 @@ public abstract class ExecContext {
   private final PeopleCodeProg prog;
   private final LinkedList<Scope> scopeStack;
 
+  // The session in which this context was created, and in which it must run.
+  private final RuntimeSession session;
+
   protected ParseTree startNode;
 
+  /*
+   * References bound to the program's variable slots (see
+   * PeopleCodeProg.getVarSlot) the first time each variable is resolved
+   * in this context, along with the scope each was resolved in. A binding
+   * is dropped when a scope that shadows it is pushed or declares its
+   * identifier in this context, when the scope it was resolved in is
+   * popped, and, if it was resolved in the global scope, when a new
+   * identifier (which may shadow it) is declared in the component scope.
+   */
+  private PTReference<PTType>[] boundVars;
+  private Scope[] boundScopes;
+  private int boundComponentScopeGen;
+  private final Scope componentScope, globalScope;
+
   /*
    * The level (scroll) the program to be run resides on, along with
    * the row of the of that level (scroll) the program is being run in.
@@ -44,6 +62,9 @@ public abstract class ExecContext {
     this.prog = p;
     this.startNode = p.getParseTree();
     this.scopeStack = new LinkedList<Scope>();
+    this.session = RuntimeSession.current();
+    this.componentScope = Environment.getComponentScope();
+    this.globalScope = Environment.getGlobalScope();
   }
 
   public abstract String getMethodOrFuncName();
@@ -52,10 +73,45 @@ public abstract class ExecContext {
     return this.prog;
   }
 
+  public RuntimeSession getSession() {
+    return this.session;
+  }
+
   public ParseTree getStartNode() {
     return this.startNode;
   }
 
+  /**
+   * Pins the parse artefacts of this context's program while the context
+   * is run; if they were released since this context obtained its parse
+   * tree nodes, the nodes are obtained again from the rebuilt tree.
+   */
+  public void pinParseArtefacts() {
+    final ParseTree root = this.prog.pinParseArtefacts();
+    ParseTree node = this.startNode;
+    while (node != null && node.getParent() != null) {
+      node = node.getParent();
+    }
+    if (node != root) {
+      this.rebindParseTreeNodes();
+    }
+  }
+
+  /**
+   * Releases the pin taken by pinParseArtefacts.
+   */
+  public void unpinParseArtefacts() {
+    this.prog.unpinParseArtefacts();
+  }
+
+  /**
+   * Obtains the parse tree nodes held by this context from the program's
+   * current parse tree; subclasses holding other nodes must override this.
+   */
+  protected void rebindParseTreeNodes() {
+    this.startNode = this.prog.getParseTree();
+  }
+
   public LinkedList<Scope> getScopeStack() {
     return this.scopeStack;
   }
@@ -79,20 +135,30 @@ public abstract class ExecContext {
   public void pushScope(Scope s) {
     // Place the scope at the front of the linked list.
     this.scopeStack.push(s);
+    if (this.boundVars != null) {
+      for (final String id : s.getDeclaredIds()) {
+        this.unbindVar(id);
+      }
+    }
   }
 
   public void popScope() {
     // Remove the scope from the front of the linked list.
-    this.scopeStack.pop();
+    final Scope s = this.scopeStack.pop();
+    if (this.boundVars != null) {
+      this.unbindVarsResolvedIn(s);
+    }
   }
 
   public void declareLocalVar(final String id, final PTTypeConstraint tc) {
+    this.unbindVar(id);
     Scope topMostScope = this.scopeStack.peekFirst();
     topMostScope.declareVar(id, tc);
   }
 
   public void declareAndInitLocalVar(final String id, final PTTypeConstraint tc,
       final PTType initialVal) {
+    this.unbindVar(id);
     Scope topMostScope = this.scopeStack.peekFirst();
     try {
       topMostScope.declareAndInitVar(id, tc, initialVal);
@@ -101,27 +167,76 @@ public abstract class ExecContext {
     }
   }
 
+  /**
+   * Resolves a variable identifier, using the reference bound to the
+   * variable's slot in this context if it has already been resolved.
+   * @param id the variable identifier (including its leading '&')
+   * @return the reference to the variable
+   */
   public PTType resolveIdentifier(final String id) {
+    return this.resolveIdentifier(this.prog.getVarSlot(id), id);
+  }
+
+  /**
+   * Resolves a variable identifier whose slot is already known
+   * (i.e., from a lowered expression).
+   * @param slot the slot assigned to the identifier by the program,
+   *    or -1 if it has none
+   * @param id the variable identifier (including its leading '&')
+   * @return the reference to the variable
+   */
+  public PTType resolveIdentifier(final int slot, final String id) {
+    if (slot < 0) {
+      return this.resolveIdentifierInScopes(slot, id);
+    }
+
+    if (this.boundVars == null || slot >= this.boundVars.length) {
+      this.allocBoundVars();
+      if (slot >= this.boundVars.length) {
+        return this.resolveIdentifierInScopes(-1, id);
+      }
+    } else if (this.boundComponentScopeGen
+        != this.componentScope.getGeneration()) {
+      this.unbindVarsResolvedIn(this.globalScope);
+    } else if (this.boundVars[slot] != null) {
+      return this.boundVars[slot];
+    }
+
+    this.boundComponentScopeGen = this.componentScope.getGeneration();
+    return this.resolveIdentifierInScopes(slot, id);
+  }
+
+  /*
+   * Resolves the identifier against the scope chain, binding the
+   * resulting reference to the given slot (if it is not -1).
+   */
+  private PTReference<PTType> resolveIdentifierInScopes(final int slot,
+      final String id) {
 
     /*
      * Search through the stack of scopes;
      * most recently pushed scopes get first priority,
      * so search from front of list (stack) to back.
+     * Program-local and instance scopes are searched by slot.
      */
+    PTReference<PTType> ref;
     for(Scope scope : this.scopeStack) {
-      if(scope.isIdResolvable(id)) {
-        return scope.resolveVar(id);
+      ref = scope.resolveVar(this.prog, slot, id);
+      if (ref != null) {
+        return this.bindVar(slot, ref, scope);
       }
     }
 
     // If id is not in any local scopes, check the Component scope.
-    if(Environment.getComponentScope().isIdResolvable(id)) {
-      return Environment.getComponentScope().resolveVar(id);
+    ref = this.componentScope.resolveVar(id);
+    if (ref != null) {
+      return this.bindVar(slot, ref, this.componentScope);
     }
 
     // If id is still not resolved, check the Global scope.
-    if(Environment.getGlobalScope().isIdResolvable(id)) {
-      return Environment.getGlobalScope().resolveVar(id);
+    ref = this.globalScope.resolveVar(id);
+    if (ref != null) {
+      return this.bindVar(slot, ref, this.globalScope);
     }
 
     /*
@@ -131,7 +246,40 @@ public abstract class ExecContext {
      */
     this.declareLocalVar(id, new PTAnyTypeConstraint());
     log.info("Auto-declared identifier {} (Local scope, of type Any).", id);
-    return this.resolveIdentifier(id);
+    return this.resolveIdentifierInScopes(slot, id);
+  }
+
+  private PTReference<PTType> bindVar(final int slot,
+      final PTReference<PTType> ref, final Scope scope) {
+    if (slot >= 0) {
+      this.boundVars[slot] = ref;
+      this.boundScopes[slot] = scope;
+    }
+    return ref;
+  }
+
+  private void unbindVar(final String id) {
+    final int slot = this.prog.getVarSlot(id);
+    if (this.boundVars != null && slot >= 0 && slot < this.boundVars.length) {
+      this.boundVars[slot] = null;
+      this.boundScopes[slot] = null;
+    }
+  }
+
+  private void unbindVarsResolvedIn(final Scope s) {
+    for (int i = 0; i < this.boundScopes.length; i++) {
+      if (this.boundScopes[i] == s) {
+        this.boundVars[i] = null;
+        this.boundScopes[i] = null;
+      }
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private void allocBoundVars() {
+    final int numSlots = this.prog.getNumVarSlots();
+    this.boundVars = (PTReference<PTType>[]) new PTReference[numSlots];
+    this.boundScopes = new Scope[numSlots];
   }
 }
 
@@ -22,7 +22,8 @@ public class FunctionExecContext extends ExecContext {
   }
 
   private final String funcName;
-  private final ParseTree funcNodeToRun;
+  private final FuncDefnLoc defnLoc;
+  private ParseTree funcNodeToRun;
   private boolean hasTargetFuncBeenExecuted;
 
   public FunctionExecContext(
@@ -38,6 +39,7 @@ public class FunctionExecContext extends ExecContext {
     final PeopleCodeProg.FuncImpl fImpl = prog.getFunctionImpl(fnName);
     this.funcName = fImpl.funcName;
     this.funcNodeToRun = fImpl.parseTreeNode;
+    this.defnLoc = loc;
 
     // If the function to be executed is defined on the same
     // program that is currently being executed, override the start
@@ -50,6 +52,16 @@ public class FunctionExecContext extends ExecContext {
     }
   }
 
+  @Override
+  protected void rebindParseTreeNodes() {
+    super.rebindParseTreeNodes();
+    this.funcNodeToRun =
+        this.getProg().getFunctionImpl(this.funcName).parseTreeNode;
+    if (this.defnLoc == FuncDefnLoc.INTERNAL) {
+      this.startNode = this.funcNodeToRun;
+    }
+  }
+
   public ParseTree getFuncNodeToRun() {
     return this.funcNodeToRun;
   }
@@ -7,7 +7,7 @@
 
 package org.openpplsoft.runtime;
 
-import java.lang.reflect.Method;
+import java.lang.invoke.MethodHandle;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.util.ArrayList;
@@ -30,28 +30,28 @@ public class GlobalFnLibrary {
       GlobalFnLibrary.class.getName());
   public InterpretSupervisor interpretSupervisor;
 
+  // Built when the library is loaded rather than on the first call.
+  private static MethodDispatchTable dispatchTable;
+
+  static {
+    dispatchTable = MethodDispatchTable.forClass(GlobalFnLibrary.class);
+  }
+
   public GlobalFnLibrary(final InterpretSupervisor supervisor) {
     this.interpretSupervisor = supervisor;
   }
 
   public static boolean hasFuncNamed(final String id) {
-    try {
-      final Method method = GlobalFnLibrary.class
-          .getMethod(id, new Class[0]);
-    } catch (final NoSuchMethodException nsme) {
-      return false;
-    }
-    return true;
+    return dispatchTable.lookup(id) != null;
   }
 
   public Callable getFuncCallable(final String id) {
-    try {
-      final Method method = this.getClass().getMethod(id, new Class[0]);
-      return new Callable(method, this);
-    } catch (final NoSuchMethodException nsme) {
+    final MethodHandle method = dispatchTable.lookup(id);
+    if (method == null) {
       throw new OPSVMachRuntimeException(
           "No global function exists for identifier: " + id);
     }
+    return new Callable(method, this);
   }
 
   /*
@@ -103,12 +103,12 @@ public class GlobalFnLibrary {
   public void None() {
     for(PTType arg : Environment.getDereferencedArgsFromCallStack()) {
       if(doesContainValue(arg)) {
-        Environment.pushToCallStack(new PTBoolean(false));
+        Environment.setReturnValue(new PTBoolean(false));
         return;
       }
     }
 
-    Environment.pushToCallStack(new PTBoolean(true));
+    Environment.setReturnValue(new PTBoolean(true));
   }
 
   /*
@@ -119,11 +119,11 @@ public class GlobalFnLibrary {
   public void All() {
     for(PTType arg : Environment.getDereferencedArgsFromCallStack()) {
       if(!doesContainValue(arg)) {
-        Environment.pushToCallStack(new PTBoolean(false));
+        Environment.setReturnValue(new PTBoolean(false));
         return;
       }
     }
-    Environment.pushToCallStack(new PTBoolean(true));
+    Environment.setReturnValue(new PTBoolean(true));
   }
 
   @PeopleToolsImplementation
@@ -182,7 +182,7 @@ public class GlobalFnLibrary {
       b.append(str.read());
     }
 
-    Environment.pushToCallStack(new PTString(b.toString()));
+    Environment.setReturnValue(new PTString(b.toString()));
     }
 
   @PeopleToolsImplementation
@@ -193,7 +193,7 @@ public class GlobalFnLibrary {
       throw new OPSVMachRuntimeException("Expected single string arg.");
     }
 
-    Environment.pushToCallStack(
+    Environment.setReturnValue(
         new PTInteger(((PTString) args.get(0)).read().length()));
   }
 
@@ -208,7 +208,7 @@ public class GlobalFnLibrary {
     if(args.size() != 0) {
       throw new OPSVMachRuntimeException("Expected zero arguments.");
     }
-    Environment.pushToCallStack(new PTBoolean(false));
+    Environment.setReturnValue(new PTBoolean(false));
   }
 
   @PeopleToolsImplementation
@@ -225,7 +225,7 @@ public class GlobalFnLibrary {
     final PTStandaloneRecord rec = new PTRecordTypeConstraint().allocStandaloneRecord(null, recDefn);
 
     rec.setDefault();
-    Environment.pushToCallStack(rec);
+    Environment.setReturnValue(rec);
   }
 
   @PeopleToolsImplementation
@@ -242,7 +242,7 @@ public class GlobalFnLibrary {
    final PTStandaloneRowset newRowset =
        new PTRowsetTypeConstraint().allocStandaloneRowset(null, recDefn);
 
-    Environment.pushToCallStack(newRowset);
+    Environment.setReturnValue(newRowset);
   }
 
   @PeopleToolsImplementation
@@ -270,7 +270,7 @@ public class GlobalFnLibrary {
       throw new OPSVMachRuntimeException("Expected zero arguments.");
     }
 
-    Environment.pushToCallStack(ComponentBuffer.getLevelZeroRowset());
+    Environment.setReturnValue(ComponentBuffer.getLevelZeroRowset());
   }
 
   @PeopleToolsImplementation
@@ -306,11 +306,10 @@ public class GlobalFnLibrary {
      * states that this is the behavior that occurs, unless .Clone() is used.
      */
     for(int i = 0; i < initialSize; i++) {
-      throw new OPSVMachRuntimeException("Must support array instantiation in "+
-        "CreateArrayRept; make sure to check toString() output.");
+      newArray.internalPush(args.get(0));
     }
 
-    Environment.pushToCallStack(newArray);
+    Environment.setReturnValue(newArray);
   }
 
   @PeopleToolsImplementation
@@ -397,7 +396,7 @@ public class GlobalFnLibrary {
             || ((authorizedActions & UPDATE_DISPLAY_MASK) > 0)
                    && actionMode.equals("U")) {
           log.debug("IsMenuItemAuthorized: found permissible record, returning True.");
-          Environment.pushToCallStack(new PTBoolean(true));
+          Environment.setReturnValue(new PTBoolean(true));
           return;
         }
       }
@@ -407,7 +406,7 @@ public class GlobalFnLibrary {
     // access to the menu item is not authorized.
     log.debug("IsMenuItemAuthorized: no permissible records found,"
       + " returning False.");
-    Environment.pushToCallStack(new PTBoolean(false));
+    Environment.setReturnValue(new PTBoolean(false));
   }
 
   @PeopleToolsImplementation
@@ -440,7 +439,7 @@ public class GlobalFnLibrary {
       log.debug("MsgGetText found no msg set with setnbr={}; "
           + "returning default message provided: {}", msgSetNbr,
           ((PTString) args.get(2)).read());
-      Environment.pushToCallStack(args.get(2));
+      Environment.setReturnValue(args.get(2));
       return;
     }
 
@@ -456,7 +455,7 @@ public class GlobalFnLibrary {
       log.debug("MsgGetText found no msg with setnbr={} and msgnbr={}; "
           + "returning default message provided: {}", msgSetNbr, msgNbr,
           ((PTString) args.get(2)).read());
-      Environment.pushToCallStack(args.get(2));
+      Environment.setReturnValue(args.get(2));
       return;
     }
 
@@ -470,7 +469,7 @@ public class GlobalFnLibrary {
     }
 
     final String msg = msgSet.getMessage(msgNbr, msgBindVals);
-    Environment.pushToCallStack(new PTString(msg));
+    Environment.setReturnValue(new PTString(msg));
   }
 
   @PeopleToolsImplementation
@@ -541,7 +540,7 @@ public class GlobalFnLibrary {
     log.debug("GenerateComponentContentURL: From args, generated url: {}",
       url.toString());
 
-    Environment.pushToCallStack(new PTString(url.toString()));
+    Environment.setReturnValue(new PTString(url.toString()));
   }
 
   @PeopleToolsImplementation
@@ -564,7 +563,7 @@ public class GlobalFnLibrary {
     log.debug("Truncated {} to have {} decimal digits; result is: {}",
       bigDec, desiredDecimalDigits, truncatedBigDec);
 
-    Environment.pushToCallStack(new PTNumber(truncatedBigDec));
+    Environment.setReturnValue(new PTNumber(truncatedBigDec));
   }
 
   @PeopleToolsImplementation
@@ -578,7 +577,7 @@ public class GlobalFnLibrary {
           + "of type PTInteger to String.");
     }
 
-    Environment.pushToCallStack(
+    Environment.setReturnValue(
         new PTString(((PTInteger) args.get(0)).readAsString()));
   }
 
@@ -598,7 +597,7 @@ public class GlobalFnLibrary {
     // If no additional args were provided, there is no need to look for
     // bind placeholders in the html text.
     if (args.size() == 1) {
-      Environment.pushToCallStack(new PTString(html.getHTMLText()));
+      Environment.setReturnValue(new PTString(html.getHTMLText()));
       return;
     }
 
@@ -626,7 +625,7 @@ public class GlobalFnLibrary {
       htmlStr = bindMatcher.replaceAll(((PTString) args.get(i)).read());
     }
 
-    Environment.pushToCallStack(new PTString(htmlStr));
+    Environment.setReturnValue(new PTString(htmlStr));
   }
 
   @PeopleToolsImplementation
@@ -644,7 +643,7 @@ public class GlobalFnLibrary {
 
     // If the str is less than 2 chars long, return it's uppercased form.
     if (str.length() < 2) {
-      Environment.pushToCallStack(new PTString(str.toUpperCase()));
+      Environment.setReturnValue(new PTString(str.toUpperCase()));
     }
 
     /*
@@ -668,7 +667,7 @@ public class GlobalFnLibrary {
     bindMatcher.appendTail(sb);
 
     // At this point, string is ready to be returned to caller.
-    Environment.pushToCallStack(new PTString(sb.toString()));
+    Environment.setReturnValue(new PTString(sb.toString()));
   }
 
   @PeopleToolsImplementation
@@ -682,7 +681,7 @@ public class GlobalFnLibrary {
           + "of type PTString to Lower.");
     }
 
-    Environment.pushToCallStack(
+    Environment.setReturnValue(
         new PTString(((PTString) args.get(0)).read().toLowerCase()));
   }
 
@@ -721,7 +720,7 @@ public class GlobalFnLibrary {
     // available for operations like Fetch.
     sqlObj.executeSql();
 
-    Environment.pushToCallStack(sqlObj);
+    Environment.setReturnValue(sqlObj);
   }
 
   @PeopleToolsImplementation
@@ -747,16 +746,16 @@ public class GlobalFnLibrary {
       sqlCmd = sqlCmd.replaceFirst("Select", "SELECT ");
     }
 
-    // Note: this regex uses positve lookbehind and lookahead.
-    Pattern bindIdxPattern = Pattern.compile("(?<=\\s*)(:(\\d+))(?=\\s?)");
-    Matcher bindIdxMatcher = bindIdxPattern.matcher(sqlCmd);
+    // Numbered bind indices are replaced with question marks when the
+    // template is compiled; this is done once for each distinct SQL text.
+    final SQLTemplate template = SQLTemplate.forSql(sqlCmd);
     List<String> bindVals = new ArrayList<String>();
 
     int maxArgIdx = 0;
 
-    while (bindIdxMatcher.find()) {
+    for (int i = 0; i < template.getNumBinds(); i++) {
 
-      final int argIdx = Integer.parseInt(bindIdxMatcher.group(2));
+      final int argIdx = template.getBindIdx(i);
 
       if (argIdx >= args.size()) {
         throw new OPSVMachRuntimeException("Expected another bind expr "
@@ -774,11 +773,7 @@ public class GlobalFnLibrary {
       }
     }
 
-    // Replace all numbered bind indices with question marks.
-    bindIdxMatcher.reset();
-    sqlCmd = bindIdxMatcher.replaceAll("?");
-
-    try (final OPSStmt ostmt = new OPSStmt(sqlCmd,
+    try (final OPSStmt ostmt = new OPSStmt(template.getJdbcSql(),
             bindVals.toArray(new String[bindVals.size()]),
                 OPSStmt.EmissionType.ENFORCED);
          final OPSResultSet rs = ostmt.executeQuery()) {
@@ -839,7 +834,7 @@ public class GlobalFnLibrary {
     }
 
     // SQLExec returns True if execution completed successfully.
-    Environment.pushToCallStack(new PTBoolean(true));
+    Environment.setReturnValue(new PTBoolean(true));
   }
 
   @PeopleToolsImplementation
@@ -853,7 +848,7 @@ public class GlobalFnLibrary {
           + "of type PTRecordFieldSpecifier to GetField.");
     }
 
-    Environment.pushToCallStack(
+    Environment.setReturnValue(
         ((PTRecordFieldSpecifier) args.get(0)).resolveInCBufferContext().deref());
   }
 
@@ -863,7 +858,7 @@ public class GlobalFnLibrary {
     List<PTType> args = Environment.getDereferencedArgsFromCallStack();
 
     if (args.size() == 0) {
-      Environment.pushToCallStack(this.interpretSupervisor
+      Environment.setReturnValue(this.interpretSupervisor
           .getNearestCBufferRecordInContext());
     } else if(args.size() == 1
         && args.get(0) instanceof PTRecordLiteral) {
@@ -876,7 +871,7 @@ public class GlobalFnLibrary {
             + args.get(0) + ") to resolve to record but instead resolved to: " + resEntity);
       }
 
-      Environment.pushToCallStack(resEntity);
+      Environment.setReturnValue(resEntity);
     } else {
       throw new OPSVMachRuntimeException("Expected exactly 0 args or 1 arg "
           + "of type PTRecord to GetRecord.");
@@ -952,7 +947,7 @@ public class GlobalFnLibrary {
     log.debug("GenerateScriptRelativeURL: From args, generated url: {}",
       url.toString());
 
-    Environment.pushToCallStack(new PTString(url.toString()));
+    Environment.setReturnValue(new PTString(url.toString()));
   }
 
   @PeopleToolsImplementation
@@ -969,7 +964,7 @@ public class GlobalFnLibrary {
 
     final PTGrid grid = (new PTGridTypeConstraint()).alloc(
         ((PTPageLiteral) args.get(0)), ((PTString) args.get(1)));
-    Environment.pushToCallStack(grid);
+    Environment.setReturnValue(grid);
   }
 
   /**
@@ -998,7 +993,7 @@ public class GlobalFnLibrary {
           + "found for scroll name: " + scrollName);
     }
 
-    Environment.pushToCallStack(resRowset);
+    Environment.setReturnValue(resRowset);
   }
 
   @PeopleToolsImplementation
@@ -1017,7 +1012,7 @@ public class GlobalFnLibrary {
 
     // PS maps Sunday to 1 and Saturday to 7.
     final int psDayOfWeek = dtCal.get(Calendar.DAY_OF_WEEK);
-    Environment.pushToCallStack(new PTInteger(psDayOfWeek));
+    Environment.setReturnValue(new PTInteger(psDayOfWeek));
   }
 
   /**
@@ -1053,7 +1048,7 @@ public class GlobalFnLibrary {
     dtCal.add(Calendar.MONTH, monthDelta);
     dtCal.add(Calendar.YEAR, yearDelta);
 
-    Environment.pushToCallStack(new PTDate(dtCal.getTime()));
+    Environment.setReturnValue(new PTDate(dtCal.getTime()));
   }
 
   // Not implementing for now.
@@ -1079,7 +1074,7 @@ public class GlobalFnLibrary {
       trimmedStr = trimmedStr.substring(0, trimmedStr.length() - 1);
     }
 
-    Environment.pushToCallStack(new PTString(trimmedStr));
+    Environment.setReturnValue(new PTString(trimmedStr));
   }
 
   @PeopleToolsImplementation
@@ -1094,7 +1089,7 @@ public class GlobalFnLibrary {
     }
 
     final int n = ((PTInteger) args.get(0)).read();
-    Environment.pushToCallStack(new PTString(Character.toString((char) n)));
+    Environment.setReturnValue(new PTString(Character.toString((char) n)));
   }
 
   @PeopleToolsImplementation
@@ -1119,7 +1114,7 @@ public class GlobalFnLibrary {
          final OPSResultSet rs = ostmt.executeQuery()) {
 
       if (rs.next()) {
-        Environment.pushToCallStack(
+        Environment.setReturnValue(
             new PTString(rs.getString("USER_OPTION_VALUE")));
       } else {
         throw new OPSVMachRuntimeException("Expected a single record in GetUserOption "
@@ -12,6 +12,7 @@ import java.util.LinkedList;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import org.openpplsoft.antlr4.ExprLowerer;
 import org.openpplsoft.antlr4.InterpreterVisitor;
 import org.openpplsoft.antlr4.OPSFuncImplSignalException;
 import org.openpplsoft.antlr4.OPSReturnException;
@@ -24,17 +25,20 @@ public class InterpretSupervisor {
 
   private LinkedList<ExecContext> execContextStack = new LinkedList<ExecContext>();
   private ICBufferEntity cBufferContextEntity;
+  private final RuntimeSession session;
 
   private static Logger log = LogManager.getLogger(InterpretSupervisor.class.getName());
 
   public InterpretSupervisor(final ExecContext e) {
     this.execContextStack.push(e);
+    this.session = e.getSession();
   }
 
   public InterpretSupervisor(final ExecContext e,
       final ICBufferEntity contextEntity) {
     this.execContextStack.push(e);
     this.cBufferContextEntity = contextEntity;
+    this.session = e.getSession();
   }
 
   public PTBufferRecord resolveContextualCBufferRecordReference(final String recName) {
@@ -77,6 +81,18 @@ public class InterpretSupervisor {
 
   public void run() {
 
+    // The supervisor may be run on a different thread than the one that
+    // created it; bind the session of the initial context for the duration.
+    final RuntimeSession prevSession = this.session.bindToCurrentThread();
+    try {
+      this.runAndCheckFinalState();
+    } finally {
+      RuntimeSession.rebind(prevSession);
+    }
+  }
+
+  private void runAndCheckFinalState() {
+
     try {
       this.runTopOfStack();
     } catch (final OPSVMachRuntimeException opsvmre) {
@@ -98,9 +114,22 @@ public class InterpretSupervisor {
     }
   }
 
+  /*
+   * The program's parse artefacts are pinned while the context runs, so
+   * that ParseArtefactPolicy cannot release the tree being interpreted.
+   */
   private void runTopOfStack() {
+    final ExecContext context = execContextStack.peek();
+    context.getProg().loadDefnsAndPrograms();
+    context.pinParseArtefacts();
+    try {
+      this.runPinnedTopOfStack(context);
+    } finally {
+      context.unpinParseArtefacts();
+    }
+  }
 
-    ExecContext context = execContextStack.peek();
+  private void runPinnedTopOfStack(final ExecContext context) {
 
     boolean isThisProgSameAsInterruptedProg = false;
 
@@ -119,8 +148,6 @@ public class InterpretSupervisor {
       }
     }
 
-    context.getProg().loadDefnsAndPrograms();
-
     /*
      * Requests to load app class declaration bodies do not
      * involve execution of PeopleCode instructions, and thus should
@@ -134,10 +161,21 @@ public class InterpretSupervisor {
     }
 
     final String methodOrFuncName = context.getMethodOrFuncName();
-    String descriptor = context.getProg().getDescriptor();
-    descriptor = descriptor.substring(descriptor.indexOf(".") + 1);
+    if (ExprLowerer.isTieringEnabled()) {
+      context.getProg().recordInvocation(methodOrFuncName,
+          context instanceof FunctionExecContext
+              ? ((FunctionExecContext) context).getFuncNodeToRun()
+              : context.getStartNode());
+    }
+
+    final boolean emitProgBoundaries =
+        !isThisProgSameAsInterruptedProg && TraceFileVerifier.isEnabled();
+
+    String descriptor = null;
+    if(emitProgBoundaries) {
+      descriptor = context.getProg().getDescriptor();
+      descriptor = descriptor.substring(descriptor.indexOf(".") + 1);
 
-    if(!isThisProgSameAsInterruptedProg) {
       TraceFileVerifier.submitEnforcedEmission(new PCStart(
           (execContextStack.size() == 1 ? "start" : "start-ext"),
               String.format("%02d", execContextStack.size() - 1),
@@ -185,7 +223,7 @@ public class InterpretSupervisor {
       }
     }
 
-    if(!isThisProgSameAsInterruptedProg) {
+    if(emitProgBoundaries) {
       TraceFileVerifier.submitEnforcedEmission(new PCEnd(
         (execContextStack.size() == 1 ? "end" : "end-ext"),
         String.format("%02d", execContextStack.size() - 1),
@@ -196,6 +234,11 @@ public class InterpretSupervisor {
   }
 
   public void runImmediately(ExecContext eCtx) {
+    if (eCtx.getSession() != this.session) {
+      throw new OPSVMachRuntimeException("Attempted to run an exec context "
+          + "created in " + eCtx.getSession() + " within " + this.session + ".");
+    }
+
     // Full program exec contexts require the component scroll
     // level and row idx of the context in which they're executing
     // at instantiation. For all other contexts, use the context
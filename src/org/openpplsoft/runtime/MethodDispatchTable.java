@@ -0,0 +1,91 @@
+/*===---------------------------------------------------------------------===*\
+|*                       The OpenPplSoft Runtime Project                     *|
+|*                                                                           *|
+|*              This file is distributed under the MIT License.              *|
+|*                         See LICENSE.md for details.                       *|
+\*===---------------------------------------------------------------------===*/
+
+package org.openpplsoft.runtime;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Maps the names of the PeopleTools functions and methods implemented
+ * by a Java class (i.e., the public, no-arg methods of GlobalFnLibrary,
+ * PTRowset, etc.) to method handles, so that calls to them are
+ * resolved with a single table lookup rather than through reflection.
+ * A class's table is built the first time the class is dispatched on,
+ * and is shared by all sessions. Each handle takes the receiver as an
+ * Object and discards any return value, as return values are passed
+ * back to the interpreter on the call stack.
+ */
+public final class MethodDispatchTable {
+
+  private static Logger log =
+      LogManager.getLogger(MethodDispatchTable.class.getName());
+
+  private static final MethodType INVOKER_TYPE =
+      MethodType.methodType(void.class, Object.class);
+
+  private static ClassValue<MethodDispatchTable> tables;
+
+  private final Map<String, MethodHandle> handles;
+
+  static {
+    tables = new ClassValue<MethodDispatchTable>() {
+      @Override
+      protected MethodDispatchTable computeValue(final Class<?> cls) {
+        return new MethodDispatchTable(cls);
+      }
+    };
+  }
+
+  private MethodDispatchTable(final Class<?> cls) {
+    this.handles = new HashMap<String, MethodHandle>();
+    final MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+    for (final Method m : cls.getMethods()) {
+      if (m.getParameterCount() != 0 || this.handles.containsKey(m.getName())) {
+        continue;
+      }
+      try {
+        // Use the method Class.getMethod would resolve the name to, in
+        // case a covariant override has left a bridge method behind.
+        final Method resolved = cls.getMethod(m.getName());
+        this.handles.put(m.getName(),
+            lookup.unreflect(resolved).asType(INVOKER_TYPE));
+      } catch (final NoSuchMethodException | IllegalAccessException e) {
+        log.debug("Not dispatching to {}.{}: {}", cls.getName(),
+            m.getName(), e.getMessage());
+      }
+    }
+    log.debug("Built dispatch table for {} with {} entries.",
+        cls.getName(), this.handles.size());
+  }
+
+  /**
+   * Retrieves the dispatch table for a class, building it if necessary.
+   * @param cls the class to dispatch on
+   * @return the class's dispatch table
+   */
+  public static MethodDispatchTable forClass(final Class<?> cls) {
+    return tables.get(cls);
+  }
+
+  /**
+   * Retrieves the handle for the named method.
+   * @param name the method name (case-sensitive)
+   * @return the handle, or null if the class has no public, no-arg
+   *    method by that name
+   */
+  public MethodHandle lookup(final String name) {
+    return this.handles.get(name);
+  }
+}
@@ -0,0 +1,261 @@
+/*===---------------------------------------------------------------------===*\
+|*                       The OpenPplSoft Runtime Project                     *|
+|*                                                                           *|
+|*              This file is distributed under the MIT License.              *|
+|*                         See LICENSE.md for details.                       *|
+\*===---------------------------------------------------------------------===*/
+
+package org.openpplsoft.runtime;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import org.openpplsoft.pt.peoplecode.PeopleCodeProg;
+
+/**
+ * Bounds the memory retained by the parse artefacts (token streams,
+ * parse trees and the node tables built from them) of cached PeopleCode
+ * programs. Programs stay in DefnCache indefinitely, but once the estimated
+ * size of all loaded artefacts exceeds the configured budget, the artefacts
+ * of the programs least likely to be run again are released; they are
+ * rebuilt from the program text if the program is needed later.
+ *
+ * Victims are chosen W-TinyLFU style: newly parsed programs enter a small
+ * LRU window, and a program leaving the window only displaces the LRU
+ * program in the main region if it has been used more often, according to
+ * an aging count-min frequency sketch. This keeps hot programs (e.g., app
+ * classes used across components) resident when many programs are
+ * parsed once and never used again.
+ *
+ * The budget is set in megabytes with the "maxParseArtefactMB" system
+ * property; if it is not set, artefacts are accounted for but never
+ * released.
+ */
+public final class ParseArtefactPolicy {
+
+  private static Logger log =
+      LogManager.getLogger(ParseArtefactPolicy.class.getName());
+
+  private static final long BYTES_PER_MB = 1024L * 1024L;
+  private static final int WINDOW_PERCENT = 1;
+  private static final int PERCENT = 100;
+
+  private static long maxBytes;
+  private static long maxWindowBytes;
+  private static FrequencySketch sketch;
+
+  // Both regions are access-ordered, so iteration begins at the LRU entry.
+  private static LinkedHashMap<PeopleCodeProg, Long> window;
+  private static LinkedHashMap<PeopleCodeProg, Long> main;
+  private static long windowBytes, mainBytes;
+  private static long numAdmissions, numReleases, numBytesReleased;
+
+  static {
+    final String maxMB = System.getProperty("maxParseArtefactMB");
+    if (maxMB == null || maxMB.trim().length() == 0) {
+      maxBytes = Long.MAX_VALUE;
+    } else {
+      maxBytes = Long.parseLong(maxMB.trim()) * BYTES_PER_MB;
+    }
+    maxWindowBytes = Math.max(1L, maxBytes / PERCENT * WINDOW_PERCENT);
+    sketch = new FrequencySketch();
+    window = new LinkedHashMap<PeopleCodeProg, Long>(16, 0.75f, true);
+    main = new LinkedHashMap<PeopleCodeProg, Long>(16, 0.75f, true);
+  }
+
+  private ParseArtefactPolicy() {}
+
+  /**
+   * Records that the parse artefacts of a program have just been built.
+   * This may cause the artefacts of other programs to be released; to
+   * avoid lock ordering issues, callers must not hold the monitor of any
+   * program other than the one being admitted.
+   * @param prog the program that was parsed
+   * @param estimatedBytes the estimated retained size of its artefacts
+   */
+  public static void admit(final PeopleCodeProg prog,
+      final long estimatedBytes) {
+    final List<Map.Entry<PeopleCodeProg, Long>> victims;
+    synchronized (ParseArtefactPolicy.class) {
+      sketch.increment(prog.getDescriptor());
+      numAdmissions++;
+
+      final Long prevBytes = main.remove(prog);
+      if (prevBytes != null) {
+        mainBytes -= prevBytes;
+      }
+      final Long prevWindowBytes = window.put(prog, estimatedBytes);
+      if (prevWindowBytes != null) {
+        windowBytes -= prevWindowBytes;
+      }
+      windowBytes += estimatedBytes;
+      victims = evictWhereNecessary(prog);
+    }
+
+    // Release outside of the policy lock; see javadoc above.
+    for (final Map.Entry<PeopleCodeProg, Long> victim : victims) {
+      log.debug("Releasing parse artefacts for {}.", victim.getKey());
+      if (!victim.getKey().releaseParseArtefacts()) {
+        reinstate(victim.getKey(), victim.getValue());
+      }
+    }
+  }
+
+  /*
+   * Programs whose artefacts are in use when chosen as victims are
+   * put back as the most recently used entry in the main region.
+   */
+  private static synchronized void reinstate(final PeopleCodeProg prog,
+      final long bytes) {
+    if (window.containsKey(prog) || main.containsKey(prog)) {
+      return;
+    }
+    numReleases--;
+    numBytesReleased -= bytes;
+    main.put(prog, bytes);
+    mainBytes += bytes;
+  }
+
+  /**
+   * Records a use of a program's parse artefacts (i.e., an execution),
+   * which informs the choice of programs to release.
+   * @param prog the program being used
+   */
+  public static void recordAccess(final PeopleCodeProg prog) {
+    synchronized (ParseArtefactPolicy.class) {
+      sketch.increment(prog.getDescriptor());
+      if (window.get(prog) == null) {
+        main.get(prog);
+      }
+    }
+  }
+
+  /**
+   * Logs the number of programs holding parse artefacts, their estimated
+   * retained size, and the number of releases made to stay in budget.
+   */
+  public static void logSummary() {
+    synchronized (ParseArtefactPolicy.class) {
+      log.info("Parse artefacts: {} progs resident (~{} KB; budget: {}); "
+          + "{} admissions, {} releases (~{} KB).",
+          window.size() + main.size(), (windowBytes + mainBytes) / 1024,
+          maxBytes == Long.MAX_VALUE
+              ? "unbounded" : (maxBytes / BYTES_PER_MB) + " MB",
+          numAdmissions, numReleases, numBytesReleased / 1024);
+    }
+  }
+
+  private static List<Map.Entry<PeopleCodeProg, Long>> evictWhereNecessary(
+      final PeopleCodeProg admitted) {
+    final List<Map.Entry<PeopleCodeProg, Long>> victims =
+        new ArrayList<Map.Entry<PeopleCodeProg, Long>>();
+
+    // Move candidates from the window to main, applying the TinyLFU filter.
+    while (windowBytes > maxWindowBytes && window.size() > 1) {
+      final Iterator<Map.Entry<PeopleCodeProg, Long>> windowIter =
+          window.entrySet().iterator();
+      final Map.Entry<PeopleCodeProg, Long> candidate = windowIter.next();
+      windowIter.remove();
+      windowBytes -= candidate.getValue();
+
+      if (mainBytes + candidate.getValue() <= maxBytes - maxWindowBytes
+          || main.isEmpty()) {
+        main.put(candidate.getKey(), candidate.getValue());
+        mainBytes += candidate.getValue();
+        continue;
+      }
+
+      final Map.Entry<PeopleCodeProg, Long> mainVictim =
+          main.entrySet().iterator().next();
+      if (sketch.frequency(candidate.getKey().getDescriptor())
+          > sketch.frequency(mainVictim.getKey().getDescriptor())) {
+        main.remove(mainVictim.getKey());
+        mainBytes -= mainVictim.getValue();
+        release(mainVictim.getKey(), mainVictim.getValue(), victims);
+        main.put(candidate.getKey(), candidate.getValue());
+        mainBytes += candidate.getValue();
+      } else {
+        release(candidate.getKey(), candidate.getValue(), victims);
+      }
+    }
+
+    // Enforce the overall budget on the main region.
+    final Iterator<Map.Entry<PeopleCodeProg, Long>> mainIter =
+        main.entrySet().iterator();
+    while (mainBytes + windowBytes > maxBytes && mainIter.hasNext()) {
+      final Map.Entry<PeopleCodeProg, Long> lru = mainIter.next();
+      if (lru.getKey() == admitted) {
+        continue;
+      }
+      mainIter.remove();
+      mainBytes -= lru.getValue();
+      release(lru.getKey(), lru.getValue(), victims);
+    }
+    return victims;
+  }
+
+  private static void release(final PeopleCodeProg prog, final long bytes,
+      final List<Map.Entry<PeopleCodeProg, Long>> victims) {
+    numReleases++;
+    numBytesReleased += bytes;
+    victims.add(new AbstractMap.SimpleImmutableEntry<PeopleCodeProg, Long>(
+        prog, bytes));
+  }
+
+  /**
+   * Count-min sketch of 4-bit saturating counters used to estimate how
+   * often each program has been used; all counters are halved
+   * periodically so that old popularity fades.
+   */
+  private static final class FrequencySketch {
+
+    private static final int WIDTH = 4096;
+    private static final int DEPTH = 4;
+    private static final int MAX_COUNT = 15;
+    private static final int SAMPLE_SIZE = 10 * WIDTH;
+    private static final int[] SEEDS = {
+        0x97cb3127, 0xb4a8ac4d, 0x8c6e1f9b, 0xe26c5a71};
+
+    private final byte[][] counters = new byte[DEPTH][WIDTH];
+    private int numIncrements;
+
+    private void increment(final String key) {
+      for (int i = 0; i < DEPTH; i++) {
+        final int idx = this.indexOf(key, i);
+        if (this.counters[i][idx] < MAX_COUNT) {
+          this.counters[i][idx]++;
+        }
+      }
+
+      if (++this.numIncrements == SAMPLE_SIZE) {
+        for (final byte[] row : this.counters) {
+          for (int j = 0; j < row.length; j++) {
+            row[j] = (byte) (row[j] >>> 1);
+          }
+        }
+        this.numIncrements = 0;
+      }
+    }
+
+    private int frequency(final String key) {
+      int min = MAX_COUNT;
+      for (int i = 0; i < DEPTH; i++) {
+        min = Math.min(min, this.counters[i][this.indexOf(key, i)]);
+      }
+      return min;
+    }
+
+    private int indexOf(final String key, final int row) {
+      int h = key.hashCode() * SEEDS[row];
+      h ^= h >>> 16;
+      return h & (WIDTH - 1);
+    }
+  }
+}
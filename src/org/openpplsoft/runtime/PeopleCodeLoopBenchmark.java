@@ -0,0 +1,159 @@
+/*===---------------------------------------------------------------------===*\
+|*                       The OpenPplSoft Runtime Project                     *|
+|*                                                                           *|
+|*              This file is distributed under the MIT License.              *|
+|*                         See LICENSE.md for details.                       *|
+\*===---------------------------------------------------------------------===*/
+
+package org.openpplsoft.runtime;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+
+import org.openpplsoft.antlr4.ExprCompiler;
+import org.openpplsoft.antlr4.ExprLowerer;
+import org.openpplsoft.pt.peoplecode.PeopleCodeProg;
+
+/**
+ * Measures the time taken and the memory allocated by the interpreter
+ * when it runs a tight PeopleCode loop of comparisons, integer arithmetic,
+ * Boolean assignments and an Evaluate, without a database. Usage:
+ *
+ *   java -DproductionMode=true -DcacheProgText=false -cp ...
+ *       org.openpplsoft.runtime.PeopleCodeLoopBenchmark
+ *       [iterations] [passes]
+ *
+ * Each pass runs the loop for the given number of iterations; the first
+ * pass warms up the JIT and is not reported. Allocation is measured on
+ * the running thread, and garbage collections over all measured passes.
+ * Run with logging at INFO or above.
+ *
+ * Each pass is an invocation of the program, so tiered execution applies
+ * to it: add -DtierUpThreshold=1 to run every measured pass with lowered
+ * expressions, and also -DcompileThreshold=2 to run them with compiled
+ * expressions (the warm-up pass then records the types the compiled
+ * code is specialized for).
+ */
+public final class PeopleCodeLoopBenchmark {
+
+  private static final int DEFAULT_ITERATIONS = 100000;
+  private static final int DEFAULT_PASSES = 10;
+
+  private static final String LOOP_TEXT =
+      "Local integer &i, &n, &sum, &k;\n"
+      + "Local boolean &b;\n"
+      + "&n = %d;\n"
+      + "&sum = 0;\n"
+      + "For &i = 1 To &n\n"
+      + "   If &i = &sum Or\n"
+      + "         &i > 500 Then\n"
+      + "      &sum = &sum + 1;\n"
+      + "   End-If;\n"
+      + "   &b = (&sum < 1000);\n"
+      + "   &k = &i - &sum;\n"
+      + "   Evaluate &k\n"
+      + "   When = 0\n"
+      + "      &b = False;\n"
+      + "   When-Other\n"
+      + "      &b = &b And (&k > 0);\n"
+      + "   End-Evaluate;\n"
+      + "End-For;\n";
+
+  private PeopleCodeLoopBenchmark() {}
+
+  /**
+   * Runs the benchmark.
+   * @param args optionally, the number of loop iterations per pass and
+   *    the number of passes to make
+   */
+  public static void main(final String[] args) {
+    if (TraceFileVerifier.isEnabled()
+        || System.getProperty("cacheProgText") == null) {
+      System.err.println("Usage: java -DproductionMode=true "
+          + "-DcacheProgText=false ... PeopleCodeLoopBenchmark "
+          + "[iterations] [passes]");
+      System.exit(1);
+    }
+    final int iterations = args.length > 0
+        ? Integer.parseInt(args[0]) : DEFAULT_ITERATIONS;
+    final int passes = args.length > 1
+        ? Integer.parseInt(args[1]) : DEFAULT_PASSES;
+
+    final LoopProg prog =
+        new LoopProg(String.format(LOOP_TEXT, iterations));
+    final RuntimeSession session = new RuntimeSession();
+    final RuntimeSession prevSession = session.bindToCurrentThread();
+    try {
+      final com.sun.management.ThreadMXBean threadBean =
+          (com.sun.management.ThreadMXBean)
+              ManagementFactory.getThreadMXBean();
+      final long threadId = Thread.currentThread().getId();
+
+      long runNanos = 0, allocBytes = 0, gcCount = 0, gcMillis = 0;
+      for (int pass = 0; pass <= passes; pass++) {
+        final long gcCountBefore = getGcCount(), gcMillisBefore = getGcMillis();
+        final long allocBefore = threadBean.getThreadAllocatedBytes(threadId);
+        final long start = System.nanoTime();
+
+        new InterpretSupervisor(new ProgramExecContext(prog, 0, 0)).run();
+
+        if (pass > 0) {
+          runNanos += System.nanoTime() - start;
+          allocBytes +=
+              threadBean.getThreadAllocatedBytes(threadId) - allocBefore;
+          gcCount += getGcCount() - gcCountBefore;
+          gcMillis += getGcMillis() - gcMillisBefore;
+        }
+      }
+
+      System.out.printf("%d iterations/pass, %d passes; %s.%n", iterations,
+          passes, ExprCompiler.isEnabled() ? "compiled expressions"
+              : ExprLowerer.isTieringEnabled() || ExprLowerer.isEnabled()
+                  ? "lowered expressions" : "interpreted");
+      System.out.printf("Run: %.2f ms/pass%n", runNanos / 1e6 / passes);
+      System.out.printf("Allocated: %.2f MB/pass (%.0f bytes/iteration)%n",
+          allocBytes / 1e6 / passes, (double) allocBytes / passes / iterations);
+      System.out.printf("GC: %d collections, %d ms over %d passes%n",
+          gcCount, gcMillis, passes);
+    } finally {
+      RuntimeSession.rebind(prevSession);
+    }
+  }
+
+  private static long getGcCount() {
+    long count = 0;
+    for (final GarbageCollectorMXBean gc
+        : ManagementFactory.getGarbageCollectorMXBeans()) {
+      count += Math.max(gc.getCollectionCount(), 0);
+    }
+    return count;
+  }
+
+  private static long getGcMillis() {
+    long millis = 0;
+    for (final GarbageCollectorMXBean gc
+        : ManagementFactory.getGarbageCollectorMXBeans()) {
+      millis += Math.max(gc.getCollectionTime(), 0);
+    }
+    return millis;
+  }
+
+  /**
+   * A program whose text is given rather than assembled from bytecode.
+   */
+  private static final class LoopProg extends PeopleCodeProg {
+
+    private LoopProg(final String text) {
+      super("FieldFormula");
+      this.initFromText(text);
+    }
+
+    @Override
+    protected void initBindVals() {}
+
+    @Override
+    public String getDescriptor() {
+      return "OPS_BENCH.LOOP.FieldFormula";
+    }
+  }
+}
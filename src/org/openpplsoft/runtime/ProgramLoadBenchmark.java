@@ -0,0 +1,136 @@
+/*===---------------------------------------------------------------------===*\
+|*                       The OpenPplSoft Runtime Project                     *|
+|*                                                                           *|
+|*              This file is distributed under the MIT License.              *|
+|*                         See LICENSE.md for details.                       *|
+\*===---------------------------------------------------------------------===*/
+
+package org.openpplsoft.runtime;
+
+import java.io.File;
+import java.util.List;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.TokenSource;
+import org.antlr.v4.runtime.atn.PredictionMode;
+
+import org.openpplsoft.antlr4.NoErrorTolerancePeopleCodeLexer;
+import org.openpplsoft.antlr4.OPSDiagErrorListener;
+import org.openpplsoft.antlr4.OPSErrorStrategy;
+import org.openpplsoft.antlr4.ParseTreeBuilder;
+import org.openpplsoft.antlr4.frontend.PeopleCodeParser;
+
+/**
+ * Measures the time taken to load the programs in a program text cache
+ * file (as written by a run with "progTextCacheFile" set) with and without
+ * the cached token streams: the former lexes and parses each program's
+ * text, the latter restores each program's tokens from the cache and only
+ * parses them. The cached tokens are parsed both by the ANTLR parser and
+ * by ParseTreeBuilder (programs the builder does not handle are counted
+ * and left out of its measurement). Usage:
+ *
+ *   java -cp ... org.openpplsoft.runtime.ProgramLoadBenchmark
+ *       &lt;cacheFile&gt; [passes]
+ *
+ * Each pass loads every program in the cache both ways; the first pass
+ * warms up the JIT and is not reported.
+ */
+public final class ProgramLoadBenchmark {
+
+  private static final int DEFAULT_PASSES = 10;
+
+  private ProgramLoadBenchmark() {}
+
+  /**
+   * Runs the benchmark.
+   * @param args the path of the cache file, and optionally the number
+   *    of passes to make over it
+   */
+  public static void main(final String[] args) {
+    if (args.length < 1) {
+      System.err.println("Usage: ProgramLoadBenchmark <cacheFile> [passes]");
+      System.exit(1);
+    }
+    final int passes = args.length > 1
+        ? Integer.parseInt(args[1]) : DEFAULT_PASSES;
+
+    ProgramTextCache.load(new File(args[0]));
+    final List<String> keys = ProgramTextCache.getKeys();
+
+    // Entries written before their programs were run have no tokens yet.
+    for (final String key : keys) {
+      final String text = ProgramTextCache.lookup(key);
+      if (ProgramTextCache.lookupTokens(key,
+          new ANTLRInputStream(text)) == null) {
+        final CommonTokenStream tokens = new CommonTokenStream(
+            new NoErrorTolerancePeopleCodeLexer(new ANTLRInputStream(text)));
+        tokens.fill();
+        ProgramTextCache.storeTokens(key, tokens.getTokens());
+      }
+    }
+
+    long textChars = 0;
+    for (final String key : keys) {
+      textChars += ProgramTextCache.lookup(key).length();
+    }
+    System.out.printf("%d programs, %d chars of text.%n", keys.size(),
+        textChars);
+
+    int numUnbuilt = 0;
+    long lexedNanos = 0, cachedNanos = 0, builtNanos = 0;
+    for (int pass = 0; pass <= passes; pass++) {
+      long lexed = 0, cached = 0, built = 0;
+      numUnbuilt = 0;
+      for (final String key : keys) {
+        final String text = ProgramTextCache.lookup(key);
+
+        long start = System.nanoTime();
+        final ANTLRInputStream lexedInput = new ANTLRInputStream(text);
+        parse(new NoErrorTolerancePeopleCodeLexer(lexedInput));
+        lexed += System.nanoTime() - start;
+
+        start = System.nanoTime();
+        final ANTLRInputStream cachedInput = new ANTLRInputStream(text);
+        parse(ProgramTextCache.lookupTokens(key, cachedInput));
+        cached += System.nanoTime() - start;
+
+        start = System.nanoTime();
+        final ANTLRInputStream builtInput = new ANTLRInputStream(text);
+        if (ParseTreeBuilder.build(new CommonTokenStream(
+            ProgramTextCache.lookupTokens(key, builtInput))) == null) {
+          numUnbuilt++;
+        } else {
+          built += System.nanoTime() - start;
+        }
+      }
+      if (pass > 0) {
+        lexedNanos += lexed;
+        cachedNanos += cached;
+        builtNanos += built;
+      }
+    }
+
+    System.out.printf("Lexed and parsed: %.2f ms/pass%n",
+        lexedNanos / 1e6 / passes);
+    System.out.printf("Cached tokens, parsed: %.2f ms/pass (%.1f%% of "
+        + "lexed and parsed)%n", cachedNanos / 1e6 / passes,
+        100.0 * cachedNanos / lexedNanos);
+    System.out.printf("Cached tokens, built: %.2f ms/pass (%.1f%% of "
+        + "lexed and parsed; %d programs left to the parser)%n",
+        builtNanos / 1e6 / passes, 100.0 * builtNanos / lexedNanos,
+        numUnbuilt);
+  }
+
+  private static void parse(final TokenSource tokenSource) {
+    final PeopleCodeParser parser =
+        new PeopleCodeParser(new CommonTokenStream(tokenSource));
+    parser.removeErrorListeners();
+    parser.addErrorListener(new OPSDiagErrorListener());
+    parser.getInterpreter().setPredictionMode(
+        Boolean.getBoolean("skipAmbiguityDetection")
+            ? PredictionMode.LL : PredictionMode.LL_EXACT_AMBIG_DETECTION);
+    parser.setErrorHandler(new OPSErrorStrategy());
+    parser.program();
+  }
+}
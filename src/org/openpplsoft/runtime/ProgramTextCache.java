@@ -0,0 +1,345 @@
+/*===---------------------------------------------------------------------===*\
+|*                       The OpenPplSoft Runtime Project                     *|
+|*                                                                           *|
+|*              This file is distributed under the MIT License.              *|
+|*                         See LICENSE.md for details.                       *|
+\*===---------------------------------------------------------------------===*/
+
+package org.openpplsoft.runtime;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenSource;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import org.openpplsoft.bytecode.TokenDecoder;
+import org.openpplsoft.pt.BytecodeReference;
+import org.openpplsoft.sql.MaterializedResult;
+
+/**
+ * Persists the assembled text of PeopleCode programs, and the token
+ * stream lexed from that text, to a memory-mapped cache file, so that a
+ * warm process can skip both decoding program bytecode and lexing the
+ * resulting text; only parsing remains to be done when a cached program
+ * is loaded. Entries are keyed by program descriptor and a digest of the
+ * program's bytecode and reference table, so an entry is only reused if
+ * the program it was assembled from is unchanged. Entries are decoded
+ * lazily, when the corresponding program is first loaded.
+ *
+ * Each token is stored as its type, channel, start and stop indices into
+ * the program text, line and position in line; the token's text is not
+ * stored, as it is read from the program text when needed. Tokens are
+ * added to an entry when its program is first lexed, which may happen
+ * after (or never, if the program is not run) its text is stored.
+ *
+ * The cache is enabled by passing the path of the cache file in the
+ * "progTextCacheFile" system property. FORMAT_VERSION must be incremented
+ * whenever a change to the assembler alters the text it produces, or a
+ * change to the grammar alters the tokens lexed from it.
+ */
+public final class ProgramTextCache {
+
+  private static Logger log =
+      LogManager.getLogger(ProgramTextCache.class.getName());
+
+  private static final int MAGIC = 0x4F505054;
+  private static final int FORMAT_VERSION = 2;
+  private static final int INTS_PER_TOKEN = TokenDecoder.INTS_PER_TOKEN;
+
+  private static File cacheFile;
+  private static Map<String, Entry> entries;
+  private static volatile boolean hasNewEntries;
+  private static AtomicLong numHits, numMisses, missNanos;
+  private static AtomicLong numTokenHits, numTokenMisses;
+
+  static {
+    entries = new ConcurrentHashMap<String, Entry>();
+    numHits = new AtomicLong();
+    numMisses = new AtomicLong();
+    missNanos = new AtomicLong();
+    numTokenHits = new AtomicLong();
+    numTokenMisses = new AtomicLong();
+  }
+
+  private ProgramTextCache() {}
+
+  /**
+   * Opens the cache file named by the "progTextCacheFile" system property,
+   * if any; if the property is not set, the cache remains disabled.
+   */
+  public static void open() {
+    final String path = System.getProperty("progTextCacheFile");
+    if (path == null || path.trim().length() == 0) {
+      return;
+    }
+
+    cacheFile = new File(path);
+    if (cacheFile.exists()) {
+      load(cacheFile);
+    }
+  }
+
+  /*
+   * Maps the given cache file and reads its index into the entry table.
+   */
+  static void load(final File file) {
+    final MappedByteBuffer buf;
+    try (final RandomAccessFile raf = new RandomAccessFile(file, "r");
+         final FileChannel channel = raf.getChannel()) {
+      buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    } catch (final IOException ioe) {
+      throw new OPSVMachRuntimeException(ioe.getMessage(), ioe);
+    }
+
+    if (buf.getInt() != MAGIC || buf.getInt() != FORMAT_VERSION) {
+      log.warn("Ignoring program text cache at {}; unrecognized format.",
+          file);
+      hasNewEntries = true;
+      return;
+    }
+
+    final int numEntries = buf.getInt();
+    for (int i = 0; i < numEntries; i++) {
+      final String key = MaterializedResult.readString(buf);
+      final int len = buf.getInt();
+      final ByteBuffer text = buf.slice();
+      text.limit(len);
+      buf.position(buf.position() + len);
+
+      IntBuffer tokens = null;
+      final int numTokens = buf.getInt();
+      if (numTokens > 0) {
+        tokens = buf.slice().asIntBuffer();
+        tokens.limit(numTokens * INTS_PER_TOKEN);
+        buf.position(buf.position() + numTokens * INTS_PER_TOKEN * 4);
+      }
+      entries.put(key, new Entry(text, tokens));
+    }
+    log.info("Loaded {} entries from program text cache at {}.",
+        entries.size(), file);
+  }
+
+  /*
+   * Returns the keys of all entries in the cache.
+   */
+  static List<String> getKeys() {
+    return new ArrayList<String>(entries.keySet());
+  }
+
+  /**
+   * Determines whether the cache is enabled.
+   * @return true if a cache file has been configured
+   */
+  public static boolean isEnabled() {
+    return cacheFile != null;
+  }
+
+  /**
+   * Computes the key under which the text assembled from the given
+   * program is cached.
+   * @param descriptor the program's descriptor
+   * @param bytecode the program's bytecode
+   * @param refs the program's reference table, by reference number
+   * @return the cache key
+   */
+  public static String getKey(final String descriptor, final byte[] bytecode,
+      final Map<Integer, BytecodeReference> refs) {
+    final MessageDigest md;
+    try {
+      md = MessageDigest.getInstance("SHA-1");
+    } catch (final NoSuchAlgorithmException nsae) {
+      throw new OPSVMachRuntimeException(nsae.getMessage(), nsae);
+    }
+    md.update(bytecode);
+    for (final Map.Entry<Integer, BytecodeReference> cursor
+        : refs.entrySet()) {
+      md.update((cursor.getKey() + "\u0000" + cursor.getValue().getAsString()
+          + "\u0000").getBytes(StandardCharsets.UTF_8));
+    }
+
+    final StringBuilder b = new StringBuilder(descriptor).append('#');
+    for (final byte digestByte : md.digest()) {
+      b.append(String.format("%02x", digestByte));
+    }
+    return b.toString();
+  }
+
+  /**
+   * Retrieves the cached text for the given key.
+   * @param key the key, as computed by {@link #getKey}
+   * @return the cached text, or null if there is none
+   */
+  public static String lookup(final String key) {
+    final Entry entry = entries.get(key);
+    if (entry == null) {
+      numMisses.incrementAndGet();
+      return null;
+    }
+    numHits.incrementAndGet();
+    return StandardCharsets.UTF_8.decode(entry.text.duplicate()).toString();
+  }
+
+  /**
+   * Retrieves the cached token stream for the given key, which can be
+   * passed to a token stream in place of a lexer.
+   * @param key the key, as computed by {@link #getKey}
+   * @param input the program text returned by {@link #lookup} for the
+   *    same key; the text of each token is read from it
+   * @return a source of the cached tokens, or null if the program has
+   *    not yet been lexed
+   */
+  public static TokenSource lookupTokens(final String key,
+      final CharStream input) {
+    final Entry entry = entries.get(key);
+    if (entry == null || entry.tokens == null) {
+      numTokenMisses.incrementAndGet();
+      return null;
+    }
+    numTokenHits.incrementAndGet();
+
+    return TokenDecoder.toTokenSource(entry.tokens.duplicate(), input);
+  }
+
+  /**
+   * Adds assembled program text to the cache.
+   * @param key the key, as computed by {@link #getKey}
+   * @param text the assembled program text
+   * @param assemblyNanos the time taken to assemble the text, which is
+   *    used to report the time saved by cache hits
+   */
+  public static void store(final String key, final String text,
+      final long assemblyNanos) {
+    entries.put(key, new Entry(
+        ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)), null));
+    missNanos.addAndGet(assemblyNanos);
+    hasNewEntries = true;
+  }
+
+  /**
+   * Adds the tokens lexed from a program's text to the cache, if the
+   * program's text is cached and its tokens are not.
+   * @param key the key, as computed by {@link #getKey}
+   * @param tokens every token lexed from the program's text, including
+   *    hidden tokens and the trailing EOF
+   */
+  public static void storeTokens(final String key,
+      final List<Token> tokens) {
+    final Entry entry = entries.get(key);
+    if (entry == null || entry.tokens != null) {
+      return;
+    }
+
+    final IntBuffer buf = IntBuffer.allocate(tokens.size() * INTS_PER_TOKEN);
+    for (final Token token : tokens) {
+      buf.put(token.getType());
+      buf.put(token.getChannel());
+      buf.put(token.getStartIndex());
+      buf.put(token.getStopIndex());
+      buf.put(token.getLine());
+      buf.put(token.getCharPositionInLine());
+    }
+    buf.flip();
+    entry.tokens = buf;
+    hasNewEntries = true;
+  }
+
+  /**
+   * Logs cache statistics and writes the cache back to disk
+   * if any entries were added since it was opened.
+   */
+  public static void save() {
+    if (cacheFile == null) {
+      return;
+    }
+
+    final long misses = numMisses.get();
+    log.info("Program text cache hits: {}, misses: {} (avg {} us to "
+        + "assemble a missed program); token hits: {}, misses: {}.",
+        numHits, misses,
+        misses == 0 ? "-" : (missNanos.get() / misses / 1000),
+        numTokenHits, numTokenMisses);
+    if (!hasNewEntries) {
+      return;
+    }
+
+    final File tmpFile = new File(cacheFile.getPath() + ".tmp");
+    final File parentDir = cacheFile.getAbsoluteFile().getParentFile();
+    if (parentDir != null) {
+      parentDir.mkdirs();
+    }
+
+    // Copy the entries first, as they may be added to concurrently.
+    final Map<String, Entry> toWrite = new HashMap<String, Entry>(entries);
+    try (final DataOutputStream out = new DataOutputStream(
+            new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+      out.writeInt(MAGIC);
+      out.writeInt(FORMAT_VERSION);
+      out.writeInt(toWrite.size());
+      for (Map.Entry<String, Entry> cursor : toWrite.entrySet()) {
+        MaterializedResult.writeString(out, cursor.getKey());
+        final ByteBuffer text = cursor.getValue().text.duplicate();
+        final byte[] bytes = new byte[text.remaining()];
+        text.get(bytes);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+
+        final IntBuffer tokens = cursor.getValue().tokens;
+        if (tokens == null) {
+          out.writeInt(0);
+        } else {
+          final IntBuffer tokenInts = tokens.duplicate();
+          out.writeInt(tokenInts.remaining() / INTS_PER_TOKEN);
+          while (tokenInts.hasRemaining()) {
+            out.writeInt(tokenInts.get());
+          }
+        }
+      }
+    } catch (final IOException ioe) {
+      throw new OPSVMachRuntimeException(ioe.getMessage(), ioe);
+    }
+
+    try {
+      Files.move(tmpFile.toPath(), cacheFile.toPath(),
+          StandardCopyOption.REPLACE_EXISTING);
+    } catch (final IOException ioe) {
+      throw new OPSVMachRuntimeException(ioe.getMessage(), ioe);
+    }
+    hasNewEntries = false;
+    log.info("Wrote {} entries to program text cache at {}.", toWrite.size(),
+        cacheFile);
+  }
+
+  private static final class Entry {
+    private final ByteBuffer text;
+    private volatile IntBuffer tokens;
+
+    private Entry(final ByteBuffer t, final IntBuffer tk) {
+      this.text = t;
+      this.tokens = tk;
+    }
+  }
+}
@@ -0,0 +1,183 @@
+/*===---------------------------------------------------------------------===*\
+|*                       The OpenPplSoft Runtime Project                     *|
+|*                                                                           *|
+|*              This file is distributed under the MIT License.              *|
+|*                         See LICENSE.md for details.                       *|
+\*===---------------------------------------------------------------------===*/
+
+package org.openpplsoft.runtime;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import org.openpplsoft.buffers.ComponentBuffer;
+import org.openpplsoft.sql.StatementCache;
+import org.openpplsoft.sql.StmtLibrary;
+
+/**
+ * Owns all of the mutable runtime state for a single open component:
+ * the environment (global and component scopes, system variables and the
+ * call stack), the component buffer and the tracefile verifier. Definitions
+ * in DefnCache are shared by all sessions in the JVM.
+ *
+ * The static APIs of Environment, ComponentBuffer and TraceFileVerifier
+ * operate on the session bound to the calling thread; a session may be
+ * bound to only one thread at a time, but may move between threads (i.e.,
+ * a pool of worker threads can host many more sessions than threads).
+ *
+ * A session leases a JDBC connection from the pool on first use and holds
+ * it (along with a cache of statements prepared on it) until it is
+ * released or the session is closed.
+ */
+public final class RuntimeSession {
+
+  private static Logger log =
+      LogManager.getLogger(RuntimeSession.class.getName());
+
+  private static final ThreadLocal<RuntimeSession> boundSession =
+      new ThreadLocal<RuntimeSession>();
+  private static final AtomicLong sessionCounter = new AtomicLong();
+
+  private final long sessionId;
+  private final Environment environment;
+  private final ComponentBuffer componentBuffer;
+  private final TraceFileVerifier verifier;
+  private boolean hasComponentStructureBeenVerified;
+  private Connection conn;
+  private StatementCache stmtCache;
+
+  /**
+   * Creates a new session with empty scopes, an empty component
+   * buffer and an uninitialized verifier.
+   */
+  public RuntimeSession() {
+    this.sessionId = sessionCounter.incrementAndGet();
+    this.environment = new Environment();
+    this.componentBuffer = new ComponentBuffer();
+    this.verifier = new TraceFileVerifier();
+    log.debug("Created runtime session {}.", this.sessionId);
+  }
+
+  /**
+   * Retrieves the session bound to the calling thread.
+   * @return the bound session
+   */
+  public static RuntimeSession current() {
+    final RuntimeSession session = boundSession.get();
+    if (session == null) {
+      throw new OPSVMachRuntimeException("No runtime session is bound to "
+          + "the current thread (" + Thread.currentThread().getName() + ").");
+    }
+    return session;
+  }
+
+  /**
+   * Binds this session to the calling thread. Callers should restore
+   * the returned session (via {@link #rebind(RuntimeSession)}) once they
+   * are done, typically in a finally block.
+   * @return the session previously bound to the thread, possibly null
+   */
+  public RuntimeSession bindToCurrentThread() {
+    final RuntimeSession prev = boundSession.get();
+    boundSession.set(this);
+    return prev;
+  }
+
+  /**
+   * Restores a previously bound session to the calling thread.
+   * @param prev the session returned by {@link #bindToCurrentThread()};
+   *    if null, the thread is left without a bound session
+   */
+  public static void rebind(final RuntimeSession prev) {
+    if (prev == null) {
+      boundSession.remove();
+    } else {
+      boundSession.set(prev);
+    }
+  }
+
+  public long getSessionId() {
+    return this.sessionId;
+  }
+
+  public Environment getEnvironment() {
+    return this.environment;
+  }
+
+  public ComponentBuffer getComponentBuffer() {
+    return this.componentBuffer;
+  }
+
+  public TraceFileVerifier getVerifier() {
+    return this.verifier;
+  }
+
+  /**
+   * Retrieves the JDBC connection leased by this session,
+   * leasing one from the pool if necessary.
+   * @return the leased connection
+   */
+  public Connection getConnection() {
+    if (this.conn == null) {
+      this.conn = StmtLibrary.leaseConnection();
+      this.stmtCache = new StatementCache(this.conn);
+      log.debug("{} leased a connection.", this);
+    }
+    return this.conn;
+  }
+
+  /**
+   * Retrieves the cache of statements prepared on this session's
+   * connection, leasing a connection from the pool if necessary.
+   * @return the statement cache
+   */
+  public StatementCache getStatementCache() {
+    this.getConnection();
+    return this.stmtCache;
+  }
+
+  /**
+   * Returns this session's connection (if any) to the pool; a
+   * connection will be leased again on next use. This must not be
+   * called while any statements issued by this session are open.
+   */
+  public void releaseConnection() {
+    if (this.conn == null) {
+      return;
+    }
+    this.stmtCache.close();
+    this.stmtCache = null;
+    try {
+      this.conn.close();
+    } catch (final SQLException sqle) {
+      log.warn("Unable to return connection leased by " + this
+          + " to the pool.", sqle);
+    }
+    this.conn = null;
+  }
+
+  /**
+   * Closes this session, returning its connection to the pool.
+   */
+  public void close() {
+    this.releaseConnection();
+    log.debug("Closed runtime session {}.", this.sessionId);
+  }
+
+  public boolean hasComponentStructureBeenVerified() {
+    return this.hasComponentStructureBeenVerified;
+  }
+
+  public void setComponentStructureVerified() {
+    this.hasComponentStructureBeenVerified = true;
+  }
+
+  @Override
+  public String toString() {
+    return "RuntimeSession#" + this.sessionId;
+  }
+}
@@ -9,10 +9,12 @@ package org.openpplsoft.runtime;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.LogManager;
 
+import org.openpplsoft.pt.peoplecode.PeopleCodeProg;
 import org.openpplsoft.types.*;
 
 /**
@@ -37,13 +39,41 @@ public class Scope {
   private final Lvl level;
   private final Map<String, PTReference<PTType>> symbolTable;
 
+  /*
+   * Scopes holding the variables of a single program (its program-local
+   * variables, or the instance variables of an object of its class) also
+   * hold each variable at the slot assigned to it by that program (see
+   * PeopleCodeProg.getVarSlot), so that contexts running the program can
+   * resolve variables in this scope without hashing their identifiers.
+   */
+  private final PeopleCodeProg slotProg;
+  private final PTReference<PTType>[] slotRefs;
+
+  // Incremented each time a new identifier is declared in this scope.
+  private int generation;
+
   /**
    * Creates a new scope for the specified scope level.
    * @param l the scoping level represented by this object
    */
   public Scope(final Scope.Lvl l) {
+    this(l, null);
+  }
+
+  /**
+   * Creates a new scope for the specified scope level, whose variables
+   * are also held at the slots assigned to them by the provided program.
+   * @param l the scoping level represented by this object
+   * @param p the program whose variables are declared in this scope,
+   *    or null if they may come from more than one program
+   */
+  @SuppressWarnings("unchecked")
+  public Scope(final Scope.Lvl l, final PeopleCodeProg p) {
     this.level = l;
     this.symbolTable = new HashMap<String, PTReference<PTType>>();
+    this.slotProg = p;
+    this.slotRefs = (PTReference<PTType>[])
+        new PTReference[p == null ? 0 : p.getNumVarSlots()];
   }
 
   public Lvl getLevel() {
@@ -97,23 +127,53 @@ public class Scope {
     }
 
     PTReference<PTType> newSymTableRef = null;
+    PTType value = initialValue;
+
+    /*
+     * Read-only primitives (canonical booleans and integers, system
+     * variables, etc.) are shared, so the variable must get its own copy.
+     */
+    if (value instanceof PTPrimitiveType && value.isReadOnly()) {
+      final PTPrimitiveType copy = (PTPrimitiveType)
+          value.getOriginatingTypeConstraint().alloc();
+      copy.copyValueFrom((PTPrimitiveType) value);
+      value = copy;
+    }
 
     /*
      * If the value provided is a reference, use that reference in the
      * symbol table. This allows references created by calling entities to be
      * modified by the callee and be seen upon return to the caller.
      */
-    if (initialValue instanceof PTReference) {
-      tc.typeCheck(((PTReference) initialValue).deref());
-      newSymTableRef = (PTReference) initialValue;
+    if (value instanceof PTReference) {
+      tc.typeCheck(((PTReference) value).deref());
+      newSymTableRef = (PTReference) value;
     } else if (tc instanceof PTAnyTypeConstraint) {
-      newSymTableRef = new PTAnyTypeReference(tc, initialValue);
+      newSymTableRef = new PTAnyTypeReference(tc, value);
     } else {
-      newSymTableRef = new PTReference<PTType>(tc, initialValue);
+      newSymTableRef = new PTReference<PTType>(tc, value);
     }
 
     log.debug("Declared {} with ref = {}", id, newSymTableRef);
     this.symbolTable.put(id, newSymTableRef);
+    this.generation++;
+
+    if (this.slotProg != null) {
+      final int slot = this.slotProg.getVarSlot(id);
+      if (slot >= 0 && slot < this.slotRefs.length) {
+        this.slotRefs[slot] = newSymTableRef;
+      }
+    }
+  }
+
+  /**
+   * Returns a counter that changes whenever a new identifier is declared
+   * in this scope; callers that cache resolutions against this scope
+   * use it to detect declarations that may shadow those resolutions.
+   * @return the current generation of this scope
+   */
+  public int getGeneration() {
+    return this.generation;
   }
 
   /**
@@ -125,6 +185,31 @@ public class Scope {
     return this.symbolTable.get(id);
   }
 
+  /**
+   * Retrieves the reference assigned to the provided identifier, by slot
+   * if this scope holds its variables at the slots of the given program.
+   * @param p the program in which the identifier is being resolved
+   * @param slot the slot assigned to the identifier by that program, or
+   *    -1 if it has none
+   * @param id the identifier to resolve
+   * @return the reference if the identifier has been declared, otherwise null
+   */
+  public PTReference<PTType> resolveVar(final PeopleCodeProg p,
+      final int slot, final String id) {
+    if (p == this.slotProg && slot >= 0 && slot < this.slotRefs.length) {
+      return this.slotRefs[slot];
+    }
+    return this.symbolTable.get(id);
+  }
+
+  /**
+   * Returns the identifiers declared in this scope.
+   * @return the declared identifiers
+   */
+  public Set<String> getDeclaredIds() {
+    return this.symbolTable.keySet();
+  }
+
   /**
    * Determines if the provided identifier has been declared in this scope.
    * @param id the identifier to check
@@ -11,6 +11,9 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -33,15 +36,22 @@ import org.springframework.core.io.Resource;
  * Accepts emissions from the OPS runtime and verifies
  * them against a PS tracefile; the exact tracefile is
  * determined by the value of system properties passed
- * to OPS at execution.
+ * to OPS at execution. Each RuntimeSession owns one verifier; the
+ * static methods below operate on the verifier of the session bound
+ * to the calling thread.
+ *
+ * Setting the "productionMode" system property to true disables
+ * verification entirely: no tracefile is read, and code that makes
+ * emissions checks isEnabled() before building them, so that neither
+ * the emissions nor the strings they contain are created.
  */
 public final class TraceFileVerifier {
 
-  private static List<IEmission> unenforcedEmissions;
-  private static Map<String, Boolean> ignoredStmts;
-  private static String currTraceLine = "";
-  private static int currTraceLineNbr;
-  private static BufferedReader traceFileReader;
+  private final List<IEmission> unenforcedEmissions;
+  private final Map<String, Boolean> ignoredStmts;
+  private String currTraceLine = "";
+  private int currTraceLineNbr;
+  private BufferedReader traceFileReader;
   private static Pattern sqlTokenPattern, bindValPattern, pcStartPattern,
       pcBeginPattern, pcInstrPattern, pcEndPattern,
       pcFldDefaultPattern, pcExceptionCaughtPattern,
@@ -57,10 +67,10 @@ public final class TraceFileVerifier {
       keylistGenNotInCompKeylistPattern, keylistGenNotInInstallRecordPattern,
       keylistGenNotInPSOPTIONSPattern;
 
-  private static int coverageAreaStartLineNbr, coverageAreaEndLineNbr;
-  private static int numEnforcedSQLEmissions, numPCEmissionMatches;
-  private static int numTraceSQLStmts, numTraceSQLStmtsIgnored;
-  private static int numOPSOptionalPCInstrsEmitted;
+  private int coverageAreaStartLineNbr, coverageAreaEndLineNbr;
+  private int numEnforcedSQLEmissions, numPCEmissionMatches;
+  private int numTraceSQLStmts, numTraceSQLStmtsIgnored;
+  private int numOPSOptionalPCInstrsEmitted;
 
   // Define regex group indices here rather than as magic nbrs.
   private static final int GROUP1 = 1;
@@ -75,15 +85,25 @@ public final class TraceFileVerifier {
   private static final int GROUP10 = 10;
   private static final int GROUP11 = 11;
 
-  private static boolean isPausedAndWaitingToSyncUp, isInPRMEmissionRegion;
-  private static IEmission emissionToSyncUpOn;
+  private boolean isPausedAndWaitingToSyncUp, isInPRMEmissionRegion;
+  private IEmission emissionToSyncUpOn;
+
+  private static final boolean isEnabled;
+  private static ThreadMXBean threadMXBean;
+
+  // CPU time of the session's thread when the verifier was initialized,
+  // and the CPU time spent since then matching emissions in the verifier.
+  private String componentName;
+  private long startCpuNanos;
+  private long verifierCpuNanos;
 
   private static Logger log = LogManager.getLogger(
       TraceFileVerifier.class.getName());
 
   static {
-    unenforcedEmissions = new ArrayList<IEmission>();
-    ignoredStmts = new HashMap<String, Boolean>();
+    isEnabled = !Boolean.getBoolean("productionMode");
+    threadMXBean = ManagementFactory.getThreadMXBean();
+
     sqlTokenPattern = Pattern.compile("\\sStmt=(.*)");
     bindValPattern = Pattern.compile(
         "\\sBind-(\\d+)\\stype=\\d+\\slength=\\d+\\svalue=(.*)");
@@ -159,7 +179,18 @@ public final class TraceFileVerifier {
         Pattern.compile("\\s{16}\\sNot\\sfound\\sin\\sPSOPTIONS$");
   }
 
-  private TraceFileVerifier() {}
+  /**
+   * Creates a verifier with no tracefile open; only RuntimeSession
+   * should call this.
+   */
+  TraceFileVerifier() {
+    this.unenforcedEmissions = new ArrayList<IEmission>();
+    this.ignoredStmts = new HashMap<String, Boolean>();
+  }
+
+  private static TraceFileVerifier current() {
+    return RuntimeSession.current().getVerifier();
+  }
 
   /**
    * Initializes the verifier with the component runtime
@@ -167,21 +198,48 @@ public final class TraceFileVerifier {
    * @param profile the component runtime profile to verify
    */
   public static void init(final ComponentRuntimeProfile profile) {
+    final TraceFileVerifier tfv = current();
+    tfv.componentName = profile.getComponentName();
+    tfv.startCpuNanos = threadCpuNanos();
+
+    if (!isEnabled) {
+      log.info("Running in production mode; tracefile verification and all "
+          + "emissions are disabled.");
+      return;
+    }
+
     /*
      * Open trace file for reading.
      */
     try {
-      traceFileReader = new BufferedReader(new FileReader(
+      tfv.traceFileReader = new BufferedReader(new FileReader(
           new File("trace/" + profile.getTraceFileName())));
     } catch (final java.io.FileNotFoundException fnfe) {
       throw new OPSVMachRuntimeException(fnfe.getMessage(), fnfe);
     }
 
     ignoreStmtsInFile("ignoredSql_ORACLE.dat");
+    tfv.verifierCpuNanos += threadCpuNanos() - tfv.startCpuNanos;
+  }
+
+  /**
+   * Returns whether emissions are being verified; if not (i.e., in
+   * production mode), emissions should not be built or submitted.
+   * @return false if running in production mode, true otherwise
+   */
+  public static boolean isEnabled() {
+    return isEnabled;
   }
 
   public static boolean isVerifierPaused() {
-    return isPausedAndWaitingToSyncUp;
+    return current().isPausedAndWaitingToSyncUp;
+  }
+
+  private static long threadCpuNanos() {
+    if (!threadMXBean.isCurrentThreadCpuTimeSupported()) {
+      return 0L;
+    }
+    return threadMXBean.getCurrentThreadCpuTime();
   }
 
   /**
@@ -193,6 +251,7 @@ public final class TraceFileVerifier {
    * @param filename name of file in classpath containing SQL stmts to ignore.
    */
   public static void ignoreStmtsInFile(final String filename) {
+    final TraceFileVerifier tfv = current();
     try {
       final Resource ignoredSqlRsrc = new ClassPathResource(filename);
       final BufferedReader ignoreFileReader = new BufferedReader(
@@ -200,7 +259,7 @@ public final class TraceFileVerifier {
 
       String line;
       while ((line = ignoreFileReader.readLine()) != null) {
-        ignoredStmts.put(line, true);
+        tfv.ignoredStmts.put(line, true);
       }
       ignoreFileReader.close();
     } catch (final java.io.FileNotFoundException fnfe) {
@@ -216,8 +275,11 @@ public final class TraceFileVerifier {
    * @param opsEmission emission from OPS that should not be enforced
    */
   public static void submitUnenforcedEmission(final IEmission opsEmission) {
+    if (!isEnabled) {
+      return;
+    }
 //    log.debug(opsEmission);
-    unenforcedEmissions.add(opsEmission);
+    current().unenforcedEmissions.add(opsEmission);
   }
 
   /**
@@ -226,16 +288,31 @@ public final class TraceFileVerifier {
    * @param opsEmission emission from OPS that SHOULD be enforced
    */
   public static void submitEnforcedEmission(final IEmission opsEmission) {
+    if (!isEnabled) {
+      return;
+    }
+
+    final TraceFileVerifier tfv = current();
+    final long startCpuNanos = threadCpuNanos();
+    try {
+      verifyEnforcedEmission(tfv, opsEmission);
+    } finally {
+      tfv.verifierCpuNanos += threadCpuNanos() - startCpuNanos;
+    }
+  }
+
+  private static void verifyEnforcedEmission(final TraceFileVerifier tfv,
+      final IEmission opsEmission) {
     if(!(opsEmission instanceof OPSStmt)) {
       log.debug(opsEmission);
     }
 
-    if (isPausedAndWaitingToSyncUp) {
-      log.debug("[VERIFIER:PAUSED] Waiting for interpreter to emit: {}", emissionToSyncUpOn);
+    if (tfv.isPausedAndWaitingToSyncUp) {
+      log.debug("[VERIFIER:PAUSED] Waiting for interpreter to emit: {}", tfv.emissionToSyncUpOn);
     }
 
     IEmission traceEmission;
-    if (coverageAreaStartLineNbr == 0) {
+    if (tfv.coverageAreaStartLineNbr == 0) {
       /*
        * If this is the first emission being matched, seek
        * to the match in the trace file. It is assumed that the first
@@ -244,20 +321,20 @@ public final class TraceFileVerifier {
        * generated with a non-empty cache, this assumption may not be valid.
        */
       do {
-        traceEmission = getNextTraceEmission();
+        traceEmission = tfv.getNextTraceEmission();
       } while (traceEmission != null
             && !opsEmission.equals(traceEmission));
 
       if (traceEmission != null) {
-        coverageAreaStartLineNbr = currTraceLineNbr;
-        numEnforcedSQLEmissions++;
+        tfv.coverageAreaStartLineNbr = tfv.currTraceLineNbr;
+        tfv.numEnforcedSQLEmissions++;
         return;
       }
     } else {
-      if (isPausedAndWaitingToSyncUp) {
-        traceEmission = emissionToSyncUpOn;
+      if (tfv.isPausedAndWaitingToSyncUp) {
+        traceEmission = tfv.emissionToSyncUpOn;
       } else {
-        traceEmission = getNextTraceEmission();
+        traceEmission = tfv.getNextTraceEmission();
       }
     }
 
@@ -269,20 +346,20 @@ public final class TraceFileVerifier {
     if (opsEmission.equals(traceEmission)) {
       // Increment emission-specific counter.
       if (opsEmission instanceof OPSStmt) {
-        numEnforcedSQLEmissions++;
+        tfv.numEnforcedSQLEmissions++;
       } else {
-        numPCEmissionMatches++;
+        tfv.numPCEmissionMatches++;
       }
 
-      if (isPausedAndWaitingToSyncUp) {
+      if (tfv.isPausedAndWaitingToSyncUp) {
         log.debug("[VERIFIER:RESUMED] Interpreter has just synced up on matching "
             + "emission: {}", opsEmission);
-        isPausedAndWaitingToSyncUp = false;
-        emissionToSyncUpOn = null;
+        tfv.isPausedAndWaitingToSyncUp = false;
+        tfv.emissionToSyncUpOn = null;
       }
-    } else if (isPausedAndWaitingToSyncUp) {
+    } else if (tfv.isPausedAndWaitingToSyncUp) {
       log.debug("[VERIFIER:DISCARDING] OPS emission ({}) does not match emission to sync "
-          + "up on: {}", opsEmission, emissionToSyncUpOn);
+          + "up on: {}", opsEmission, tfv.emissionToSyncUpOn);
 
     /*
      * Look at DERIVED_CS.SRVC_IND_NEG.RowInit. There is a
@@ -309,24 +386,24 @@ public final class TraceFileVerifier {
 
       // If we don't have a match and the trace file emitted a Break w/o semicolon, pause
       // and wait for interpreter to sync up.
-      isPausedAndWaitingToSyncUp = true;
-      emissionToSyncUpOn = getNextTraceEmission();
+      tfv.isPausedAndWaitingToSyncUp = true;
+      tfv.emissionToSyncUpOn = tfv.getNextTraceEmission();
 
       log.debug("[VERIFIER:PAUSING] Encountered Break w/o semicolon in tracefile; "
           + "this is a known problem emission, so we will wait for interpreter to sync up "
-          + "on the trace emission immediately after it: {}", emissionToSyncUpOn);
+          + "on the trace emission immediately after it: {}", tfv.emissionToSyncUpOn);
     } else if (opsEmission instanceof PCInstruction
         && ((PCInstruction) opsEmission).isOptional()) {
 
       // Unlike above, we do NOT skip to the next trace emission; OPS must match against
       // this one.
-      isPausedAndWaitingToSyncUp = true;
-      emissionToSyncUpOn = traceEmission;
+      tfv.isPausedAndWaitingToSyncUp = true;
+      tfv.emissionToSyncUpOn = traceEmission;
 
       log.debug("[VERIFIER:PAUSING] Ignoring optional OPS instruction (" + opsEmission + ") "
-          + "and waiting for OPS to emit: {}", emissionToSyncUpOn);
+          + "and waiting for OPS to emit: {}", tfv.emissionToSyncUpOn);
 
-      numOPSOptionalPCInstrsEmitted++;
+      tfv.numOPSOptionalPCInstrsEmitted++;
 
     } else {
       log.fatal("=== Emission Mismatch! =======================");
@@ -336,27 +413,27 @@ public final class TraceFileVerifier {
     }
   }
 
-  private static IEmission getNextTraceEmission() {
+  private IEmission getNextTraceEmission() {
 
     // do-while because we want to check the line returned from the prior call
-    // to getNextTraceLine().
+    // to this.getNextTraceLine().
     do {
 
-      final Matcher sqlMatcher = sqlTokenPattern.matcher(currTraceLine);
+      final Matcher sqlMatcher = sqlTokenPattern.matcher(this.currTraceLine);
       if (sqlMatcher.find()) {
-        numTraceSQLStmts++;
+        this.numTraceSQLStmts++;
 
-        final PSStmt psStmt = new PSStmt(sqlMatcher.group(1), currTraceLineNbr);
+        final PSStmt psStmt = new PSStmt(sqlMatcher.group(1), this.currTraceLineNbr);
 
         // If the stmt is in the ignored file, skip it.
-        if (ignoredStmts.containsKey(psStmt.getOriginalStmt())) {
-          numTraceSQLStmtsIgnored++;
+        if (this.ignoredStmts.containsKey(psStmt.getOriginalStmt())) {
+          this.numTraceSQLStmtsIgnored++;
           continue;
         }
 
         // Keep reading lines for bind values.
-        while ((currTraceLine = getNextTraceLine()) != null) {
-          final Matcher bindValMatcher = bindValPattern.matcher(currTraceLine);
+        while ((this.currTraceLine = this.getNextTraceLine()) != null) {
+          final Matcher bindValMatcher = bindValPattern.matcher(this.currTraceLine);
           if (bindValMatcher.find()) {
             psStmt.getBindVals().put(Integer.parseInt(bindValMatcher
                 .group(GROUP1)), bindValMatcher.group(GROUP2));
@@ -369,44 +446,44 @@ public final class TraceFileVerifier {
         return psStmt;
       }
 
-      final Matcher pcStartMatcher = pcStartPattern.matcher(currTraceLine);
+      final Matcher pcStartMatcher = pcStartPattern.matcher(this.currTraceLine);
       if (pcStartMatcher.find()) {
         // We don't want the next call to check this line again.
-        currTraceLine = getNextTraceLine();
+        this.currTraceLine = this.getNextTraceLine();
         return new PCStart(pcStartMatcher.group(GROUP1),
             pcStartMatcher.group(GROUP2), pcStartMatcher.group(GROUP3),
             pcStartMatcher.group(GROUP4));
       }
 
-      final Matcher pcBeginMatcher = pcBeginPattern.matcher(currTraceLine);
+      final Matcher pcBeginMatcher = pcBeginPattern.matcher(this.currTraceLine);
       if (pcBeginMatcher.find()) {
         // We don't want the next call to check this line again.
-        currTraceLine = getNextTraceLine();
+        this.currTraceLine = this.getNextTraceLine();
         return new PCBegin(pcBeginMatcher.group(GROUP1),
             Integer.parseInt(pcBeginMatcher.group(GROUP2)),
             Integer.parseInt(pcBeginMatcher.group(GROUP3)));
       }
 
-      final Matcher pcInstrMatcher = pcInstrPattern.matcher(currTraceLine);
+      final Matcher pcInstrMatcher = pcInstrPattern.matcher(this.currTraceLine);
       if (pcInstrMatcher.find()) {
         // We don't want the next call to check this line again.
-        currTraceLine = getNextTraceLine();
+        this.currTraceLine = this.getNextTraceLine();
         return new PCInstruction(pcInstrMatcher.group(GROUP1));
       }
 
-      final Matcher pcEndMatcher = pcEndPattern.matcher(currTraceLine);
+      final Matcher pcEndMatcher = pcEndPattern.matcher(this.currTraceLine);
       if (pcEndMatcher.find()) {
         // We don't want the next call to check this line again.
-        currTraceLine = getNextTraceLine();
+        this.currTraceLine = this.getNextTraceLine();
         return new PCEnd(pcEndMatcher.group(GROUP1),
             pcEndMatcher.group(GROUP2), pcEndMatcher.group(GROUP3),
             pcEndMatcher.group(GROUP4));
       }
 
-      final Matcher pcFldDefaultMatcher = pcFldDefaultPattern.matcher(currTraceLine);
+      final Matcher pcFldDefaultMatcher = pcFldDefaultPattern.matcher(this.currTraceLine);
       if (pcFldDefaultMatcher.find()) {
         // We don't want the next call to check this line again.
-        currTraceLine = getNextTraceLine();
+        this.currTraceLine = this.getNextTraceLine();
         final PCFldDefaultEmission fldDefEmission =
             new PCFldDefaultEmission(pcFldDefaultMatcher.group(GROUP1),
             pcFldDefaultMatcher.group(GROUP2), pcFldDefaultMatcher.group(GROUP5));
@@ -420,10 +497,10 @@ public final class TraceFileVerifier {
       }
 
       final Matcher pcExCaughtMatcher =
-          pcExceptionCaughtPattern.matcher(currTraceLine);
+          pcExceptionCaughtPattern.matcher(this.currTraceLine);
       if (pcExCaughtMatcher.find()) {
         // We don't want the next call to check this line again.
-        currTraceLine = getNextTraceLine();
+        this.currTraceLine = this.getNextTraceLine();
         final PCExceptionCaught exEmission =
             new PCExceptionCaught(
                 pcExCaughtMatcher.group(GROUP1),
@@ -435,27 +512,27 @@ public final class TraceFileVerifier {
       }
 
       final Matcher beginScrollsMatcher =
-          beginScrollsPattern.matcher(currTraceLine);
+          beginScrollsPattern.matcher(this.currTraceLine);
       if (beginScrollsMatcher.find()) {
         // We don't want the next call to check this line again.
-        currTraceLine = getNextTraceLine();
+        this.currTraceLine = this.getNextTraceLine();
         return new BeginScrolls(
             ScrollEmissionContext.fromLabel(beginScrollsMatcher.group(GROUP1)));
       }
 
       final Matcher endScrollsMatcher =
-          endScrollsPattern.matcher(currTraceLine);
+          endScrollsPattern.matcher(this.currTraceLine);
       if (endScrollsMatcher.find()) {
         // We don't want the next call to check this line again.
-        currTraceLine = getNextTraceLine();
+        this.currTraceLine = this.getNextTraceLine();
         return new EndScrolls();
       }
 
       final Matcher beginLevelMatcher =
-          beginLevelPattern.matcher(currTraceLine);
+          beginLevelPattern.matcher(this.currTraceLine);
       if (beginLevelMatcher.find()) {
         // We don't want the next call to check this line again.
-        currTraceLine = getNextTraceLine();
+        this.currTraceLine = this.getNextTraceLine();
         return new BeginLevel(
             beginLevelMatcher.group(GROUP1),
             Integer.parseInt(beginLevelMatcher.group(GROUP3)),
@@ -470,10 +547,10 @@ public final class TraceFileVerifier {
       }
 
       final Matcher endLevelMatcher =
-          endLevelPattern.matcher(currTraceLine);
+          endLevelPattern.matcher(this.currTraceLine);
       if (endLevelMatcher.find()) {
         // We don't want the next call to check this line again.
-        currTraceLine = getNextTraceLine();
+        this.currTraceLine = this.getNextTraceLine();
         return new EndLevel(
             endLevelMatcher.group(GROUP1),
             Integer.parseInt(endLevelMatcher.group(GROUP3)),
@@ -481,10 +558,10 @@ public final class TraceFileVerifier {
       }
 
       final Matcher recMatcher =
-          recPattern.matcher(currTraceLine);
+          recPattern.matcher(this.currTraceLine);
       if (recMatcher.find()) {
         // We don't want the next call to check this line again.
-        currTraceLine = getNextTraceLine();
+        this.currTraceLine = this.getNextTraceLine();
         return new RecInScroll(
             recMatcher.group(GROUP1),
             recMatcher.group(GROUP3),
@@ -493,20 +570,20 @@ public final class TraceFileVerifier {
       }
 
       final Matcher rowMatcher =
-          rowPattern.matcher(currTraceLine);
+          rowPattern.matcher(this.currTraceLine);
       if (rowMatcher.find()) {
         // We don't want the next call to check this line again.
-        currTraceLine = getNextTraceLine();
+        this.currTraceLine = this.getNextTraceLine();
         return new RowInScroll(
             rowMatcher.group(GROUP1),
             Integer.parseInt(rowMatcher.group(GROUP3)));
       }
 
       final Matcher cRecBufMatcher =
-          cRecBufPattern.matcher(currTraceLine);
+          cRecBufPattern.matcher(this.currTraceLine);
       if (cRecBufMatcher.find()) {
         // We don't want the next call to check this line again.
-        currTraceLine = getNextTraceLine();
+        this.currTraceLine = this.getNextTraceLine();
         return new CRecBuf(
             cRecBufMatcher.group(GROUP1),
             cRecBufMatcher.group(GROUP3),
@@ -515,10 +592,10 @@ public final class TraceFileVerifier {
       }
 
       final Matcher cFldBufMatcher =
-          cFldBufPattern.matcher(currTraceLine);
+          cFldBufPattern.matcher(this.currTraceLine);
       if (cFldBufMatcher.find()) {
         // We don't want the next call to check this line again.
-        currTraceLine = getNextTraceLine();
+        this.currTraceLine = this.getNextTraceLine();
         return new CFldBuf(
             cFldBufMatcher.group(GROUP1),
             cFldBufMatcher.group(GROUP3),
@@ -527,21 +604,21 @@ public final class TraceFileVerifier {
       }
 
       final Matcher scrollIdxMatcher =
-          scrollIdxPattern.matcher(currTraceLine);
+          scrollIdxPattern.matcher(this.currTraceLine);
       if (scrollIdxMatcher.find()) {
         // We don't want the next call to check this line again.
-        currTraceLine = getNextTraceLine();
+        this.currTraceLine = this.getNextTraceLine();
         return new ScrollIndex(
             scrollIdxMatcher.group(GROUP1),
             Integer.parseInt(scrollIdxMatcher.group(GROUP3)));
       }
 
       final Matcher prmHdrMatcher =
-          prmHdrPattern.matcher(currTraceLine);
+          prmHdrPattern.matcher(this.currTraceLine);
       if (prmHdrMatcher.find()) {
         // We don't want the next call to check this line again.
-        currTraceLine = getNextTraceLine();
-        isInPRMEmissionRegion = true;
+        this.currTraceLine = this.getNextTraceLine();
+        this.isInPRMEmissionRegion = true;
         return new PRMHeader(
             prmHdrMatcher.group(GROUP1),
             prmHdrMatcher.group(GROUP2),
@@ -549,175 +626,175 @@ public final class TraceFileVerifier {
             Integer.parseInt(prmHdrMatcher.group(GROUP4)));
       }
 
-      if (isInPRMEmissionRegion) {
+      if (this.isInPRMEmissionRegion) {
         final Matcher prmEntryMatcher =
-            prmEntryPattern.matcher(currTraceLine);
+            prmEntryPattern.matcher(this.currTraceLine);
         if (prmEntryMatcher.find()) {
           // We don't want the next call to check this line again.
-          currTraceLine = getNextTraceLine();
+          this.currTraceLine = this.getNextTraceLine();
           return new PRMEntry(prmEntryMatcher.group(GROUP1));
         }
       }
 
       final Matcher relDispStartMatcher =
-          relDispStartPattern.matcher(currTraceLine);
+          relDispStartPattern.matcher(this.currTraceLine);
       if (relDispStartMatcher.find()) {
         // We don't want the next call to check this line again.
-        currTraceLine = getNextTraceLine();
+        this.currTraceLine = this.getNextTraceLine();
         return new RelDispStart();
       }
 
       final Matcher relDispFinishMatcher =
-          relDispFinishPattern.matcher(currTraceLine);
+          relDispFinishPattern.matcher(this.currTraceLine);
       if (relDispFinishMatcher.find()) {
         // We don't want the next call to check this line again.
-        currTraceLine = getNextTraceLine();
+        this.currTraceLine = this.getNextTraceLine();
         return new RelDispFinish();
       }
 
       final Matcher relDispFldStartMatcher =
-          relDispFldStartPattern.matcher(currTraceLine);
+          relDispFldStartPattern.matcher(this.currTraceLine);
       if (relDispFldStartMatcher.find()) {
         // We don't want the next call to check this line again.
-        currTraceLine = getNextTraceLine();
+        this.currTraceLine = this.getNextTraceLine();
         return new RelDispFldStart(relDispFldStartMatcher.group(GROUP1));
       }
 
       final Matcher relDispFldCompleteMatcher =
-          relDispFldCompletePattern.matcher(currTraceLine);
+          relDispFldCompletePattern.matcher(this.currTraceLine);
       if (relDispFldCompleteMatcher.find()) {
         // We don't want the next call to check this line again.
-        currTraceLine = getNextTraceLine();
+        this.currTraceLine = this.getNextTraceLine();
         return new RelDispFldComplete(relDispFldCompleteMatcher.group(GROUP1));
       }
 
       final Matcher keylistGenStartMatcher =
-          keylistGenStartPattern.matcher(currTraceLine);
+          keylistGenStartPattern.matcher(this.currTraceLine);
       if (keylistGenStartMatcher.find()) {
         // We don't want the next call to check this line again.
-        currTraceLine = getNextTraceLine();
+        this.currTraceLine = this.getNextTraceLine();
         return new KeylistGenStart();
       }
 
       final Matcher keylistGenDetectedKeyMatcher =
-          keylistGenDetectedKeyPattern.matcher(currTraceLine);
+          keylistGenDetectedKeyPattern.matcher(this.currTraceLine);
       if (keylistGenDetectedKeyMatcher.find()) {
         // We don't want the next call to check this line again.
-        currTraceLine = getNextTraceLine();
+        this.currTraceLine = this.getNextTraceLine();
         return new KeylistGenDetectedKey(
             keylistGenDetectedKeyMatcher.group(GROUP1));
       }
 
       final Matcher keylistGenFindingKeyMatcher =
-          keylistGenFindingKeyPattern.matcher(currTraceLine);
+          keylistGenFindingKeyPattern.matcher(this.currTraceLine);
       if (keylistGenFindingKeyMatcher.find()) {
         // We don't want the next call to check this line again.
-        currTraceLine = getNextTraceLine();
+        this.currTraceLine = this.getNextTraceLine();
         return new KeylistGenFindingKey(
             keylistGenFindingKeyMatcher.group(GROUP1));
       }
 
       final Matcher keylistGenNotInKeyBufferMatcher =
-          keylistGenNotInKeyBufferPattern.matcher(currTraceLine);
+          keylistGenNotInKeyBufferPattern.matcher(this.currTraceLine);
       if (keylistGenNotInKeyBufferMatcher.find()) {
         // We don't want the next call to check this line again.
-        currTraceLine = getNextTraceLine();
+        this.currTraceLine = this.getNextTraceLine();
         return new KeylistGenNotInKeyBuffer();
       }
 
       final Matcher keylistGenSearchingCompBuffersMatcher =
-          keylistGenSearchingCompBuffersPattern.matcher(currTraceLine);
+          keylistGenSearchingCompBuffersPattern.matcher(this.currTraceLine);
       if (keylistGenSearchingCompBuffersMatcher.find()) {
         // We don't want the next call to check this line again.
-        currTraceLine = getNextTraceLine();
+        this.currTraceLine = this.getNextTraceLine();
         return new KeylistGenSearchingCompBuffers(
             keylistGenSearchingCompBuffersMatcher.group(GROUP1));
       }
 
       final Matcher keylistGenScanningLevelMatcher =
-          keylistGenScanningLevelPattern.matcher(currTraceLine);
+          keylistGenScanningLevelPattern.matcher(this.currTraceLine);
       if (keylistGenScanningLevelMatcher.find()) {
         // We don't want the next call to check this line again.
-        currTraceLine = getNextTraceLine();
+        this.currTraceLine = this.getNextTraceLine();
         return new KeylistGenScanningLevel(
             Integer.parseInt(keylistGenScanningLevelMatcher.group(GROUP1)));
       }
 
       final Matcher keylistGenScanningRecordMatcher =
-          keylistGenScanningRecordPattern.matcher(currTraceLine);
+          keylistGenScanningRecordPattern.matcher(this.currTraceLine);
       if (keylistGenScanningRecordMatcher.find()) {
         // We don't want the next call to check this line again.
-        currTraceLine = getNextTraceLine();
+        this.currTraceLine = this.getNextTraceLine();
         return new KeylistGenScanningRecord(
             keylistGenScanningRecordMatcher.group(GROUP1),
             keylistGenScanningRecordMatcher.group(GROUP2));
       }
 
       final Matcher keylistGenFoundInRecordMatcher =
-          keylistGenFoundInRecordPattern.matcher(currTraceLine);
+          keylistGenFoundInRecordPattern.matcher(this.currTraceLine);
       if (keylistGenFoundInRecordMatcher.find()) {
         // We don't want the next call to check this line again.
-        currTraceLine = getNextTraceLine();
+        this.currTraceLine = this.getNextTraceLine();
         return new KeylistGenFoundInRecord(
             keylistGenFoundInRecordMatcher.group(GROUP2),
             keylistGenFoundInRecordMatcher.group(GROUP1));
       }
 
       final Matcher keylistGenFoundInCBufferMatcher =
-          keylistGenFoundInCBufferPattern.matcher(currTraceLine);
+          keylistGenFoundInCBufferPattern.matcher(this.currTraceLine);
       if (keylistGenFoundInCBufferMatcher.find()) {
         // We don't want the next call to check this line again.
-        currTraceLine = getNextTraceLine();
+        this.currTraceLine = this.getNextTraceLine();
         return new KeylistGenFoundInCBuffer(
             keylistGenFoundInCBufferMatcher.group(GROUP1));
       }
 
       final Matcher keylistGenNotInCompBuffersMatcher =
-          keylistGenNotInCompBuffersPattern.matcher(currTraceLine);
+          keylistGenNotInCompBuffersPattern.matcher(this.currTraceLine);
       if (keylistGenNotInCompBuffersMatcher.find()) {
         // We don't want the next call to check this line again.
-        currTraceLine = getNextTraceLine();
+        this.currTraceLine = this.getNextTraceLine();
         return new KeylistGenNotInCompBuffers();
       }
 
       final Matcher keylistGenNotInCompKeylistMatcher =
-          keylistGenNotInCompKeylistPattern.matcher(currTraceLine);
+          keylistGenNotInCompKeylistPattern.matcher(this.currTraceLine);
       if (keylistGenNotInCompKeylistMatcher.find()) {
         // We don't want the next call to check this line again.
-        currTraceLine = getNextTraceLine();
+        this.currTraceLine = this.getNextTraceLine();
         return new KeylistGenNotInCompKeylist();
       }
 
       final Matcher keylistGenNotInInstallRecordMatcher =
-          keylistGenNotInInstallRecordPattern.matcher(currTraceLine);
+          keylistGenNotInInstallRecordPattern.matcher(this.currTraceLine);
       if (keylistGenNotInInstallRecordMatcher.find()) {
         // We don't want the next call to check this line again.
-        currTraceLine = getNextTraceLine();
+        this.currTraceLine = this.getNextTraceLine();
         return new KeylistGenNotInInstallRecord();
       }
 
       final Matcher keylistGenNotInPSOPTIONSMatcher =
-          keylistGenNotInPSOPTIONSPattern.matcher(currTraceLine);
+          keylistGenNotInPSOPTIONSPattern.matcher(this.currTraceLine);
       if (keylistGenNotInPSOPTIONSMatcher.find()) {
         // We don't want the next call to check this line again.
-        currTraceLine = getNextTraceLine();
+        this.currTraceLine = this.getNextTraceLine();
         return new KeylistGenNotInPSOPTIONS();
       }
 
-      if (currTraceLine.endsWith("Page Constructed")) {
-        isInPRMEmissionRegion = false;
-        currTraceLine = getNextTraceLine();
+      if (this.currTraceLine.endsWith("Page Constructed")) {
+        this.isInPRMEmissionRegion = false;
+        this.currTraceLine = this.getNextTraceLine();
       }
-    } while ((currTraceLine = getNextTraceLine()) != null);
+    } while ((this.currTraceLine = this.getNextTraceLine()) != null);
     return null;
   }
 
-  private static String getNextTraceLine() {
+  private String getNextTraceLine() {
     String line = null;
 
     try {
-      line = traceFileReader.readLine();
-      currTraceLineNbr++;
+      line = this.traceFileReader.readLine();
+      this.currTraceLineNbr++;
     } catch (final java.io.IOException ioe) {
       throw new OPSVMachRuntimeException(ioe.getMessage(), ioe);
     }
@@ -729,8 +806,12 @@ public final class TraceFileVerifier {
    * that no more emissions will be emitted.
    */
   public static void closeTraceFile() {
+    final TraceFileVerifier tfv = current();
+    if (tfv.traceFileReader == null) {
+      return;
+    }
     try {
-      traceFileReader.close();
+      tfv.traceFileReader.close();
     } catch (final java.io.IOException ioe) {
       log.warn("Encountered IOException while attempting to close trace file.");
     }
@@ -745,33 +826,55 @@ public final class TraceFileVerifier {
    *    false otherwise
    */
   public static void logVerificationSummary(final boolean mismatchFlag) {
+    final TraceFileVerifier tfv = current();
+    final long cpuMillis = (threadCpuNanos() - tfv.startCpuNanos) / 1000000L;
+
+    if (!isEnabled) {
+      log.info("==============================================================");
+      log.info("[{}] Production Mode Summary",
+          mismatchFlag ? "FAILURE" : "SUCCESS");
+      log.info("==============================================================");
+      log.info("Component:\t\t\t\t{}", tfv.componentName);
+      log.info("CPU Time (Run, ms):\t\t\t{}", cpuMillis);
+      return;
+    }
 
     if (!mismatchFlag) {
-      coverageAreaEndLineNbr = currTraceLineNbr;
+      tfv.coverageAreaEndLineNbr = tfv.currTraceLineNbr;
     }
 
     log.info("==============================================================");
     log.info("[{}] Trace File Verification Summary",
         mismatchFlag ? "FAILURE" : "SUCCESS");
     log.info("==============================================================");
-    log.info("Trace lines seen:\t\t\t{}", currTraceLineNbr);
-    log.info("SQL Stmts in Ignore File:\t\t{}", ignoredStmts.size());
-    log.info("SQL Stmts Seen (Total / Ignored):\t{}\t\t{}", numTraceSQLStmts,
-        numTraceSQLStmtsIgnored);
-    log.info("Adhoc SQL Emissions:\t\t\t{}", unenforcedEmissions.size());
-    log.info("Enforced SQL Emissions:\t\t\t{}", numEnforcedSQLEmissions);
-    log.info("Enforced PC Emissions:\t\t\t{}", numPCEmissionMatches);
-    log.info("Optional PC Emissions:\t\t\t{}", numOPSOptionalPCInstrsEmitted);
+    log.info("Trace lines seen:\t\t\t{}", tfv.currTraceLineNbr);
+    log.info("SQL Stmts in Ignore File:\t\t{}", tfv.ignoredStmts.size());
+    log.info("SQL Stmts Seen (Total / Ignored):\t{}\t\t{}", tfv.numTraceSQLStmts,
+        tfv.numTraceSQLStmtsIgnored);
+    log.info("Adhoc SQL Emissions:\t\t\t{}", tfv.unenforcedEmissions.size());
+    log.info("Enforced SQL Emissions:\t\t\t{}", tfv.numEnforcedSQLEmissions);
+    log.info("Enforced PC Emissions:\t\t\t{}", tfv.numPCEmissionMatches);
+    log.info("Optional PC Emissions:\t\t\t{}", tfv.numOPSOptionalPCInstrsEmitted);
     log.info("Total Emissions:\t\t\t\t{}",
-        numEnforcedSQLEmissions + unenforcedEmissions.size()
-        + numPCEmissionMatches + numOPSOptionalPCInstrsEmitted);
+        tfv.numEnforcedSQLEmissions + tfv.unenforcedEmissions.size()
+        + tfv.numPCEmissionMatches + tfv.numOPSOptionalPCInstrsEmitted);
     log.info("Component Structure Valid?\t\t\t\t{}",
-        ComponentStructureVerifier.hasBeenVerified() ? "YES" : "!!NO!!");
+        RuntimeSession.current().hasComponentStructureBeenVerified() ? "YES" : "!!NO!!");
     log.info("Coverage Area Bounded?\t\t\t\t{}",
         mismatchFlag ? "!!NO!!" : "YES");
     log.info("Coverage Area (Start / End Lines):\tL_{}\t\tL_{}",
-        coverageAreaStartLineNbr, coverageAreaEndLineNbr);
+        tfv.coverageAreaStartLineNbr, tfv.coverageAreaEndLineNbr);
+
+    // Verifier time is that spent matching emissions against the
+    // tracefile; run time is everything else, including the building of
+    // emissions, which production mode also saves. Compare the run time
+    // with a production mode run to see the cost of building emissions.
+    final long verifierCpuMillis = tfv.verifierCpuNanos / 1000000L;
+    log.info("CPU Time for {} (Run, ms):\t\t{}", tfv.componentName,
+        cpuMillis - verifierCpuMillis);
+    log.info("CPU Time for {} (Verifier, ms):\t{}", tfv.componentName,
+        verifierCpuMillis);
     log.info("\nNext unmatched emission in trace file: {}",
-        getNextTraceEmission());
+        tfv.getNextTraceEmission());
   }
 }
@@ -0,0 +1,312 @@
+/*===---------------------------------------------------------------------===*\
+|*                       The OpenPplSoft Runtime Project                     *|
+|*                                                                           *|
+|*              This file is distributed under the MIT License.              *|
+|*                         See LICENSE.md for details.                       *|
+\*===---------------------------------------------------------------------===*/
+
+package org.openpplsoft.sql;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import org.openpplsoft.runtime.OPSVMachRuntimeException;
+
+/**
+ * Persists the results of static metadata queries (record, PeopleCode
+ * program, message catalog and HTML definitions) to a memory-mapped
+ * snapshot file, so that a warm process can build its definitions without
+ * issuing those queries again. Each entry is tagged with the PSVERSION
+ * object type that governs it; entries whose object type version has
+ * changed in the database since the snapshot was written are discarded.
+ * Only unenforced queries are ever served from the snapshot, as enforced
+ * queries must still be issued to remain in sync with the tracefile.
+ * The snapshot is enabled by passing the path of the snapshot file in the
+ * "defnSnapshotFile" system property.
+ */
+public final class DefnSnapshot {
+
+  private static Logger log =
+      LogManager.getLogger(DefnSnapshot.class.getName());
+
+  private static final int MAGIC = 0x4F505344;
+  private static final int FORMAT_VERSION = 1;
+
+  private static Map<String, String> coveredLabels;
+  private static Map<String, String> currObjTypeVersions;
+  private static Map<String, Entry> entries;
+  private static File snapshotFile;
+  private static volatile boolean hasNewEntries;
+  private static int numStaleEntries;
+  private static AtomicInteger numHits, numMisses;
+
+  static {
+    // Maps each covered static SQL label to its PSVERSION object type.
+    coveredLabels = new HashMap<String, String>();
+    coveredLabels.put("query.PSRECDEFN", "RDM");
+    coveredLabels.put("query.PSDBFIELD_PSRECFIELD_JOIN", "RDM");
+    coveredLabels.put("query.PSDBFIELD_PSRECFIELD_JOIN_ForSubrecords", "RDM");
+    coveredLabels.put("query.PSDBFLDLBL", "RDM");
+    coveredLabels.put("query.PSRECDEFN_Bulk", "RDM");
+    coveredLabels.put("query.PSDBFIELD_PSRECFIELD_JOIN_Bulk", "RDM");
+    coveredLabels.put(
+        "query.PSDBFIELD_PSRECFIELD_JOIN_ForSubrecords_Bulk", "RDM");
+    coveredLabels.put("query.PSDBFLDLBL_Bulk", "RDM");
+    coveredLabels.put("query.PSPCMPROG_CompPCList", "PPC");
+    coveredLabels.put("query.PSPCMPROG_RecordPCList", "PPC");
+    coveredLabels.put("query.PSPCMPROG_GetPROGTXT", "PPC");
+    coveredLabels.put("query.PSPCMPROG_GetRefs", "PPC");
+    coveredLabels.put("query.PSPCMPROG_GetPROGTXT_Bulk", "PPC");
+    coveredLabels.put("query.PSPCMPROG_GetRefs_Bulk", "PPC");
+    coveredLabels.put("query.PSMSGSETDEFN", "SYS");
+    coveredLabels.put("query.PSMSGCATDEFN", "SYS");
+    coveredLabels.put("query.PSCONTDEFN", "SYS");
+    coveredLabels.put("query.PSCONTENT", "SYS");
+
+    entries = new ConcurrentHashMap<String, Entry>();
+    numHits = new AtomicInteger();
+    numMisses = new AtomicInteger();
+  }
+
+  private DefnSnapshot() {}
+
+  /**
+   * Opens the snapshot file named by the "defnSnapshotFile" system
+   * property, if any; if the property is not set, the snapshot remains
+   * disabled and all metadata queries are sent to the database.
+   */
+  public static void open() {
+    final String path = System.getProperty("defnSnapshotFile");
+    if (path == null || path.trim().length() == 0) {
+      return;
+    }
+
+    snapshotFile = new File(path);
+    currObjTypeVersions = new HashMap<String, String>();
+    try (final OPSStmt ostmt = StmtLibrary.getStaticSQLStmt(
+            "query.PSVERSION", new String[]{});
+         final OPSResultSet rs = ostmt.executeQuery()) {
+      while (rs.next()) {
+        currObjTypeVersions.put(rs.getString("OBJECTTYPENAME").trim(),
+            rs.getString("VERSION"));
+      }
+    }
+
+    if (snapshotFile.exists()) {
+      load();
+    }
+  }
+
+  private static void load() {
+    final MappedByteBuffer buf;
+    try (final RandomAccessFile raf = new RandomAccessFile(snapshotFile, "r");
+         final FileChannel channel = raf.getChannel()) {
+      buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    } catch (final IOException ioe) {
+      throw new OPSVMachRuntimeException(ioe.getMessage(), ioe);
+    }
+
+    try {
+      if (buf.getInt() != MAGIC || buf.getInt() != FORMAT_VERSION) {
+        log.warn("Ignoring defn snapshot at {}; unrecognized format.",
+            snapshotFile);
+        hasNewEntries = true;
+        return;
+      }
+      readEntries(buf);
+    } catch (final BufferUnderflowException bue) {
+      // The file is truncated or corrupt; rebuild it from the database.
+      entries.clear();
+      numStaleEntries = 0;
+      log.warn("Ignoring defn snapshot at {}; unrecognized format.",
+          snapshotFile);
+      hasNewEntries = true;
+      return;
+    }
+
+    if (numStaleEntries > 0) {
+      hasNewEntries = true;
+    }
+    log.info("Loaded {} entries from defn snapshot at {}; discarded {} "
+        + "stale entries.", entries.size(), snapshotFile, numStaleEntries);
+  }
+
+  private static void readEntries(final ByteBuffer buf) {
+    final Map<String, String> snapshotVersions = new HashMap<String, String>();
+    final int numVersions = buf.getInt();
+    for (int i = 0; i < numVersions; i++) {
+      final String objType = MaterializedResult.readString(buf);
+      snapshotVersions.put(objType, MaterializedResult.readString(buf));
+    }
+
+    final int numEntries = buf.getInt();
+    for (int i = 0; i < numEntries; i++) {
+      final String key = MaterializedResult.readString(buf);
+      final String objType = MaterializedResult.readString(buf);
+      final int len = buf.getInt();
+      if (len < 0 || len > buf.remaining()) {
+        throw new BufferUnderflowException();
+      }
+
+      final ByteBuffer payload = buf.slice();
+      payload.limit(len);
+      buf.position(buf.position() + len);
+
+      final String version = snapshotVersions.get(objType);
+      if (version != null
+          && version.equals(currObjTypeVersions.get(objType))) {
+        entries.put(key, new Entry(objType, payload));
+      } else {
+        numStaleEntries++;
+      }
+    }
+  }
+
+  /**
+   * Writes the snapshot back to disk if any entries were added
+   * or discarded since it was opened.
+   */
+  public static void save() {
+    if (snapshotFile == null) {
+      return;
+    }
+
+    log.info("Defn snapshot hits: {}, misses: {}.", numHits, numMisses);
+    if (!hasNewEntries) {
+      return;
+    }
+
+    final File tmpFile = new File(snapshotFile.getPath() + ".tmp");
+    final File parentDir = snapshotFile.getAbsoluteFile().getParentFile();
+    if (parentDir != null) {
+      parentDir.mkdirs();
+    }
+
+    try (final DataOutputStream out = new DataOutputStream(
+            new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+      out.writeInt(MAGIC);
+      out.writeInt(FORMAT_VERSION);
+      out.writeInt(currObjTypeVersions.size());
+      for (Map.Entry<String, String> cursor
+          : currObjTypeVersions.entrySet()) {
+        MaterializedResult.writeString(out, cursor.getKey());
+        MaterializedResult.writeString(out, cursor.getValue());
+      }
+
+      // Copy the entries first, as they may be added to concurrently.
+      final Map<String, Entry> toWrite = new HashMap<String, Entry>(entries);
+      out.writeInt(toWrite.size());
+      for (Map.Entry<String, Entry> cursor : toWrite.entrySet()) {
+        MaterializedResult.writeString(out, cursor.getKey());
+        MaterializedResult.writeString(out, cursor.getValue().objType);
+
+        final ByteBuffer payload = cursor.getValue().payload.duplicate();
+        final byte[] bytes = new byte[payload.remaining()];
+        payload.get(bytes);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+      }
+    } catch (final IOException ioe) {
+      throw new OPSVMachRuntimeException(ioe.getMessage(), ioe);
+    }
+
+    try {
+      Files.move(tmpFile.toPath(), snapshotFile.toPath(),
+          StandardCopyOption.REPLACE_EXISTING);
+    } catch (final IOException ioe) {
+      throw new OPSVMachRuntimeException(ioe.getMessage(), ioe);
+    }
+    hasNewEntries = false;
+    log.info("Wrote {} entries to defn snapshot at {}.", entries.size(),
+        snapshotFile);
+  }
+
+  /**
+   * Determines whether the results of the static statement with the
+   * given label are served from the snapshot.
+   * @param uniqueLabel the label of the static SQL statement
+   * @return true if the snapshot is open and covers the statement
+   */
+  static boolean covers(final String uniqueLabel) {
+    return snapshotFile != null && coveredLabels.containsKey(uniqueLabel);
+  }
+
+  /**
+   * Retrieves the snapshotted result of the given statement.
+   * @param uniqueLabel the label of the static SQL statement
+   * @param stmt the statement, with its bind values attached
+   * @return the snapshotted result, or null if there is none
+   */
+  static MaterializedResult lookup(final String uniqueLabel,
+      final SQLStmt stmt) {
+    final Entry entry = entries.get(getKey(uniqueLabel, stmt));
+    if (entry == null) {
+      numMisses.incrementAndGet();
+      return null;
+    }
+    numHits.incrementAndGet();
+    return MaterializedResult.readFrom(entry.payload.duplicate());
+  }
+
+  /**
+   * Adds the result of the given statement to the snapshot.
+   * @param uniqueLabel the label of the static SQL statement
+   * @param stmt the statement, with its bind values attached
+   * @param result the result read from the database
+   */
+  static void store(final String uniqueLabel, final SQLStmt stmt,
+      final MaterializedResult result) {
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (final DataOutputStream out = new DataOutputStream(bytes)) {
+      result.writeTo(out);
+    } catch (final IOException ioe) {
+      throw new OPSVMachRuntimeException(ioe.getMessage(), ioe);
+    }
+
+    entries.put(getKey(uniqueLabel, stmt), new Entry(
+        coveredLabels.get(uniqueLabel), ByteBuffer.wrap(bytes.toByteArray())));
+    hasNewEntries = true;
+  }
+
+  /*
+   * The hash of the SQL text is included in the key so that entries
+   * written for an earlier version of a static statement are not reused.
+   */
+  private static String getKey(final String uniqueLabel, final SQLStmt stmt) {
+    final StringBuilder b = new StringBuilder(uniqueLabel);
+    b.append('#').append(Integer.toHexString(stmt.getSql().hashCode()));
+    final Map<Integer, String> bindVals = stmt.getBindVals();
+    for (int i = 1; i <= bindVals.size(); i++) {
+      b.append('\u0000').append(bindVals.get(i));
+    }
+    return b.toString();
+  }
+
+  private static final class Entry {
+    private final String objType;
+    private final ByteBuffer payload;
+
+    private Entry(final String oType, final ByteBuffer p) {
+      this.objType = oType;
+      this.payload = p;
+    }
+  }
+}
@@ -0,0 +1,146 @@
+/*===---------------------------------------------------------------------===*\
+|*                       The OpenPplSoft Runtime Project                     *|
+|*                                                                           *|
+|*              This file is distributed under the MIT License.              *|
+|*                         See LICENSE.md for details.                       *|
+\*===---------------------------------------------------------------------===*/
+
+package org.openpplsoft.sql;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.openpplsoft.pt.Record;
+import org.openpplsoft.pt.RecordField;
+
+/**
+ * Determines the JDBC fetch size (the number of rows retrieved per
+ * round trip to the database) for each class of statement issued by the
+ * runtime; the driver's default (10 rows for Oracle) makes large reads
+ * needlessly chatty. The fetch size for each class can be set with a
+ * system property, where 0 leaves the driver's default in place:
+ *
+ *  - "metadataFetchSize": statements in the static SQL defn file, which
+ *    load PeopleTools definitions.
+ *  - "fillFetchSize": statements that fill rowsets and records (Fill,
+ *    Select); if unset, the fetch size is sized adaptively, so that each
+ *    round trip retrieves approximately "fillFetchBytes" bytes, based on
+ *    the width of a row of the record being filled.
+ *  - "sqlFetchSize": statements run by SQL objects, which are typically
+ *    read with Fetch loops. (SQLExec reads a single row, and so uses the
+ *    driver default.)
+ */
+public final class FetchSizePolicy {
+
+  private static final int DEFAULT_METADATA_FETCH_SIZE = 100;
+  private static final int DEFAULT_SQL_FETCH_SIZE = 100;
+  private static final int DEFAULT_FILL_FETCH_BYTES = 256 * 1024;
+  private static final int MIN_FILL_FETCH_SIZE = 10;
+  private static final int MAX_FILL_FETCH_SIZE = 1000;
+
+  /*
+   * Estimated widths (in bytes) of values that are not sized by the
+   * field length: numbers, dates and times (selected as strings),
+   * and long/unbounded character and image fields.
+   */
+  private static final int NUMBER_WIDTH = 22;
+  private static final int DATE_WIDTH = 10;
+  private static final int DATETIME_WIDTH = 26;
+  private static final int LONG_VALUE_WIDTH = 4000;
+
+  private static int metadataFetchSize, sqlFetchSize;
+  private static int fillFetchSize, fillFetchBytes;
+
+  // Adaptive fill fetch sizes, by record name.
+  private static Map<String, Integer> fillFetchSizes;
+
+  static {
+    metadataFetchSize = readIntProperty("metadataFetchSize",
+        DEFAULT_METADATA_FETCH_SIZE);
+    sqlFetchSize = readIntProperty("sqlFetchSize", DEFAULT_SQL_FETCH_SIZE);
+    fillFetchSize = readIntProperty("fillFetchSize", -1);
+    fillFetchBytes = readIntProperty("fillFetchBytes",
+        DEFAULT_FILL_FETCH_BYTES);
+    fillFetchSizes = new ConcurrentHashMap<String, Integer>();
+  }
+
+  private FetchSizePolicy() {}
+
+  private static int readIntProperty(final String name,
+      final int defaultVal) {
+    final String val = System.getProperty(name);
+    if (val == null || val.trim().length() == 0) {
+      return defaultVal;
+    }
+    return Integer.parseInt(val.trim());
+  }
+
+  /**
+   * Gets the fetch size for statements that load PeopleTools defns.
+   * @return the fetch size, or 0 for the driver default
+   */
+  public static int forMetadata() {
+    return metadataFetchSize;
+  }
+
+  /**
+   * Gets the fetch size for statements run by SQL objects.
+   * @return the fetch size, or 0 for the driver default
+   */
+  public static int forSqlObject() {
+    return sqlFetchSize;
+  }
+
+  /**
+   * Gets the fetch size for statements that fill records of the
+   * provided defn.
+   * @param recDefn the defn of the records being filled
+   * @return the fetch size, or 0 for the driver default
+   */
+  public static int forFill(final Record recDefn) {
+    if (fillFetchSize >= 0) {
+      return fillFetchSize;
+    }
+
+    Integer size = fillFetchSizes.get(recDefn.getRecName());
+    if (size == null) {
+      final int rowWidth = Math.max(1, estimateRowWidth(recDefn));
+      size = Math.max(MIN_FILL_FETCH_SIZE,
+          Math.min(MAX_FILL_FETCH_SIZE, fillFetchBytes / rowWidth));
+      fillFetchSizes.put(recDefn.getRecName(), size);
+    }
+    return size;
+  }
+
+  /**
+   * Estimates the number of bytes in a row of the provided record,
+   * as it is selected by the runtime.
+   */
+  private static int estimateRowWidth(final Record recDefn) {
+    final List<RecordField> rfList = recDefn.getExpandedFieldList();
+    int width = 0;
+    for (final RecordField rf : rfList) {
+      switch (rf.getFieldType()) {
+        case CHARACTER:
+          width += rf.getLength() > 0 ? rf.getLength() : LONG_VALUE_WIDTH;
+          break;
+        case NUMBER:
+        case SIGNED_NUMBER:
+          width += NUMBER_WIDTH;
+          break;
+        case DATE:
+          width += DATE_WIDTH;
+          break;
+        case TIME:
+        case DATETIME:
+          width += DATETIME_WIDTH;
+          break;
+        default:
+          width += LONG_VALUE_WIDTH;
+          break;
+      }
+    }
+    return width;
+  }
+}
@@ -0,0 +1,404 @@
+/*===---------------------------------------------------------------------===*\
+|*                       The OpenPplSoft Runtime Project                     *|
+|*                                                                           *|
+|*              This file is distributed under the MIT License.              *|
+|*                         See LICENSE.md for details.                       *|
+\*===---------------------------------------------------------------------===*/
+
+package org.openpplsoft.sql;
+
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openpplsoft.runtime.OPSVMachRuntimeException;
+
+/**
+ * An immutable, fully materialized copy of a JDBC result set. Column
+ * values are held as String, BigDecimal, Timestamp or byte[] (for BLOBs);
+ * CLOBs are held as Strings. Instances can be written to and read from a
+ * compact binary encoding, which allows them to be persisted across runs.
+ */
+public final class MaterializedResult {
+
+  private static final byte TAG_NULL = 0;
+  private static final byte TAG_STRING = 1;
+  private static final byte TAG_DECIMAL = 2;
+  private static final byte TAG_TIMESTAMP = 3;
+  private static final byte TAG_BYTES = 4;
+
+  private final String[] colNames;
+  private final String[] colTypeNames;
+  private final Map<String, Integer> colIdxTable;
+  private final List<Object[]> rows;
+
+  /*
+   * Also used by RecordRowMapperBenchmark to build results without a
+   * database.
+   */
+  MaterializedResult(final String[] cNames, final String[] cTypeNames,
+      final List<Object[]> r) {
+    this.colNames = cNames;
+    this.colTypeNames = cTypeNames;
+    this.rows = r;
+    this.colIdxTable = new HashMap<String, Integer>();
+    for (int i = 0; i < cNames.length; i++) {
+      // JDBC column labels are case insensitive; the first match wins.
+      if (!this.colIdxTable.containsKey(cNames[i].toUpperCase())) {
+        this.colIdxTable.put(cNames[i].toUpperCase(), i + 1);
+      }
+    }
+  }
+
+  /**
+   * Reads all remaining rows from the provided result set into a new
+   * MaterializedResult; the result set is not closed by this method.
+   * @param rs the JDBC result set to read
+   * @return the materialized copy of the result set
+   */
+  public static MaterializedResult materialize(final ResultSet rs) {
+    try {
+      final ResultSetMetaData md = rs.getMetaData();
+      final int colCount = md.getColumnCount();
+      final String[] names = new String[colCount];
+      final String[] typeNames = new String[colCount];
+      for (int i = 0; i < colCount; i++) {
+        names[i] = md.getColumnName(i + 1);
+        typeNames[i] = md.getColumnTypeName(i + 1);
+      }
+
+      final List<Object[]> r = new ArrayList<Object[]>();
+      while (rs.next()) {
+        final Object[] row = new Object[colCount];
+        for (int i = 0; i < colCount; i++) {
+          row[i] = readColumn(rs, i + 1, typeNames[i]);
+        }
+        r.add(row);
+      }
+      return new MaterializedResult(names, typeNames, r);
+    } catch (final SQLException sqle) {
+      throw new OPSVMachRuntimeException(sqle.getMessage(), sqle);
+    }
+  }
+
+  private static Object readColumn(final ResultSet rs, final int colIdx,
+      final String typeName) throws SQLException {
+    if (typeName.equals("BLOB")) {
+      final Blob blob = rs.getBlob(colIdx);
+      if (blob == null) {
+        return null;
+      }
+      try (final InputStream stream = blob.getBinaryStream()) {
+        final byte[] bytes = new byte[(int) blob.length()];
+        int off = 0;
+        int n;
+        while (off < bytes.length
+            && (n = stream.read(bytes, off, bytes.length - off)) != -1) {
+          off += n;
+        }
+        blob.free();
+        return bytes;
+      } catch (final IOException ioe) {
+        throw new OPSVMachRuntimeException(ioe.getMessage(), ioe);
+      }
+    } else if (typeName.equals("CLOB")) {
+      final Clob clob = rs.getClob(colIdx);
+      if (clob == null) {
+        return null;
+      }
+      // Mirror OPSResultSet.getClobAsString, which drops line terminators.
+      try (final BufferedReader reader =
+          new BufferedReader(clob.getCharacterStream())) {
+        final StringBuilder sb = new StringBuilder();
+        String line;
+        while ((line = reader.readLine()) != null) {
+          sb.append(line);
+        }
+        clob.free();
+        return sb.toString();
+      } catch (final IOException ioe) {
+        throw new OPSVMachRuntimeException(ioe.getMessage(), ioe);
+      }
+    } else if (typeName.equals("NUMBER")) {
+      return rs.getBigDecimal(colIdx);
+    } else if (typeName.equals("DATE") || typeName.startsWith("TIMESTAMP")) {
+      return rs.getTimestamp(colIdx);
+    }
+    return rs.getString(colIdx);
+  }
+
+  /**
+   * @return the number of columns in this result
+   */
+  public int getColumnCount() {
+    return this.colNames.length;
+  }
+
+  /**
+   * @param colIdx the 1-based column index
+   * @return the name of the column at that index
+   */
+  public String getColumnName(final int colIdx) {
+    return this.colNames[colIdx - 1];
+  }
+
+  /**
+   * @param colIdx the 1-based column index
+   * @return the database type name of the column at that index
+   */
+  public String getColumnTypeName(final int colIdx) {
+    return this.colTypeNames[colIdx - 1];
+  }
+
+  /**
+   * Resolves a column name to its 1-based index.
+   * @param colName the name of the column (case insensitive)
+   * @return the 1-based index of the column
+   */
+  public int findColumn(final String colName) {
+    final Integer idx = this.colIdxTable.get(colName.toUpperCase());
+    if (idx == null) {
+      throw new OPSVMachRuntimeException("No column named " + colName
+          + " exists in this materialized result.");
+    }
+    return idx;
+  }
+
+  /**
+   * @return the number of rows in this result
+   */
+  public int getRowCount() {
+    return this.rows.size();
+  }
+
+  /**
+   * @param rowIdx the 0-based row index
+   * @param colIdx the 1-based column index
+   * @return the raw value held at the given row and column
+   */
+  public Object getValue(final int rowIdx, final int colIdx) {
+    return this.rows.get(rowIdx)[colIdx - 1];
+  }
+
+  /**
+   * Splits this result into one result per distinct (trimmed) value in the
+   * given column, preserving row order within each partition. Every key
+   * provided is present in the returned map; keys without any rows map to
+   * an empty result with the same columns.
+   * @param colName the name of the column to partition on
+   * @param keys the values expected in the partition column
+   * @return the partitions of this result, keyed by column value
+   */
+  public Map<String, MaterializedResult> partitionBy(final String colName,
+      final Collection<String> keys) {
+    return this.partitionBy(new String[]{colName}, keys);
+  }
+
+  /**
+   * Splits this result into one result per distinct combination of
+   * (trimmed) values in the given columns, preserving row order within
+   * each partition; see {@link #partitionBy(String, Collection)}.
+   * @param colNames the names of the columns to partition on
+   * @param keys the partition keys (as built by {@link #partitionKey})
+   *    expected in the result
+   * @return the partitions of this result, keyed by partition key
+   */
+  public Map<String, MaterializedResult> partitionBy(final String[] colNames,
+      final Collection<String> keys) {
+    final int[] colIdxs = new int[colNames.length];
+    for (int i = 0; i < colNames.length; i++) {
+      colIdxs[i] = this.findColumn(colNames[i]);
+    }
+
+    final Map<String, List<Object[]>> partitionRows =
+        new LinkedHashMap<String, List<Object[]>>();
+    for (final String key : keys) {
+      partitionRows.put(key, new ArrayList<Object[]>());
+    }
+    final String[] vals = new String[colIdxs.length];
+    for (final Object[] row : this.rows) {
+      for (int i = 0; i < colIdxs.length; i++) {
+        final Object val = row[colIdxs[i] - 1];
+        vals[i] = (val == null ? null : val.toString());
+      }
+      final String key = partitionKey(vals);
+      List<Object[]> rowsForKey = partitionRows.get(key);
+      if (rowsForKey == null) {
+        rowsForKey = new ArrayList<Object[]>();
+        partitionRows.put(key, rowsForKey);
+      }
+      rowsForKey.add(row);
+    }
+
+    final Map<String, MaterializedResult> partitions =
+        new LinkedHashMap<String, MaterializedResult>();
+    for (final Map.Entry<String, List<Object[]>> cursor
+        : partitionRows.entrySet()) {
+      partitions.put(cursor.getKey(), new MaterializedResult(this.colNames,
+          this.colTypeNames, cursor.getValue()));
+    }
+    return partitions;
+  }
+
+  /**
+   * Builds the partition key used by {@link #partitionBy(String[],
+   * Collection)} for the given column values; a single value is keyed
+   * by its trimmed self.
+   * @param vals the column values, in partition column order
+   * @return the partition key
+   */
+  public static String partitionKey(final String... vals) {
+    if (vals.length == 1) {
+      return vals[0] == null ? null : vals[0].trim();
+    }
+    final StringBuilder b = new StringBuilder();
+    for (int i = 0; i < vals.length; i++) {
+      if (i > 0) {
+        b.append('\u0000');
+      }
+      b.append(vals[i] == null ? "" : vals[i].trim());
+    }
+    return b.toString();
+  }
+
+  /**
+   * Writes this result using the compact binary encoding read
+   * by {@link #readFrom(ByteBuffer)}.
+   * @param out the stream to write to
+   * @throws IOException if the underlying stream fails
+   */
+  public void writeTo(final DataOutputStream out) throws IOException {
+    out.writeInt(this.colNames.length);
+    for (int i = 0; i < this.colNames.length; i++) {
+      writeString(out, this.colNames[i]);
+      writeString(out, this.colTypeNames[i]);
+    }
+    out.writeInt(this.rows.size());
+    for (final Object[] row : this.rows) {
+      for (final Object val : row) {
+        if (val == null) {
+          out.writeByte(TAG_NULL);
+        } else if (val instanceof String) {
+          out.writeByte(TAG_STRING);
+          writeString(out, (String) val);
+        } else if (val instanceof BigDecimal) {
+          final BigDecimal bd = (BigDecimal) val;
+          out.writeByte(TAG_DECIMAL);
+          out.writeInt(bd.scale());
+          writeBytes(out, bd.unscaledValue().toByteArray());
+        } else if (val instanceof Timestamp) {
+          final Timestamp ts = (Timestamp) val;
+          out.writeByte(TAG_TIMESTAMP);
+          out.writeLong(ts.getTime());
+          out.writeInt(ts.getNanos());
+        } else {
+          out.writeByte(TAG_BYTES);
+          writeBytes(out, (byte[]) val);
+        }
+      }
+    }
+  }
+
+  /**
+   * Reads a result previously written by {@link #writeTo(DataOutputStream)},
+   * starting at the buffer's current position.
+   * @param buf the buffer to read from; its position is advanced
+   * @return the decoded result
+   */
+  public static MaterializedResult readFrom(final ByteBuffer buf) {
+    final int colCount = buf.getInt();
+    final String[] names = new String[colCount];
+    final String[] typeNames = new String[colCount];
+    for (int i = 0; i < colCount; i++) {
+      names[i] = readString(buf);
+      typeNames[i] = readString(buf);
+    }
+
+    final int rowCount = buf.getInt();
+    final List<Object[]> r = new ArrayList<Object[]>(rowCount);
+    for (int i = 0; i < rowCount; i++) {
+      final Object[] row = new Object[colCount];
+      for (int j = 0; j < colCount; j++) {
+        final byte tag = buf.get();
+        switch (tag) {
+          case TAG_NULL:
+            break;
+          case TAG_STRING:
+            row[j] = readString(buf);
+            break;
+          case TAG_DECIMAL:
+            final int scale = buf.getInt();
+            row[j] = new BigDecimal(new BigInteger(readBytes(buf)), scale);
+            break;
+          case TAG_TIMESTAMP:
+            final Timestamp ts = new Timestamp(buf.getLong());
+            ts.setNanos(buf.getInt());
+            row[j] = ts;
+            break;
+          case TAG_BYTES:
+            row[j] = readBytes(buf);
+            break;
+          default:
+            throw new OPSVMachRuntimeException("Unexpected value tag ("
+                + tag + ") encountered while decoding materialized result.");
+        }
+      }
+      r.add(row);
+    }
+    return new MaterializedResult(names, typeNames, r);
+  }
+
+  /**
+   * Writes a length-prefixed UTF-8 string.
+   * @param out the stream to write to
+   * @param s the string to write
+   * @throws IOException if the underlying stream fails
+   */
+  public static void writeString(final DataOutputStream out, final String s)
+      throws IOException {
+    writeBytes(out, s.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Reads a string written by {@link #writeString}.
+   * @param buf the buffer to read from; its position is advanced
+   * @return the decoded string
+   */
+  public static String readString(final ByteBuffer buf) {
+    return new String(readBytes(buf), StandardCharsets.UTF_8);
+  }
+
+  private static void writeBytes(final DataOutputStream out,
+      final byte[] bytes) throws IOException {
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static byte[] readBytes(final ByteBuffer buf) {
+    final int len = buf.getInt();
+    if (len < 0 || len > buf.remaining()) {
+      throw new BufferUnderflowException();
+    }
+    final byte[] bytes = new byte[len];
+    buf.get(bytes);
+    return bytes;
+  }
+}
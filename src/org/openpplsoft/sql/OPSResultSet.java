@@ -12,6 +12,8 @@ import java.io.IOException;
 import java.math.BigDecimal;
 import java.sql.*;
 
+import javax.sql.rowset.serial.SerialBlob;
+
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -21,7 +23,8 @@ import org.openpplsoft.types.*;
 
 /**
  * Wrapper for all ResultSets opened by
- * the OPS runtime.
+ * the OPS runtime. An OPSResultSet is backed either by a live
+ * JDBC ResultSet or by a MaterializedResult held in memory.
  */
 public class OPSResultSet implements AutoCloseable {
 
@@ -29,13 +32,42 @@ public class OPSResultSet implements AutoCloseable {
       LogManager.getLogger(OPSResultSet.class.getName());
 
   private final ResultSet rs;
+  private final MaterializedResult table;
+  private int rowIdx = -1;
+
+  /*
+   * The names and database type names of the columns, which do not
+   * change over the life of the result set; loaded when first needed
+   * (see loadColumnMetadata).
+   */
+  private String[] colNames;
+  private String[] colTypeNames;
+  private String colSignature;
+
+  // The mapper last used to read rows into a record, if any.
+  private RecordRowMapper rowMapper;
 
   public OPSResultSet(final ResultSet rs) {
     this.rs = rs;
+    this.table = null;
+  }
+
+  /**
+   * Creates an OPSResultSet that reads from an in-memory result
+   * rather than an open cursor.
+   * @param t the materialized result to read from
+   */
+  public OPSResultSet(final MaterializedResult t) {
+    this.rs = null;
+    this.table = t;
   }
 
   public Blob getBlob(final String colName) {
     try {
+      if (this.table != null) {
+        final byte[] bytes = (byte[]) this.cell(colName);
+        return bytes == null ? null : new SerialBlob(bytes);
+      }
       return rs.getBlob(colName);
     } catch (final SQLException sqle) {
       throw new OPSVMachRuntimeException(sqle.getMessage(), sqle);
@@ -44,7 +76,9 @@ public class OPSResultSet implements AutoCloseable {
 
   public String getClobAsString(final int colIdx) {
     try {
-      final String clobAsStr = this.clobToString(rs.getClob(colIdx));
+      final String clobAsStr = this.table != null
+          ? (String) this.cell(colIdx)
+          : this.clobToString(rs.getClob(colIdx));
       log.debug("[OPSResultSet] clob as string: {}", clobAsStr);
       return clobAsStr;
     } catch (final SQLException sqle) {
@@ -54,7 +88,9 @@ public class OPSResultSet implements AutoCloseable {
 
   public String getClobAsString(final String colName) {
     try {
-      final String clobAsStr = this.clobToString(rs.getClob(colName));
+      final String clobAsStr = this.table != null
+          ? (String) this.cell(colName)
+          : this.clobToString(rs.getClob(colName));
       log.debug("[OPSResultSet] clob as string: {}", clobAsStr);
       return clobAsStr;
     } catch (final SQLException sqle) {
@@ -90,16 +126,22 @@ public class OPSResultSet implements AutoCloseable {
   public String getBlobAsString(final String colName) {
     try {
 
-      final Blob blob = rs.getBlob(colName);
+      final byte[] arr;
+      if (this.table != null) {
+        arr = (byte[]) this.cell(colName);
+      } else {
+        final Blob blob = rs.getBlob(colName);
 
-      if (blob.length() > (long) Integer.MAX_VALUE) {
-        throw new OPSVMachRuntimeException("Length of Blob "
-            + "is greater than Integer.MAX_VALUE; extra logic is required here "
-            + "in order to ensure we are retrieving the entire value.");
+        if (blob.length() > (long) Integer.MAX_VALUE) {
+          throw new OPSVMachRuntimeException("Length of Blob "
+              + "is greater than Integer.MAX_VALUE; extra logic is required "
+              + "here in order to ensure we are retrieving the entire value.");
+        }
+        arr = blob.getBytes(1, (int) blob.length());
+        blob.free();
       }
 
       final StringBuilder sb = new StringBuilder();
-      final byte[] arr = blob.getBytes(1, (int) blob.length());
       for (final byte b : arr) {
         // Skip null bytes, there are a ton of these in PS BLOB fields.
         if (b > 0) {
@@ -107,7 +149,6 @@ public class OPSResultSet implements AutoCloseable {
         }
       }
 
-      blob.free();
       log.debug("[OPSResultSet] blob as string: {}", sb.toString());
       return sb.toString();
     } catch (final SQLException sqle) {
@@ -117,7 +158,8 @@ public class OPSResultSet implements AutoCloseable {
 
   public Timestamp getTimestamp(final String colName) {
     try {
-      final Timestamp ts = rs.getTimestamp(colName);
+      final Timestamp ts = this.table != null
+          ? toTimestamp(this.cell(colName)) : rs.getTimestamp(colName);
       log.debug("[OPSResultSet] timestamp: {}", ts);
       return ts;
     } catch (final SQLException sqle) {
@@ -127,7 +169,8 @@ public class OPSResultSet implements AutoCloseable {
 
   public int getInt(final String colName) {
     try {
-      final int integer = rs.getInt(colName);
+      final int integer = this.table != null
+          ? toInt(this.cell(colName)) : rs.getInt(colName);
       log.debug("[OPSResultSet] int: {}", integer);
       return integer;
     } catch (final SQLException sqle) {
@@ -137,7 +180,8 @@ public class OPSResultSet implements AutoCloseable {
 
   public int getInt(final int colIdx) {
     try {
-      final int integer = rs.getInt(colIdx);
+      final int integer = this.table != null
+          ? toInt(this.cell(colIdx)) : rs.getInt(colIdx);
       log.debug("[OPSResultSet] int: {}", integer);
       return integer;
     } catch (final SQLException sqle) {
@@ -147,7 +191,8 @@ public class OPSResultSet implements AutoCloseable {
 
   public String getString(final String colName) {
     try {
-      final String str = rs.getString(colName);
+      final String str = this.table != null
+          ? toStr(this.cell(colName)) : rs.getString(colName);
       log.debug("[OPSResultSet] str: {}", str);
       return str;
     } catch (final SQLException sqle) {
@@ -157,7 +202,8 @@ public class OPSResultSet implements AutoCloseable {
 
   public String getString(final int colIdx) {
     try {
-      final String str = rs.getString(colIdx);
+      final String str = this.table != null
+          ? toStr(this.cell(colIdx)) : rs.getString(colIdx);
       log.debug("[OPSResultSet] str: {}", str);
       return str;
     } catch (final SQLException sqle) {
@@ -167,7 +213,8 @@ public class OPSResultSet implements AutoCloseable {
 
   public BigDecimal getBigDecimal(final String colName) {
     try {
-      final BigDecimal bd = rs.getBigDecimal(colName);
+      final BigDecimal bd = this.table != null
+          ? toBigDecimal(this.cell(colName)) : rs.getBigDecimal(colName);
       log.debug("[OPSResultSet] big decimal: {}", bd);
       return bd;
     } catch (final SQLException sqle) {
@@ -177,7 +224,8 @@ public class OPSResultSet implements AutoCloseable {
 
   public BigDecimal getBigDecimal(final int colIdx) {
     try {
-      final BigDecimal bd = rs.getBigDecimal(colIdx);
+      final BigDecimal bd = this.table != null
+          ? toBigDecimal(this.cell(colIdx)) : rs.getBigDecimal(colIdx);
       log.debug("[OPSResultSet] big decimal: {}", bd);
       return bd;
     } catch (final SQLException sqle) {
@@ -186,6 +234,13 @@ public class OPSResultSet implements AutoCloseable {
   }
 
   public boolean next() {
+    if (this.table != null) {
+      if (this.rowIdx < this.table.getRowCount()) {
+        this.rowIdx++;
+      }
+      return this.rowIdx < this.table.getRowCount();
+    }
+
     try {
       return rs.next();
     } catch (final SQLException sqle) {
@@ -194,6 +249,10 @@ public class OPSResultSet implements AutoCloseable {
   }
 
   public boolean isFirst() {
+    if (this.table != null) {
+      return this.rowIdx == 0 && this.table.getRowCount() > 0;
+    }
+
     try {
       return rs.isFirst();
     } catch (final SQLException sqle) {
@@ -202,51 +261,128 @@ public class OPSResultSet implements AutoCloseable {
   }
 
   public int getColumnCount() {
-    try {
-      return this.rs.getMetaData().getColumnCount();
-    } catch (final SQLException sqle) {
-      throw new OPSVMachRuntimeException(sqle.getMessage(), sqle);
-    }
+    this.loadColumnMetadata();
+    return this.colNames.length;
   }
 
   public String getColumnName(final int idx) {
-    try {
-      return this.rs.getMetaData().getColumnName(idx);
-    } catch (final SQLException sqle) {
-      throw new OPSVMachRuntimeException(sqle.getMessage(), sqle);
-    }
+    this.loadColumnMetadata();
+    return this.colNames[idx - 1];
   }
 
   public boolean hasColumnNamed(final String colName) {
-    try {
-      final ResultSetMetaData rsMetaData = this.rs.getMetaData();
-      final int colCount = rsMetaData.getColumnCount();
-      for (int i = 1; i <= colCount; i++) {
-        if (rsMetaData.getColumnName(i).equals(colName)) {
-          return true;
-        }
+    this.loadColumnMetadata();
+    for (final String name : this.colNames) {
+      if (name.equals(colName)) {
+        return true;
       }
-      return false;
-    } catch (final SQLException sqle) {
-      throw new OPSVMachRuntimeException(sqle.getMessage(), sqle);
     }
+    return false;
   }
 
   public String getColumnTypeName(final int idx) {
-    try {
-      return this.rs.getMetaData().getColumnTypeName(idx);
-    } catch (final SQLException sqle) {
-      throw new OPSVMachRuntimeException(sqle.getMessage(), sqle);
+    this.loadColumnMetadata();
+    return this.colTypeNames[idx - 1];
+  }
+
+  /**
+   * Gets a string that identifies the names and types of the columns
+   * of this result set, in order.
+   * @return the column signature
+   */
+  String getColumnSignature() {
+    this.loadColumnMetadata();
+    return this.colSignature;
+  }
+
+  private void loadColumnMetadata() {
+    if (this.colNames != null) {
+      return;
     }
+
+    final String[] names;
+    final String[] typeNames;
+    if (this.table != null) {
+      names = new String[this.table.getColumnCount()];
+      typeNames = new String[names.length];
+      for (int i = 1; i <= names.length; i++) {
+        names[i - 1] = this.table.getColumnName(i);
+        typeNames[i - 1] = this.table.getColumnTypeName(i);
+      }
+    } else {
+      try {
+        final ResultSetMetaData rsMetaData = this.rs.getMetaData();
+        names = new String[rsMetaData.getColumnCount()];
+        typeNames = new String[names.length];
+        for (int i = 1; i <= names.length; i++) {
+          names[i - 1] = rsMetaData.getColumnName(i);
+          typeNames[i - 1] = rsMetaData.getColumnTypeName(i);
+        }
+      } catch (final SQLException sqle) {
+        throw new OPSVMachRuntimeException(sqle.getMessage(), sqle);
+      }
+    }
+
+    final StringBuilder b = new StringBuilder();
+    for (int i = 0; i < names.length; i++) {
+      b.append(names[i]).append(' ').append(typeNames[i]).append(',');
+    }
+    this.colTypeNames = typeNames;
+    this.colSignature = b.toString();
+    this.colNames = names;
   }
 
-  public void readIntoRecord(final PTRecord<?,?> recObj) {
-    for (int i = 1; i <= this.getColumnCount(); i++) {
-      final String colName = this.getColumnName(i);
-      final PTReference<? extends PTField> fldRef = recObj.getFieldRef(colName);
-      final PTPrimitiveType dbVal = this.coerceDbValToFldVal(i, fldRef.deref());
-      Environment.assign(fldRef, dbVal);
+  private Object cell(final int colIdx) {
+    if (this.rowIdx < 0 || this.rowIdx >= this.table.getRowCount()) {
+      throw new OPSVMachRuntimeException("Attempted to read from a "
+          + "materialized result that is not positioned on a row.");
+    }
+    return this.table.getValue(this.rowIdx, colIdx);
+  }
+
+  private Object cell(final String colName) {
+    return this.cell(this.table.findColumn(colName));
+  }
+
+  /*
+   * The following conversions mirror the behavior of the JDBC getters
+   * for the value types held by MaterializedResult; in particular, SQL
+   * NULL is read as zero by the integer getter.
+   */
+  private static String toStr(final Object val) {
+    if (val == null) {
+      return null;
+    } else if (val instanceof byte[]) {
+      return new String((byte[]) val);
+    }
+    return val.toString();
+  }
+
+  private static int toInt(final Object val) {
+    if (val == null) {
+      return 0;
+    } else if (val instanceof Number) {
+      return ((Number) val).intValue();
+    }
+    return Integer.parseInt(val.toString().trim());
+  }
+
+  private static BigDecimal toBigDecimal(final Object val) {
+    if (val == null || val instanceof BigDecimal) {
+      return (BigDecimal) val;
     }
+    return new BigDecimal(val.toString().trim());
+  }
+
+  private static Timestamp toTimestamp(final Object val) {
+    if (val == null || val instanceof Timestamp) {
+      return (Timestamp) val;
+    }
+    return Timestamp.valueOf(val.toString().trim());
+  }
+
+  public void readIntoRecord(final PTRecord<?,?> recObj) {
+    this.getRowMapper(recObj, false).readRow(this, recObj);
   }
 
   /**
@@ -258,15 +394,16 @@ public class OPSResultSet implements AutoCloseable {
    * those fields will simply be skipped.
    */
   public void readIntoRecordDefinedFieldsOnly(final PTRecord<?,?> recObj) {
-    final Record recDefn = recObj.getRecDefn();
-    for (int i = 1; i <= this.getColumnCount(); i++) {
-      final String colName = this.getColumnName(i);
-      if (recDefn.hasField(colName)) {
-        final PTReference<? extends PTField> fldRef = recObj.getFieldRef(colName);
-        final PTPrimitiveType dbVal = this.coerceDbValToFldVal(i, fldRef.deref());
-        Environment.assign(fldRef, dbVal);
-      }
+    this.getRowMapper(recObj, true).readRow(this, recObj);
+  }
+
+  private RecordRowMapper getRowMapper(final PTRecord<?,?> recObj,
+      final boolean definedOnly) {
+    if (this.rowMapper == null
+        || !this.rowMapper.isFor(recObj.getRecDefn(), definedOnly)) {
+      this.rowMapper = RecordRowMapper.forRecord(recObj, this, definedOnly);
     }
+    return this.rowMapper;
   }
 
   public void readNamedColumnIntoField(final PTField fldObj, final String colName) {
@@ -377,6 +514,10 @@ public class OPSResultSet implements AutoCloseable {
    */
   @Override
   public void close() {
+    if (this.rs == null) {
+      return;
+    }
+
     try {
       rs.close();
     } catch (final SQLException sqle) {
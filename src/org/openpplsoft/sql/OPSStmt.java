@@ -8,12 +8,14 @@
 package org.openpplsoft.sql;
 
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.Map;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.openpplsoft.runtime.OPSVMachRuntimeException;
+import org.openpplsoft.runtime.RuntimeSession;
 import org.openpplsoft.runtime.TraceFileVerifier;
 
 /**
@@ -28,7 +30,10 @@ public class OPSStmt extends SQLStmt implements AutoCloseable {
   private static int stmtCounter;
 
   private final EmissionType emissionType;
-  private final  PreparedStatement pstmt;
+  private final String staticLabel;
+  private PreparedStatement pstmt;
+  private StatementCache stmtCache;
+  private int fetchSize;
 
   private OPSResultSet rs;
 
@@ -48,10 +53,31 @@ public class OPSStmt extends SQLStmt implements AutoCloseable {
    */
   public OPSStmt(final String sql, final String[] bVals,
       final EmissionType eType) {
+    this(null, sql, bVals, eType);
+  }
+
+  /**
+   * Creates an OPSStmt instance for a statement in the static SQL
+   * defn file; such statements may be served from the DefnSnapshot.
+   * @param uniqueLabel the label of the statement in the static SQL
+   *    defn file, or null if the statement is not a static statement
+   * @param sql the SQL statement to be executed
+   * @param bVals the bind vals to attach at execution time
+   * @param eType the emission type (enforced or unenforced)
+   */
+  OPSStmt(final String uniqueLabel, final String sql, final String[] bVals,
+      final EmissionType eType) {
 
     super(sql.trim());
+    this.staticLabel = uniqueLabel;
     this.emissionType = eType;
 
+    // Statements in the static SQL defn file load PeopleTools defns;
+    // others use the driver default unless their creator sets a size.
+    if (uniqueLabel != null) {
+      this.fetchSize = FetchSizePolicy.forMetadata();
+    }
+
     for (int i = 0; i < bVals.length; i++) {
       /*
        * IMPORTANT NOTE: For all empty string bind values, I am
@@ -71,8 +97,25 @@ public class OPSStmt extends SQLStmt implements AutoCloseable {
       }
     }
 
+    /*
+     * Statements that may be served from the snapshot are prepared
+     * only if the snapshot does not contain their results; when results
+     * are replayed from a recording, no statements are prepared.
+     */
+    if (!DefnSnapshot.covers(this.staticLabel)
+        && !StmtRecording.isReplaying()) {
+      this.prepare();
+    }
+  }
+
+  private void prepare() {
     try {
-      this.pstmt = StmtLibrary.getConnection().prepareStatement(this.getSql());
+      this.stmtCache = RuntimeSession.current().getStatementCache();
+      this.pstmt = this.stmtCache.checkout(this.getSql());
+
+      // Cached statements may have been given a fetch size by an earlier
+      // user, so the size is always set.
+      this.pstmt.setFetchSize(this.fetchSize);
       for (Map.Entry<Integer, String> cursor : this.getBindVals().entrySet()) {
         this.pstmt.setString(cursor.getKey(), cursor.getValue());
       }
@@ -81,6 +124,22 @@ public class OPSStmt extends SQLStmt implements AutoCloseable {
     }
   }
 
+  /**
+   * Sets the number of rows to retrieve per round trip to the database
+   * when this statement's results are read; see FetchSizePolicy.
+   * @param size the fetch size, or 0 for the driver default
+   */
+  public void setFetchSize(final int size) {
+    this.fetchSize = size;
+    if (this.pstmt != null) {
+      try {
+        this.pstmt.setFetchSize(size);
+      } catch (final java.sql.SQLException sqle) {
+        throw new OPSVMachRuntimeException(sqle.getMessage(), sqle);
+      }
+    }
+  }
+
   /**
    * Executes the query represented by this OPSStmt.
    * @return the OPSResultSet containing the query results
@@ -89,17 +148,38 @@ public class OPSStmt extends SQLStmt implements AutoCloseable {
    */
   public OPSResultSet executeQuery() {
 
-    if (this.emissionType == EmissionType.ENFORCED) {
-      TraceFileVerifier.submitEnforcedEmission(this);
-    } else {
-      TraceFileVerifier.submitUnenforcedEmission(this);
-    }
+    this.submitEmission();
 
     if (this.rs != null) {
       throw new OPSVMachRuntimeException("An OPSResultSet has already been associated "
           + "with this OPSStmt, expected null.");
     }
 
+    if (StmtRecording.isReplaying()) {
+      this.rs = new OPSResultSet(StmtRecording.replay(this));
+      return this.rs;
+    }
+
+    if (DefnSnapshot.covers(this.staticLabel)) {
+      this.rs = new OPSResultSet(
+          StmtRecording.record(this, this.readThroughSnapshot()));
+      return this.rs;
+    }
+
+    QueryResultCache.invalidateTablesModifiedBy(this);
+    if (QueryResultCache.isCacheable(this)) {
+      this.rs = new OPSResultSet(
+          StmtRecording.record(this, this.readThroughQueryCache()));
+      return this.rs;
+    }
+
+    // Recorded results must be read in full, so are materialized.
+    if (StmtRecording.isRecording()) {
+      this.rs = new OPSResultSet(StmtRecording.record(this,
+          this.executeAndMaterialize()));
+      return this.rs;
+    }
+
     try {
       this.rs = new OPSResultSet(this.pstmt.executeQuery());
     } catch (final java.sql.SQLException sqle) {
@@ -109,17 +189,83 @@ public class OPSStmt extends SQLStmt implements AutoCloseable {
   }
 
   /**
-   * Closes the underlying PreparedStatement.
+   * Executes the query represented by this OPSStmt and reads all
+   * of its results into memory.
+   * @return the materialized query results
+   */
+  public MaterializedResult executeQueryAndMaterialize() {
+
+    this.submitEmission();
+
+    if (StmtRecording.isReplaying()) {
+      return StmtRecording.replay(this);
+    }
+
+    if (DefnSnapshot.covers(this.staticLabel)) {
+      return StmtRecording.record(this, this.readThroughSnapshot());
+    }
+
+    if (QueryResultCache.isCacheable(this)) {
+      return StmtRecording.record(this, this.readThroughQueryCache());
+    }
+
+    return StmtRecording.record(this, this.executeAndMaterialize());
+  }
+
+  private MaterializedResult executeAndMaterialize() {
+    try (final ResultSet jdbcRs = this.pstmt.executeQuery()) {
+      return MaterializedResult.materialize(jdbcRs);
+    } catch (final java.sql.SQLException sqle) {
+      throw new OPSVMachRuntimeException(sqle.getMessage(), sqle);
+    }
+  }
+
+  private void submitEmission() {
+    if (!TraceFileVerifier.isEnabled()) {
+      return;
+    }
+    if (this.emissionType == EmissionType.ENFORCED) {
+      TraceFileVerifier.submitEnforcedEmission(this);
+    } else {
+      TraceFileVerifier.submitUnenforcedEmission(this);
+    }
+  }
+
+  private MaterializedResult readThroughSnapshot() {
+    MaterializedResult result = DefnSnapshot.lookup(this.staticLabel, this);
+    if (result == null) {
+      this.prepare();
+      result = this.executeAndMaterialize();
+      DefnSnapshot.store(this.staticLabel, this, result);
+    }
+    return result;
+  }
+
+  private MaterializedResult readThroughQueryCache() {
+    MaterializedResult result = QueryResultCache.lookup(this);
+    if (result == null) {
+      result = this.executeAndMaterialize();
+      QueryResultCache.store(this, result);
+    }
+    return result;
+  }
+
+  /**
+   * Closes the result set (if any) and returns the underlying
+   * PreparedStatement to the session's statement cache.
    * @throws java.sql.SQLException if closing of underlying PreparedStatement
    *    results in an error.
    */
   @Override
   public void close() {
     try {
-      this.pstmt.close();
       if (this.rs != null) {
         rs.close();
       }
+      if (this.pstmt != null) {
+        this.stmtCache.checkin(this.getSql(), this.pstmt);
+        this.pstmt = null;
+      }
     } catch (final SQLException sqle) {
       log.warn("Unable to close pstmt and/or rs.", sqle);
     }
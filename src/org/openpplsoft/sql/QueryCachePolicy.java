@@ -0,0 +1,73 @@
+/*===---------------------------------------------------------------------===*\
+|*                       The OpenPplSoft Runtime Project                     *|
+|*                                                                           *|
+|*              This file is distributed under the MIT License.              *|
+|*                         See LICENSE.md for details.                       *|
+\*===---------------------------------------------------------------------===*/
+
+package org.openpplsoft.sql;
+
+/**
+ * Declares that the results of queries against a database table may be
+ * cached by the QueryResultCache, and for how long. Policies are declared
+ * as beans in the Spring environment context; tables without a policy are
+ * never cached.
+ */
+public class QueryCachePolicy {
+
+  private final String tableName;
+  private final long ttlSeconds;
+  private final int maxEntries;
+
+  /**
+   * Creates a cache policy for a table.
+   * @param tblName the name of the table, as it appears in SQL text
+   *    (case insensitive)
+   * @param ttlSecs the number of seconds a cached result remains valid;
+   *    0 means cached results do not expire
+   * @param maxEnts the maximum number of distinct queries (SQL text and
+   *    bind values) whose results are cached for the table
+   */
+  public QueryCachePolicy(final String tblName, final long ttlSecs,
+      final int maxEnts) {
+    this.tableName = tblName.trim().toUpperCase();
+    this.ttlSeconds = ttlSecs;
+    this.maxEntries = maxEnts;
+  }
+
+  public String getTableName() {
+    return this.tableName;
+  }
+
+  public long getTtlSeconds() {
+    return this.ttlSeconds;
+  }
+
+  public int getMaxEntries() {
+    return this.maxEntries;
+  }
+
+  /**
+   * Determines whether this policy is stricter than the provided policy;
+   * a query spanning several cached tables is cached under the strictest
+   * of their policies.
+   * @param other the policy to compare against
+   * @return true if results cached under this policy expire sooner (or,
+   *    if they expire at the same time, fewer are cached)
+   */
+  public boolean isStricterThan(final QueryCachePolicy other) {
+    final long ttl = this.ttlSeconds > 0 ? this.ttlSeconds : Long.MAX_VALUE;
+    final long otherTtl =
+        other.ttlSeconds > 0 ? other.ttlSeconds : Long.MAX_VALUE;
+    if (ttl != otherTtl) {
+      return ttl < otherTtl;
+    }
+    return this.maxEntries < other.maxEntries;
+  }
+
+  @Override
+  public String toString() {
+    return this.tableName + "(ttl=" + this.ttlSeconds + "s, max="
+        + this.maxEntries + ")";
+  }
+}
@@ -0,0 +1,357 @@
+/*===---------------------------------------------------------------------===*\
+|*                       The OpenPplSoft Runtime Project                     *|
+|*                                                                           *|
+|*              This file is distributed under the MIT License.              *|
+|*                         See LICENSE.md for details.                       *|
+\*===---------------------------------------------------------------------===*/
+
+package org.openpplsoft.sql;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Caches the results of queries against tables whose contents effectively
+ * do not change while the runtime is up (translate values, prompt tables,
+ * message catalog, authorization tables, etc.). Results are keyed by SQL
+ * text and bind values, and are held in memory as MaterializedResults.
+ *
+ * A query is cached only if every table it references has a
+ * QueryCachePolicy (declared in the Spring environment context); it is
+ * cached under the strictest of those policies, which bound how long its
+ * result remains valid and how many results are held for the table. All
+ * results referencing a table are discarded when the table is invalidated,
+ * either explicitly (see invalidate) or because the runtime issues DML
+ * against it.
+ *
+ * Caching happens beneath OPSStmt, after a statement's emission has been
+ * submitted to the TraceFileVerifier, so the SQL emitted is the same
+ * whether or not a result is served from the cache. The cache is shared
+ * by all sessions.
+ */
+public final class QueryResultCache {
+
+  private static Logger log =
+      LogManager.getLogger(QueryResultCache.class.getName());
+
+  private static final String[] NO_TABLES = new String[0];
+  private static final int MAX_MEMOIZED_SQL = 4096;
+
+  private static Pattern sqlTokenPattern;
+  private static Set<String> tableRefEndKeywords;
+
+  private static Map<String, Region> regionsByTable;
+  private static Map<String, String[]> tablesBySql;
+  private static AtomicLong numInvalidations;
+
+  static {
+    sqlTokenPattern = Pattern.compile("[A-Za-z0-9_$#.\"]+|[(),;]");
+    tableRefEndKeywords = new HashSet<String>(Arrays.asList(
+        "WHERE", "ORDER", "GROUP", "HAVING", "UNION", "MINUS", "INTERSECT",
+        "ON", "USING", "INNER", "LEFT", "RIGHT", "FULL", "CROSS", "JOIN",
+        "NATURAL", "CONNECT", "START", "SET", "VALUES", "FOR", "SELECT"));
+    regionsByTable = new ConcurrentHashMap<String, Region>();
+    tablesBySql = new ConcurrentHashMap<String, String[]>();
+    numInvalidations = new AtomicLong();
+  }
+
+  private QueryResultCache() {}
+
+  /**
+   * Installs the provided policies, replacing any installed previously
+   * (and discarding all cached results).
+   * @param policies the cache policies, one per table
+   */
+  public static void configure(final Collection<QueryCachePolicy> policies) {
+    regionsByTable.clear();
+    for (final QueryCachePolicy policy : policies) {
+      regionsByTable.put(policy.getTableName(), new Region(policy));
+    }
+    if (!policies.isEmpty()) {
+      log.info("Query result cache enabled for: {}", policies);
+    }
+  }
+
+  /**
+   * Retrieves the cached result of the provided statement.
+   * @param stmt the statement, with its bind values attached
+   * @return the cached result, or null if the statement's result is not
+   *    cached (or may not be cached at all; see isCacheable)
+   */
+  static MaterializedResult lookup(final SQLStmt stmt) {
+    final Region region = regionFor(stmt);
+    if (region == null) {
+      return null;
+    }
+    return region.get(getKey(stmt));
+  }
+
+  /**
+   * Determines whether the result of the provided statement may be cached.
+   * @param stmt the statement
+   * @return true if every table the statement reads has a cache policy
+   */
+  static boolean isCacheable(final SQLStmt stmt) {
+    return regionFor(stmt) != null;
+  }
+
+  /**
+   * Caches the result of the provided statement, which must be cacheable.
+   * @param stmt the statement, with its bind values attached
+   * @param result the result read from the database
+   */
+  static void store(final SQLStmt stmt, final MaterializedResult result) {
+    final Region region = regionFor(stmt);
+    if (region != null) {
+      region.put(getKey(stmt), result, getReferencedTables(stmt.getSql()));
+    }
+  }
+
+  /**
+   * Discards cached results that may be made stale by the provided
+   * statement, if it modifies (rather than reads) any tables.
+   * @param stmt the statement about to be executed
+   */
+  static void invalidateTablesModifiedBy(final SQLStmt stmt) {
+    if (regionsByTable.isEmpty() || isQuery(stmt.getSql())) {
+      return;
+    }
+    for (final String table : getReferencedTables(stmt.getSql())) {
+      invalidate(table);
+    }
+  }
+
+  /**
+   * Discards all cached results that reference the provided table.
+   * @param tableName the name of the table (case insensitive)
+   */
+  public static void invalidate(final String tableName) {
+    final String table = tableName.trim().toUpperCase();
+    if (!regionsByTable.containsKey(table)) {
+      return;
+    }
+    for (final Region region : regionsByTable.values()) {
+      region.removeReferencesTo(table);
+    }
+    numInvalidations.incrementAndGet();
+    log.debug("Invalidated cached query results for table {}.", table);
+  }
+
+  /**
+   * Discards all cached results.
+   */
+  public static void invalidateAll() {
+    for (final Region region : regionsByTable.values()) {
+      region.clear();
+    }
+    numInvalidations.incrementAndGet();
+  }
+
+  /**
+   * Logs hit, miss, expiration and eviction counts for each table
+   * with a cache policy.
+   */
+  public static void logSummary() {
+    if (regionsByTable.isEmpty()) {
+      return;
+    }
+    long hits = 0, misses = 0;
+    for (final Region region : regionsByTable.values()) {
+      log.info("Query result cache for {}: {} hits, {} misses, {} "
+          + "expirations, {} evictions, {} entries.", region.policy,
+          region.numHits, region.numMisses, region.numExpirations,
+          region.numEvictions, region.size());
+      hits += region.numHits.get();
+      misses += region.numMisses.get();
+    }
+    log.info("Query result cache: {} hits, {} misses ({}% hit rate), "
+        + "{} invalidations.", hits, misses,
+        hits + misses == 0 ? 0 : (100 * hits) / (hits + misses),
+        numInvalidations);
+  }
+
+  private static Region regionFor(final SQLStmt stmt) {
+    if (regionsByTable.isEmpty() || !isQuery(stmt.getSql())) {
+      return null;
+    }
+
+    final String[] tables = getReferencedTables(stmt.getSql());
+    Region strictest = null;
+    for (final String table : tables) {
+      final Region region = regionsByTable.get(table);
+      if (region == null) {
+        return null;
+      }
+      if (strictest == null
+          || region.policy.isStricterThan(strictest.policy)) {
+        strictest = region;
+      }
+    }
+    return strictest;
+  }
+
+  private static boolean isQuery(final String sql) {
+    return sql.regionMatches(true, 0, "SELECT", 0, "SELECT".length())
+        || sql.regionMatches(true, 0, "WITH", 0, "WITH".length());
+  }
+
+  /**
+   * Finds the tables named in the FROM / JOIN clauses (and the targets
+   * of INSERT, UPDATE and DELETE) of the provided SQL text, including
+   * those of subqueries. This is deliberately conservative: any name that
+   * could be a table is reported, so that statements are only cached when
+   * all of them have policies.
+   */
+  private static String[] getReferencedTables(final String sql) {
+    String[] tables = tablesBySql.get(sql);
+    if (tables != null) {
+      return tables;
+    }
+
+    final List<String> found = new ArrayList<String>();
+    final Matcher tokenMatcher = sqlTokenPattern.matcher(sql);
+
+    // 0: outside a table list; 1: expecting a table; 2: after a table.
+    int state = 0;
+    while (tokenMatcher.find()) {
+      final String tok = tokenMatcher.group().toUpperCase();
+      if (state == 1) {
+        if (tok.equals("(")) {
+          // A subquery; its own FROM clause will be scanned.
+          state = 0;
+        } else {
+          // Strip any schema prefix and identifier quoting.
+          final String name = tok.substring(tok.lastIndexOf('.') + 1)
+              .replace("\"", "");
+          if (!found.contains(name)) {
+            found.add(name);
+          }
+          state = 2;
+        }
+      } else if (tok.equals("FROM") || tok.equals("JOIN")
+          || tok.equals("INTO") || tok.equals("UPDATE")) {
+        state = 1;
+      } else if (state == 2 && tok.equals(",")) {
+        state = 1;
+      } else if (state == 2 && !tableRefEndKeywords.contains(tok)
+          && Character.isLetter(tok.charAt(0))) {
+        // A table alias; further tables may follow a comma.
+        state = 2;
+      } else {
+        state = 0;
+      }
+    }
+
+    tables = found.isEmpty() ? NO_TABLES : found.toArray(NO_TABLES);
+    if (tablesBySql.size() < MAX_MEMOIZED_SQL) {
+      tablesBySql.put(sql, tables);
+    }
+    return tables;
+  }
+
+  private static String getKey(final SQLStmt stmt) {
+    final StringBuilder b = new StringBuilder(stmt.getSql());
+    final Map<Integer, String> bindVals = stmt.getBindVals();
+    for (int i = 1; i <= bindVals.size(); i++) {
+      b.append('\u0000').append(bindVals.get(i));
+    }
+    return b.toString();
+  }
+
+  /**
+   * The cached results held under a single table's policy, in least
+   * recently used order.
+   */
+  private static final class Region {
+    private final QueryCachePolicy policy;
+    private final LinkedHashMap<String, Entry> entries;
+    private final AtomicLong numHits, numMisses, numExpirations, numEvictions;
+
+    private Region(final QueryCachePolicy p) {
+      this.policy = p;
+      this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+      this.numHits = new AtomicLong();
+      this.numMisses = new AtomicLong();
+      this.numExpirations = new AtomicLong();
+      this.numEvictions = new AtomicLong();
+    }
+
+    private synchronized MaterializedResult get(final String key) {
+      final Entry entry = this.entries.get(key);
+      if (entry == null) {
+        this.numMisses.incrementAndGet();
+        return null;
+      }
+      if (entry.doesExpire
+          && System.nanoTime() - entry.expiresAtNanos >= 0) {
+        this.entries.remove(key);
+        this.numExpirations.incrementAndGet();
+        this.numMisses.incrementAndGet();
+        return null;
+      }
+      this.numHits.incrementAndGet();
+      return entry.result;
+    }
+
+    private synchronized void put(final String key,
+        final MaterializedResult result, final String[] tables) {
+      this.entries.put(key, new Entry(result, tables,
+          TimeUnit.SECONDS.toNanos(this.policy.getTtlSeconds())));
+
+      final Iterator<Entry> iter = this.entries.values().iterator();
+      while (this.entries.size() > this.policy.getMaxEntries()
+          && iter.hasNext()) {
+        iter.next();
+        iter.remove();
+        this.numEvictions.incrementAndGet();
+      }
+    }
+
+    private synchronized void removeReferencesTo(final String table) {
+      final Iterator<Entry> iter = this.entries.values().iterator();
+      while (iter.hasNext()) {
+        if (Arrays.asList(iter.next().tables).contains(table)) {
+          iter.remove();
+        }
+      }
+    }
+
+    private synchronized void clear() {
+      this.entries.clear();
+    }
+
+    private synchronized int size() {
+      return this.entries.size();
+    }
+  }
+
+  private static final class Entry {
+    private final MaterializedResult result;
+    private final String[] tables;
+    private final boolean doesExpire;
+    private final long expiresAtNanos;
+
+    private Entry(final MaterializedResult r, final String[] t,
+        final long ttlNanos) {
+      this.result = r;
+      this.tables = t;
+      this.doesExpire = ttlNanos > 0;
+      this.expiresAtNanos = System.nanoTime() + ttlNanos;
+    }
+  }
+}
@@ -0,0 +1,264 @@
+/*===---------------------------------------------------------------------===*\
+|*                       The OpenPplSoft Runtime Project                     *|
+|*                                                                           *|
+|*              This file is distributed under the MIT License.              *|
+|*                         See LICENSE.md for details.                       *|
+\*===---------------------------------------------------------------------===*/
+
+package org.openpplsoft.sql;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import org.openpplsoft.pt.*;
+import org.openpplsoft.runtime.*;
+import org.openpplsoft.types.*;
+
+/**
+ * Reads the rows of a result set into record objects. A mapper is
+ * compiled once for each combination of result set columns (names and
+ * database types) and record defn: compiling resolves each column to the
+ * position of its field in the record (unwrapping date / datetime
+ * conversions and prefixes in column names) and to the conversion
+ * needed to read a value compatible with the field from the column, so
+ * that reading a row does no name lookups or metadata calls. Mappers are
+ * immutable and are shared by all sessions.
+ *
+ * The values read, and the assignments made to fields, are exactly those
+ * of the equivalent calls to OPSResultSet.getTypeCompatibleValue and
+ * Environment.assign.
+ */
+final class RecordRowMapper {
+
+  private static Logger log =
+      LogManager.getLogger(RecordRowMapper.class.getName());
+
+  private static Map<String, RecordRowMapper> mappers;
+
+  /**
+   * The conversions from a database column to a field value.
+   */
+  enum Conversion {
+    CHAR, STRING, CLOB_STRING, NUMBER, INTEGER, DATE, DATETIME,
+    INCOMPATIBLE;
+  }
+
+  private final Record recDefn;
+  private final boolean definedFieldsOnly;
+
+  /*
+   * One entry per column read into the record, in result set order;
+   * column indices are those of the result set and field indices are
+   * positions in the record defn's expanded field list (both 1-based). A
+   * field index of 0 marks a column that does not match any field.
+   */
+  private final int[] colIdxs;
+  private final int[] fldIdxs;
+  private final boolean[] isBlankableChar;
+  private final Conversion[] conversions;
+
+  static {
+    mappers = new ConcurrentHashMap<String, RecordRowMapper>();
+  }
+
+  private RecordRowMapper(final PTRecord<?, ?> recObj,
+      final OPSResultSet rs, final boolean definedOnly) {
+    this.recDefn = recObj.getRecDefn();
+    this.definedFieldsOnly = definedOnly;
+
+    // Field positions by name; later fields of the same name replace
+    // earlier ones, as they do in the record object itself.
+    final Map<String, Integer> fldIdxTable = new HashMap<String, Integer>();
+    final List<RecordField> fldList = this.recDefn.getExpandedFieldList();
+    for (int i = 0; i < fldList.size(); i++) {
+      fldIdxTable.put(fldList.get(i).getFldName(), i + 1);
+    }
+
+    int numMapped = 0;
+    final int colCount = rs.getColumnCount();
+    final int[] cIdxs = new int[colCount];
+    final int[] fIdxs = new int[colCount];
+    final boolean[] blankable = new boolean[colCount];
+    final Conversion[] convs = new Conversion[colCount];
+
+    for (int i = 1; i <= colCount; i++) {
+      final String colName = rs.getColumnName(i);
+      if (definedOnly && !this.recDefn.hasField(colName)) {
+        continue;
+      }
+
+      final Integer fldIdx =
+          fldIdxTable.get(PTRecord.unwrapFieldName(colName));
+      cIdxs[numMapped] = i;
+      if (fldIdx == null) {
+        fIdxs[numMapped] = 0;
+        convs[numMapped] = Conversion.INCOMPATIBLE;
+      } else {
+        final PTField fld = recObj.getFieldRefAt(fldIdx).deref();
+        final RecordField fldDefn = fld.getRecordFieldDefn();
+        fIdxs[numMapped] = fldIdx;
+        blankable[numMapped] =
+            fldDefn.getFieldType() == RecordField.FieldType.CHARACTER
+                && !fldDefn.isRequired();
+        convs[numMapped] = conversionFor(rs.getColumnTypeName(i),
+            fld.getValue().getOriginatingTypeConstraint());
+      }
+      numMapped++;
+    }
+
+    this.colIdxs = Arrays.copyOf(cIdxs, numMapped);
+    this.fldIdxs = Arrays.copyOf(fIdxs, numMapped);
+    this.isBlankableChar = Arrays.copyOf(blankable, numMapped);
+    this.conversions = Arrays.copyOf(convs, numMapped);
+  }
+
+  /**
+   * Retrieves the mapper for the columns of the provided result set and
+   * the record defn of the provided record object, compiling it if
+   * necessary.
+   * @param recObj the record object that rows will be read into
+   * @param rs the result set that rows will be read from
+   * @param definedOnly whether columns that do not correspond to fields
+   *    on the record are to be skipped (rather than rejected)
+   * @return the mapper
+   */
+  static RecordRowMapper forRecord(final PTRecord<?, ?> recObj,
+      final OPSResultSet rs, final boolean definedOnly) {
+    final String key = recObj.getRecName() + (definedOnly ? "?" : ":")
+        + rs.getColumnSignature();
+    RecordRowMapper mapper = mappers.get(key);
+    if (mapper == null) {
+      mapper = new RecordRowMapper(recObj, rs, definedOnly);
+      mappers.putIfAbsent(key, mapper);
+      log.debug("Compiled row mapper for record {} and columns {}.",
+          recObj.getRecName(), rs.getColumnSignature());
+    }
+    return mapper;
+  }
+
+  /**
+   * Determines whether this mapper can be used to read rows into
+   * records of the provided defn; the caller must ensure that the columns
+   * of the result set are those the mapper was compiled for.
+   */
+  boolean isFor(final Record r, final boolean definedOnly) {
+    return this.definedFieldsOnly == definedOnly
+        && (this.recDefn == r
+            || this.recDefn.getRecName().equals(r.getRecName()));
+  }
+
+  /**
+   * Reads the current row of the result set into the provided record.
+   * @param rs the result set, positioned on a row
+   * @param recObj the record to read into
+   */
+  void readRow(final OPSResultSet rs, final PTRecord<?, ?> recObj) {
+    for (int i = 0; i < this.colIdxs.length; i++) {
+      final int colIdx = this.colIdxs[i];
+      if (this.fldIdxs[i] == 0) {
+        // Throws the same exception a lookup by name does.
+        recObj.getFieldRef(rs.getColumnName(colIdx));
+      }
+
+      final PTReference<? extends PTField> fldRef =
+          recObj.getFieldRefAt(this.fldIdxs[i]);
+
+      /*
+       * PeopleSoft stores non-required blank CHARACTER fields
+       * as ' ' in the database. These must be translated to
+       * their empty string runtime equivalent.
+       */
+      final PTPrimitiveType dbVal;
+      if (this.isBlankableChar[i]) {
+        final String dbStr = rs.getString(colIdx);
+        if (dbStr.equals(" ")) {
+          dbVal = new PTString("");
+        } else {
+          dbVal = this.convert(rs, i, dbStr, fldRef);
+        }
+      } else {
+        dbVal = this.convert(rs, i, null, fldRef);
+      }
+      Environment.assign(fldRef, dbVal);
+    }
+  }
+
+  /**
+   * Reads a value from the i'th mapped column; if the column has
+   * already been read as a string, that string can be passed as dbStr.
+   */
+  private PTPrimitiveType convert(final OPSResultSet rs, final int i,
+      final String dbStr, final PTReference<? extends PTField> fldRef) {
+    final int colIdx = this.colIdxs[i];
+    switch (this.conversions[i]) {
+      case CHAR:
+        return new PTChar(dbStr != null ? dbStr : rs.getString(colIdx));
+      case STRING:
+        return new PTString(dbStr != null ? dbStr : rs.getString(colIdx));
+      case CLOB_STRING:
+        return new PTString(rs.getClobAsString(colIdx));
+      case NUMBER:
+        return new PTNumber(rs.getBigDecimal(colIdx));
+      case INTEGER:
+        return new PTInteger(rs.getInt(colIdx));
+      case DATE:
+        return new PTDate(dbStr != null ? dbStr : rs.getString(colIdx));
+      case DATETIME:
+        return new PTDateTime(dbStr != null ? dbStr : rs.getString(colIdx));
+      default:
+        // Throws the exception describing the incompatibility.
+        return rs.getTypeCompatibleValue(colIdx,
+            fldRef.deref().getValue().getOriginatingTypeConstraint());
+    }
+  }
+
+  /**
+   * Determines the conversion that getTypeCompatibleValue makes for the
+   * provided column type and type constraint.
+   */
+  private static Conversion conversionFor(final String colTypeName,
+      final PTTypeConstraint tc) {
+    if (tc instanceof PTAnyTypeConstraint) {
+      if (colTypeName.equals("CHAR")) {
+        return Conversion.CHAR;
+      } else if (colTypeName.equals("VARCHAR2")) {
+        return Conversion.STRING;
+      }
+    } else if (tc.isUnderlyingClassEqualTo(PTChar.class)) {
+      if (colTypeName.equals("CHAR") || colTypeName.equals("VARCHAR2")) {
+        return Conversion.CHAR;
+      }
+    } else if (tc.isUnderlyingClassEqualTo(PTString.class)) {
+      if (colTypeName.equals("CLOB")) {
+        return Conversion.CLOB_STRING;
+      } else if (colTypeName.equals("CHAR")
+          || colTypeName.equals("VARCHAR2")) {
+        return Conversion.STRING;
+      }
+    } else if (tc.isUnderlyingClassEqualTo(PTNumber.class)) {
+      if (colTypeName.equals("NUMBER")) {
+        return Conversion.NUMBER;
+      }
+    } else if (tc.isUnderlyingClassEqualTo(PTInteger.class)) {
+      if (colTypeName.equals("NUMBER")) {
+        return Conversion.INTEGER;
+      }
+    } else if (tc.isUnderlyingClassEqualTo(PTDate.class)) {
+      if (colTypeName.equals("VARCHAR2")) {
+        return Conversion.DATE;
+      }
+    } else if (tc.isUnderlyingClassEqualTo(PTDateTime.class)) {
+      if (colTypeName.equals("VARCHAR2")
+          || colTypeName.equals("TIMESTAMP")) {
+        return Conversion.DATETIME;
+      }
+    }
+    return Conversion.INCOMPATIBLE;
+  }
+}
@@ -0,0 +1,230 @@
+/*===---------------------------------------------------------------------===*\
+|*                       The OpenPplSoft Runtime Project                     *|
+|*                                                                           *|
+|*              This file is distributed under the MIT License.              *|
+|*                         See LICENSE.md for details.                       *|
+\*===---------------------------------------------------------------------===*/
+
+package org.openpplsoft.sql;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.openpplsoft.pt.Record;
+import org.openpplsoft.pt.RecordField;
+import org.openpplsoft.runtime.Environment;
+import org.openpplsoft.runtime.OPSVMachRuntimeException;
+import org.openpplsoft.types.PTField;
+import org.openpplsoft.types.PTPrimitiveType;
+import org.openpplsoft.types.PTRecordTypeConstraint;
+import org.openpplsoft.types.PTReference;
+import org.openpplsoft.types.PTStandaloneRecord;
+import org.openpplsoft.types.PTString;
+
+/**
+ * Measures the time taken to read the rows of a result set into a record
+ * with RecordRowMapper (i.e., OPSResultSet.readIntoRecord), against the
+ * time taken to read them by resolving each column's field by name and
+ * converting its value on every row, as readIntoRecord did before row
+ * mappers were introduced. No database is needed: the rows are held in
+ * a MaterializedResult, and the record defn (of ten fields covering
+ * each conversion a mapper makes) is built from rows in the same way.
+ * Usage:
+ *
+ *   java -cp ... org.openpplsoft.sql.RecordRowMapperBenchmark
+ *       [rows] [passes]
+ *
+ * Each pass reads every row both ways; the first pass warms up the JIT,
+ * is not reported, and checks that both ways read identical values. Run
+ * with logging at INFO or above (the per-column path logs each value it
+ * reads at DEBUG).
+ */
+public final class RecordRowMapperBenchmark {
+
+  private static final int DEFAULT_ROWS = 100000;
+  private static final int DEFAULT_PASSES = 10;
+
+  private static final String RECNAME = "OPS_BENCH_REC";
+
+  // Field name, FIELDTYPE (0: CHARACTER, 1: LONG_CHARACTER, 2: NUMBER,
+  // 3: SIGNED_NUMBER, 4: DATE), USEEDIT, length and column type.
+  private static final Object[][] FIELDS = {
+    {"EMPLID", 0, 1, 11, "VARCHAR2"},
+    {"EMPL_RCD", 2, 1, 3, "NUMBER"},
+    {"EFFDT", 4, 1, 10, "VARCHAR2"},
+    {"EFF_STATUS", 0, 0, 1, "CHAR"},
+    {"NAME", 0, 0, 50, "VARCHAR2"},
+    {"DEPTID", 0, 0, 10, "VARCHAR2"},
+    {"JOBCODE", 0, 0, 6, "VARCHAR2"},
+    {"ANNUAL_RT", 3, 0, 18, "NUMBER"},
+    {"STD_HOURS", 2, 0, 6, "NUMBER"},
+    {"COMMENTS", 1, 0, 0, "CLOB"},
+  };
+
+  private RecordRowMapperBenchmark() {}
+
+  /**
+   * Runs the benchmark.
+   * @param args optionally, the number of rows to read and the number
+   *    of passes to make over them
+   */
+  public static void main(final String[] args) {
+    final int numRows = args.length > 0
+        ? Integer.parseInt(args[0]) : DEFAULT_ROWS;
+    final int passes = args.length > 1
+        ? Integer.parseInt(args[1]) : DEFAULT_PASSES;
+
+    final Record recDefn = buildRecDefn();
+    final MaterializedResult table = buildRows(numRows);
+    final PTStandaloneRecord mappedRec = new PTRecordTypeConstraint()
+        .allocStandaloneRecord(null, recDefn);
+    final PTStandaloneRecord resolvedRec = new PTRecordTypeConstraint()
+        .allocStandaloneRecord(null, recDefn);
+    System.out.printf("%d rows of %d columns.%n", numRows, FIELDS.length);
+
+    long mappedNanos = 0, resolvedNanos = 0;
+    for (int pass = 0; pass <= passes; pass++) {
+      long start = System.nanoTime();
+      final OPSResultSet mappedRs = new OPSResultSet(table);
+      while (mappedRs.next()) {
+        mappedRs.readIntoRecord(mappedRec);
+      }
+      final long mapped = System.nanoTime() - start;
+
+      start = System.nanoTime();
+      final OPSResultSet resolvedRs = new OPSResultSet(table);
+      while (resolvedRs.next()) {
+        readResolvingEachColumn(resolvedRs, resolvedRec);
+      }
+      final long resolved = System.nanoTime() - start;
+
+      if (pass == 0) {
+        checkIdenticalReads(table, recDefn);
+      } else {
+        mappedNanos += mapped;
+        resolvedNanos += resolved;
+      }
+    }
+
+    System.out.printf("Resolved per column: %.2f ms/pass (%.0f rows/s)%n",
+        resolvedNanos / 1e6 / passes, 1e9 * numRows * passes / resolvedNanos);
+    System.out.printf("Row mapper: %.2f ms/pass (%.0f rows/s; %.1f%% of "
+        + "resolved per column)%n", mappedNanos / 1e6 / passes,
+        1e9 * numRows * passes / mappedNanos,
+        100.0 * mappedNanos / resolvedNanos);
+  }
+
+  /*
+   * Reads the current row as readIntoRecord did before row mappers: by
+   * looking up each column's field by name, and choosing its conversion
+   * from the field and column types, on every row.
+   */
+  private static void readResolvingEachColumn(final OPSResultSet rs,
+      final PTStandaloneRecord recObj) {
+    for (int i = 1; i <= rs.getColumnCount(); i++) {
+      final PTReference<? extends PTField> fldRef =
+          recObj.getFieldRef(rs.getColumnName(i));
+      final RecordField fldDefn = fldRef.deref().getRecordFieldDefn();
+      final PTPrimitiveType dbVal;
+      if (fldDefn.getFieldType() == RecordField.FieldType.CHARACTER
+          && !fldDefn.isRequired() && " ".equals(rs.getString(i))) {
+        dbVal = new PTString("");
+      } else {
+        dbVal = rs.getTypeCompatibleValue(i,
+            fldRef.deref().getValue().getOriginatingTypeConstraint());
+      }
+      Environment.assign(fldRef, dbVal);
+    }
+  }
+
+  /*
+   * Reads every row both ways into separate records, and fails if any
+   * field's value differs between them.
+   */
+  private static void checkIdenticalReads(final MaterializedResult table,
+      final Record recDefn) {
+    final PTStandaloneRecord mappedRec = new PTRecordTypeConstraint()
+        .allocStandaloneRecord(null, recDefn);
+    final PTStandaloneRecord resolvedRec = new PTRecordTypeConstraint()
+        .allocStandaloneRecord(null, recDefn);
+    final OPSResultSet mappedRs = new OPSResultSet(table);
+    final OPSResultSet resolvedRs = new OPSResultSet(table);
+    int rowIdx = 0;
+    while (mappedRs.next() && resolvedRs.next()) {
+      mappedRs.readIntoRecord(mappedRec);
+      readResolvingEachColumn(resolvedRs, resolvedRec);
+      rowIdx++;
+      for (final Object[] fld : FIELDS) {
+        final String fldName = (String) fld[0];
+        final PTPrimitiveType a = mappedRec.getFieldRef(fldName).deref()
+            .getValue();
+        final PTPrimitiveType b = resolvedRec.getFieldRef(fldName).deref()
+            .getValue();
+        if (a.getClass() != b.getClass()
+            || !a.readAsString().equals(b.readAsString())) {
+          throw new OPSVMachRuntimeException("Row " + rowIdx + ", field "
+              + fldName + ": row mapper read " + a + ", but resolving the "
+              + "column read " + b + ".");
+        }
+      }
+    }
+  }
+
+  private static Record buildRecDefn() {
+    final List<Object[]> fldRows = new ArrayList<Object[]>();
+    for (int i = 0; i < FIELDS.length; i++) {
+      fldRows.add(new Object[] {FIELDS[i][0],
+          BigDecimal.valueOf((Integer) FIELDS[i][1]),
+          BigDecimal.valueOf((Integer) FIELDS[i][2]),
+          BigDecimal.valueOf(i + 1), BigDecimal.valueOf((Integer) FIELDS[i][3]),
+          " ", " ", " "});
+    }
+
+    final Record recDefn = new Record(RECNAME);
+    recDefn.initFromRows(
+        new OPSResultSet(new MaterializedResult(
+            new String[] {"RELLANGRECNAME", "RECTYPE", "FIELDCOUNT"},
+            new String[] {"VARCHAR2", "NUMBER", "NUMBER"},
+            Collections.singletonList(new Object[] {" ", BigDecimal.ZERO,
+                BigDecimal.valueOf(FIELDS.length)}))),
+        new OPSResultSet(new MaterializedResult(
+            new String[] {"FIELDNAME", "FIELDTYPE", "USEEDIT", "FIELDNUM",
+                "LENGTH", "DEFRECNAME", "DEFFIELDNAME", "LABEL_ID"},
+            new String[] {"VARCHAR2", "NUMBER", "NUMBER", "NUMBER", "NUMBER",
+                "VARCHAR2", "VARCHAR2", "VARCHAR2"},
+            fldRows)),
+        null,
+        new OPSResultSet(new MaterializedResult(new String[0], new String[0],
+            Collections.<Object[]>emptyList())));
+    return recDefn;
+  }
+
+  private static MaterializedResult buildRows(final int numRows) {
+    final String[] colNames = new String[FIELDS.length];
+    final String[] colTypeNames = new String[FIELDS.length];
+    for (int i = 0; i < FIELDS.length; i++) {
+      colNames[i] = (String) FIELDS[i][0];
+      colTypeNames[i] = (String) FIELDS[i][4];
+    }
+
+    final List<Object[]> rows = new ArrayList<Object[]>(numRows);
+    for (int i = 0; i < numRows; i++) {
+      rows.add(new Object[] {
+        String.format("KU%07d", i),
+        BigDecimal.valueOf(i % 3),
+        String.format("20%02d-%02d-%02d", i % 15, i % 12 + 1, i % 28 + 1),
+        i % 5 == 0 ? "I" : "A",
+        // Blank non-required CHARACTER values are stored as a space.
+        i % 4 == 0 ? " " : "Employee " + i,
+        String.format("%05d", i % 400),
+        String.format("%06d", i % 1000),
+        BigDecimal.valueOf(3000000L + i * 17L, 2),
+        BigDecimal.valueOf(40),
+        i % 10 == 0 ? "" : "Comment for row " + i
+      });
+    }
+    return new MaterializedResult(colNames, colTypeNames, rows);
+  }
+}
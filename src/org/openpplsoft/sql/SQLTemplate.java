@@ -0,0 +1,144 @@
+/*===---------------------------------------------------------------------===*\
+|*                       The OpenPplSoft Runtime Project                     *|
+|*                                                                           *|
+|*              This file is distributed under the MIT License.              *|
+|*                         See LICENSE.md for details.                       *|
+\*===---------------------------------------------------------------------===*/
+
+package org.openpplsoft.sql;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * A SQL statement compiled from the form in which PeopleCode and
+ * PeopleTools defns provide it (with meta-SQL, and with numbered bind
+ * references, i.e., ":1") to the form in which it is executed: JDBC text
+ * with "?" placeholders, and the (1-based) PeopleSoft bind index that
+ * each placeholder takes its value from. A bind reference may appear more
+ * than once, in which case its value is bound to each placeholder.
+ *
+ * Templates are compiled once for each distinct SQL text (or, for SQL
+ * that StmtLibrary generates, each distinct set of inputs to the
+ * generation, including meta-SQL expansion) and cached for the life of
+ * the runtime, so that repeated executions only bind values. At most
+ * MAX_CACHED_TEMPLATES templates are cached; SQL compiled beyond that
+ * (i.e., dynamic SQL with inlined values) is compiled on each use.
+ */
+public final class SQLTemplate {
+
+  private static Logger log =
+      LogManager.getLogger(SQLTemplate.class.getName());
+
+  private static final int MAX_CACHED_TEMPLATES = 4096;
+
+  private static Pattern bindIdxPattern;
+  private static Map<String, SQLTemplate> templates;
+
+  private final String jdbcSql;
+  private final int[] bindIdxs;
+
+  static {
+    bindIdxPattern = Pattern.compile(":(\\d+)");
+    templates = new ConcurrentHashMap<String, SQLTemplate>();
+  }
+
+  private SQLTemplate(final String sql) {
+    final Matcher bindIdxMatcher = bindIdxPattern.matcher(sql);
+    final StringBuffer sb = new StringBuffer();
+    int[] idxs = new int[8];
+    int numBinds = 0;
+    while (bindIdxMatcher.find()) {
+      if (numBinds == idxs.length) {
+        idxs = Arrays.copyOf(idxs, numBinds * 2);
+      }
+      idxs[numBinds++] = Integer.parseInt(bindIdxMatcher.group(1));
+      bindIdxMatcher.appendReplacement(sb, "?");
+    }
+    bindIdxMatcher.appendTail(sb);
+
+    this.jdbcSql = sb.toString();
+    this.bindIdxs = Arrays.copyOf(idxs, numBinds);
+  }
+
+  /**
+   * Retrieves the template for the provided SQL text, compiling it
+   * if necessary.
+   * @param sql SQL text with numbered bind references
+   * @return the compiled template
+   */
+  public static SQLTemplate forSql(final String sql) {
+    return forKey(sql, () -> sql);
+  }
+
+  /**
+   * Retrieves the template cached under the provided key, compiling
+   * the SQL text obtained from the provided source if necessary; the
+   * key must identify everything the SQL text is generated from.
+   * @param key the cache key for the template
+   * @param sqlSource generates the SQL text of the template
+   * @return the compiled template
+   */
+  static SQLTemplate forKey(final String key,
+      final Supplier<String> sqlSource) {
+    SQLTemplate template = templates.get(key);
+    if (template == null) {
+      template = new SQLTemplate(sqlSource.get());
+      if (templates.size() < MAX_CACHED_TEMPLATES) {
+        templates.putIfAbsent(key, template);
+      }
+      log.debug("Compiled SQL template: {}", template.jdbcSql);
+    }
+    return template;
+  }
+
+  /**
+   * Gets the text of the statement, in which bind references
+   * have been replaced with JDBC placeholders.
+   * @return the JDBC SQL text
+   */
+  public String getJdbcSql() {
+    return this.jdbcSql;
+  }
+
+  /**
+   * Gets the number of placeholders in the statement.
+   * @return the number of placeholders
+   */
+  public int getNumBinds() {
+    return this.bindIdxs.length;
+  }
+
+  /**
+   * Gets the bind index that a placeholder takes its value from.
+   * @param placeholderIdx the 0-based index of the placeholder
+   * @return the 1-based PeopleSoft bind index
+   */
+  public int getBindIdx(final int placeholderIdx) {
+    return this.bindIdxs[placeholderIdx];
+  }
+
+  /**
+   * Creates a statement from this template.
+   * @param bindVals the values of the bind references, in bind
+   *    index order
+   * @param eType the emission type of the statement
+   * @return the OPSStmt to be executed
+   */
+  public OPSStmt toStmt(final String[] bindVals,
+      final OPSStmt.EmissionType eType) {
+    final String[] expandedBindVals = new String[this.bindIdxs.length];
+    for (int i = 0; i < this.bindIdxs.length; i++) {
+      // PS bind indices are 1-based, must subtract 1 here.
+      expandedBindVals[i] = bindVals[this.bindIdxs[i] - 1];
+    }
+    return new OPSStmt(this.jdbcSql, expandedBindVals, eType);
+  }
+}
@@ -0,0 +1,144 @@
+/*===---------------------------------------------------------------------===*\
+|*                       The OpenPplSoft Runtime Project                     *|
+|*                                                                           *|
+|*              This file is distributed under the MIT License.              *|
+|*                         See LICENSE.md for details.                       *|
+\*===---------------------------------------------------------------------===*/
+
+package org.openpplsoft.sql;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * A bounded, per-connection cache of PreparedStatements keyed by SQL text,
+ * which allows repeatedly issued statements (i.e., the static statements
+ * used to load definitions) to skip the prepare (and database soft parse)
+ * step. Statements are checked out of the cache for the lifetime of an
+ * OPSStmt, so nested executions of the same SQL each get their own
+ * statement; the least recently used statements are closed once the cache
+ * exceeds its maximum size, which is set with the "maxCachedStmts" system
+ * property (0 disables caching).
+ *
+ * Each cache is used by a single RuntimeSession and so is not thread-safe;
+ * hit/miss counters are shared by all caches.
+ */
+public final class StatementCache {
+
+  private static Logger log =
+      LogManager.getLogger(StatementCache.class.getName());
+
+  private static final int DEFAULT_MAX_CACHED_STMTS = 128;
+
+  private static int maxCachedStmts;
+  private static AtomicLong numHits, numMisses, numEvictions;
+
+  private final Connection conn;
+
+  // Access-ordered, so iteration begins at the LRU statement.
+  private final LinkedHashMap<String, PreparedStatement> idleStmts;
+  private boolean isClosed;
+
+  static {
+    final String max = System.getProperty("maxCachedStmts");
+    if (max == null || max.trim().length() == 0) {
+      maxCachedStmts = DEFAULT_MAX_CACHED_STMTS;
+    } else {
+      maxCachedStmts = Integer.parseInt(max.trim());
+    }
+    numHits = new AtomicLong();
+    numMisses = new AtomicLong();
+    numEvictions = new AtomicLong();
+  }
+
+  /**
+   * Creates an empty statement cache for the provided connection.
+   * @param c the connection on which statements will be prepared
+   */
+  public StatementCache(final Connection c) {
+    this.conn = c;
+    this.idleStmts =
+        new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true);
+  }
+
+  /**
+   * Retrieves a prepared statement for the provided SQL, preparing
+   * it if there is no idle statement for the SQL in the cache. The
+   * statement must be returned with {@link #checkin} once the caller is
+   * done with it.
+   * @param sql the SQL text to prepare
+   * @return a prepared statement for the SQL
+   * @throws SQLException if the statement must be prepared and
+   *    preparation fails
+   */
+  public PreparedStatement checkout(final String sql) throws SQLException {
+    final PreparedStatement cached = this.idleStmts.remove(sql);
+    if (cached != null) {
+      numHits.incrementAndGet();
+      return cached;
+    }
+    numMisses.incrementAndGet();
+    return this.conn.prepareStatement(sql);
+  }
+
+  /**
+   * Returns a statement obtained from {@link #checkout} to the cache;
+   * its parameters are cleared. If an idle statement for the same SQL is
+   * already cached, or the cache has been closed, the statement is closed.
+   * @param sql the SQL text the statement was prepared for
+   * @param pstmt the statement to return
+   * @throws SQLException if the statement cannot be reset or closed
+   */
+  public void checkin(final String sql, final PreparedStatement pstmt)
+      throws SQLException {
+    if (this.isClosed || maxCachedStmts == 0
+        || this.idleStmts.containsKey(sql)) {
+      pstmt.close();
+      return;
+    }
+
+    pstmt.clearParameters();
+    this.idleStmts.put(sql, pstmt);
+
+    final Iterator<Map.Entry<String, PreparedStatement>> iter =
+        this.idleStmts.entrySet().iterator();
+    while (this.idleStmts.size() > maxCachedStmts) {
+      final PreparedStatement lru = iter.next().getValue();
+      iter.remove();
+      numEvictions.incrementAndGet();
+      lru.close();
+    }
+  }
+
+  /**
+   * Closes all idle statements; statements checked out at the time of
+   * this call are closed when they are checked in.
+   */
+  public void close() {
+    this.isClosed = true;
+    for (final PreparedStatement pstmt : this.idleStmts.values()) {
+      try {
+        pstmt.close();
+      } catch (final SQLException sqle) {
+        log.warn("Unable to close cached statement.", sqle);
+      }
+    }
+    this.idleStmts.clear();
+  }
+
+  /**
+   * Logs the hit, miss and eviction counts of all statement caches.
+   */
+  public static void logSummary() {
+    log.info("Statement cache (max {} per connection): {} hits, {} misses, "
+        + "{} evictions.", maxCachedStmts, numHits, numMisses, numEvictions);
+  }
+}
@@ -14,11 +14,14 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import javax.sql.DataSource;
 
+import org.apache.commons.dbcp2.BasicDataSource;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.openpplsoft.buffers.ComponentBuffer;
@@ -29,6 +32,7 @@ import org.openpplsoft.pt.SQL;
 import org.openpplsoft.runtime.DefnCache;
 import org.openpplsoft.runtime.Environment;
 import org.openpplsoft.runtime.OPSVMachRuntimeException;
+import org.openpplsoft.runtime.RuntimeSession;
 import org.openpplsoft.types.*;
 
 import org.springframework.context.support.ClassPathXmlApplicationContext;
@@ -41,25 +45,26 @@ import org.springframework.core.io.Resource;
  */
 public final class StmtLibrary {
 
-  private static Connection conn;
+  private static DataSource dataSource;
   private static Logger log =
       LogManager.getLogger(StmtLibrary.class.getName());
 
   private static Map<String, StaticSqlDefn> staticSqlDefns;
-  private static Pattern bindIdxPattern;
   private static Pattern dateInPattern, currDateInPattern;
   private static Pattern effDtCheckPattern;
 
+  // Connection pool metrics.
+  private static AtomicLong numLeases, totalLeaseWaitNanos, maxLeaseWaitNanos;
+
   static {
     final ClassPathXmlApplicationContext ctx =
         new ClassPathXmlApplicationContext(System.getProperty("contextFile"));
-    final DataSource ds = (DataSource) ctx.getBean("dataSource");
-
-    try {
-      conn = ds.getConnection();
-    } catch (final java.sql.SQLException sqle) {
-      throw new OPSVMachRuntimeException(sqle.getMessage(), sqle);
-    }
+    dataSource = (DataSource) ctx.getBean("dataSource");
+    QueryResultCache.configure(
+        ctx.getBeansOfType(QueryCachePolicy.class).values());
+    numLeases = new AtomicLong();
+    totalLeaseWaitNanos = new AtomicLong();
+    maxLeaseWaitNanos = new AtomicLong();
 
     /*
      * Load static SQL defns into memory from file.
@@ -111,7 +116,6 @@ public final class StmtLibrary {
     }
 
     // compile meta-SQL detection regex patterns.
-    bindIdxPattern = Pattern.compile(":(\\d+)");
     dateInPattern = Pattern.compile("%(DATEIN|DateIn)\\((.+?)\\)");
     currDateInPattern = Pattern.compile("%CurrentDateIn");
     effDtCheckPattern = Pattern.compile(
@@ -121,13 +125,54 @@ public final class StmtLibrary {
   private StmtLibrary() {}
 
   /**
-   * Retrieves the underlying JDBC connection.
-   * @return the underlying JDBC connection
+   * Retrieves the JDBC connection leased by the runtime session bound
+   * to the calling thread; the session leases a connection from the pool
+   * on first use.
+   * @return the JDBC connection of the current session
    */
   public static Connection getConnection() {
+    return RuntimeSession.current().getConnection();
+  }
+
+  /**
+   * Leases a connection from the pool; callers must close the connection
+   * to return it to the pool.
+   * @return the leased JDBC connection
+   */
+  public static Connection leaseConnection() {
+    final long startNanos = System.nanoTime();
+    final Connection conn;
+    try {
+      conn = dataSource.getConnection();
+    } catch (final java.sql.SQLException sqle) {
+      throw new OPSVMachRuntimeException(sqle.getMessage(), sqle);
+    }
+
+    final long waitNanos = System.nanoTime() - startNanos;
+    numLeases.incrementAndGet();
+    totalLeaseWaitNanos.addAndGet(waitNanos);
+    maxLeaseWaitNanos.accumulateAndGet(waitNanos, Math::max);
     return conn;
   }
 
+  /**
+   * Logs the number of connections leased from the pool, the time
+   * spent waiting for them, and the pool's active and idle counts.
+   */
+  public static void logPoolSummary() {
+    final long leases = numLeases.get();
+    log.info("Connection pool: {} leases; wait avg {} ms, max {} ms.",
+        leases,
+        leases == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(
+            totalLeaseWaitNanos.get() / leases),
+        TimeUnit.NANOSECONDS.toMillis(maxLeaseWaitNanos.get()));
+    if (dataSource instanceof BasicDataSource) {
+      final BasicDataSource bds = (BasicDataSource) dataSource;
+      log.info("Connection pool: {} active, {} idle (max total: {}).",
+          bds.getNumActive(), bds.getNumIdle(), bds.getMaxTotal());
+    }
+  }
+
   /**
    * Generates an OPSStmt for the static SQL stmt with the provided
    * label, along with the provided bind values.
@@ -138,10 +183,50 @@ public final class StmtLibrary {
    */
   public static OPSStmt getStaticSQLStmt(final String uniqueLabel,
       final String[] bindVals) {
-    return new OPSStmt(staticSqlDefns.get(uniqueLabel).sql,
+    return new OPSStmt(uniqueLabel, staticSqlDefns.get(uniqueLabel).sql,
         bindVals, staticSqlDefns.get(uniqueLabel).emissionType);
   }
 
+  /**
+   * Generates an OPSStmt for a static SQL stmt containing an IN list
+   * (denoted by %InBinds in the static SQL defn file); the list is
+   * expanded to one bind placeholder per value provided.
+   * @param uniqueLabel the label for the desired statement in the static
+   *   SQL defn file
+   * @param inListVals the values to bind to the IN list
+   * @return the OPSStmt to be executed
+   */
+  public static OPSStmt getStaticSQLStmtWithInList(final String uniqueLabel,
+      final String[] inListVals) {
+    return getStaticSQLStmtWithInList(uniqueLabel, new String[]{}, inListVals);
+  }
+
+  /**
+   * Generates an OPSStmt for a static SQL stmt containing bind values
+   * followed by an IN list (denoted by %InBinds in the static SQL defn file).
+   * @param uniqueLabel the label for the desired statement in the static
+   *   SQL defn file
+   * @param bindVals the values to bind to placeholders preceding the IN list
+   * @param inListVals the values to bind to the IN list
+   * @return the OPSStmt to be executed
+   */
+  public static OPSStmt getStaticSQLStmtWithInList(final String uniqueLabel,
+      final String[] bindVals, final String[] inListVals) {
+    final StringBuilder placeholders = new StringBuilder();
+    for (int i = 0; i < inListVals.length; i++) {
+      placeholders.append(i == 0 ? "?" : ", ?");
+    }
+    final String[] allVals = new String[bindVals.length + inListVals.length];
+    System.arraycopy(bindVals, 0, allVals, 0, bindVals.length);
+    System.arraycopy(inListVals, 0, allVals, bindVals.length,
+        inListVals.length);
+
+    final StaticSqlDefn defn = staticSqlDefns.get(uniqueLabel);
+    return new OPSStmt(uniqueLabel,
+        defn.sql.replace("%InBinds", placeholders.toString()),
+        allVals, defn.emissionType);
+  }
+
   /**
    * Generates an OPSStmt that will fill the search record on
    * the ComponentBuffer.
@@ -236,21 +321,7 @@ public final class StmtLibrary {
   public static OPSStmt convertForJDBCAndGetOPSStmt(
       final String query, final String[] bindVals,
           final OPSStmt.EmissionType eType) {
-
-    final List<String> expandedBindVals = new ArrayList<String>();
-    final Matcher bindIdxMatcher = bindIdxPattern.matcher(query);
-    while (bindIdxMatcher.find()) {
-      final int bindIdx = Integer.parseInt(bindIdxMatcher.group(1));
-
-      // PS bind indices are 1-based, must subtract 1 here.
-      expandedBindVals.add(bindVals[bindIdx - 1]);
-    }
-
-    bindIdxMatcher.reset();
-    final String newSql = bindIdxMatcher.replaceAll("?");
-
-    return new OPSStmt(newSql, expandedBindVals.toArray(
-        new String[expandedBindVals.size()]), eType);
+    return SQLTemplate.forSql(query).toStmt(bindVals, eType);
   }
 
   public static OPSStmt prepareSqlFromSQLDefn(final SQL sqlDefn,
@@ -275,54 +346,67 @@ public final class StmtLibrary {
   public static OPSStmt prepareFillStmt(final Record recDefn,
       final String whereStr, final String[] bindVals) {
 
-    final String rootAlias = "FILL";
-    final StringBuilder query = new StringBuilder(
-        generateSelectClause(recDefn, rootAlias, false));
-
-    final String newWhereStr = processAndExpandWhereStr(rootAlias, whereStr);
-    query.append("  ").append(newWhereStr);
-    //log.debug("Fill query string: {}", query.toString());
-
-    // We can't directly get an OPSStmt with this query b/c it
-    // 1) has numeric bind indices (not "?") and 2)
-    // converting these numeric indices to "?" may require that the list
-    // of bind values be expanded (if a bind index appears multiple
-    // times in the list).
-    return convertForJDBCAndGetOPSStmt(query.toString(), bindVals,
-        OPSStmt.EmissionType.ENFORCED);
+    // The query (including its expanded meta-SQL) is generated only
+    // when it is not already cached.
+    final SQLTemplate template = SQLTemplate.forKey(
+        "Fill\0" + recDefn.getRecName() + "\0" + whereStr, () -> {
+          final String rootAlias = "FILL";
+          final StringBuilder query = new StringBuilder(
+              generateSelectClause(recDefn, rootAlias, false));
+
+          final String newWhereStr =
+              processAndExpandWhereStr(rootAlias, whereStr);
+          query.append("  ").append(newWhereStr);
+          return query.toString();
+        });
+
+    // The query has numeric bind indices (not "?"), which the template
+    // converts; the list of bind values may need to be expanded (if a
+    // bind index appears multiple times in the list).
+    final OPSStmt ostmt =
+        template.toStmt(bindVals, OPSStmt.EmissionType.ENFORCED);
+    ostmt.setFetchSize(FetchSizePolicy.forFill(recDefn));
+    return ostmt;
   }
 
   public static OPSStmt prepareSelectStmt(final Record recDefn,
       final String whereStr, final String[] bindVals) {
 
-    final String rootAlias = "";
-    final StringBuilder query = new StringBuilder(
-        generateSelectClause(recDefn, rootAlias, true));
-
-    final String newWhereStr = processAndExpandWhereStr(rootAlias, whereStr);
-    query.append(newWhereStr);
-
-    int i = 0;
-    final List<RecordField> rfList = recDefn.getExpandedFieldList();
-    for (RecordField rf : rfList) {
-      if (rf.isKey()) {
-        if (i == 0) { query.append(" ORDER BY "); }
-        if (i > 0) { query.append(", "); }
-        query.append(rf.getFldName());
-        if (rf.isDescendingKey()) {
-          query.append(" DESC");
-        }
-        i++;
-      }
-    }
-
-    // We can't directly get an OPSStmt with this query b/c it
-    // 1) has numeric bind indices (not "?") and 2)
-    // converting these numeric indices to "?" may require that the list
-    // of bind values be expanded (if a bind index appears multiple
-    // times in the list).
-    return convertForJDBCAndGetOPSStmt(query.toString(), bindVals,
-        OPSStmt.EmissionType.ENFORCED);
+    // The query (including its expanded meta-SQL) is generated only
+    // when it is not already cached.
+    final SQLTemplate template = SQLTemplate.forKey(
+        "Select\0" + recDefn.getRecName() + "\0" + whereStr, () -> {
+          final String rootAlias = "";
+          final StringBuilder query = new StringBuilder(
+              generateSelectClause(recDefn, rootAlias, true));
+
+          final String newWhereStr =
+              processAndExpandWhereStr(rootAlias, whereStr);
+          query.append(newWhereStr);
+
+          int i = 0;
+          final List<RecordField> rfList = recDefn.getExpandedFieldList();
+          for (RecordField rf : rfList) {
+            if (rf.isKey()) {
+              if (i == 0) { query.append(" ORDER BY "); }
+              if (i > 0) { query.append(", "); }
+              query.append(rf.getFldName());
+              if (rf.isDescendingKey()) {
+                query.append(" DESC");
+              }
+              i++;
+            }
+          }
+          return query.toString();
+        });
+
+    // The query has numeric bind indices (not "?"), which the template
+    // converts; the list of bind values may need to be expanded (if a
+    // bind index appears multiple times in the list).
+    final OPSStmt ostmt =
+        template.toStmt(bindVals, OPSStmt.EmissionType.ENFORCED);
+    ostmt.setFetchSize(FetchSizePolicy.forFill(recDefn));
+    return ostmt;
   }
 
   private static String processAndExpandWhereStr(
@@ -872,13 +956,19 @@ public final class StmtLibrary {
   }
 
   /**
-   * Disconnects the underlying JDBC connection.
+   * Closes the connection pool; sessions should have returned their
+   * connections (via RuntimeSession.close) before this is called.
    */
   public static void disconnect() {
-    try {
-      conn.close();
-    } catch (final java.sql.SQLException sqle) {
-      log.warn("Unable to close connection to database.", sqle);
+    logPoolSummary();
+    StatementCache.logSummary();
+    QueryResultCache.logSummary();
+    if (dataSource instanceof BasicDataSource) {
+      try {
+        ((BasicDataSource) dataSource).close();
+      } catch (final java.sql.SQLException sqle) {
+        log.warn("Unable to close connection pool.", sqle);
+      }
     }
   }
 
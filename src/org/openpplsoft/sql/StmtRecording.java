@@ -0,0 +1,267 @@
+/*===---------------------------------------------------------------------===*\
+|*                       The OpenPplSoft Runtime Project                     *|
+|*                                                                           *|
+|*              This file is distributed under the MIT License.              *|
+|*                         See LICENSE.md for details.                       *|
+\*===---------------------------------------------------------------------===*/
+
+package org.openpplsoft.sql;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import org.openpplsoft.runtime.OPSVMachRuntimeException;
+
+/**
+ * Records the results of every query issued by the runtime to a compact
+ * binary file, and replays them from that file in place of the database,
+ * so that a component can be run end to end (e.g., for benchmarking)
+ * without access to a PeopleSoft database.
+ *
+ * Recording is enabled by passing the path of the recording file in the
+ * "recordStmtsFile" system property; every OPSStmt's results (including
+ * BLOB and CLOB values) are read into memory as they are executed and the
+ * recording is written when the runtime shuts down. Replay is enabled by
+ * passing the path of an existing recording in the "replayStmtsFile"
+ * system property; the file is memory-mapped, statements are never
+ * prepared, and no connection is ever leased from the pool.
+ *
+ * Results are keyed by SQL text and bind values. A statement may be
+ * issued more than once with different results (i.e., if the rows it
+ * reads are changed in between), so each key holds its results in the
+ * order they were recorded, and the n'th execution of a statement during
+ * replay is served the n'th recorded result; executions beyond those
+ * recorded are served the last. A statement that was never recorded means
+ * the run has diverged from the recording, and is an error.
+ */
+public final class StmtRecording {
+
+  private static Logger log =
+      LogManager.getLogger(StmtRecording.class.getName());
+
+  private static final int MAGIC = 0x4F505352;
+  private static final int FORMAT_VERSION = 1;
+
+  private static File recordFile;
+  private static Map<String, List<byte[]>> recorded;
+  private static int numRecorded;
+
+  private static File replayFile;
+  private static Map<String, Entry> replayEntries;
+  private static AtomicInteger numReplayed, numRepeated;
+
+  static {
+    final String recordPath = System.getProperty("recordStmtsFile");
+    final String replayPath = System.getProperty("replayStmtsFile");
+    if (recordPath != null && recordPath.trim().length() > 0) {
+      recordFile = new File(recordPath.trim());
+      recorded = new LinkedHashMap<String, List<byte[]>>();
+      log.info("Recording statement results to {}.", recordFile);
+    }
+    if (replayPath != null && replayPath.trim().length() > 0) {
+      if (recordFile != null) {
+        throw new OPSVMachRuntimeException("Statement results cannot be "
+            + "recorded and replayed at the same time; set only one of "
+            + "recordStmtsFile and replayStmtsFile.");
+      }
+      replayFile = new File(replayPath.trim());
+      replayEntries = new HashMap<String, Entry>();
+      numReplayed = new AtomicInteger();
+      numRepeated = new AtomicInteger();
+      load();
+    }
+  }
+
+  private StmtRecording() {}
+
+  /**
+   * Determines whether statement results are being recorded.
+   * @return true if the "recordStmtsFile" property is set
+   */
+  public static boolean isRecording() {
+    return recordFile != null;
+  }
+
+  /**
+   * Determines whether statement results are being replayed from
+   * a recording (in which case no database is used).
+   * @return true if the "replayStmtsFile" property is set
+   */
+  public static boolean isReplaying() {
+    return replayFile != null;
+  }
+
+  private static void load() {
+    final MappedByteBuffer buf;
+    try (final RandomAccessFile raf = new RandomAccessFile(replayFile, "r");
+         final FileChannel channel = raf.getChannel()) {
+      buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    } catch (final IOException ioe) {
+      throw new OPSVMachRuntimeException(ioe.getMessage(), ioe);
+    }
+
+    if (buf.getInt() != MAGIC || buf.getInt() != FORMAT_VERSION) {
+      throw new OPSVMachRuntimeException("Unable to replay statement "
+          + "results from " + replayFile + "; unrecognized format.");
+    }
+
+    int numResults = 0;
+    final int numKeys = buf.getInt();
+    for (int i = 0; i < numKeys; i++) {
+      final String key = MaterializedResult.readString(buf);
+      final ByteBuffer[] payloads = new ByteBuffer[buf.getInt()];
+      for (int j = 0; j < payloads.length; j++) {
+        final int len = buf.getInt();
+        payloads[j] = buf.slice();
+        payloads[j].limit(len);
+        buf.position(buf.position() + len);
+      }
+      replayEntries.put(key, new Entry(payloads));
+      numResults += payloads.length;
+    }
+    log.info("Replaying {} results of {} distinct statements from {}.",
+        numResults, numKeys, replayFile);
+  }
+
+  /**
+   * Adds the result of the provided statement to the recording, if
+   * statement results are being recorded.
+   * @param stmt the statement, with its bind values attached
+   * @param result the result read from the database
+   * @return the result, so that this call can wrap the read
+   */
+  static MaterializedResult record(final SQLStmt stmt,
+      final MaterializedResult result) {
+    if (recordFile == null) {
+      return result;
+    }
+
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (final DataOutputStream out = new DataOutputStream(bytes)) {
+      result.writeTo(out);
+    } catch (final IOException ioe) {
+      throw new OPSVMachRuntimeException(ioe.getMessage(), ioe);
+    }
+
+    final String key = getKey(stmt);
+    synchronized (recorded) {
+      List<byte[]> results = recorded.get(key);
+      if (results == null) {
+        results = new ArrayList<byte[]>(1);
+        recorded.put(key, results);
+      }
+      results.add(bytes.toByteArray());
+      numRecorded++;
+    }
+    return result;
+  }
+
+  /**
+   * Retrieves the recorded result of the provided statement.
+   * @param stmt the statement, with its bind values attached
+   * @return the result recorded for this execution of the statement
+   */
+  static MaterializedResult replay(final SQLStmt stmt) {
+    final Entry entry = replayEntries.get(getKey(stmt));
+    if (entry == null) {
+      throw new OPSVMachRuntimeException("No result was recorded for "
+          + "statement: " + stmt.getSql() + "; bind values: "
+          + stmt.getBindVals() + ". The run has diverged from the "
+          + "recording at " + replayFile + ".");
+    }
+
+    int n = entry.nextIdx.getAndIncrement();
+    if (n >= entry.payloads.length) {
+      n = entry.payloads.length - 1;
+      numRepeated.incrementAndGet();
+    }
+    numReplayed.incrementAndGet();
+    return MaterializedResult.readFrom(entry.payloads[n].duplicate());
+  }
+
+  /**
+   * Writes the recording to disk, if statement results are being
+   * recorded; logs replay counts if they are being replayed.
+   */
+  public static void save() {
+    if (replayFile != null) {
+      log.info("Replayed {} statement results ({} beyond those recorded).",
+          numReplayed, numRepeated);
+    }
+    if (recordFile == null) {
+      return;
+    }
+
+    final File tmpFile = new File(recordFile.getPath() + ".tmp");
+    final File parentDir = recordFile.getAbsoluteFile().getParentFile();
+    if (parentDir != null) {
+      parentDir.mkdirs();
+    }
+
+    synchronized (recorded) {
+      try (final DataOutputStream out = new DataOutputStream(
+              new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeInt(recorded.size());
+        for (Map.Entry<String, List<byte[]>> cursor : recorded.entrySet()) {
+          MaterializedResult.writeString(out, cursor.getKey());
+          out.writeInt(cursor.getValue().size());
+          for (final byte[] payload : cursor.getValue()) {
+            out.writeInt(payload.length);
+            out.write(payload);
+          }
+        }
+      } catch (final IOException ioe) {
+        throw new OPSVMachRuntimeException(ioe.getMessage(), ioe);
+      }
+
+      try {
+        Files.move(tmpFile.toPath(), recordFile.toPath(),
+            StandardCopyOption.REPLACE_EXISTING);
+      } catch (final IOException ioe) {
+        throw new OPSVMachRuntimeException(ioe.getMessage(), ioe);
+      }
+      log.info("Recorded {} results of {} distinct statements to {}.",
+          numRecorded, recorded.size(), recordFile);
+    }
+  }
+
+  private static String getKey(final SQLStmt stmt) {
+    final StringBuilder b = new StringBuilder(stmt.getSql());
+    final Map<Integer, String> bindVals = stmt.getBindVals();
+    for (int i = 1; i <= bindVals.size(); i++) {
+      b.append('\u0000').append(bindVals.get(i));
+    }
+    return b.toString();
+  }
+
+  private static final class Entry {
+    private final ByteBuffer[] payloads;
+    private final AtomicInteger nextIdx;
+
+    private Entry(final ByteBuffer[] p) {
+      this.payloads = p;
+      this.nextIdx = new AtomicInteger();
+    }
+  }
+}
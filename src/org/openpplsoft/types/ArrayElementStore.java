@@ -0,0 +1,434 @@
+/*===---------------------------------------------------------------------===*\
+|*                       The OpenPplSoft Runtime Project                     *|
+|*                                                                           *|
+|*              This file is distributed under the MIT License.              *|
+|*                         See LICENSE.md for details.                       *|
+\*===---------------------------------------------------------------------===*/
+
+package org.openpplsoft.types;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+
+import org.openpplsoft.runtime.OPSVMachRuntimeException;
+
+/**
+ * The elements of a PTArray, held in a growable backing array. Elements
+ * occupy a contiguous run of slots starting at head, so that indexing is
+ * O(1) and elements can be added or removed at either end in amortized
+ * O(1) time. One-dimensional arrays of Integer, String and Number hold
+ * their elements' raw values rather than PT objects (see forArray); the
+ * elements of these arrays are handed out as read-only values that are
+ * created on demand.
+ */
+abstract class ArrayElementStore {
+
+  private static final int INITIAL_CAPACITY = 8;
+
+  protected int head;
+  protected int size;
+
+  /**
+   * Creates the store for an array with the given dimension and base type.
+   * @param dimensions the number of dimensions of the array
+   * @param baseTypeTc the array's base type constraint
+   * @return a store specialized for the base type, if there is one,
+   *    otherwise a store of PT objects
+   */
+  static ArrayElementStore forArray(final int dimensions,
+      final PTTypeConstraint baseTypeTc) {
+    if (dimensions == 1) {
+      if (baseTypeTc.isUnderlyingClassEqualTo(PTInteger.class)) {
+        return new IntStore();
+      } else if (baseTypeTc.isUnderlyingClassEqualTo(PTString.class)) {
+        return new StringStore();
+      } else if (baseTypeTc.isUnderlyingClassEqualTo(PTNumber.class)) {
+        return new NumberStore();
+      }
+    }
+    return new ObjectStore();
+  }
+
+  /*
+   * Subclasses implement the following in terms of their backing array;
+   * slots are absolute indices into that array.
+   */
+
+  abstract int capacity();
+
+  /**
+   * Replaces the backing array with one of the given capacity, copying
+   * the elements currently stored to slots beginning at newHead.
+   */
+  abstract void reallocate(int newCapacity, int newHead);
+
+  abstract PTType load(int slot);
+
+  abstract void store(int slot, PTType value);
+
+  abstract void clear(int slot);
+
+  /**
+   * Returns whether the given value can be stored as is; if a
+   * specialized store returns false, the array must be converted to
+   * an ObjectStore (see toObjectStore) before the value is added.
+   */
+  abstract boolean canStore(PTType value);
+
+  /**
+   * Returns whether values stored in this store are copied into it (and
+   * therefore need not be cloned before being added).
+   */
+  abstract boolean copiesValues();
+
+  int size() {
+    return this.size;
+  }
+
+  PTType get(final int idx) {
+    if (idx < 0 || idx >= this.size) {
+      throw new OPSVMachRuntimeException("Array index (" + (idx + 1)
+          + ") is out of bounds; array length is " + this.size + ".");
+    }
+    return this.load(this.head + idx);
+  }
+
+  void addLast(final PTType value) {
+    if (this.head + this.size == this.capacity()) {
+      this.resize(0);
+    }
+    this.store(this.head + this.size, value);
+    this.size++;
+  }
+
+  void addFirst(final PTType value) {
+    if (this.head == 0) {
+      // Leave room at the front for further additions.
+      this.resize(Math.max(INITIAL_CAPACITY / 2, this.size));
+    }
+    this.head--;
+    this.store(this.head, value);
+    this.size++;
+  }
+
+  PTType removeLast() {
+    final PTType value = this.get(this.size - 1);
+    this.clear(this.head + this.size - 1);
+    this.size--;
+    return value;
+  }
+
+  PTType removeFirst() {
+    final PTType value = this.get(0);
+    this.clear(this.head);
+    this.head++;
+    this.size--;
+    return value;
+  }
+
+  private void resize(final int newHead) {
+    final int newCapacity =
+        Math.max(INITIAL_CAPACITY, newHead + this.size * 2);
+    this.reallocate(newCapacity, newHead);
+    this.head = newHead;
+  }
+
+  /**
+   * Finds the first element equal to the given value; primitives are
+   * compared by value, objects by identity.
+   * @param value the value to find
+   * @return the 0-based index of the element, or -1 if there is none
+   */
+  int indexOf(final PTType value) {
+    for (int i = 0; i < this.size; i++) {
+      final PTType elem = this.load(this.head + i);
+      if (elem instanceof PTPrimitiveType
+          && value instanceof PTPrimitiveType) {
+        if (((PTPrimitiveType) elem).equalTo((PTPrimitiveType) value)) {
+          return i;
+        }
+      } else if (elem == value) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Sorts the elements of this store in place; the sort is stable.
+   * @param descending whether to sort in descending order
+   */
+  void sort(final boolean descending) {
+    final PTType[] elems = new PTType[this.size];
+    for (int i = 0; i < this.size; i++) {
+      elems[i] = this.load(this.head + i);
+      if (!(elems[i] instanceof PTPrimitiveType)) {
+        throw new OPSVMachRuntimeException("Sort is only supported on "
+            + "arrays of primitive values; found: " + elems[i]);
+      }
+    }
+
+    final Comparator<PTType> cmp = new Comparator<PTType>() {
+      @Override
+      public int compare(final PTType a, final PTType b) {
+        final PTPrimitiveType p1 = (PTPrimitiveType) a;
+        final PTPrimitiveType p2 = (PTPrimitiveType) b;
+        if (p1.equalTo(p2)) {
+          return 0;
+        }
+        return p1.lessThan(p2) ? -1 : 1;
+      }
+    };
+    Arrays.sort(elems, descending ? Collections.reverseOrder(cmp) : cmp);
+
+    for (int i = 0; i < this.size; i++) {
+      this.store(this.head + i, elems[i]);
+    }
+  }
+
+  /**
+   * Copies the elements of this store into a new ObjectStore.
+   */
+  ObjectStore toObjectStore() {
+    final ObjectStore objStore = new ObjectStore();
+    for (int i = 0; i < this.size; i++) {
+      objStore.addLast(this.load(this.head + i));
+    }
+    return objStore;
+  }
+
+  /**
+   * Returns a string of the elements, for debugging.
+   */
+  @Override
+  public String toString() {
+    final StringBuilder b = new StringBuilder("[");
+    for (int i = 0; i < this.size; i++) {
+      if (i > 0) {
+        b.append(", ");
+      }
+      b.append(this.load(this.head + i));
+    }
+    return b.append(']').toString();
+  }
+
+  private static <T extends PTPrimitiveType> T asReadOnly(final T p) {
+    p.setReadOnly();
+    return p;
+  }
+
+  /**
+   * Holds PT objects of any type; used for multi-dimensional arrays
+   * and arrays of types other than those with specialized stores.
+   */
+  static final class ObjectStore extends ArrayElementStore {
+    private PTType[] elems = new PTType[0];
+
+    int capacity() {
+      return this.elems.length;
+    }
+
+    void reallocate(final int newCapacity, final int newHead) {
+      final PTType[] newElems = new PTType[newCapacity];
+      System.arraycopy(this.elems, this.head, newElems, newHead, this.size);
+      this.elems = newElems;
+    }
+
+    PTType load(final int slot) {
+      return this.elems[slot];
+    }
+
+    void store(final int slot, final PTType value) {
+      this.elems[slot] = value;
+    }
+
+    void clear(final int slot) {
+      this.elems[slot] = null;
+    }
+
+    boolean canStore(final PTType value) {
+      return true;
+    }
+
+    boolean copiesValues() {
+      return false;
+    }
+  }
+
+  /**
+   * Holds the values of an array of Integer.
+   */
+  static final class IntStore extends ArrayElementStore {
+    private int[] vals = new int[0];
+
+    int capacity() {
+      return this.vals.length;
+    }
+
+    void reallocate(final int newCapacity, final int newHead) {
+      final int[] newVals = new int[newCapacity];
+      System.arraycopy(this.vals, this.head, newVals, newHead, this.size);
+      this.vals = newVals;
+    }
+
+    PTType load(final int slot) {
+      return asReadOnly(PTInteger.valueOf(this.vals[slot]));
+    }
+
+    void store(final int slot, final PTType value) {
+      this.vals[slot] = ((PTInteger) value).read();
+    }
+
+    void clear(final int slot) {
+      // Nothing to release.
+    }
+
+    boolean canStore(final PTType value) {
+      return value instanceof PTInteger;
+    }
+
+    boolean copiesValues() {
+      return true;
+    }
+
+    @Override
+    int indexOf(final PTType value) {
+      if (!(value instanceof PTInteger)) {
+        return super.indexOf(value);
+      }
+      final int v = ((PTInteger) value).read();
+      for (int i = 0; i < this.size; i++) {
+        if (this.vals[this.head + i] == v) {
+          return i;
+        }
+      }
+      return -1;
+    }
+
+    @Override
+    void sort(final boolean descending) {
+      Arrays.sort(this.vals, this.head, this.head + this.size);
+      if (descending) {
+        for (int i = this.head, j = this.head + this.size - 1; i < j;
+            i++, j--) {
+          final int tmp = this.vals[i];
+          this.vals[i] = this.vals[j];
+          this.vals[j] = tmp;
+        }
+      }
+    }
+  }
+
+  /**
+   * Holds the values of an array of String.
+   */
+  static final class StringStore extends ArrayElementStore {
+    private String[] vals = new String[0];
+
+    int capacity() {
+      return this.vals.length;
+    }
+
+    void reallocate(final int newCapacity, final int newHead) {
+      final String[] newVals = new String[newCapacity];
+      System.arraycopy(this.vals, this.head, newVals, newHead, this.size);
+      this.vals = newVals;
+    }
+
+    PTType load(final int slot) {
+      return asReadOnly(new PTString(this.vals[slot]));
+    }
+
+    void store(final int slot, final PTType value) {
+      this.vals[slot] = ((PTString) value).read();
+    }
+
+    void clear(final int slot) {
+      this.vals[slot] = null;
+    }
+
+    boolean canStore(final PTType value) {
+      return value instanceof PTString;
+    }
+
+    boolean copiesValues() {
+      return true;
+    }
+
+    @Override
+    int indexOf(final PTType value) {
+      if (!(value instanceof PTString)) {
+        return super.indexOf(value);
+      }
+      final String v = ((PTString) value).read();
+      for (int i = 0; i < this.size; i++) {
+        if (this.vals[this.head + i].equals(v)) {
+          return i;
+        }
+      }
+      return -1;
+    }
+
+    @Override
+    void sort(final boolean descending) {
+      if (descending) {
+        Arrays.sort(this.vals, this.head, this.head + this.size,
+            Collections.reverseOrder());
+      } else {
+        Arrays.sort(this.vals, this.head, this.head + this.size);
+      }
+    }
+  }
+
+  /**
+   * Holds the values of an array of Number. Integers may also be added
+   * to such arrays; doing so converts the array to an ObjectStore, so
+   * that they are not turned into Numbers.
+   */
+  static final class NumberStore extends ArrayElementStore {
+    private BigDecimal[] vals = new BigDecimal[0];
+
+    int capacity() {
+      return this.vals.length;
+    }
+
+    void reallocate(final int newCapacity, final int newHead) {
+      final BigDecimal[] newVals = new BigDecimal[newCapacity];
+      System.arraycopy(this.vals, this.head, newVals, newHead, this.size);
+      this.vals = newVals;
+    }
+
+    PTType load(final int slot) {
+      return asReadOnly(new PTNumber(this.vals[slot]));
+    }
+
+    void store(final int slot, final PTType value) {
+      this.vals[slot] = ((PTNumber) value).read();
+    }
+
+    void clear(final int slot) {
+      this.vals[slot] = null;
+    }
+
+    boolean canStore(final PTType value) {
+      return value instanceof PTNumber;
+    }
+
+    boolean copiesValues() {
+      return true;
+    }
+
+    @Override
+    void sort(final boolean descending) {
+      // BigDecimal's natural ordering is that of PTNumber's comparisons.
+      if (descending) {
+        Arrays.sort(this.vals, this.head, this.head + this.size,
+            Collections.reverseOrder());
+      } else {
+        Arrays.sort(this.vals, this.head, this.head + this.size);
+      }
+    }
+  }
+}
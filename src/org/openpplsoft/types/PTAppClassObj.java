@@ -27,7 +27,7 @@ public final class PTAppClassObj extends PTObjectType {
     super(origTc);
     this.prog = prog;
     this.propertyScope = new Scope(Scope.Lvl.APP_CLASS_OBJ_PROPERTY);
-    this.instanceScope = new Scope(Scope.Lvl.APP_CLASS_OBJ_INSTANCE);
+    this.instanceScope = new Scope(Scope.Lvl.APP_CLASS_OBJ_INSTANCE, prog);
 
     // Load instance identifiers into instance scope.
     for(Map.Entry<String, AppClassPeopleCodeProg.Instance> cursor :
@@ -7,7 +7,6 @@
 
 package org.openpplsoft.types;
 
-import java.util.LinkedList;
 import java.util.List;
 
 import org.apache.logging.log4j.LogManager;
@@ -23,7 +22,7 @@ public final class PTArray extends PTObjectType {
 
   private final int dimensions;
   private final PTTypeConstraint baseTypeConstraint;
-  private final LinkedList<PTType> values;
+  private ArrayElementStore values;
 
   public PTArray(PTArrayTypeConstraint origTc, int d, PTTypeConstraint baseTypeTc) {
     super(origTc);
@@ -35,7 +34,7 @@ public final class PTArray extends PTObjectType {
 
     this.dimensions = d;
     this.baseTypeConstraint = baseTypeTc;
-    this.values = new LinkedList<PTType>();
+    this.values = ArrayElementStore.forArray(d, baseTypeTc);
   }
 
   public PTType getElement(PTType index) {
@@ -53,6 +52,14 @@ public final class PTArray extends PTObjectType {
     return this.values.get(idx - 1);
   }
 
+  /**
+   * Returns the number of elements in this array.
+   * @return the length of the array
+   */
+  public int getLength() {
+    return this.values.size();
+  }
+
   public int getDimensions() {
     return this.dimensions;
   }
@@ -77,9 +84,17 @@ public final class PTArray extends PTObjectType {
     return b.toString();
   }
 
-  protected void internalPush(PTType value) {
-
+  /**
+   * Adds a value to the end of this array.
+   * @param value the value to add
+   */
+  public void internalPush(PTType value) {
     log.debug("Pushing {} onto array {}.", value, this);
+    this.addElement(value, false);
+    log.debug("After push, array is: {}.", this);
+  }
+
+  private void addElement(final PTType value, final boolean atFront) {
 
     /*
      * NOTE: This code can promote non-array values to arrays,
@@ -96,20 +111,22 @@ public final class PTArray extends PTObjectType {
        * should have new versions of themselves created.
        */
       if(value.getOriginatingTypeConstraint().isUnderlyingClassObject()) {
-        this.values.addLast(value);
+        this.storeElement(value, atFront);
       } else if (value.getOriginatingTypeConstraint().isUnderlyingClassPrimitive()) {
         /*
          * If the value is readonly, we can simply add it to the
-         * array, as we know its value will not change. Otherwise,
+         * array, as we know its value will not change; the same is true
+         * if the array copies the raw values of its elements. Otherwise,
          * create a clone of the object before pushing.
          */
-        if (value.isReadOnly()) {
-          this.values.addLast(value);
+        if (value.isReadOnly()
+            || (this.values.copiesValues() && this.values.canStore(value))) {
+          this.storeElement(value, atFront);
         } else {
           PTPrimitiveType clone = (PTPrimitiveType) value
               .getOriginatingTypeConstraint().alloc();
           clone.copyValueFrom(((PTPrimitiveType)value));
-          this.values.addLast(clone);
+          this.storeElement(clone, atFront);
         }
       } else {
         throw new OPSDataTypeException("Expected object or primitive when adding to "
@@ -129,23 +146,161 @@ public final class PTArray extends PTObjectType {
                   this.baseTypeConstraint).alloc();
         }
         promotedVal.internalPush(value);
-        this.values.addLast(promotedVal);
+        this.storeElement(promotedVal, atFront);
       } else {
-        throw new OPSVMachRuntimeException("Cannot Push onto array; "+
+        throw new OPSVMachRuntimeException("Cannot add to array; "+
           "types are not compatible.", opstce);
       }
     }
+  }
 
-    log.debug("After push, array is: {}.", this);
+  private void storeElement(final PTType elem, final boolean atFront) {
+    // A value that a specialized store cannot hold (i.e., an Integer
+    // in an array of Number) requires the general store.
+    if (!this.values.canStore(elem)) {
+      this.values = this.values.toObjectStore();
+    }
+    if (atFront) {
+      this.values.addFirst(elem);
+    } else {
+      this.values.addLast(elem);
+    }
   }
 
+  /**
+   * Adds one or more values to the end of the array.
+   */
   @PeopleToolsImplementation
   public void Push() {
+    List<PTType> args = Environment.getDereferencedArgsFromCallStack();
+    if(args.size() == 0) {
+      throw new OPSVMachRuntimeException("Expected at least one argument.");
+    }
+    for (final PTType arg : args) {
+      internalPush(arg);
+    }
+  }
+
+  /**
+   * Removes the last element of the array and returns it.
+   */
+  @PeopleToolsImplementation
+  public void Pop() {
+    List<PTType> args = Environment.getDereferencedArgsFromCallStack();
+    if(args.size() != 0) {
+      throw new OPSVMachRuntimeException("Expected zero arguments.");
+    }
+    if (this.values.size() == 0) {
+      throw new OPSVMachRuntimeException("Pop called on an empty array.");
+    }
+    Environment.setReturnValue(this.values.removeLast());
+  }
+
+  /**
+   * Removes the first element of the array and returns it.
+   */
+  @PeopleToolsImplementation
+  public void Shift() {
+    List<PTType> args = Environment.getDereferencedArgsFromCallStack();
+    if(args.size() != 0) {
+      throw new OPSVMachRuntimeException("Expected zero arguments.");
+    }
+    if (this.values.size() == 0) {
+      throw new OPSVMachRuntimeException("Shift called on an empty array.");
+    }
+    Environment.setReturnValue(this.values.removeFirst());
+  }
+
+  /**
+   * Adds one or more values to the start of the array, in the order
+   * in which they are given.
+   */
+  @PeopleToolsImplementation
+  public void Unshift() {
+    List<PTType> args = Environment.getDereferencedArgsFromCallStack();
+    if(args.size() == 0) {
+      throw new OPSVMachRuntimeException("Expected at least one argument.");
+    }
+    for (int i = args.size() - 1; i >= 0; i--) {
+      this.addElement(args.get(i), true);
+    }
+    log.debug("After unshift, array is: {}.", this);
+  }
+
+  /**
+   * Returns the (1-based) index of the first element equal to the value
+   * given, or 0 if there is no such element.
+   */
+  @PeopleToolsImplementation
+  public void Find() {
     List<PTType> args = Environment.getDereferencedArgsFromCallStack();
     if(args.size() != 1) {
       throw new OPSVMachRuntimeException("Expected one argument.");
     }
-    internalPush(args.get(0));
+    Environment.setReturnValue(
+        PTInteger.valueOf(this.values.indexOf(args.get(0)) + 1));
+  }
+
+  /**
+   * Sorts the array in place, in ascending ("A") or descending ("D")
+   * order.
+   */
+  @PeopleToolsImplementation
+  public void Sort() {
+    List<PTType> args = Environment.getDereferencedArgsFromCallStack();
+    if(args.size() != 1 || !(args.get(0) instanceof PTString)) {
+      throw new OPSVMachRuntimeException("Expected one string argument.");
+    }
+    final String order = ((PTString) args.get(0)).read();
+    if (!order.equals("A") && !order.equals("D")) {
+      throw new OPSVMachRuntimeException("Expected sort order to be \"A\" "
+          + "or \"D\"; found: " + order);
+    }
+    this.values.sort(order.equals("D"));
+  }
+
+  /**
+   * Returns a string of the elements of the array, separated by the
+   * separator given (a comma by default). The elements of any nested
+   * arrays are enclosed in the array start and end strings given
+   * ("(" and ")" by default).
+   */
+  @PeopleToolsImplementation
+  public void Join() {
+    List<PTType> args = Environment.getDereferencedArgsFromCallStack();
+    if(args.size() > 3) {
+      throw new OPSVMachRuntimeException("Expected at most three arguments.");
+    }
+    final String separator =
+        args.size() > 0 ? ((PTPrimitiveType) args.get(0)).readAsString() : ",";
+    final String arrayStart =
+        args.size() > 1 ? ((PTPrimitiveType) args.get(1)).readAsString() : "(";
+    final String arrayEnd =
+        args.size() > 2 ? ((PTPrimitiveType) args.get(2)).readAsString() : ")";
+
+    final StringBuilder b = new StringBuilder();
+    this.join(b, separator, arrayStart, arrayEnd);
+    Environment.setReturnValue(new PTString(b.toString()));
+  }
+
+  private void join(final StringBuilder b, final String separator,
+      final String arrayStart, final String arrayEnd) {
+    for (int i = 0; i < this.values.size(); i++) {
+      if (i > 0) {
+        b.append(separator);
+      }
+      final PTType elem = this.values.get(i);
+      if (elem instanceof PTArray) {
+        b.append(arrayStart);
+        ((PTArray) elem).join(b, separator, arrayStart, arrayEnd);
+        b.append(arrayEnd);
+      } else if (elem instanceof PTPrimitiveType) {
+        b.append(((PTPrimitiveType) elem).readAsString());
+      } else {
+        throw new OPSVMachRuntimeException("Join is not supported for "
+            + "array elements of this type: " + elem);
+      }
+    }
   }
 }
 
@@ -12,9 +12,15 @@ import org.openpplsoft.runtime.*;
 public final class PTBoolean extends PTPrimitiveType<Boolean> {
 
   private static PTTypeConstraint<PTBoolean> boolTc;
+  private static PTBoolean trueVal;
+  private static PTBoolean falseVal;
 
   static {
     boolTc = new PTTypeConstraint<PTBoolean>(PTBoolean.class);
+    trueVal = new PTBoolean(true);
+    trueVal.setShared();
+    falseVal = new PTBoolean(false);
+    falseVal.setShared();
   }
 
   public PTBoolean(final Boolean initialVal) {
@@ -26,8 +32,20 @@ public final class PTBoolean extends PTPrimitiveType<Boolean> {
     this.value = initialVal;
   }
 
+  /**
+   * Returns the shared, read-only PTBoolean for the given value. Results
+   * of comparisons and other logical operations are never written to
+   * (they are copied when assigned or passed as args), so they can be
+   * canonical instances rather than fresh allocations.
+   * @param b the value
+   * @return the read-only PTBoolean for b
+   */
+  public static PTBoolean valueOf(final boolean b) {
+    return b ? trueVal : falseVal;
+  }
+
   public PTBoolean negationOf() {
-    return new PTBoolean(!this.value);
+    return valueOf(!this.value);
   }
 
   public PTBoolean(final PTTypeConstraint origTc) {
@@ -39,6 +57,7 @@ public final class PTBoolean extends PTPrimitiveType<Boolean> {
   }
 
   public void setBlank() {
+    this.checkIsNotShared();
     this.value = false;
   }
 
@@ -56,13 +75,15 @@ public final class PTBoolean extends PTPrimitiveType<Boolean> {
   }
 
   public PTBoolean isEqual(PTPrimitiveType op) {
+    return valueOf(this.equalTo(op));
+  }
+
+  @Override
+  public boolean equalTo(final PTPrimitiveType op) {
     if(!(op instanceof PTBoolean)) {
       throw new OPSDataTypeException("Expected op to be PTBoolean.");
     }
-    if(this.value.equals(((PTBoolean)op).read())) {
-      return new PTBoolean(true);
-    }
-    return new PTBoolean(false);
+    return this.value.equals(((PTBoolean) op).read());
   }
 
   public PTBoolean isGreaterThanOrEqual(PTPrimitiveType op) {
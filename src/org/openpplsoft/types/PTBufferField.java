@@ -147,7 +147,8 @@ public final class PTBufferField extends PTField<PTBufferRecord>
 
   public void emitScrolls(final ScrollEmissionContext ctxFlag, final int indent) {
 
-    if (!this.isPresentInScrollEmissions(ctxFlag)) { return; }
+    if (!TraceFileVerifier.isEnabled()
+        || !this.isPresentInScrollEmissions(ctxFlag)) { return; }
 
     String indentStr = "";
     for (int i = 0; i < indent; i++) {
@@ -304,8 +305,7 @@ public final class PTBufferField extends PTField<PTBufferRecord>
     }
 
     boolean preFldDefProcIsMarkedAsUpdated = this.getValue().isMarkedAsUpdated();
-    final PCFldDefaultEmission fdEmission = new PCFldDefaultEmission(
-        this.recFieldDefn.getRecName(), this.recFieldDefn.getFldName());
+    boolean wasDefaultedFromRecord = false;
 
     final String defRecName = this.recFieldDefn.getDefaultRecName();
     final String defFldName = this.recFieldDefn.getDefaultFldName();
@@ -336,8 +336,7 @@ public final class PTBufferField extends PTField<PTBufferRecord>
               + "returned multiple records; only expected one.");
         }
 
-        fdEmission.setDefaultedValue(this.getValue().readAsString());
-        fdEmission.setFromRecordFlag();
+        wasDefaultedFromRecord = true;
       }
     } catch (final OPSCBufferKeyLookupException opscbkle) {
       log.warn("Failed to generate non constant "
@@ -357,7 +356,15 @@ public final class PTBufferField extends PTField<PTBufferRecord>
     if (!preFldDefProcIsMarkedAsUpdated && this.getValue().isMarkedAsUpdated()) {
       fldDefProcSummary.fieldWasChanged();
       this.markAsDefaulted();
-      TraceFileVerifier.submitEnforcedEmission(fdEmission);
+      if (TraceFileVerifier.isEnabled()) {
+        final PCFldDefaultEmission fdEmission = new PCFldDefaultEmission(
+            this.recFieldDefn.getRecName(), this.recFieldDefn.getFldName());
+        if (wasDefaultedFromRecord) {
+          fdEmission.setDefaultedValue(this.getValue().readAsString());
+          fdEmission.setFromRecordFlag();
+        }
+        TraceFileVerifier.submitEnforcedEmission(fdEmission);
+      }
     } else if (this.getValue().isBlank()) {
       fldDefProcSummary.blankFieldWasSeen();
     }
@@ -426,8 +433,6 @@ public final class PTBufferField extends PTField<PTBufferRecord>
     }
 
     boolean preFldDefProcIsMarkedAsUpdated = this.getValue().isMarkedAsUpdated();
-    final PCFldDefaultEmission fdEmission = new PCFldDefaultEmission(
-        this.recFieldDefn.getRecName(), this.recFieldDefn.getFldName());
 
       final String defValue = this.recFieldDefn.getDefaultFldName();
       final PTPrimitiveType fldValue = this.getValue();
@@ -436,10 +441,8 @@ public final class PTBufferField extends PTField<PTBufferRecord>
       if (defValue.length() > 0 && defValue.charAt(0) == '%') {
         if (defValue.equals("%date") && fldValue instanceof PTDateTime) {
           ((PTDateTime) fldValue).writeSYSDATE();
-          fdEmission.setMetaValue(defValue);
         } else if (defValue.equals("%date") && fldValue instanceof PTDate) {
           ((PTDate) fldValue).writeSYSDATE();
-          fdEmission.setMetaValue(defValue);
         } else {
           throw new OPSVMachRuntimeException("Unexpected defValue (" + defValue + ") "
               + "and field (" + fldValue + ") combination.");
@@ -456,9 +459,6 @@ public final class PTBufferField extends PTField<PTBufferRecord>
         }
       }
 
-      fdEmission.setDefaultedValue(fldValue.readAsString());
-      fdEmission.setFromConstantFlag();
-
     /*
      * Check if the field's value changed. If it did, an emission
      * must be made indicating as much.
@@ -466,7 +466,16 @@ public final class PTBufferField extends PTField<PTBufferRecord>
     if (!preFldDefProcIsMarkedAsUpdated && this.getValue().isMarkedAsUpdated()) {
       fldDefProcSummary.fieldWasChanged();
       this.markAsDefaulted();
-      TraceFileVerifier.submitEnforcedEmission(fdEmission);
+      if (TraceFileVerifier.isEnabled()) {
+        final PCFldDefaultEmission fdEmission = new PCFldDefaultEmission(
+            this.recFieldDefn.getRecName(), this.recFieldDefn.getFldName());
+        if (defValue.length() > 0 && defValue.charAt(0) == '%') {
+          fdEmission.setMetaValue(defValue);
+        }
+        fdEmission.setDefaultedValue(fldValue.readAsString());
+        fdEmission.setFromConstantFlag();
+        TraceFileVerifier.submitEnforcedEmission(fdEmission);
+      }
     } else if (this.getValue().isBlank()) {
       fldDefProcSummary.blankFieldWasSeen();
     }
@@ -621,7 +630,7 @@ public final class PTBufferField extends PTField<PTBufferRecord>
           + "underlying page token does not match the desired one.");
     }
 
-    Environment.pushToCallStack(relDispField);
+    Environment.setReturnValue(relDispField);
   }
 
   @PeopleToolsImplementation
@@ -100,7 +100,8 @@ public final class PTBufferRecord extends PTRecord<PTBufferRow, PTBufferField>
 
   public void emitRecInScroll(final String indentStr) {
 
-    if (PSDefn.isSystemRecord(this.recDefn.getRecName())) {
+    if (!TraceFileVerifier.isEnabled()
+        || PSDefn.isSystemRecord(this.recDefn.getRecName())) {
       return;
     }
 
@@ -146,7 +147,8 @@ public final class PTBufferRecord extends PTRecord<PTBufferRow, PTBufferField>
 
   public void emitScrolls(final ScrollEmissionContext ctxFlag, final int indent) {
 
-    if (PSDefn.isSystemRecord(this.recDefn.getRecName())) {
+    if (!TraceFileVerifier.isEnabled()
+        || PSDefn.isSystemRecord(this.recDefn.getRecName())) {
       return;
     }
 
@@ -307,9 +309,6 @@ public final class PTBufferRecord extends PTRecord<PTBufferRow, PTBufferField>
         entry.getValue().deref().fireEvent(PCEvent.FIELD_DEFAULT, summary);
 
         if (summary.getNumEventProgsExecuted() > 0) {
-          final PCFldDefaultEmission fdEmission = new PCFldDefaultEmission(
-              recFieldDefn.getRecName(), recFieldDefn.getFldName());
-          fdEmission.setDefaultedValue("from peoplecode");
 
           /*
            * At this point, a FieldDefault program may have been run,
@@ -318,7 +317,12 @@ public final class PTBufferRecord extends PTRecord<PTBufferRow, PTBufferField>
            */
           if (!preFieldDefaultFireIsMarkedAsUpdated && fldValue.isMarkedAsUpdated()) {
             fldDefProcSummary.fieldWasChanged();
-            TraceFileVerifier.submitEnforcedEmission(fdEmission);
+            if (TraceFileVerifier.isEnabled()) {
+              final PCFldDefaultEmission fdEmission = new PCFldDefaultEmission(
+                  recFieldDefn.getRecName(), recFieldDefn.getFldName());
+              fdEmission.setDefaultedValue("from peoplecode");
+              TraceFileVerifier.submitEnforcedEmission(fdEmission);
+            }
           } else if (fldValue.isBlank()) {
             fldDefProcSummary.blankFieldWasSeen();
           }
@@ -328,7 +332,13 @@ public final class PTBufferRecord extends PTRecord<PTBufferRow, PTBufferField>
   }
 
   public void runRelatedDisplayProcessing() {
-    if (!this.isRelatedDisplayRecord()) {
+
+    /*
+     * The keylist generated here is not yet used to fill the record; all
+     * this does is make the emissions (and issue the INSTALLATION and
+     * PSOPTIONS queries) that PS traces while generating it.
+     */
+    if (!TraceFileVerifier.isEnabled() || !this.isRelatedDisplayRecord()) {
       return;
     }
 
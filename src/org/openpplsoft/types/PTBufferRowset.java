@@ -305,13 +305,15 @@ public final class PTBufferRowset extends PTRowset<PTBufferRow>
     ostmt.close();
 
     // Return the number of rows read from the fill operation.
-    Environment.pushToCallStack(new PTInteger(rowsRead));
-
-    TraceFileVerifier.submitEnforcedEmission(new BeginScrolls(
-        ScrollEmissionContext.AFTER_SCROLL_SELECT));
-    ComponentBuffer.getLevelZeroRowset().emitScrolls(
-        ScrollEmissionContext.AFTER_SCROLL_SELECT, 0);
-    TraceFileVerifier.submitEnforcedEmission(new EndScrolls());
+    Environment.setReturnValue(new PTInteger(rowsRead));
+
+    if (TraceFileVerifier.isEnabled()) {
+      TraceFileVerifier.submitEnforcedEmission(new BeginScrolls(
+          ScrollEmissionContext.AFTER_SCROLL_SELECT));
+      ComponentBuffer.getLevelZeroRowset().emitScrolls(
+          ScrollEmissionContext.AFTER_SCROLL_SELECT, 0);
+      TraceFileVerifier.submitEnforcedEmission(new EndScrolls());
+    }
   }
 
   @Override
@@ -117,7 +117,7 @@ public final class PTChar extends PTPrimitiveType<Character> {
   @Override
   public PTBoolean isEqual(final PTPrimitiveType op) {
     if (op instanceof PTChar && this.value.equals(((PTChar) op).read())) {
-      return new PTBoolean(true);
+      return PTBoolean.valueOf(true);
 
     } else if(op instanceof PTString) {
         /*
@@ -126,7 +126,7 @@ public final class PTChar extends PTPrimitiveType<Character> {
         PTString str = (PTString) op;
         if(str.read().length() == 1
             && this.value.equals(str.read().charAt(0))) {
-          return new PTBoolean(true);
+          return PTBoolean.valueOf(true);
         }
 
     } else if(op instanceof PTInteger) {
@@ -135,13 +135,13 @@ public final class PTChar extends PTPrimitiveType<Character> {
          */
         if(Character.getNumericValue(this.value)
             == ((Integer) op.read()).intValue()) {
-          return new PTBoolean(true);
+          return PTBoolean.valueOf(true);
         }
 
     } else {
       throw new OPSDataTypeException("Expected op to be PTChar; is: " + op);
     }
-    return new PTBoolean(false);
+    return PTBoolean.valueOf(false);
   }
 
   @Override
@@ -150,9 +150,9 @@ public final class PTChar extends PTPrimitiveType<Character> {
       throw new OPSDataTypeException("Expected op to be PTChar.");
     }
     if (this.value.compareTo(((PTChar) op).read()) > 0) {
-      return new PTBoolean(true);
+      return PTBoolean.valueOf(true);
     }
-    return new PTBoolean(false);
+    return PTBoolean.valueOf(false);
   }
 
   @Override
@@ -167,9 +167,9 @@ public final class PTChar extends PTPrimitiveType<Character> {
       throw new OPSDataTypeException("Expected op to be PTChar.");
     }
     if (this.value.compareTo(((PTChar) op).read()) < 0) {
-      return new PTBoolean(true);
+      return PTBoolean.valueOf(true);
     }
-    return new PTBoolean(false);
+    return PTBoolean.valueOf(false);
   }
 
   @Override
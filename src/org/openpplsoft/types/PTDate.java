@@ -116,9 +116,9 @@ public final class PTDate extends PTPrimitiveType<Date> {
       throw new OPSDataTypeException("Expected op to be PTDate.");
     }
     if(this.value.compareTo(((PTDate)op).read()) >= 0) {
-      return new PTBoolean(true);
+      return PTBoolean.valueOf(true);
     }
-    return new PTBoolean(false);
+    return PTBoolean.valueOf(false);
   }
 
   public PTBoolean isLessThan(PTPrimitiveType op) {
@@ -131,9 +131,9 @@ public final class PTDate extends PTPrimitiveType<Date> {
       throw new OPSDataTypeException("Expected op to be PTDate.");
     }
     if(this.value.compareTo(((PTDate)op).read()) <= 0) {
-      return new PTBoolean(true);
+      return PTBoolean.valueOf(true);
     }
-    return new PTBoolean(false);
+    return PTBoolean.valueOf(false);
   }
 
   public boolean equals(Object obj) {
@@ -101,9 +101,9 @@ public final class PTDateTime extends PTPrimitiveType<DateTime> {
       throw new OPSDataTypeException("Expected op to be PTDateTime.");
     }
     if(this.value.compareTo(((PTDateTime)op).read()) >= 0) {
-      return new PTBoolean(true);
+      return PTBoolean.valueOf(true);
     }
-    return new PTBoolean(false);
+    return PTBoolean.valueOf(false);
   }
 
   public PTBoolean isLessThan(PTPrimitiveType op) {
@@ -116,9 +116,9 @@ public final class PTDateTime extends PTPrimitiveType<DateTime> {
       throw new OPSDataTypeException("Expected op to be PTDateTime.");
     }
     if(this.value.compareTo(((PTDateTime)op).read()) <= 0) {
-      return new PTBoolean(true);
+      return PTBoolean.valueOf(true);
     }
-    return new PTBoolean(false);
+    return PTBoolean.valueOf(false);
   }
 
   public void writeSYSDATE() {
@@ -158,9 +158,9 @@ public abstract class PTField<R extends PTRecord> extends PTObjectType {
     // If label does not exist, PT documentation indicates that a "Null"
     // (blank) string should be returned.
     if (label == null) {
-      Environment.pushToCallStack(new PTString(""));
+      Environment.setReturnValue(new PTString(""));
     } else {
-      Environment.pushToCallStack(new PTString(label.getLongName()));
+      Environment.setReturnValue(new PTString(label.getLongName()));
     }
   }
 
@@ -19,8 +19,19 @@ public final class PTInteger extends PTNumberType<Integer> {
   private static Logger log = LogManager.getLogger(PTInteger.class.getName());
   private static PTTypeConstraint<PTInteger> intTc;
 
+  // Read-only instances of the integers most often produced by literals,
+  // loop counters and arithmetic, shared in the same way as PTBoolean's.
+  private static final int MIN_CACHED = -128;
+  private static final int MAX_CACHED = 1024;
+  private static PTInteger[] cache;
+
   static {
     intTc = new PTTypeConstraint<PTInteger>(PTInteger.class);
+    cache = new PTInteger[MAX_CACHED - MIN_CACHED + 1];
+    for (int i = 0; i < cache.length; i++) {
+      cache[i] = new PTInteger(i + MIN_CACHED);
+      cache[i].setShared();
+    }
   }
 
   public PTInteger(final Integer initialVal) {
@@ -42,7 +53,23 @@ public final class PTInteger extends PTNumberType<Integer> {
     return intTc;
   }
 
+  /**
+   * Returns a PTInteger with the given value; if the value is in the
+   * cached range, the shared, read-only instance for it is returned.
+   * Callers must therefore treat the result as read-only; it is copied
+   * when assigned or passed as an arg like any other intermediate value.
+   * @param i the value
+   * @return a PTInteger for i
+   */
+  public static PTInteger valueOf(final int i) {
+    if (i >= MIN_CACHED && i <= MAX_CACHED) {
+      return cache[i - MIN_CACHED];
+    }
+    return new PTInteger(i);
+  }
+
   public void setBlank() {
+    this.checkIsNotShared();
     this.value = 0;
   }
 
@@ -63,7 +90,7 @@ public final class PTInteger extends PTNumberType<Integer> {
 
   @Override
   public PTNumberType negate() {
-    return new PTInteger(this.read() * -1);
+    return valueOf(this.read() * -1);
   }
 
   @Override
@@ -71,7 +98,7 @@ public final class PTInteger extends PTNumberType<Integer> {
     if(!(op instanceof PTInteger)) {
       throw new OPSDataTypeException("Expected op to be PTInteger.");
     }
-    return new PTInteger(this.read() + ((PTInteger) op).read());
+    return valueOf(this.read() + ((PTInteger) op).read());
   }
 
   @Override
@@ -79,7 +106,7 @@ public final class PTInteger extends PTNumberType<Integer> {
     if(!(op instanceof PTInteger)) {
       throw new OPSDataTypeException("Expected op to be PTInteger.");
     }
-    return new PTInteger(this.read() - ((PTInteger)op).read());
+    return valueOf(this.read() - ((PTInteger) op).read());
   }
 
   @Override
@@ -118,23 +145,11 @@ public final class PTInteger extends PTNumberType<Integer> {
   }
 
   public PTBoolean isEqual(PTPrimitiveType op) {
-    if(!(op instanceof PTInteger)) {
-      throw new OPSDataTypeException("Expected op to be PTInteger.");
-    }
-    if(this.value.compareTo(((PTInteger)op).read()) == 0) {
-      return new PTBoolean(true);
-    }
-    return new PTBoolean(false);
+    return PTBoolean.valueOf(this.equalTo(op));
   }
 
   public PTBoolean isGreaterThan(PTPrimitiveType op) {
-    if(!(op instanceof PTInteger)) {
-      throw new OPSDataTypeException("Expected op to be PTInteger.");
-    }
-    if(this.value.compareTo(((PTInteger)op).read()) > 0) {
-      return new PTBoolean(true);
-    }
-    return new PTBoolean(false);
+    return PTBoolean.valueOf(this.greaterThan(op));
   }
 
   public PTBoolean isGreaterThanOrEqual(PTPrimitiveType op) {
@@ -143,23 +158,38 @@ public final class PTInteger extends PTNumberType<Integer> {
   }
 
   public PTBoolean isLessThan(PTPrimitiveType op) {
-    if(!(op instanceof PTInteger)) {
-      throw new OPSDataTypeException("Expected op to be PTInteger.");
-    }
-    if(this.value.compareTo(((PTInteger)op).read()) < 0) {
-      return new PTBoolean(true);
-    }
-    return new PTBoolean(false);
+    return PTBoolean.valueOf(this.lessThan(op));
   }
 
   public PTBoolean isLessThanOrEqual(PTPrimitiveType op) {
+    return PTBoolean.valueOf(this.lessThanOrEqualTo(op));
+  }
+
+  @Override
+  public boolean equalTo(final PTPrimitiveType op) {
+    return this.value == this.readIntOperand(op);
+  }
+
+  @Override
+  public boolean greaterThan(final PTPrimitiveType op) {
+    return this.value > this.readIntOperand(op);
+  }
+
+  @Override
+  public boolean lessThan(final PTPrimitiveType op) {
+    return this.value < this.readIntOperand(op);
+  }
+
+  @Override
+  public boolean lessThanOrEqualTo(final PTPrimitiveType op) {
+    return this.value <= this.readIntOperand(op);
+  }
+
+  private int readIntOperand(final PTPrimitiveType op) {
     if(!(op instanceof PTInteger)) {
       throw new OPSDataTypeException("Expected op to be PTInteger.");
     }
-    if(this.value.compareTo(((PTInteger)op).read()) <= 0) {
-      return new PTBoolean(true);
-    }
-    return new PTBoolean(false);
+    return ((PTInteger) op).value;
   }
 
   public boolean equals(Object obj) {
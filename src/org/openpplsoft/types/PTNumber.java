@@ -8,18 +8,54 @@
 package org.openpplsoft.types;
 
 import java.math.BigDecimal;
+import java.math.RoundingMode;
 
 import org.apache.logging.log4j.*;
 
 import org.openpplsoft.runtime.*;
 
+/**
+ * A PeopleCode Number. Values whose unscaled value fits in a long and whose
+ * scale is between 0 and MAX_COMPACT_SCALE are held "compactly", as a
+ * scaled long, and arithmetic / comparisons among compact values are done
+ * on longs without allocating BigDecimals. All other values (or results
+ * that overflow a long) are held as BigDecimals. Either way, results are
+ * exactly those BigDecimal arithmetic would produce, including their scale,
+ * so the BigDecimal returned by read() is the same regardless of how the
+ * value was stored.
+ */
 public final class PTNumber extends PTNumberType<BigDecimal> {
 
   private static Logger log = LogManager.getLogger(PTNumber.class.getName());
   private static PTTypeConstraint<PTNumber> numTc;
 
+  private static final int MAX_COMPACT_SCALE = 18;
+  private static long[] powersOfTen;
+
+  /*
+   * PeopleTools Numbers allow for a max of 32 digits to the right of the
+   * decimal; see the note on PTInteger.div.
+   */
+  private static final int DIV_SCALE = 32;
+
+  /*
+   * When isCompact is true, the value is unscaledVal * 10^-scale, and
+   * this.value is either null or a BigDecimal equal to it (in both value and
+   * scale) that has been materialized by read(). Otherwise, this.value
+   * holds the value. NOTE: these fields must not have initializers, as
+   * setBlank() is called from the superclass constructor before they run.
+   */
+  private boolean isCompact;
+  private long unscaledVal;
+  private int scale;
+
   static {
     numTc = new PTTypeConstraint<PTNumber>(PTNumber.class);
+    powersOfTen = new long[MAX_COMPACT_SCALE + 1];
+    powersOfTen[0] = 1L;
+    for (int i = 1; i < powersOfTen.length; i++) {
+      powersOfTen[i] = powersOfTen[i - 1] * 10L;
+    }
   }
 
   public PTNumber(final BigDecimal initialVal) {
@@ -30,17 +66,77 @@ public final class PTNumber extends PTNumberType<BigDecimal> {
           + "initial value is null.");
     }
 
-    this.value = initialVal;
+    this.setRaw(initialVal);
   }
 
   public PTNumber(final PTTypeConstraint origTc) {
     super(origTc);
   }
 
+  private PTNumber(final long unscaled, final int s) {
+    super(numTc);
+    this.setCompact(unscaled, s);
+  }
+
   public static PTTypeConstraint<PTNumber> getTc() {
     return numTc;
   }
 
+  @Override
+  public BigDecimal read() {
+    if (this.isCompact && this.value == null) {
+      this.value = BigDecimal.valueOf(this.unscaledVal, this.scale);
+    }
+    return this.value;
+  }
+
+  @Override
+  public void write(final BigDecimal newValue) {
+    this.checkIsWriteable();
+    this.setRaw(newValue);
+    this.markAsUpdated();
+  }
+
+  @Override
+  public void systemWrite(final BigDecimal newValue) {
+    this.setRaw(newValue);
+  }
+
+  @Override
+  public void copyValueFrom(final PTPrimitiveType src) {
+    if (src instanceof PTNumber && ((PTNumber) src).isCompact) {
+      this.checkIsWriteable();
+      this.setCompact(((PTNumber) src).unscaledVal, ((PTNumber) src).scale);
+      this.markAsUpdated();
+    } else if (src instanceof PTInteger) {
+      this.checkIsWriteable();
+      this.setCompact(((PTInteger) src).read(), 0);
+      this.markAsUpdated();
+    } else {
+      super.copyValueFrom(src);
+    }
+  }
+
+  private void setRaw(final BigDecimal newValue) {
+    if (newValue != null && newValue.scale() >= 0
+        && newValue.scale() <= MAX_COMPACT_SCALE
+        && newValue.unscaledValue().bitLength() < Long.SIZE) {
+      this.isCompact = true;
+      this.unscaledVal = newValue.unscaledValue().longValue();
+      this.scale = newValue.scale();
+    } else {
+      this.isCompact = false;
+    }
+    this.value = newValue;
+  }
+
+  private void setCompact(final long unscaled, final int s) {
+    this.isCompact = true;
+    this.unscaledVal = unscaled;
+    this.scale = s;
+    this.value = null;
+  }
+
   public int readAsInteger() {
     /*
      * IMPORTANT NOTE: I'm using intValueExact here
@@ -49,14 +145,20 @@ public final class PTNumber extends PTNumberType<BigDecimal> {
      * throws ArithmeticEception if the BigDecimal object has a nonzero
      * fractional part or if it will overflow an int.
      */
-    return this.value.intValueExact();
+    if (this.isCompact && this.scale == 0) {
+      return Math.toIntExact(this.unscaledVal);
+    }
+    return this.read().intValueExact();
   }
 
   public void setBlank() {
-    this.value = BigDecimal.ZERO;
+    this.setCompact(0L, 0);
   }
 
   public boolean isBlank() {
+    if (this.isCompact) {
+      return this.unscaledVal == 0L;
+    }
     return (this.value.compareTo(BigDecimal.ZERO) == 0);
   }
 
@@ -71,119 +173,181 @@ public final class PTNumber extends PTNumberType<BigDecimal> {
     }
   }
 
+  /*
+   * The following allow PTNumber and PTInteger operands of arithmetic
+   * operations and comparisons to be treated alike without allocating.
+   */
+
+  private static boolean isCompactOperand(final PTPrimitiveType op) {
+    return op instanceof PTInteger
+        || (op instanceof PTNumber && ((PTNumber) op).isCompact);
+  }
+
+  private static long unscaledValOf(final PTPrimitiveType op) {
+    if (op instanceof PTInteger) {
+      return ((PTInteger) op).read();
+    }
+    return ((PTNumber) op).unscaledVal;
+  }
+
+  private static int scaleOf(final PTPrimitiveType op) {
+    if (op instanceof PTInteger) {
+      return 0;
+    }
+    return ((PTNumber) op).scale;
+  }
+
+  private static BigDecimal bigDecimalOf(final PTPrimitiveType op) {
+    if (op instanceof PTNumber) {
+      return ((PTNumber) op).read();
+    } else if (op instanceof PTInteger) {
+      return BigDecimal.valueOf(((PTInteger) op).read());
+    }
+    throw new OPSDataTypeException("Expected op to be PTNumber or PTInteger.");
+  }
+
+  /**
+   * Rescales a compact value to a larger scale.
+   * @throws ArithmeticException if the result overflows a long
+   */
+  private static long rescale(final long unscaled, final int fromScale,
+      final int toScale) {
+    return Math.multiplyExact(unscaled, powersOfTen[toScale - fromScale]);
+  }
+
   @Override
   public PTNumberType negate() {
-    throw new OPSVMachRuntimeException("negate() not supported.");
+    if (this.isCompact && this.unscaledVal != Long.MIN_VALUE) {
+      return new PTNumber(-this.unscaledVal, this.scale);
+    }
+    return new PTNumber(this.read().negate());
   }
 
   @Override
   public PTNumberType add(PTNumberType op) {
-    if(op instanceof PTInteger) {
-         return new PTNumber(
-              this.value.add(new BigDecimal(((PTInteger) op).read())));
-    } else {
-      throw new OPSDataTypeException("Expected PTInteger.");
+    if (this.isCompact && isCompactOperand(op)) {
+      final int s = Math.max(this.scale, scaleOf(op));
+      try {
+        return new PTNumber(Math.addExact(
+            rescale(this.unscaledVal, this.scale, s),
+            rescale(unscaledValOf(op), scaleOf(op), s)), s);
+      } catch (final ArithmeticException ae) {
+        // Overflowed a long; fall through to BigDecimal arithmetic.
+      }
     }
+    return new PTNumber(this.read().add(bigDecimalOf(op)));
   }
 
   @Override
   public PTNumberType sub(PTNumberType op) {
-    throw new OPSVMachRuntimeException("sub() not supported.");
+    if (this.isCompact && isCompactOperand(op)) {
+      final int s = Math.max(this.scale, scaleOf(op));
+      try {
+        return new PTNumber(Math.subtractExact(
+            rescale(this.unscaledVal, this.scale, s),
+            rescale(unscaledValOf(op), scaleOf(op), s)), s);
+      } catch (final ArithmeticException ae) {
+        // Overflowed a long; fall through to BigDecimal arithmetic.
+      }
+    }
+    return new PTNumber(this.read().subtract(bigDecimalOf(op)));
   }
 
   @Override
   public PTNumberType mul(PTNumberType op) {
-    throw new OPSVMachRuntimeException("mul() not supported.");
+    if (this.isCompact && isCompactOperand(op)
+        && this.scale + scaleOf(op) <= MAX_COMPACT_SCALE) {
+      try {
+        return new PTNumber(
+            Math.multiplyExact(this.unscaledVal, unscaledValOf(op)),
+            this.scale + scaleOf(op));
+      } catch (final ArithmeticException ae) {
+        // Overflowed a long; fall through to BigDecimal arithmetic.
+      }
+    }
+    return new PTNumber(this.read().multiply(bigDecimalOf(op)));
   }
 
+  /**
+   * Division is always done at the maximum scale allowed by PeopleTools,
+   * with the same rounding as PTInteger.div, so it is not done compactly.
+   */
   @Override
   public PTNumberType div(PTNumberType op) {
-    throw new OPSVMachRuntimeException("div() not supported.");
+    final BigDecimal divisor = bigDecimalOf(op);
+    final BigDecimal quotient =
+        this.read().divide(divisor, DIV_SCALE, RoundingMode.HALF_EVEN);
+    log.debug("Divided {} by {} to get {}.", this.read(), divisor, quotient);
+    return new PTNumber(quotient);
   }
 
   @Override
   public PTBoolean isEqual(PTPrimitiveType op) {
-    if(op instanceof PTNumber) {
-      if(this.value.compareTo(((PTNumber) op).read()) == 0) {
-        return new PTBoolean(true);
-      }
-    } else if(op instanceof PTInteger) {
-      if(this.value.compareTo(new BigDecimal(((PTInteger) op).read())) == 0) {
-        return new PTBoolean(true);
-      }
-    } else {
-      throw new OPSDataTypeException("Expected op to be PTNumber or PTInteger.");
-    }
-
-    return new PTBoolean(false);
+    return PTBoolean.valueOf(this.equalTo(op));
   }
 
   @Override
   public PTBoolean isGreaterThan(PTPrimitiveType op) {
-    if(op instanceof PTNumber) {
-      if(this.value.compareTo(((PTNumber) op).read()) > 0) {
-        return new PTBoolean(true);
-      }
-    } else if(op instanceof PTInteger) {
-      if(this.value.compareTo(new BigDecimal(((PTInteger) op).read())) > 0) {
-        return new PTBoolean(true);
-      }
-    } else {
-      throw new OPSDataTypeException("Expected op to be PTNumber or PTInteger.");
-    }
-
-    return new PTBoolean(false);
+    return PTBoolean.valueOf(this.greaterThan(op));
   }
 
   @Override
   public PTBoolean isGreaterThanOrEqual(PTPrimitiveType op) {
-    if(op instanceof PTNumber) {
-      if(this.value.compareTo(((PTNumber) op).read()) >= 0) {
-        return new PTBoolean(true);
-      }
-    } else if (op instanceof PTInteger) {
-      if (this.value.compareTo(new BigDecimal(((PTInteger) op).read())) >= 0) {
-        return new PTBoolean(true);
-      }
-    } else {
-      throw new OPSDataTypeException("Expected op to be PTNumber or PTInteger.");
-    }
-
-    return new PTBoolean(false);
+    return PTBoolean.valueOf(this.greaterThanOrEqualTo(op));
   }
 
   @Override
   public PTBoolean isLessThan(PTPrimitiveType op) {
-    if(op instanceof PTNumber) {
-      if(this.value.compareTo(((PTNumber) op).read()) < 0) {
-        return new PTBoolean(true);
-      }
-    } else if(op instanceof PTInteger) {
-      if(this.value.compareTo(new BigDecimal(((PTInteger) op).read())) < 0) {
-        return new PTBoolean(true);
-      }
-    } else {
-      throw new OPSDataTypeException("Expected op to be PTNumber "+
-          "or PTInteger.");
-    }
-    return new PTBoolean(false);
+    return PTBoolean.valueOf(this.lessThan(op));
   }
 
   @Override
   public PTBoolean isLessThanOrEqual(PTPrimitiveType op) {
-    if(op instanceof PTNumber) {
-      if(this.value.compareTo(((PTNumber) op).read()) <= 0) {
-        return new PTBoolean(true);
-      }
-    } else if(op instanceof PTInteger) {
-      if(this.value.compareTo(new BigDecimal(((PTInteger) op).read())) <= 0) {
-        return new PTBoolean(true);
-      }
-    } else {
-      throw new OPSDataTypeException("Expected op to be PTNumber "+
-          "or PTInteger.");
+    return PTBoolean.valueOf(this.lessThanOrEqualTo(op));
+  }
+
+  @Override
+  public boolean equalTo(final PTPrimitiveType op) {
+    return this.compareToOperand(op) == 0;
+  }
+
+  @Override
+  public boolean greaterThan(final PTPrimitiveType op) {
+    return this.compareToOperand(op) > 0;
+  }
+
+  @Override
+  public boolean greaterThanOrEqualTo(final PTPrimitiveType op) {
+    return this.compareToOperand(op) >= 0;
+  }
+
+  @Override
+  public boolean lessThan(final PTPrimitiveType op) {
+    return this.compareToOperand(op) < 0;
+  }
+
+  @Override
+  public boolean lessThanOrEqualTo(final PTPrimitiveType op) {
+    return this.compareToOperand(op) <= 0;
+  }
+
+  private int compareToOperand(final PTPrimitiveType op) {
+    if (this.isCompact && isCompactOperand(op)) {
+      return this.compareToCompact(unscaledValOf(op), scaleOf(op));
+    }
+    return this.read().compareTo(bigDecimalOf(op));
+  }
+
+  private int compareToCompact(final long otherUnscaled,
+      final int otherScale) {
+    final int s = Math.max(this.scale, otherScale);
+    try {
+      return Long.compare(rescale(this.unscaledVal, this.scale, s),
+          rescale(otherUnscaled, otherScale, s));
+    } catch (final ArithmeticException ae) {
+      return this.read().compareTo(
+          BigDecimal.valueOf(otherUnscaled, otherScale));
     }
-    return new PTBoolean(false);
   }
 
   @Override
@@ -200,9 +364,6 @@ public final class PTNumber extends PTNumberType<BigDecimal> {
      * BigDecimal objects must be compared via compareTo().
      */
     PTNumber other = (PTNumber)obj;
-    if(this.value.compareTo(other.read()) == 0) {
-      return true;
-    }
-    return false;
+    return this.compareToOperand(other) == 0;
   }
 }
@@ -7,7 +7,7 @@
 
 package org.openpplsoft.types;
 
-import java.lang.reflect.Method;
+import java.lang.invoke.MethodHandle;
 
 import org.openpplsoft.runtime.*;
 
@@ -20,11 +20,8 @@ public abstract class PTObjectType extends PTType {
   public abstract PTType dotProperty(String s);
 
   public Callable dotMethod(final String methodName) {
-    try {
-      final Method method = this.getClass().getMethod(methodName, new Class[0]);
-      return new Callable(method, this);
-    } catch (final NoSuchMethodException nsme) {
-      return null;
-    }
+    final MethodHandle method =
+        MethodDispatchTable.forClass(this.getClass()).lookup(methodName);
+    return method == null ? null : new Callable(method, this);
   }
 }
@@ -11,6 +11,7 @@ import org.apache.commons.lang3.builder.HashCodeBuilder;
 
 public abstract class PTPrimitiveType<T extends java.lang.Object> extends PTType {
   private boolean updatedFlag;
+  private boolean isShared;
   protected T value;
 
   protected PTPrimitiveType(final PTTypeConstraint origTc) {
@@ -30,10 +31,62 @@ public abstract class PTPrimitiveType<T extends java.lang.Object> extends PTType
   public abstract PTBoolean isLessThan(PTPrimitiveType op);
   public abstract PTBoolean isLessThanOrEqual(PTPrimitiveType op);
 
+  /*
+   * The following return the result of a comparison as a Java boolean,
+   * for use by constructs (For, Evaluate, etc.) that branch on the result
+   * rather than passing it on as a PeopleCode value. Subclasses override
+   * them where the comparison can be made directly on the raw values.
+   */
+
+  public boolean equalTo(final PTPrimitiveType op) {
+    return this.isEqual(op).read();
+  }
+
+  public boolean greaterThan(final PTPrimitiveType op) {
+    return this.isGreaterThan(op).read();
+  }
+
+  public boolean greaterThanOrEqualTo(final PTPrimitiveType op) {
+    return this.isGreaterThanOrEqual(op).read();
+  }
+
+  public boolean lessThan(final PTPrimitiveType op) {
+    return this.isLessThan(op).read();
+  }
+
+  public boolean lessThanOrEqualTo(final PTPrimitiveType op) {
+    return this.isLessThanOrEqual(op).read();
+  }
+
   public T read() {
     return this.value;
   }
 
+  /**
+   * Marks this primitive as one of the canonical instances shared by all
+   * callers (see PTBoolean.valueOf and PTInteger.valueOf). Shared
+   * instances are read-only, and unlike other read-only values they
+   * cannot be written by the system or blanked either.
+   */
+  protected void setShared() {
+    this.setReadOnly();
+    this.isShared = true;
+  }
+
+  /**
+   * Returns whether this primitive is a shared, canonical instance.
+   */
+  public boolean isShared() {
+    return this.isShared;
+  }
+
+  protected void checkIsNotShared() {
+    if (this.isShared) {
+      throw new OPSDataTypeException("Attempted illegal write to a shared "
+          + "PTType object: " + this);
+    }
+  }
+
   public void copyValueFrom(final PTPrimitiveType src) {
     this.write(this.primitiveToRaw(src));
   }
@@ -43,7 +96,7 @@ public abstract class PTPrimitiveType<T extends java.lang.Object> extends PTType
   }
 
   public String readAsString() {
-    return this.value.toString();
+    return this.read().toString();
   }
 
   public String readAsCompBufferOutput() {
@@ -61,6 +114,7 @@ public abstract class PTPrimitiveType<T extends java.lang.Object> extends PTType
   }
 
   public void systemWrite(T newValue) {
+    this.checkIsNotShared();
     this.value = newValue;
   }
 
@@ -77,13 +131,13 @@ public abstract class PTPrimitiveType<T extends java.lang.Object> extends PTType
     final int HCB_INITIAL = 41, HCB_MULTIPLIER = 337;
 
     return new HashCodeBuilder(HCB_INITIAL,
-        HCB_MULTIPLIER).append(this.value).toHashCode();
+        HCB_MULTIPLIER).append(this.read()).toHashCode();
   }
 
   @Override
   public String toString() {
     StringBuilder b = new StringBuilder(super.toString());
-    b.append(",value=").append(this.value);
+    b.append(",value=").append(this.read());
     b.append(",updated=").append(this.updatedFlag);
     return b.toString();
   }
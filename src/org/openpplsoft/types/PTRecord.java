@@ -101,6 +101,36 @@ public abstract class PTRecord<R extends PTRow, F extends PTField>
    */
   public PTImmutableReference<F> getFieldRef(final String fldName) {
 
+    final String unwrappedFldName = unwrapFieldName(fldName);
+
+    if (!this.fieldRefs.containsKey(unwrappedFldName)) {
+      throw new OPSVMachRuntimeException("Call to getFieldRef with "
+          + "unwrappedFldName=" + unwrappedFldName
+          + " did not match any field on this record: "
+          + this.toString());
+    }
+    return this.fieldRefs.get(unwrappedFldName);
+  }
+
+  /**
+   * Retrieves the field object at the provided position in this record.
+   * @param fldIdx the 1-based index of the field in the record defn's
+   *    expanded field list
+   * @return the field object at the provided position
+   */
+  public PTImmutableReference<F> getFieldRefAt(final int fldIdx) {
+    return this.fieldRefIdxTable.get(fldIdx);
+  }
+
+  /**
+   * Unwraps a field name as it may appear in a result set (i.e., within
+   * a date or datetime conversion, or with a record or "FILL" prefix)
+   * to obtain the name of the field itself.
+   * @param fldName the (possibly wrapped) field name
+   * @return the unwrapped field name
+   */
+  public static String unwrapFieldName(final String fldName) {
+
     String unwrappedFldName = fldName;
 
     /*
@@ -129,16 +159,9 @@ public abstract class PTRecord<R extends PTRow, F extends PTField>
       }
     }
 
-    if (!this.fieldRefs.containsKey(unwrappedFldName)) {
-      throw new OPSVMachRuntimeException("Call to getFieldRef with "
-          + "unwrappedFldName=" + unwrappedFldName
-          + " did not match any field on this record: "
-          + this.toString());
-    }
-    return this.fieldRefs.get(unwrappedFldName);
+    return unwrappedFldName;
   }
 
-
   @Override
   public PTType dotProperty(final String s) {
     if (this.fieldRefs.containsKey(s)) {
@@ -210,7 +233,7 @@ public abstract class PTRecord<R extends PTRow, F extends PTField>
           + "an integer or a field literal, is actually: " + arg.getClass().getName());
     }
 
-    Environment.pushToCallStack(fld);
+    Environment.setReturnValue(fld);
   }
 
   /**
@@ -266,7 +289,7 @@ public abstract class PTRecord<R extends PTRow, F extends PTField>
     ostmt.close();
 
     // Return true if record was read, false otherwise.
-    Environment.pushToCallStack(returnVal);
+    Environment.setReturnValue(returnVal);
   }
 
   /**
@@ -317,7 +340,7 @@ public abstract class PTRecord<R extends PTRow, F extends PTField>
     rs.close();
     ostmt.close();
 
-    Environment.pushToCallStack(returnVal);
+    Environment.setReturnValue(returnVal);
   }
 
   /**
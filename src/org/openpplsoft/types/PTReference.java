@@ -45,6 +45,17 @@ public class PTReference<T extends PTType> extends PTType {
           + "reference " + this + " to new object: " + newRef);
     }
     this.getOriginatingTypeConstraint().typeCheck(newRef);
+
+    /*
+     * A reference to a shared primitive would let an assignment through
+     * the reference write the value seen by every other user of that
+     * instance; callers must point references to a copy instead.
+     */
+    if (newRef instanceof PTPrimitiveType
+        && ((PTPrimitiveType) newRef).isShared()) {
+      throw new OPSDataTypeException("Illegal attempt to point reference "
+          + this + " to shared object: " + newRef);
+    }
     this.referencedValue = newRef;
   }
 
@@ -140,7 +140,7 @@ public abstract class PTRow<R extends PTRowset, E extends PTRecord>
           + "be a PTRecordLiteral or PTInteger.");
     }
 
-    Environment.pushToCallStack(rec);
+    Environment.setReturnValue(rec);
   }
 
   @Override
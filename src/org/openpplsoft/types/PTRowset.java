@@ -128,7 +128,7 @@ public abstract class PTRowset<R extends PTRow> extends PTObjectType {
           + this.rows.size());
     }
 
-    Environment.pushToCallStack(this.getRow(idx));
+    Environment.setReturnValue(this.getRow(idx));
   }
 
   /**
@@ -145,17 +145,24 @@ public abstract class PTRowset<R extends PTRow> extends PTObjectType {
     final LinkedList<String> sortFields = new LinkedList<String>();
     final LinkedList<String> sortOrders = new LinkedList<String>();
 
-    do {
-      final PTString orderStr = (PTString) Environment.popFromCallStack();
+    // Args are (field, order) pairs, the first of which takes precedence.
+    final List<PTType> args = Environment.getArgsFromCallStack();
+    if (args.size() == 0 || args.size() % 2 != 0) {
+      throw new OPSVMachRuntimeException("Expected one or more pairs of "
+          + "field and order args to Sort, got " + args.size() + " args.");
+    }
+
+    for (int i = 0; i < args.size(); i += 2) {
+      final PTString orderStr = (PTString) args.get(i + 1);
       if (orderStr.read().equals("A") || orderStr.read().equals("D")){
-        sortOrders.push(orderStr.read());
+        sortOrders.add(orderStr.read());
       } else {
         throw new OPSVMachRuntimeException("Unexpected order "
           + "string: " + orderStr.read());
       }
 
       final PTRecordFieldSpecifier fldSpec =
-          (PTRecordFieldSpecifier) Environment.popFromCallStack();
+          (PTRecordFieldSpecifier) args.get(i);
       if (!fldSpec.getRecName().equals(this.primaryRecDefn.getRecName())) {
         throw new OPSVMachRuntimeException("Encountered a sort "
             + "field for a record other than the one underlying this "
@@ -168,9 +175,8 @@ public abstract class PTRowset<R extends PTRow> extends PTObjectType {
             + fldSpec.getFieldName() + " does not exist on the underlying "
             + "record.");
       }
-      sortFields.push(fldSpec.getFieldName());
-
-    } while (!(Environment.peekAtCallStack() instanceof PTCallFrameBoundary));
+      sortFields.add(fldSpec.getFieldName());
+    }
 
     Collections.sort(this.rows, (aRow, bRow) -> {
       /*
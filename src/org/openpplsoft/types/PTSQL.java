@@ -18,6 +18,7 @@ import org.openpplsoft.pt.PeopleToolsImplementation;
 import org.openpplsoft.pt.SQL;
 import org.openpplsoft.runtime.Environment;
 import org.openpplsoft.runtime.OPSVMachRuntimeException;
+import org.openpplsoft.sql.FetchSizePolicy;
 import org.openpplsoft.sql.OPSResultSet;
 import org.openpplsoft.sql.OPSStmt;
 import org.openpplsoft.sql.StmtLibrary;
@@ -57,6 +58,7 @@ public final class PTSQL extends PTObjectType {
       strBindVals[i] = this.bindVals[i].readAsString();
     }
     this.ostmt = StmtLibrary.prepareSqlFromSQLDefn(this.sqlDefn, strBindVals);
+    this.ostmt.setFetchSize(FetchSizePolicy.forSqlObject());
   }
 
   /**
@@ -107,9 +109,9 @@ public final class PTSQL extends PTObjectType {
         Environment.assign(outVar, dbVal);
       }
 
-      Environment.pushToCallStack(new PTBoolean(true));
+      Environment.setReturnValue(new PTBoolean(true));
     } else {
-      Environment.pushToCallStack(new PTBoolean(false));
+      Environment.setReturnValue(new PTBoolean(false));
     }
 
     /*
@@ -124,7 +124,7 @@ public final class PTStandaloneRowset extends PTRowset<PTStandaloneRow> {
     ostmt.close();
 
     // Return the number of rows read from the fill operation.
-    Environment.pushToCallStack(new PTInteger(rowsRead));
+    Environment.setReturnValue(new PTInteger(rowsRead));
   }
 
   @Override
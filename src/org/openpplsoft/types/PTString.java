@@ -72,13 +72,15 @@ public class PTString extends PTPrimitiveType<String> {
 
   @Override
   public PTBoolean isEqual(final PTPrimitiveType op) {
+    return PTBoolean.valueOf(this.equalTo(op));
+  }
+
+  @Override
+  public boolean equalTo(final PTPrimitiveType op) {
     if (!(op instanceof PTString)) {
       throw new OPSDataTypeException("Expected op to be PTString.");
     }
-    if (this.value.equals(((PTString) op).read())) {
-      return new PTBoolean(true);
-    }
-    return new PTBoolean(false);
+    return this.value.equals(((PTString) op).read());
   }
 
   @Override
@@ -87,9 +89,9 @@ public class PTString extends PTPrimitiveType<String> {
       throw new OPSDataTypeException("Expected op to be PTString.");
     }
     if (this.value.compareTo(((PTString) op).read()) > 0) {
-      return new PTBoolean(true);
+      return PTBoolean.valueOf(true);
     }
-    return new PTBoolean(false);
+    return PTBoolean.valueOf(false);
   }
 
   @Override
@@ -104,9 +106,9 @@ public class PTString extends PTPrimitiveType<String> {
       throw new OPSDataTypeException("Expected op to be PTString.");
     }
     if (this.value.compareTo(((PTString) op).read()) < 0) {
-      return new PTBoolean(true);
+      return PTBoolean.valueOf(true);
     }
-    return new PTBoolean(false);
+    return PTBoolean.valueOf(false);
   }
 
   @Override
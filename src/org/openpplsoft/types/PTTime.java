@@ -72,9 +72,9 @@ public final class PTTime extends PTPrimitiveType<String> {
       throw new OPSDataTypeException("Expected op to be PTTime.");
     }
     if (this.value.compareTo(((PTTime) op).read()) >= 0) {
-      return new PTBoolean(true);
+      return PTBoolean.valueOf(true);
     }
-    return new PTBoolean(false);
+    return PTBoolean.valueOf(false);
   }
 
   @Override
@@ -89,9 +89,9 @@ public final class PTTime extends PTPrimitiveType<String> {
       throw new OPSDataTypeException("Expected op to be PTTime.");
     }
     if (this.value.compareTo(((PTTime) op).read()) <= 0) {
-      return new PTBoolean(true);
+      return PTBoolean.valueOf(true);
     }
-    return new PTBoolean(false);
+    return PTBoolean.valueOf(false);
   }
 
   @Override